@@ -0,0 +1,731 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.fsclassloader.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>ClassPack</code> stores the files written through the class
+ * loader writer in a single pack file instead of one file per class.
+ * <p>
+ * The pack file is an append-only log of records: blobs holding the content
+ * of a file keyed by its SHA-1 digest, names mapping a path to a blob and
+ * deletions of a path and its subtree. Files with the same content share a
+ * blob. The index of the names is kept in memory and rebuilt from the log
+ * on startup, the content is read from a memory mapping of the file which
+ * is created when the file is opened or compacted. Content appended later
+ * is read from the file.
+ * <p>
+ * Once the log contains more outdated than live records, the live records
+ * are copied into the next generation of the pack file and the index of the
+ * new generation replaces the current one.
+ */
+class ClassPack {
+
+    /** Minimum size of the outdated records in bytes before the pack is compacted. */
+    static final long COMPACT_THRESHOLD = 1024 * 1024;
+
+    private static final int MAGIC = 0x534c4350;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte BLOB = 1;
+
+    private static final byte NAME = 2;
+
+    private static final byte DELETE = 3;
+
+    private static final int DIGEST_SIZE = 20;
+
+    private static final String PREFIX = "classes-";
+
+    private static final String SUFFIX = ".pack";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final File directory;
+
+    /** The current generation of the pack file. */
+    private volatile Generation generation;
+
+    /** The index of the current generation, sorted to find the subtree of a path. */
+    private volatile ConcurrentSkipListMap<String, Entry> index = new ConcurrentSkipListMap<String, Entry>();
+
+    /** The blobs of the current generation by digest, guarded by this. */
+    private Map<String, Blob> blobs = new HashMap<String, Blob>();
+
+    /** The size of the live records of the current generation, guarded by this. */
+    private long liveSize = HEADER_SIZE;
+
+    private ClassPack(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Open the pack in the directory, creating it if it does not exist.
+     * Incomplete records at the end of the pack file are discarded.
+     */
+    static ClassPack open(final File directory) throws IOException {
+        directory.mkdirs();
+        final ClassPack pack = new ClassPack(directory);
+        synchronized ( pack ) {
+            pack.load();
+        }
+        return pack;
+    }
+
+    private void load() throws IOException {
+        // find the latest generation and remove leftovers
+        long number = 0;
+        final File[] files = directory.listFiles();
+        if ( files != null ) {
+            for(final File f : files) {
+                final long n = getGenerationNumber(f);
+                if ( n > number ) {
+                    number = n;
+                }
+            }
+            for(final File f : files) {
+                final long n = getGenerationNumber(f);
+                if ( n != number && (n != -1 || f.getName().endsWith(SUFFIX + TEMP_SUFFIX)) ) {
+                    if ( !f.delete() ) {
+                        logger.warn("Unable to delete outdated pack file {}", f);
+                    }
+                }
+            }
+        }
+        if ( number == 0 ) {
+            number = 1;
+        }
+        final Generation gen = new Generation(number, getFile(number));
+        boolean success = false;
+        try {
+            if ( gen.channel.size() < HEADER_SIZE ) {
+                gen.writeHeader();
+            } else {
+                this.replay(gen);
+            }
+            success = true;
+        } finally {
+            if ( !success ) {
+                gen.close();
+            }
+        }
+        this.generation = gen;
+        logger.debug("Loaded {} entries from {}", index.size(), gen.file);
+    }
+
+    /**
+     * Rebuild the index from the records of the pack file.
+     */
+    private void replay(final Generation gen) throws IOException {
+        final ByteBuffer buffer = gen.map();
+        if ( buffer.getInt() != MAGIC || buffer.getInt() != VERSION ) {
+            throw new IOException("Invalid pack file " + gen.file);
+        }
+        while ( buffer.hasRemaining() ) {
+            final int start = buffer.position();
+            try {
+                final byte type = buffer.get();
+                if ( type == BLOB ) {
+                    final String digest = readDigest(buffer);
+                    final int length = buffer.getInt();
+                    skip(buffer, length);
+                    final int offset = start + 1 + DIGEST_SIZE + 4;
+                    blobs.put(digest, new Blob(gen, digest, offset, length, buffer.position() - start));
+                } else if ( type == NAME ) {
+                    final String name = readString(buffer);
+                    final long lastModified = buffer.getLong();
+                    final Blob blob = blobs.get(readDigest(buffer));
+                    if ( blob == null ) {
+                        throw new BufferUnderflowException();
+                    }
+                    this.applyPut(name, new Entry(blob, lastModified, buffer.position() - start));
+                } else if ( type == DELETE ) {
+                    this.applyDelete(readString(buffer), null);
+                } else {
+                    throw new BufferUnderflowException();
+                }
+            } catch ( final BufferUnderflowException bue ) {
+                logger.warn("Discarding incomplete records at {} of {}", start, gen.file);
+                gen.channel.truncate(start);
+                // records appended later must not be read through the old mapping
+                gen.map();
+                break;
+            }
+        }
+        gen.end = gen.channel.size();
+        // blobs of incomplete updates
+        final Iterator<Blob> i = blobs.values().iterator();
+        while ( i.hasNext() ) {
+            if ( i.next().refs == 0 ) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * Close the pack file.
+     */
+    synchronized void close() {
+        final Generation gen = this.generation;
+        if ( gen != null ) {
+            gen.close();
+            this.generation = null;
+        }
+    }
+
+    File getFile() {
+        final Generation gen = this.generation;
+        return gen == null ? null : gen.file;
+    }
+
+    /**
+     * The number of files in the pack.
+     */
+    int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Get the content of a file.
+     * @return A read only buffer with the content or <code>null</code>
+     */
+    ByteBuffer get(final String name) throws IOException {
+        final Entry entry = this.index.get(name);
+        if ( entry == null ) {
+            return null;
+        }
+        return entry.blob.read();
+    }
+
+    /**
+     * Get the content of a file as a stream.
+     * @return The stream or <code>null</code>
+     */
+    InputStream getInputStream(final String name) throws IOException {
+        final ByteBuffer content = this.get(name);
+        return content == null ? null : new ByteBufferInputStream(content);
+    }
+
+    /**
+     * Get the last modified of a file.
+     * @return The last modified or <code>-1</code>
+     */
+    long getLastModified(final String name) {
+        final Entry entry = this.index.get(name);
+        return entry == null ? -1 : entry.lastModified;
+    }
+
+    /**
+     * Add or replace a file.
+     */
+    synchronized void put(final String name, final byte[] content) throws IOException {
+        final Generation gen = this.checkOpen();
+        final String digest = digest(content);
+        Blob blob = this.blobs.get(digest);
+        if ( blob == null ) {
+            blob = writeBlob(gen, digest, ByteBuffer.wrap(content));
+            this.blobs.put(digest, blob);
+        }
+        this.applyPut(name, writeName(gen, name, System.currentTimeMillis(), blob));
+        this.compactIfNeeded();
+    }
+
+    /**
+     * Delete a file or a directory with all its files.
+     * @return The names of the deleted files
+     */
+    synchronized List<String> delete(final String name) throws IOException {
+        final Generation gen = this.checkOpen();
+        final List<String> names = new ArrayList<String>();
+        if ( this.index.containsKey(name) || !this.getSubtree(name).isEmpty() ) {
+            final ByteBuffer record = newRecord(DELETE, name, 0);
+            gen.append(record);
+            this.applyDelete(name, names);
+            this.compactIfNeeded();
+        }
+        return names;
+    }
+
+    /**
+     * Rename a file, directories can't be renamed.
+     * @return <code>true</code> if the file exists and has been renamed
+     */
+    synchronized boolean rename(final String oldName, final String newName) throws IOException {
+        final Generation gen = this.checkOpen();
+        final Entry entry = this.index.get(oldName);
+        if ( entry == null ) {
+            return false;
+        }
+        if ( oldName.equals(newName) ) {
+            return true;
+        }
+        this.applyPut(newName, writeName(gen, newName, entry.lastModified, entry.blob));
+        gen.append(newRecord(DELETE, oldName, 0));
+        this.applyDelete(oldName, null);
+        this.compactIfNeeded();
+        return true;
+    }
+
+    private Generation checkOpen() throws IOException {
+        final Generation gen = this.generation;
+        if ( gen == null ) {
+            throw new IOException("Pack is closed");
+        }
+        return gen;
+    }
+
+    private Map<String, Entry> getSubtree(final String name) {
+        final String prefix = name.concat("/");
+        return this.index.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private void applyPut(final String name, final Entry entry) {
+        entry.blob.refs++;
+        if ( entry.blob.refs == 1 ) {
+            this.liveSize += entry.blob.recordSize;
+        }
+        this.liveSize += entry.recordSize;
+        this.release(this.index.put(name, entry));
+    }
+
+    private void applyDelete(final String name, final List<String> names) {
+        final Entry entry = this.index.remove(name);
+        if ( entry != null ) {
+            this.release(entry);
+            if ( names != null ) {
+                names.add(name);
+            }
+        }
+        final Iterator<Map.Entry<String, Entry>> i = this.getSubtree(name).entrySet().iterator();
+        while ( i.hasNext() ) {
+            final Map.Entry<String, Entry> e = i.next();
+            i.remove();
+            this.release(e.getValue());
+            if ( names != null ) {
+                names.add(e.getKey());
+            }
+        }
+    }
+
+    private void release(final Entry entry) {
+        if ( entry != null ) {
+            this.liveSize -= entry.recordSize;
+            entry.blob.refs--;
+            if ( entry.blob.refs == 0 ) {
+                this.liveSize -= entry.blob.recordSize;
+                this.blobs.remove(entry.blob.digest);
+            }
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        final long garbage = this.generation.end - this.liveSize;
+        if ( garbage > 0 && (this.index.isEmpty() || (garbage > COMPACT_THRESHOLD && garbage > this.liveSize)) ) {
+            this.compact();
+        }
+    }
+
+    /**
+     * Copy the live records into the next generation of the pack file
+     * and swap the generations.
+     */
+    private void compact() throws IOException {
+        final Generation old = this.generation;
+        // map the complete old generation for readers of outdated entries
+        old.map();
+        final long number = old.number + 1;
+        final File temp = new File(directory, PREFIX + number + SUFFIX + TEMP_SUFFIX);
+        final ConcurrentSkipListMap<String, Entry> newIndex = new ConcurrentSkipListMap<String, Entry>();
+        final Map<String, Blob> newBlobs = new HashMap<String, Blob>();
+        long newLiveSize = HEADER_SIZE;
+
+        final Generation tempGen = new Generation(number, temp);
+        try {
+            tempGen.writeHeader();
+            for(final Map.Entry<String, Entry> e : this.index.entrySet()) {
+                final Entry entry = e.getValue();
+                Blob blob = newBlobs.get(entry.blob.digest);
+                if ( blob == null ) {
+                    blob = writeBlob(tempGen, entry.blob.digest, entry.blob.read());
+                    newBlobs.put(blob.digest, blob);
+                    newLiveSize += blob.recordSize;
+                }
+                blob.refs++;
+                final Entry newEntry = writeName(tempGen, e.getKey(), entry.lastModified, blob);
+                newIndex.put(e.getKey(), newEntry);
+                newLiveSize += newEntry.recordSize;
+            }
+            tempGen.channel.force(true);
+        } finally {
+            tempGen.close();
+        }
+
+        final File file = getFile(number);
+        if ( !temp.renameTo(file) ) {
+            temp.delete();
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+        final Generation gen = new Generation(number, file);
+        gen.end = tempGen.end;
+        gen.map();
+        for(final Blob blob : newBlobs.values()) {
+            blob.generation = gen;
+        }
+
+        this.blobs = newBlobs;
+        this.liveSize = newLiveSize;
+        this.index = newIndex;
+        this.generation = gen;
+
+        old.close();
+        if ( !old.file.delete() ) {
+            logger.warn("Unable to delete outdated pack file {}", old.file);
+        }
+        logger.debug("Compacted {} into {}", old.file, file);
+    }
+
+    private static Blob writeBlob(final Generation gen, final String digest, final ByteBuffer content)
+    throws IOException {
+        final int length = content.remaining();
+        final ByteBuffer record = ByteBuffer.allocate(1 + DIGEST_SIZE + 4 + length);
+        record.put(BLOB);
+        record.put(fromHex(digest));
+        record.putInt(length);
+        record.put(content);
+        record.flip();
+        final long pos = gen.append(record);
+        return new Blob(gen, digest, pos + 1 + DIGEST_SIZE + 4, length, record.limit());
+    }
+
+    private static Entry writeName(final Generation gen, final String name, final long lastModified, final Blob blob)
+    throws IOException {
+        final ByteBuffer record = newRecord(NAME, name, 8 + DIGEST_SIZE);
+        record.position(record.limit() - 8 - DIGEST_SIZE);
+        record.putLong(lastModified);
+        record.put(fromHex(blob.digest));
+        record.flip();
+        gen.append(record);
+        return new Entry(blob, lastModified, record.limit());
+    }
+
+    /**
+     * Create a record with the type and the name and room for additional data.
+     */
+    private static ByteBuffer newRecord(final byte type, final String name, final int additional) {
+        final byte[] bytes = toBytes(name);
+        final ByteBuffer record = ByteBuffer.allocate(1 + 4 + bytes.length + additional);
+        record.put(type);
+        record.putInt(bytes.length);
+        record.put(bytes);
+        if ( additional == 0 ) {
+            record.flip();
+        } else {
+            record.limit(record.capacity());
+        }
+        return record;
+    }
+
+    private File getFile(final long number) {
+        return new File(directory, PREFIX + number + SUFFIX);
+    }
+
+    private static long getGenerationNumber(final File file) {
+        final String name = file.getName();
+        if ( name.startsWith(PREFIX) && name.endsWith(SUFFIX) ) {
+            try {
+                return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            } catch ( final NumberFormatException nfe ) {
+                // ignore
+            }
+        }
+        return -1;
+    }
+
+    private static void skip(final ByteBuffer buffer, final int length) {
+        if ( length < 0 || length > buffer.remaining() ) {
+            throw new BufferUnderflowException();
+        }
+        buffer.position(buffer.position() + length);
+    }
+
+    private static String readDigest(final ByteBuffer buffer) {
+        final byte[] digest = new byte[DIGEST_SIZE];
+        buffer.get(digest);
+        return toHex(digest);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if ( length < 0 || length > buffer.remaining() ) {
+            throw new BufferUnderflowException();
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        try {
+            return new String(bytes, "UTF-8");
+        } catch ( final UnsupportedEncodingException uee ) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    private static byte[] toBytes(final String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch ( final UnsupportedEncodingException uee ) {
+            throw new IllegalStateException(uee);
+        }
+    }
+
+    private static String digest(final byte[] content) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-1").digest(content));
+        } catch ( final NoSuchAlgorithmException nsae ) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] fromHex(final String hex) {
+        final byte[] bytes = new byte[hex.length() / 2];
+        for(int i=0; i<bytes.length; i++) {
+            bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Stream reading the content of a file from the mapped buffer.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if ( len == 0 ) {
+                return 0;
+            }
+            if ( !buffer.hasRemaining() ) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(final long n) {
+            final int skipped = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * A generation of the pack file.
+     */
+    private static final class Generation {
+
+        final long number;
+
+        final File file;
+
+        final RandomAccessFile raf;
+
+        final FileChannel channel;
+
+        /** The end of the file, guarded by the pack. */
+        long end;
+
+        /** The mapping of the file, created on open and compaction only. */
+        private volatile MappedByteBuffer buffer;
+
+        /** Whether the file is closed, guarded by the lock of the file. */
+        private boolean closed;
+
+        Generation(final long number, final File file) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.end = channel.size();
+        }
+
+        void writeHeader() throws IOException {
+            channel.truncate(0);
+            this.end = 0;
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.flip();
+            this.append(header);
+        }
+
+        /**
+         * Append the record to the file.
+         * @return The position of the record
+         */
+        long append(final ByteBuffer record) throws IOException {
+            final long pos = this.end;
+            if ( pos + record.remaining() > Integer.MAX_VALUE ) {
+                throw new IOException("Pack file " + file + " exceeds maximum size");
+            }
+            long written = 0;
+            while ( record.hasRemaining() ) {
+                written += channel.write(record, pos + written);
+            }
+            this.end = pos + written;
+            return pos;
+        }
+
+        synchronized MappedByteBuffer map() throws IOException {
+            final MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            this.buffer = b;
+            return b;
+        }
+
+        ByteBuffer read(final long offset, final int length) throws IOException {
+            MappedByteBuffer b = this.buffer;
+            if ( b == null || offset + length > b.capacity() ) {
+                // appended after the mapping, read from the file instead of
+                // mapping the file again for each new record
+                synchronized ( raf ) {
+                    if ( !closed ) {
+                        final byte[] content = new byte[length];
+                        raf.seek(offset);
+                        raf.readFully(content);
+                        return ByteBuffer.wrap(content).asReadOnlyBuffer();
+                    }
+                }
+                // closed by a compaction, which mapped the complete file before
+                b = this.buffer;
+                if ( b == null || offset + length > b.capacity() ) {
+                    throw new IOException("Pack file " + file + " is closed");
+                }
+            }
+            final ByteBuffer result = b.duplicate();
+            result.limit((int)offset + length);
+            result.position((int)offset);
+            return result.slice().asReadOnlyBuffer();
+        }
+
+        void close() {
+            synchronized ( raf ) {
+                closed = true;
+                try {
+                    raf.close();
+                } catch ( final IOException ioe ) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * The content of files, shared by all files with the same content.
+     */
+    private static final class Blob {
+
+        volatile Generation generation;
+
+        final String digest;
+
+        final long offset;
+
+        final int length;
+
+        final int recordSize;
+
+        /** The number of files with this content, guarded by the pack. */
+        int refs;
+
+        Blob(final Generation generation, final String digest, final long offset, final int length, final int recordSize) {
+            this.generation = generation;
+            this.digest = digest;
+            this.offset = offset;
+            this.length = length;
+            this.recordSize = recordSize;
+        }
+
+        ByteBuffer read() throws IOException {
+            return generation.read(offset, length);
+        }
+    }
+
+    private static final class Entry {
+
+        final Blob blob;
+
+        final long lastModified;
+
+        final int recordSize;
+
+        Entry(final Blob blob, final long lastModified, final int recordSize) {
+            this.blob = blob;
+            this.lastModified = lastModified;
+            this.recordSize = recordSize;
+        }
+    }
+}
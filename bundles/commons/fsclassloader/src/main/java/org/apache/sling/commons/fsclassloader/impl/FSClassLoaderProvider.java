@@ -18,6 +18,7 @@
  */
 package org.apache.sling.commons.fsclassloader.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -49,13 +50,35 @@ import org.slf4j.LoggerFactory;
  * The <code>FSClassLoaderProvider</code> is a dynamic class loader provider
  * which uses the file system to store and read class files from.
  *
+ * The files are either stored as individual files or, if configured,
+ * in a single pack file shared by all instances of this provider.
  */
-@Component
+@Component(metatype = true,
+    label = "Apache Sling Commons FileSystem ClassLoader",
+    description = "Provides a dynamic class loader for reading and writing class files from and to the file system.")
 @Service(value={ClassLoaderWriter.class}, serviceFactory = true)
-@Property( name=Constants.SERVICE_RANKING, intValue=100)
+@Property( name=Constants.SERVICE_RANKING, intValue=100, propertyPrivate = true)
 public class FSClassLoaderProvider
     implements ClassLoaderWriter {
 
+    private static final boolean DEFAULT_PACK = false;
+
+    @Property(boolValue = DEFAULT_PACK,
+        label = "Pack Files",
+        description = "If enabled all files are stored in a single memory mapped pack file " +
+                      "instead of one file per class. This reduces the file system access " +
+                      "for loading a large number of classes.")
+    private static final String PROP_PACK = "pack";
+
+    /** The pack shared by all instances, if enabled. */
+    private static ClassPack sharedPack;
+
+    /** The number of instances using the shared pack. */
+    private static int sharedPackUsage;
+
+    /** The pack used by this instance or <code>null</code> */
+    private ClassPack pack;
+
     /** File root */
     private File root;
 
@@ -89,6 +112,14 @@ public class FSClassLoaderProvider
         this.root.mkdirs();
         this.rootURL = this.root.toURI().toURL();
         this.callerBundle = componentContext.getUsingBundle();
+        final Object usePack = componentContext.getProperties().get(PROP_PACK);
+        if ( usePack == null ? DEFAULT_PACK : Boolean.valueOf(usePack.toString()) ) {
+            try {
+                this.pack = acquirePack(new File(componentContext.getBundleContext().getDataFile(""), "pack"));
+            } catch (final IOException ioe) {
+                logger.error("Unable to open pack file, storing classes as files.", ioe);
+            }
+        }
     }
 
     /**
@@ -100,6 +131,34 @@ public class FSClassLoaderProvider
         this.root = null;
         this.rootURL = null;
         this.destroyClassLoader();
+        if ( this.pack != null ) {
+            this.pack = null;
+            releasePack();
+        }
+    }
+
+    private static synchronized ClassPack acquirePack(final File directory) throws IOException {
+        if ( sharedPack == null ) {
+            sharedPack = ClassPack.open(directory);
+        }
+        sharedPackUsage++;
+        return sharedPack;
+    }
+
+    private static synchronized void releasePack() {
+        sharedPackUsage--;
+        if ( sharedPackUsage == 0 ) {
+            sharedPack.close();
+            sharedPack = null;
+        }
+    }
+
+    /**
+     * Get the pack shared by all instances.
+     * @return The pack or <code>null</code> if files are not packed.
+     */
+    static synchronized ClassPack getSharedPack() {
+        return sharedPack;
     }
 
     /**
@@ -147,7 +206,11 @@ public class FSClassLoaderProvider
                 final DynamicClassLoaderManager dclm = (DynamicClassLoaderManager) this.callerBundle.getBundleContext().getService(
                     this.dynamicClassLoaderManager);
 
-                loader = new FSDynamicClassLoader(new URL[] {this.rootURL}, dclm.getDynamicClassLoader());
+                if ( this.pack != null ) {
+                    loader = new FSDynamicClassLoader(new URL[0], dclm.getDynamicClassLoader(), this.pack);
+                } else {
+                    loader = new FSDynamicClassLoader(new URL[] {this.rootURL}, dclm.getDynamicClassLoader());
+                }
             }
             return this.loader;
         }
@@ -158,13 +221,22 @@ public class FSClassLoaderProvider
             // remove store directory and .class
             final String path = filePath.substring(this.root.getAbsolutePath().length() + 1, filePath.length() - 6);
             // convert to a class name
-            final String className = path.replace(File.separatorChar, '.');
+            this.checkClassName(path.replace(File.separatorChar, '.'));
+        }
+    }
 
-            synchronized ( this ) {
-                final FSDynamicClassLoader currentLoader = this.loader;
-                if ( currentLoader != null ) {
-                    currentLoader.check(className);
-                }
+    private void checkPackedClassLoader(final String name) {
+        if ( name.endsWith(".class") ) {
+            // remove leading slash and .class
+            this.checkClassName(name.substring(1, name.length() - 6).replace('/', '.'));
+        }
+    }
+
+    private void checkClassName(final String className) {
+        synchronized ( this ) {
+            final FSDynamicClassLoader currentLoader = this.loader;
+            if ( currentLoader != null ) {
+                currentLoader.check(className);
             }
         }
     }
@@ -187,6 +259,19 @@ public class FSClassLoaderProvider
      * @see org.apache.sling.commons.classloader.ClassLoaderWriter#delete(java.lang.String)
      */
     public boolean delete(final String name) {
+        if ( this.pack != null ) {
+            try {
+                final List<String> names = this.pack.delete(packName(name));
+                logger.debug("Deleted {} : {}", name, names.size());
+                for(final String n : names) {
+                    this.checkPackedClassLoader(n);
+                }
+                return !names.isEmpty();
+            } catch (final IOException ioe) {
+                logger.error("Unable to delete " + name, ioe);
+                return false;
+            }
+        }
         final String path = cleanPath(name);
         final File file = new File(path);
         if ( file.exists() ) {
@@ -210,6 +295,22 @@ public class FSClassLoaderProvider
      */
     public OutputStream getOutputStream(final String name) {
         logger.debug("Get stream for {}", name);
+        if ( this.pack != null ) {
+            final String packName = packName(name);
+            return new ByteArrayOutputStream() {
+
+                private boolean closed;
+
+                @Override
+                public void close() throws IOException {
+                    if ( !closed ) {
+                        closed = true;
+                        pack.put(packName, this.toByteArray());
+                        checkPackedClassLoader(packName);
+                    }
+                }
+            };
+        }
         final String path = cleanPath(name);
         final File file = new File(path);
         final File parentDir = file.getParentFile();
@@ -231,6 +332,19 @@ public class FSClassLoaderProvider
      */
     public boolean rename(final String oldName, final String newName) {
         logger.debug("Rename {} to {}", oldName, newName);
+        if ( this.pack != null ) {
+            try {
+                final boolean result = this.pack.rename(packName(oldName), packName(newName));
+                if ( result ) {
+                    this.checkPackedClassLoader(packName(oldName));
+                    this.checkPackedClassLoader(packName(newName));
+                }
+                return result;
+            } catch (final IOException ioe) {
+                logger.error("Unable to rename " + oldName + " to " + newName, ioe);
+                return false;
+            }
+        }
         final String oldPath = cleanPath(oldName);
         final String newPath = cleanPath(newName);
         final File old = new File(oldPath);
@@ -242,6 +356,23 @@ public class FSClassLoaderProvider
         return result;
     }
 
+    /**
+     * Get the name of a file in the pack: the path with slashes,
+     * a leading slash and without trailing slashes.
+     * @param path The path
+     * @return The name
+     */
+    private static String packName(String path) {
+        path = path.replace('\\', '/');
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if ( path.length() > 0 && !path.startsWith("/") ) {
+            path = "/".concat(path);
+        }
+        return path;
+    }
+
     /**
      * Clean the path by converting slashes to the correct format
      * and prefixing the root directory.
@@ -268,6 +399,13 @@ public class FSClassLoaderProvider
     public InputStream getInputStream(final String name)
     throws IOException {
         logger.debug("Get input stream of {}", name);
+        if ( this.pack != null ) {
+            final InputStream is = this.pack.getInputStream(packName(name));
+            if ( is == null ) {
+                throw new FileNotFoundException(name);
+            }
+            return is;
+        }
         final String path = cleanPath(name);
         final File file = new File(path);
         return new FileInputStream(file);
@@ -278,6 +416,9 @@ public class FSClassLoaderProvider
      */
     public long getLastModified(final String name) {
         logger.debug("Get last modified of {}", name);
+        if ( this.pack != null ) {
+            return this.pack.getLastModified(packName(name));
+        }
         final String path = cleanPath(name);
         final File file = new File(path);
         if ( file.exists() ) {
@@ -373,6 +373,11 @@ public class FSClassLoaderWebConsole extends AbstractWebConsolePlugin {
 
 			w.write("<p class=\"statline ui-state-highlight\">File System ClassLoader Root: "
 					+ root + "</p>");
+			ClassPack pack = FSClassLoaderProvider.getSharedPack();
+			if (pack != null) {
+				w.write("<p class=\"statline ui-state-highlight\">Classes are stored in the pack file "
+						+ pack.getFile() + " (" + pack.size() + " files)</p>");
+			}
 
 			w.write("<table class=\"nicetable ui-widget\">");
 			w.write("<tr class=\"header ui-widget-header\">");
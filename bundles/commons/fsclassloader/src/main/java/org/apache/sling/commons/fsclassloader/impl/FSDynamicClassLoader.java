@@ -18,9 +18,18 @@
  */
 package org.apache.sling.commons.fsclassloader.impl;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.security.CodeSource;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -37,9 +46,17 @@ public class FSDynamicClassLoader
 
     private final DynamicClassLoader parentLoader;
 
+    /** The pack to load the classes from, if the classes are not stored as files. */
+    private final ClassPack pack;
+
     public FSDynamicClassLoader(final URL[] urls, final ClassLoader parent) {
+        this(urls, parent, null);
+    }
+
+    public FSDynamicClassLoader(final URL[] urls, final ClassLoader parent, final ClassPack pack) {
         super(urls, parent);
         parentLoader = (parent instanceof DynamicClassLoader ? (DynamicClassLoader)parent : null);
+        this.pack = pack;
     }
 
     /**
@@ -64,9 +81,98 @@ public class FSDynamicClassLoader
         }
     }
 
+    /**
+     * @see java.net.URLClassLoader#findClass(java.lang.String)
+     */
+    @Override
+    protected Class<?> findClass(final String name) throws ClassNotFoundException {
+        if ( this.pack == null ) {
+            return super.findClass(name);
+        }
+        final ByteBuffer content;
+        try {
+            content = this.pack.get("/" + name.replace('.', '/') + ".class");
+        } catch (final IOException ioe) {
+            throw new ClassNotFoundException(name, ioe);
+        }
+        if ( content == null ) {
+            throw new ClassNotFoundException(name);
+        }
+        final int pos = name.lastIndexOf('.');
+        if ( pos != -1 ) {
+            final String packageName = name.substring(0, pos);
+            if ( this.getPackage(packageName) == null ) {
+                try {
+                    this.definePackage(packageName, null, null, null, null, null, null, null);
+                } catch (final IllegalArgumentException iae) {
+                    // defined concurrently
+                }
+            }
+        }
+        return this.defineClass(name, content, (CodeSource)null);
+    }
+
+    /**
+     * @see java.net.URLClassLoader#findResource(java.lang.String)
+     */
+    @Override
+    public URL findResource(final String name) {
+        if ( this.pack == null ) {
+            return super.findResource(name);
+        }
+        final String path = "/" + name;
+        if ( this.pack.getLastModified(path) == -1 ) {
+            return null;
+        }
+        try {
+            return new URL("fsclassloader", null, -1, path, new PackURLStreamHandler());
+        } catch (final MalformedURLException mue) {
+            return null;
+        }
+    }
+
+    /**
+     * @see java.net.URLClassLoader#findResources(java.lang.String)
+     */
+    @Override
+    public Enumeration<URL> findResources(final String name) throws IOException {
+        if ( this.pack == null ) {
+            return super.findResources(name);
+        }
+        final URL url = this.findResource(name);
+        final Set<URL> result = (url == null ? Collections.<URL>emptySet() : Collections.singleton(url));
+        return Collections.enumeration(result);
+    }
+
     public void check(final String className) {
         if ( !this.isDirty ) {
             this.isDirty = hit.contains(className) || miss.contains(className);
         }
     }
+
+    /**
+     * Handler for the URLs of resources in the pack.
+     */
+    private final class PackURLStreamHandler extends URLStreamHandler {
+
+        @Override
+        protected URLConnection openConnection(final URL u) throws IOException {
+            return new URLConnection(u) {
+
+                @Override
+                public void connect() {
+                    // nothing to do
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    final InputStream is = pack.getInputStream(this.getURL().getPath());
+                    if ( is == null ) {
+                        throw new FileNotFoundException(this.getURL().getPath());
+                    }
+                    return is;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.fsclassloader.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClassPackTest {
+
+    private File directory;
+
+    private ClassPack pack;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("classpack", "");
+        directory.delete();
+        pack = ClassPack.open(directory);
+    }
+
+    @After
+    public void tearDown() {
+        pack.close();
+        for(final File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+
+    private static String content(final ByteBuffer buffer) {
+        if ( buffer == null ) {
+            return null;
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes);
+    }
+
+    private void reopen() throws IOException {
+        pack.close();
+        pack = ClassPack.open(directory);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        pack.put("/org/apache/jsp/a.class", "a".getBytes());
+        pack.put("/org/apache/jsp/b.class", "b".getBytes());
+        assertEquals("a", content(pack.get("/org/apache/jsp/a.class")));
+        assertEquals("b", content(pack.get("/org/apache/jsp/b.class")));
+        assertNull(pack.get("/org/apache/jsp/c.class"));
+        assertTrue(pack.getLastModified("/org/apache/jsp/a.class") > 0);
+        assertEquals(-1, pack.getLastModified("/org/apache/jsp/c.class"));
+
+        pack.put("/org/apache/jsp/a.class", "a2".getBytes());
+        assertEquals("a2", content(pack.get("/org/apache/jsp/a.class")));
+
+        reopen();
+        assertEquals(2, pack.size());
+        assertEquals("a2", content(pack.get("/org/apache/jsp/a.class")));
+        assertEquals("b", content(pack.get("/org/apache/jsp/b.class")));
+    }
+
+    @Test
+    public void testAppendAfterOpen() throws IOException {
+        pack.put("/a.class", "a".getBytes());
+        reopen();
+        // b.class is appended after the file has been mapped
+        pack.put("/b.class", "b".getBytes());
+        assertEquals("a", content(pack.get("/a.class")));
+        assertEquals("b", content(pack.get("/b.class")));
+        assertTrue(pack.get("/b.class").isReadOnly());
+    }
+
+    @Test
+    public void testSharedContent() throws IOException {
+        pack.put("/a.class", "same".getBytes());
+        final long size = pack.getFile().length();
+        pack.put("/b.class", "same".getBytes());
+        // only a name record is appended
+        assertTrue(pack.getFile().length() - size < 64);
+        pack.delete("/a.class");
+        assertEquals("same", content(pack.get("/b.class")));
+    }
+
+    @Test
+    public void testDeleteSubtree() throws IOException {
+        pack.put("/org/apache/jsp/apps/a.class", "a".getBytes());
+        pack.put("/org/apache/jsp/apps/b.java", "b".getBytes());
+        pack.put("/org/apache/jsp/apps2/c.class", "c".getBytes());
+        final List<String> deleted = pack.delete("/org/apache/jsp/apps");
+        Collections.sort(deleted);
+        assertEquals(Arrays.asList("/org/apache/jsp/apps/a.class", "/org/apache/jsp/apps/b.java"), deleted);
+        assertNull(pack.get("/org/apache/jsp/apps/a.class"));
+        assertEquals("c", content(pack.get("/org/apache/jsp/apps2/c.class")));
+        assertTrue(pack.delete("/org/apache/jsp/apps").isEmpty());
+
+        reopen();
+        assertEquals(1, pack.size());
+        assertEquals("c", content(pack.get("/org/apache/jsp/apps2/c.class")));
+    }
+
+    @Test
+    public void testDeleteAllSwapsGeneration() throws IOException {
+        pack.put("/a.class", "a".getBytes());
+        final File file = pack.getFile();
+        assertEquals(1, pack.delete("").size());
+        assertNotEquals(file, pack.getFile());
+        assertFalse(file.exists());
+        assertEquals(8, pack.getFile().length());
+
+        pack.put("/b.class", "b".getBytes());
+        reopen();
+        assertEquals(1, pack.size());
+        assertEquals("b", content(pack.get("/b.class")));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        final byte[] content = new byte[64 * 1024];
+        for(int i=0; i<64; i++) {
+            content[0] = (byte)i;
+            pack.put("/a.class", content);
+        }
+        pack.put("/b.class", "b".getBytes());
+        // the outdated versions of a.class have been removed
+        assertTrue(pack.getFile().length() < 2 * ClassPack.COMPACT_THRESHOLD);
+        assertEquals(63, pack.get("/a.class").get(0));
+
+        reopen();
+        assertEquals(2, pack.size());
+        assertEquals(63, pack.get("/a.class").get(0));
+        assertEquals("b", content(pack.get("/b.class")));
+    }
+
+    @Test
+    public void testRename() throws IOException {
+        pack.put("/a.java", "a".getBytes());
+        assertTrue(pack.rename("/a.java", "/b.java"));
+        assertFalse(pack.rename("/a.java", "/c.java"));
+        assertNull(pack.get("/a.java"));
+        assertEquals("a", content(pack.get("/b.java")));
+
+        reopen();
+        assertEquals("a", content(pack.get("/b.java")));
+    }
+
+    @Test
+    public void testIncompleteRecord() throws IOException {
+        pack.put("/a.class", "a".getBytes());
+        pack.put("/b.class", "b".getBytes());
+        final File file = pack.getFile();
+        pack.close();
+
+        // cut off the last record
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        pack = ClassPack.open(directory);
+        assertEquals("a", content(pack.get("/a.class")));
+        assertNull(pack.get("/b.class"));
+
+        pack.put("/b.class", "b".getBytes());
+        reopen();
+        assertEquals("b", content(pack.get("/b.class")));
+    }
+}
@@ -17,6 +17,8 @@
 package org.apache.sling.commons.scheduler.impl;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -94,8 +96,8 @@ public class QuartzScheduler implements BundleListener {
     /** Map key for the bundle information (Long). */
     static final String DATA_MAP_SERVICE_ID = "QuartzJobScheduler.serviceId";
 
-    /** The quartz scheduler. */
-    private volatile org.quartz.Scheduler scheduler;
+    /** The quartz schedulers, one per job store shard. */
+    private volatile org.quartz.Scheduler[] schedulers;
 
     @Reference
     private ThreadPoolManager threadPoolManager;
@@ -107,6 +109,16 @@ public class QuartzScheduler implements BundleListener {
                           "the default pool is used.")
     private static final String PROPERTY_POOL_NAME = "poolName";
 
+    private static final int DEFAULT_STORE_SHARDS = 1;
+
+    @Property(intValue=DEFAULT_STORE_SHARDS,
+              label="Job Store Shards",
+              description="The number of independent job stores. Jobs are distributed across the " +
+                          "stores by their name, each store has its own lock and its own thread " +
+                          "for firing triggers. Increase this value if a large number of jobs " +
+                          "is scheduled.")
+    private static final String PROPERTY_STORE_SHARDS = "storeShards";
+
     /**
      * Activate this component.
      * Start the scheduler.
@@ -122,10 +134,20 @@ public class QuartzScheduler implements BundleListener {
             poolName = null;
         }
 
+        final Object shardsObj = props.get(PROPERTY_STORE_SHARDS);
+        int shards = DEFAULT_STORE_SHARDS;
+        if ( shardsObj != null ) {
+            try {
+                shards = Math.max(1, Integer.parseInt(shardsObj.toString().trim()));
+            } catch (final NumberFormatException nfe) {
+                this.logger.warn("Invalid number of job store shards {}, using {}", shardsObj, DEFAULT_STORE_SHARDS);
+            }
+        }
+
         ctx.addBundleListener(this);
 
         // start scheduler
-        this.scheduler = this.init(poolName);
+        this.schedulers = this.init(poolName, shards);
     }
 
     /**
@@ -136,8 +158,8 @@ public class QuartzScheduler implements BundleListener {
     protected void deactivate(final BundleContext ctx) {
         ctx.removeBundleListener(this);
 
-        final org.quartz.Scheduler s = this.scheduler;
-        this.scheduler = null;
+        final org.quartz.Scheduler[] s = this.schedulers;
+        this.schedulers = null;
         this.dispose(s);
     }
 
@@ -148,29 +170,31 @@ public class QuartzScheduler implements BundleListener {
         if ( event.getType() == BundleEvent.STOPPED ) {
             final Long bundleId = event.getBundle().getBundleId();
 
-            final org.quartz.Scheduler s = this.scheduler;
-            if ( s != null ) {
-                synchronized ( this ) {
-                    try {
-                        final List<String> groups = s.getJobGroupNames();
-                        for(final String group : groups) {
-                            final Set<JobKey> keys = s.getJobKeys(GroupMatcher.jobGroupEquals(group));
-                            for(final JobKey key : keys) {
-                                final JobDetail detail = s.getJobDetail(key);
-                                final String jobName = (String) detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_NAME);
-                                final Object job = detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_OBJECT);
-
-                                if ( jobName != null && job != null ) {
-                                    final Long jobBundleId = (Long) detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_BUNDLE_ID);
-                                    if ( jobBundleId != null && jobBundleId.equals(bundleId) ) {
-                                        s.deleteJob(key);
-                                        this.logger.debug("Unscheduling job with name {}", jobName);
+            final org.quartz.Scheduler[] schedulers = this.schedulers;
+            if ( schedulers != null ) {
+                for(final org.quartz.Scheduler s : schedulers) {
+                    synchronized ( s ) {
+                        try {
+                            final List<String> groups = s.getJobGroupNames();
+                            for(final String group : groups) {
+                                final Set<JobKey> keys = s.getJobKeys(GroupMatcher.jobGroupEquals(group));
+                                for(final JobKey key : keys) {
+                                    final JobDetail detail = s.getJobDetail(key);
+                                    final String jobName = (String) detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_NAME);
+                                    final Object job = detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_OBJECT);
+
+                                    if ( jobName != null && job != null ) {
+                                        final Long jobBundleId = (Long) detail.getJobDataMap().get(QuartzScheduler.DATA_MAP_BUNDLE_ID);
+                                        if ( jobBundleId != null && jobBundleId.equals(bundleId) ) {
+                                            s.deleteJob(key);
+                                            this.logger.debug("Unscheduling job with name {}", jobName);
+                                        }
                                     }
                                 }
                             }
+                        } catch ( final SchedulerException ignore) {
+                            // we ignore this as there is nothing to do
                         }
-                    } catch ( final SchedulerException ignore) {
-                        // we ignore this as there is nothing to do
                     }
                 }
             }
@@ -179,11 +203,11 @@ public class QuartzScheduler implements BundleListener {
     }
 
     /**
-     * Initialize the quartz scheduler
-     * @return Return the new scheduler instance.
+     * Initialize the quartz schedulers, one for each shard.
+     * @return Return the new scheduler instances.
      * @throws SchedulerException
      */
-    private org.quartz.Scheduler init(final String poolName) throws SchedulerException {
+    private org.quartz.Scheduler[] init(final String poolName, final int shards) throws SchedulerException {
 
         // SLING-2261 Prevent Quartz from checking for updates
         System.setProperty("org.terracotta.quartz.skipUpdateCheck", Boolean.TRUE.toString());
@@ -196,43 +220,68 @@ public class QuartzScheduler implements BundleListener {
 
         // create the pool
         this.threadPool = tpm.get(poolName);
-        final QuartzThreadPool quartzPool = new QuartzThreadPool(this.threadPool);
 
         final DirectSchedulerFactory factory = DirectSchedulerFactory.getInstance();
         // unique run id
         final String runID = new Date().toString().replace(' ', '_');
-        factory.createScheduler(QUARTZ_SCHEDULER_NAME, runID, quartzPool, new RAMJobStore());
-        // quartz does not provide a way to get the scheduler by name AND runID, so we have to iterate!
-        final Iterator<org.quartz.Scheduler> allSchedulersIter = factory.getAllSchedulers().iterator();
-        org.quartz.Scheduler s = null;
-        while ( s == null && allSchedulersIter.hasNext() ) {
-            final org.quartz.Scheduler current = allSchedulersIter.next();
-            if ( QUARTZ_SCHEDULER_NAME.equals(current.getSchedulerName())
-                 && runID.equals(current.getSchedulerInstanceId()) ) {
-                s = current;
+        final List<org.quartz.Scheduler> result = new ArrayList<org.quartz.Scheduler>();
+        try {
+            for(int i=0; i<shards; i++) {
+                // the first shard keeps the name used without sharding
+                final String name = (i == 0 ? QUARTZ_SCHEDULER_NAME : QUARTZ_SCHEDULER_NAME + '-' + i);
+                // each scheduler shuts down its quartz pool, so each needs its own wrapper
+                factory.createScheduler(name, runID, new QuartzThreadPool(this.threadPool), new RAMJobStore());
+                // quartz does not provide a way to get the scheduler by name AND runID, so we have to iterate!
+                final Iterator<org.quartz.Scheduler> allSchedulersIter = factory.getAllSchedulers().iterator();
+                org.quartz.Scheduler s = null;
+                while ( s == null && allSchedulersIter.hasNext() ) {
+                    final org.quartz.Scheduler current = allSchedulersIter.next();
+                    if ( name.equals(current.getSchedulerName())
+                         && runID.equals(current.getSchedulerInstanceId()) ) {
+                        s = current;
+                    }
+                }
+                if ( s == null ) {
+                    throw new SchedulerException("Unable to find new scheduler with name " + name + " and run ID " + runID);
+                }
+                result.add(s);
+                s.start();
             }
+        } catch ( final SchedulerException se ) {
+            this.dispose(result.toArray(new org.quartz.Scheduler[result.size()]));
+            throw se;
         }
-        if ( s == null ) {
-            throw new SchedulerException("Unable to find new scheduler with name " + QUARTZ_SCHEDULER_NAME + " and run ID " + runID);
+        if ( this.logger.isDebugEnabled() ) {
+            this.logger.debug(PREFIX + "started with {} job store shard(s).", shards);
         }
+        return result.toArray(new org.quartz.Scheduler[result.size()]);
+    }
 
-        s.start();
-        if ( this.logger.isDebugEnabled() ) {
-            this.logger.debug(PREFIX + "started.");
+    /**
+     * Get the scheduler of the shard responsible for the job.
+     * @param schedulers The schedulers
+     * @param name The name of the job
+     * @return The scheduler
+     */
+    private static org.quartz.Scheduler getScheduler(final org.quartz.Scheduler[] schedulers, final String name) {
+        if ( schedulers.length == 1 ) {
+            return schedulers[0];
         }
-        return s;
+        return schedulers[(name.hashCode() & Integer.MAX_VALUE) % schedulers.length];
     }
 
     /**
-     * Dispose the quartz scheduler
-     * @param s The scheduler.
+     * Dispose the quartz schedulers
+     * @param schedulers The schedulers.
      */
-    private void dispose(final org.quartz.Scheduler s) {
-        if ( s != null ) {
-            try {
-                s.shutdown();
-            } catch (SchedulerException e) {
-                this.logger.debug("Exception during shutdown of scheduler.", e);
+    private void dispose(final org.quartz.Scheduler[] schedulers) {
+        if ( schedulers != null ) {
+            for(final org.quartz.Scheduler s : schedulers) {
+                try {
+                    s.shutdown();
+                } catch (SchedulerException e) {
+                    this.logger.debug("Exception during shutdown of scheduler.", e);
+                }
             }
             if ( this.logger.isDebugEnabled() ) {
                 this.logger.debug(PREFIX + "stopped.");
@@ -424,9 +473,10 @@ public class QuartzScheduler implements BundleListener {
     public void removeJob(final Long bundleId, final String name) throws NoSuchElementException {
         // as this method might be called from unbind and during
         // unbind a deactivate could happen, we check the scheduler first
-        final org.quartz.Scheduler s = this.scheduler;
-        if ( s != null ) {
-            synchronized ( this ) {
+        final org.quartz.Scheduler[] schedulers = this.schedulers;
+        if ( schedulers != null ) {
+            final org.quartz.Scheduler s = getScheduler(schedulers, name);
+            synchronized ( s ) {
                 try {
                     s.deleteJob(JobKey.jobKey(name));
                     this.logger.debug("Unscheduling job with name {}", name);
@@ -438,8 +488,18 @@ public class QuartzScheduler implements BundleListener {
     }
 
     /** Used by the web console plugin. */
+    List<org.quartz.Scheduler> getSchedulers() {
+        final org.quartz.Scheduler[] schedulers = this.schedulers;
+        if ( schedulers == null ) {
+            return null;
+        }
+        return Arrays.asList(schedulers);
+    }
+
+    /** Used by the tests, returns the scheduler of the first shard. */
     org.quartz.Scheduler getScheduler() {
-        return this.scheduler;
+        final org.quartz.Scheduler[] schedulers = this.schedulers;
+        return schedulers == null ? null : schedulers[0];
     }
 
     public static final class QuartzThreadPool implements org.quartz.spi.ThreadPool {
@@ -607,9 +667,10 @@ public class QuartzScheduler implements BundleListener {
      * @see org.apache.sling.commons.scheduler.Scheduler#unschedule(java.lang.String)
      */
     public boolean unschedule(final Long bundleId, final String jobName) {
-        final org.quartz.Scheduler s = this.scheduler;
-        if ( jobName != null && s != null ) {
-            synchronized ( this ) {
+        final org.quartz.Scheduler[] schedulers = this.schedulers;
+        if ( jobName != null && schedulers != null ) {
+            final org.quartz.Scheduler s = getScheduler(schedulers, jobName);
+            synchronized ( s ) {
                 try {
                     final JobKey key = JobKey.jobKey(jobName);
                     final JobDetail jobdetail = s.getJobDetail(key);
@@ -646,13 +707,20 @@ public class QuartzScheduler implements BundleListener {
 
         // as this method might be called from unbind and during
         // unbind a deactivate could happen, we check the scheduler first
-        final org.quartz.Scheduler s = this.scheduler;
-        if ( s == null ) {
+        final org.quartz.Scheduler[] schedulers = this.schedulers;
+        if ( schedulers == null ) {
             throw new IllegalStateException("Scheduler is not available anymore.");
         }
 
-        synchronized ( this ) {
-            final String name;
+        final String name;
+        if ( opts.name != null ) {
+            name = opts.name;
+        } else {
+            name = job.getClass().getName() + ':' + UUID.randomUUID();
+        }
+        final org.quartz.Scheduler s = getScheduler(schedulers, name);
+
+        synchronized ( s ) {
             if ( opts.name != null ) {
                 // if there is already a job with the name, remove it first
                 try {
@@ -665,9 +733,6 @@ public class QuartzScheduler implements BundleListener {
                 } catch (final SchedulerException ignored) {
                     // ignore
                 }
-                name = opts.name;
-            } else {
-                name = job.getClass().getName() + ':' + UUID.randomUUID();
             }
 
             final Trigger trigger = opts.trigger.withIdentity(name).build();
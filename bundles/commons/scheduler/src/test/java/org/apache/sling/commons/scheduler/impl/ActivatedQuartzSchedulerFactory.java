@@ -32,6 +32,10 @@ import java.util.Map;
  */
 class ActivatedQuartzSchedulerFactory {
     public static QuartzScheduler create(BundleContext context, String poolName) throws Exception {
+        return create(context, poolName, 1);
+    }
+
+    public static QuartzScheduler create(BundleContext context, String poolName, int shards) throws Exception {
         QuartzScheduler quartzScheduler = null;
         if (context != null) {
             quartzScheduler = new QuartzScheduler();
@@ -45,6 +49,7 @@ class ActivatedQuartzSchedulerFactory {
 
             Map<String, Object> scheduleActivationProps = new HashMap<String, Object>();
             scheduleActivationProps.put("poolName", poolName == null ? "testName" : poolName);
+            scheduleActivationProps.put("storeShards", shards);
 
             quartzScheduler.activate(context, scheduleActivationProps);
             context.registerService("scheduler", quartzScheduler, props);
@@ -29,7 +29,6 @@ import org.osgi.framework.BundleContext;
 import org.quartz.*;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -57,9 +56,7 @@ public class QuartzJobExecutorTest {
 
         quartzScheduler = ActivatedQuartzSchedulerFactory.create(context, "testName");
 
-        Field schedulerField = QuartzScheduler.class.getDeclaredField("scheduler");
-        schedulerField.setAccessible(true);
-        scheduler = (Scheduler) schedulerField.get(quartzScheduler);
+        scheduler = quartzScheduler.getScheduler();
     }
 
     @Test
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.Assume;
+import org.junit.Test;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the throughput of scheduling, unscheduling and firing jobs
+ * while a large number of jobs is registered.
+ *
+ * The benchmark is skipped unless the job counts are specified:
+ * <pre>
+ * mvn test -Dtest=QuartzSchedulerBenchmarkTest -Dscheduler.benchmark=10000,100000,1000000 -DargLine=-Xmx4g
+ * </pre>
+ * The store shards to compare can be set with <code>scheduler.benchmark.shards</code>,
+ * the default is <code>1,8</code>. The JVM used is logged before the results,
+ * quote both when reporting them.
+ */
+public class QuartzSchedulerBenchmarkTest {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private static final String PROPERTY_JOBS = "scheduler.benchmark";
+
+    private static final String PROPERTY_SHARDS = "scheduler.benchmark.shards";
+
+    /** The number of threads scheduling jobs concurrently. */
+    private static final int THREADS = 4;
+
+    /** The number of jobs to unschedule and fire per run. */
+    private static final int SAMPLE = 1000;
+
+    @Test
+    public void testThroughput() throws Exception {
+        final String jobs = System.getProperty(PROPERTY_JOBS);
+        Assume.assumeTrue(jobs != null && jobs.trim().length() > 0);
+        logger.info("java.vm={} {} max heap={}m threads={} sample={}", new Object[] {System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), Runtime.getRuntime().maxMemory() >> 20, THREADS, SAMPLE});
+
+        for(final String count : jobs.split(",")) {
+            for(final String shards : System.getProperty(PROPERTY_SHARDS, "1,8").split(",")) {
+                run(Integer.parseInt(count.trim()), Integer.parseInt(shards.trim()));
+            }
+        }
+    }
+
+    private void run(final int jobs, final int shards) throws Exception {
+        final BundleContext context = MockOsgi.newBundleContext();
+        final QuartzScheduler scheduler = ActivatedQuartzSchedulerFactory.create(context, "testName", shards);
+        try {
+            final Runnable job = new Runnable() {
+
+                public void run() {
+                    // nothing to do
+                }
+            };
+            final Date future = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+
+            // schedule
+            long start = System.nanoTime();
+            final List<Thread> threads = new ArrayList<Thread>();
+            for(int t=0; t<THREADS; t++) {
+                final int offset = t;
+                threads.add(new Thread() {
+
+                    @Override
+                    public void run() {
+                        for(int i=offset; i<jobs; i+=THREADS) {
+                            scheduler.schedule(1L, 1L, job, scheduler.AT(future).name("benchmarkJob" + i));
+                        }
+                    }
+                });
+            }
+            for(final Thread t : threads) {
+                t.start();
+            }
+            for(final Thread t : threads) {
+                t.join();
+            }
+            final long scheduleTime = System.nanoTime() - start;
+
+            // unschedule
+            final int sample = Math.min(SAMPLE, jobs);
+            start = System.nanoTime();
+            for(int i=0; i<sample; i++) {
+                assertTrue(scheduler.unschedule(1L, "benchmarkJob" + (i * (jobs / sample))));
+            }
+            final long unscheduleTime = System.nanoTime() - start;
+
+            // fire
+            final CountDownLatch latch = new CountDownLatch(sample);
+            final Runnable firedJob = new Runnable() {
+
+                public void run() {
+                    latch.countDown();
+                }
+            };
+            start = System.nanoTime();
+            for(int i=0; i<sample; i++) {
+                scheduler.schedule(1L, 1L, firedJob, scheduler.NOW().name("firedJob" + i));
+            }
+            assertTrue(latch.await(10, TimeUnit.MINUTES));
+            final long fireTime = System.nanoTime() - start;
+
+            logger.info("jobs={} shards={} schedule/s={} unschedule/s={} fire/s={}", new Object[] {jobs, shards,
+                    opsPerSecond(jobs, scheduleTime), opsPerSecond(sample, unscheduleTime), opsPerSecond(sample, fireTime)});
+        } finally {
+            scheduler.deactivate(context);
+        }
+    }
+
+    private static long opsPerSecond(final int ops, final long nanos) {
+        return ops * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+}
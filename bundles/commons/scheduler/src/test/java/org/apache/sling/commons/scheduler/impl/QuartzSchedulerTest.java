@@ -274,16 +274,16 @@ public class QuartzSchedulerTest {
     }
 
     private void setInternalSchedulerToNull() throws NoSuchFieldException, IllegalAccessException {
-        Field sField = QuartzScheduler.class.getDeclaredField("scheduler");
+        Field sField = QuartzScheduler.class.getDeclaredField("schedulers");
         sField.setAccessible(true);
         sField.set(quartzScheduler, null);
     }
 
     private void returnInternalSchedulerBack() throws NoSuchFieldException, IllegalAccessException {
-        Field sField = QuartzScheduler.class.getDeclaredField("scheduler");
+        Field sField = QuartzScheduler.class.getDeclaredField("schedulers");
         sField.setAccessible(true);
         if (quartzScheduler.getScheduler() == null && s != null) {
-            sField.set(quartzScheduler, s);
+            sField.set(quartzScheduler, new Scheduler[] {s});
         }
     }
 }
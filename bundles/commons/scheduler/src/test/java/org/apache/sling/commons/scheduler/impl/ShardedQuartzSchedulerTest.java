@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.scheduler.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.sling.testing.mock.osgi.MockOsgi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.quartz.JobKey;
+import org.quartz.Scheduler;
+import org.quartz.impl.matchers.GroupMatcher;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShardedQuartzSchedulerTest {
+    private BundleContext context;
+    private QuartzScheduler sharded;
+
+    @Mock
+    private Bundle bundle;
+
+    @Before
+    public void setUp() throws Exception {
+        context = MockOsgi.newBundleContext();
+        sharded = ActivatedQuartzSchedulerFactory.create(context, "testName", 4);
+    }
+
+    @Test
+    public void testShards() throws Exception {
+        final List<Scheduler> schedulers = sharded.getSchedulers();
+        assertEquals(4, schedulers.size());
+        when(bundle.getBundleId()).thenReturn(2L);
+
+        for(int i=0; i<20; i++) {
+            sharded.addJob(1L + i % 2, 1L, "shardedJob" + i, new Thread(), new HashMap<String, Serializable>(), "0 * * * * ?", true);
+        }
+        int usedShards = 0;
+        for(final Scheduler scheduler : schedulers) {
+            if ( !scheduler.getJobKeys(GroupMatcher.anyJobGroup()).isEmpty() ) {
+                usedShards++;
+            }
+        }
+        assertTrue("Jobs must be distributed across shards", usedShards > 1);
+
+        // each job is stored in exactly one shard
+        for(int i=0; i<20; i++) {
+            int found = 0;
+            for(final Scheduler scheduler : schedulers) {
+                if ( scheduler.checkExists(JobKey.jobKey("shardedJob" + i)) ) {
+                    found++;
+                }
+            }
+            assertEquals(1, found);
+        }
+
+        sharded.bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundle));
+        for(int i=0; i<20; i++) {
+            final boolean removed = sharded.unschedule(1L, "shardedJob" + i);
+            assertEquals("Jobs of stopped bundle must be removed", i % 2 == 0, removed);
+        }
+        for(final Scheduler scheduler : schedulers) {
+            assertTrue(scheduler.getJobKeys(GroupMatcher.anyJobGroup()).isEmpty());
+        }
+    }
+
+    @After
+    public void deactivateScheduler() {
+        sharded.deactivate(context);
+    }
+}
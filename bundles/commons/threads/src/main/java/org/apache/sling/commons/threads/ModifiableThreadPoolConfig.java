@@ -32,6 +32,7 @@ import java.util.concurrent.ThreadFactory;
  * - shutdown wait time: -1
  * - priority: NORM
  * - daemon: false
+ * - type: DEFAULT
  * - factory: null (= default jvm thread factory)
  */
 public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
@@ -54,6 +55,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     public static final String PROPERTY_PRIORITY = "priority";
     /** Configuration property for the daemon flag. */
     public static final String PROPERTY_DAEMON = "daemon";
+    /** Configuration property for the thread pool type. */
+    public static final String PROPERTY_TYPE = "type";
     /** Configuration property for the thread pool name. */
     public static final String PROPERTY_NAME = "name";
 
@@ -87,6 +90,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
     /** Create daemon threads? */
     private  boolean isDaemon = false;
 
+    /** Thread pool type. */
+    private ThreadPoolType type = ThreadPoolType.DEFAULT;
+
     /**
      * Create a new default configuration.
      */
@@ -110,6 +116,9 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
             this.factory = copy.getFactory();
             this.priority = copy.getPriority();
             this.isDaemon = copy.isDaemon();
+            if ( copy instanceof ModifiableThreadPoolConfig ) {
+                this.type = ((ModifiableThreadPoolConfig)copy).getType();
+            }
         }
     }
 
@@ -272,6 +281,31 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
         this.isDaemon = isDaemon;
     }
 
+    /**
+     * Return the type of the thread pool. The sizes, the queue, the
+     * block policy, the factory, the priority and the daemon flag
+     * are only used by the {@link ThreadPoolType#DEFAULT} type.
+     * If the runtime does not support the type, the default type is used.
+     * Other configurations always use the default type.
+     * @return The type of the thread pool.
+     * @since 3.3.0
+     */
+    public ThreadPoolType getType() {
+        return type;
+    }
+
+    /**
+     * Set the thread pool type.
+     * @param type The thread pool type.
+     * @throws IllegalArgumentException If type is null.
+     */
+    public void setType(final ThreadPoolType type) {
+        if ( type == null ) {
+            throw new IllegalArgumentException("Type must not be null.");
+        }
+        this.type = type;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if ( obj instanceof ModifiableThreadPoolConfig ) {
@@ -284,7 +318,8 @@ public final class ModifiableThreadPoolConfig implements ThreadPoolConfig {
                 && this.shutdownGraceful == o.shutdownGraceful
                 && this.shutdownWaitTimeMs == o.shutdownWaitTimeMs
                 && this.priority.equals(o.priority)
-                && this.isDaemon == o.isDaemon;
+                && this.isDaemon == o.isDaemon
+                && this.type.equals(o.type);
         }
         return false;
     }
@@ -37,6 +37,20 @@ public interface ThreadPoolConfig {
         MAX
     };
 
+    /**
+     * The thread pool types.
+     * @see ModifiableThreadPoolConfig#setType(ThreadPoolType)
+     * @since 3.3.0
+     */
+    public enum ThreadPoolType {
+        /** A thread pool executor using the configured sizes, queue and block policy. */
+        DEFAULT,
+        /** A work stealing fork join pool, the max pool size is used as the parallelism. */
+        FORKJOIN,
+        /** A new virtual thread per task, if supported by the runtime. */
+        VIRTUAL
+    };
+
     /**
      * Return the minimum pool size.
      * @return The minimum pool size.
@@ -98,4 +112,4 @@ public interface ThreadPoolConfig {
      * @return <code>true</code> if daemon threads should be created.
      */
     boolean isDaemon();
-}
\ No newline at end of file
+}
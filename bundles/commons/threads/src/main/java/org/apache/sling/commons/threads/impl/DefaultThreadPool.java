@@ -16,8 +16,12 @@
  */
 package org.apache.sling.commons.threads.impl;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -49,10 +53,13 @@ public class DefaultThreadPool
     protected final String name;
 
     /** The executor. */
-    protected ThreadPoolExecutor executor;
+    protected ExecutorService executor;
 
     protected final ModifiableThreadPoolConfig configuration;
 
+    /** The statistics. */
+    protected final ThreadPoolStatistics statistics;
+
     /**
      * Create a new thread pool.
      * @param name - The name of the thread pool. If null {@link DefaultThreadPoolManager#DEFAULT_THREADPOOL_NAME}
@@ -60,6 +67,18 @@ public class DefaultThreadPool
      */
     public DefaultThreadPool(final String name,
                              final ThreadPoolConfig origConfig) {
+        this(name, origConfig, new ThreadPoolStatistics());
+    }
+
+    /**
+     * Create a new thread pool.
+     * @param name - The name of the thread pool. If null {@link DefaultThreadPoolManager#DEFAULT_THREADPOOL_NAME}
+     *               is used
+     * @param statistics - The statistics to update
+     */
+    public DefaultThreadPool(final String name,
+                             final ThreadPoolConfig origConfig,
+                             final ThreadPoolStatistics statistics) {
         // name
         if ( name != null ) {
             this.name = name;
@@ -70,6 +89,7 @@ public class DefaultThreadPool
         this.logger.info("Initializing thread pool [{}]  ...", this.name);
 
         this.configuration = new ModifiableThreadPoolConfig(origConfig);
+        this.statistics = statistics;
 
         // factory
         final ThreadFactory delegateThreadFactory;
@@ -126,16 +146,76 @@ public class DefaultThreadPool
                 handler = new ThreadPoolExecutor.CallerRunsPolicy();
                 break;
         }
-        this.executor = new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
-                this.configuration.getMaxPoolSize(),
-                this.configuration.getKeepAliveTime(),
-                TimeUnit.MILLISECONDS,
-                queue,
-                threadFactory,
-                handler);
+        switch (this.configuration.getType()) {
+            case FORKJOIN :
+                this.executor = createForkJoinPool(this.configuration.getMaxPoolSize());
+                break;
+            case VIRTUAL :
+                this.executor = createVirtualThreadExecutor(this.name);
+                break;
+            default :
+                break;
+        }
+        if ( this.executor == null ) {
+            if ( this.configuration.getType() != ThreadPoolConfig.ThreadPoolType.DEFAULT ) {
+                this.logger.warn("Thread pool type {} is not supported by the runtime for pool \"{}\". Using default type.",
+                        this.configuration.getType(), this.name);
+                this.configuration.setType(ThreadPoolConfig.ThreadPoolType.DEFAULT);
+            }
+            this.executor = new ThreadPoolExecutor(this.configuration.getMinPoolSize(),
+                    this.configuration.getMaxPoolSize(),
+                    this.configuration.getKeepAliveTime(),
+                    TimeUnit.MILLISECONDS,
+                    queue,
+                    threadFactory,
+                    this.statistics.wrap(handler));
+        }
         this.logger.info("Thread pool [{}] initialized.", name);
     }
 
+    /**
+     * Create a work stealing pool in async mode (FIFO scheduling of submitted tasks).
+     * The pool is created by reflection as it is not available on all supported runtimes.
+     * @return The pool or <code>null</code> if not supported.
+     */
+    private ExecutorService createForkJoinPool(final int maxPoolSize) {
+        final int parallelism;
+        if ( maxPoolSize == Integer.MAX_VALUE || maxPoolSize > 0x7fff ) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        } else {
+            parallelism = maxPoolSize;
+        }
+        try {
+            final Class<?> poolClass = Class.forName("java.util.concurrent.ForkJoinPool");
+            final Field factoryField = poolClass.getField("defaultForkJoinWorkerThreadFactory");
+            final Constructor<?> constructor = poolClass.getConstructor(int.class, factoryField.getType(),
+                    Thread.UncaughtExceptionHandler.class, boolean.class);
+            return (ExecutorService) constructor.newInstance(parallelism, factoryField.get(null), null, true);
+        } catch (final Exception e) {
+            this.logger.debug("Unable to create fork join pool", e);
+            return null;
+        }
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task.
+     * The executor is created by reflection as it is not available on all supported runtimes.
+     * @return The executor or <code>null</code> if not supported.
+     */
+    private ExecutorService createVirtualThreadExecutor(final String name) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            final ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            final Method create = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) create.invoke(null, factory);
+        } catch (final Exception e) {
+            this.logger.debug("Unable to create virtual thread executor", e);
+            return null;
+        }
+    }
+
     /**
      * @see org.apache.sling.commons.threads.ThreadPool#getName()
      */
@@ -160,7 +240,7 @@ public class DefaultThreadPool
             if ( logger.isDebugEnabled() ) {
                 logOperation("Executing runnable: ", runnable);
             }
-            executor.execute(runnable);
+            executor.execute(this.statistics.wrap(runnable));
         }
     }
 
@@ -172,7 +252,7 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting callable: ", callable);
         }
-        return executor.submit(callable);
+        return executor.submit(this.statistics.wrap(callable));
     }
 
     /**
@@ -183,7 +263,7 @@ public class DefaultThreadPool
         if ( logger.isDebugEnabled() ) {
             logOperation("Submitting runnable: ", runnable);
         }
-        return executor.submit(runnable);
+        return executor.submit(this.statistics.wrap(runnable));
     }
 
     /**
@@ -215,8 +295,21 @@ public class DefaultThreadPool
         this.logger.info("Thread pool [{}] is shut down.", this.name);
     }
 
+    /**
+     * Return the thread pool executor.
+     * @return The executor or <code>null</code> if the pool is shut down
+     *         or is not using a thread pool executor.
+     */
     public ThreadPoolExecutor getExecutor() {
-        return this.executor;
+        final ExecutorService service = this.executor;
+        if ( service instanceof ThreadPoolExecutor ) {
+            return (ThreadPoolExecutor) service;
+        }
+        return null;
+    }
+
+    public ThreadPoolStatistics getStatistics() {
+        return this.statistics;
     }
 
     private void checkExecutor() {
@@ -226,11 +319,27 @@ public class DefaultThreadPool
     }
 
     private void logOperation(final String msg, final Object obj) {
+        final ThreadPoolExecutor tpe = this.getExecutor();
+        if ( tpe == null ) {
+            logger.debug("{} {}, pool={}, type={}", new Object[] {msg, obj, name, this.configuration.getType()});
+            return;
+        }
         logger.debug("{} {}, pool={}, active={}, corePoolSize={}, maxPoolSize={}, queueSize={}",
                 new Object[] {msg, obj, name,
-                        executor.getActiveCount(),
-                        executor.getCorePoolSize(),
-                        executor.getMaximumPoolSize(),
-                        executor.getQueue().size()});
+                        tpe.getActiveCount(),
+                        tpe.getCorePoolSize(),
+                        tpe.getMaximumPoolSize(),
+                        tpe.getQueue().size()});
+    }
+
+    /**
+     * Return the type of the configuration, configurations which are
+     * not modifiable always use the default type.
+     */
+    static ThreadPoolConfig.ThreadPoolType getType(final ThreadPoolConfig config) {
+        if ( config instanceof ModifiableThreadPoolConfig ) {
+            return ((ModifiableThreadPoolConfig)config).getType();
+        }
+        return ThreadPoolConfig.ThreadPoolType.DEFAULT;
     }
 }
@@ -27,6 +27,7 @@ import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPool;
 import org.apache.sling.commons.threads.ThreadPoolConfig;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
 import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPriority;
 import org.apache.sling.commons.threads.ThreadPoolManager;
 import org.apache.sling.commons.threads.jmx.ThreadPoolMBean;
@@ -116,6 +117,14 @@ public class DefaultThreadPoolManager
         if ( props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON) != null ) {
             config.setDaemon((Boolean)props.get(ModifiableThreadPoolConfig.PROPERTY_DAEMON));
         }
+        if ( props.get(ModifiableThreadPoolConfig.PROPERTY_TYPE) != null ) {
+            final String type = props.get(ModifiableThreadPoolConfig.PROPERTY_TYPE).toString();
+            try {
+                config.setType(ThreadPoolType.valueOf(type));
+            } catch (final IllegalArgumentException iae) {
+                this.logger.warn("Invalid thread pool type {}, using {}", type, ThreadPoolType.DEFAULT);
+            }
+        }
         return config;
     }
 
@@ -318,6 +327,9 @@ public class DefaultThreadPoolManager
         /** The corresponding pool - might be null if unused. */
         private volatile ThreadPoolFacade pool;
 
+        /** The statistics, kept across pool updates. */
+        private final ThreadPoolStatistics statistics = new ThreadPoolStatistics();
+
         private ServiceRegistration mbeanRegistration;
 
         private BundleContext bundleContext;
@@ -355,7 +367,7 @@ public class DefaultThreadPoolManager
          */
         public ThreadPoolFacade incUsage() {
             if ( pool == null ) {
-                pool = new ThreadPoolFacade(new DefaultThreadPool(name, this.config));
+                pool = new ThreadPoolFacade(new DefaultThreadPool(name, this.config, this.statistics));
             }
             this.count++;
             return pool;
@@ -377,7 +389,7 @@ public class DefaultThreadPoolManager
             if ( this.pool != null ) {
                 this.pool.setName(name);
                 if ( !this.config.equals(config) ) {
-                    this.pool.setPool(new DefaultThreadPool(name, config));
+                    this.pool.setPool(new DefaultThreadPool(name, config, this.statistics));
                 }
             }
             this.config = config;
@@ -404,6 +416,10 @@ public class DefaultThreadPoolManager
             return null;
         }
 
+        public ThreadPoolStatistics getStatistics() {
+            return this.statistics;
+        }
+
         protected void unregisterMBean() {
             if ( this.mbeanRegistration != null ) {
                 this.mbeanRegistration.unregister();
@@ -144,4 +144,36 @@ class ThreadPoolMBeanImpl extends StandardMBean implements ThreadPoolMBean {
         return this.entry.isUsed();
     }
 
+    public String getType() {
+        return DefaultThreadPool.getType(this.entry.getConfig()).name();
+    }
+
+    public long getRejectedTaskCount() {
+        return this.entry.getStatistics().getRejectedCount();
+    }
+
+    public double getAverageQueueWaitTimeMs() {
+        return this.entry.getStatistics().getQueueWaitTime().getAverageMs();
+    }
+
+    public long getMaxQueueWaitTimeMs() {
+        return this.entry.getStatistics().getQueueWaitTime().getMaxMs();
+    }
+
+    public long[] getQueueWaitTimeHistogram() {
+        return this.entry.getStatistics().getQueueWaitTime().getBuckets();
+    }
+
+    public double getAverageTaskRunTimeMs() {
+        return this.entry.getStatistics().getRunTime().getAverageMs();
+    }
+
+    public long getMaxTaskRunTimeMs() {
+        return this.entry.getStatistics().getRunTime().getMaxMs();
+    }
+
+    public long[] getTaskRunTimeHistogram() {
+        return this.entry.getStatistics().getRunTime().getBuckets();
+    }
+
 }
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The statistics of a thread pool: the time tasks wait in the queue,
+ * the time tasks run and the number of rejected tasks.
+ * The statistics are kept across reconfigurations of the pool.
+ */
+public final class ThreadPoolStatistics {
+
+    /**
+     * The upper bounds in ms of the histogram buckets, the last
+     * bucket contains all values above the last bound.
+     */
+    static final long[] BUCKET_LIMITS_MS = {1, 10, 100, 1000, 10000};
+
+    /** The number of rejected tasks. */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /** The time tasks wait until they are executed. */
+    private final Histogram queueWaitTime = new Histogram();
+
+    /** The run time of the tasks. */
+    private final Histogram runTime = new Histogram();
+
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    public Histogram getQueueWaitTime() {
+        return this.queueWaitTime;
+    }
+
+    public Histogram getRunTime() {
+        return this.runTime;
+    }
+
+    /**
+     * Wrap the runnable to record its queue wait and run time.
+     */
+    public Runnable wrap(final Runnable runnable) {
+        final long queued = System.nanoTime();
+        return new Runnable() {
+
+            public void run() {
+                final long start = started(queued);
+                try {
+                    runnable.run();
+                } finally {
+                    finished(start);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return runnable.toString();
+            }
+        };
+    }
+
+    /**
+     * Wrap the callable to record its queue wait and run time.
+     */
+    public <T> Callable<T> wrap(final Callable<T> callable) {
+        final long queued = System.nanoTime();
+        return new Callable<T>() {
+
+            public T call() throws Exception {
+                final long start = started(queued);
+                try {
+                    return callable.call();
+                } finally {
+                    finished(start);
+                }
+            }
+
+            @Override
+            public String toString() {
+                return callable.toString();
+            }
+        };
+    }
+
+    /**
+     * Wrap the rejection handler to count the rejected tasks.
+     */
+    public RejectedExecutionHandler wrap(final RejectedExecutionHandler handler) {
+        return new RejectedExecutionHandler() {
+
+            public void rejectedExecution(final Runnable r, final ThreadPoolExecutor executor) {
+                rejectedCount.incrementAndGet();
+                handler.rejectedExecution(r, executor);
+            }
+        };
+    }
+
+    private long started(final long queued) {
+        final long start = System.nanoTime();
+        this.queueWaitTime.record(start - queued);
+        return start;
+    }
+
+    private void finished(final long start) {
+        this.runTime.record(System.nanoTime() - start);
+    }
+
+    /**
+     * A histogram of durations using the {@link ThreadPoolStatistics#BUCKET_LIMITS_MS}.
+     */
+    public static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_LIMITS_MS.length + 1);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(final long nanos) {
+            final long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int index = 0;
+            while ( index < BUCKET_LIMITS_MS.length && ms >= BUCKET_LIMITS_MS[index] ) {
+                index++;
+            }
+            this.buckets.incrementAndGet(index);
+            this.count.incrementAndGet();
+            this.totalNanos.addAndGet(nanos);
+            long max = this.maxNanos.get();
+            while ( nanos > max && !this.maxNanos.compareAndSet(max, nanos) ) {
+                max = this.maxNanos.get();
+            }
+        }
+
+        /**
+         * The number of recorded durations per bucket.
+         */
+        public long[] getBuckets() {
+            final long[] result = new long[this.buckets.length()];
+            for(int i=0; i<result.length; i++) {
+                result[i] = this.buckets.get(i);
+            }
+            return result;
+        }
+
+        public long getCount() {
+            return this.count.get();
+        }
+
+        public double getAverageMs() {
+            final long c = this.count.get();
+            return c == 0 ? 0 : this.totalNanos.get() / (c * 1000000.0);
+        }
+
+        public long getMaxMs() {
+            return TimeUnit.NANOSECONDS.toMillis(this.maxNanos.get());
+        }
+    }
+}
@@ -104,6 +104,8 @@ public class WebConsolePrinter {
                 pw.println(config.getShutdownWaitTimeMs());
                 pw.print("- daemon : ");
                 pw.println(config.isDaemon());
+                pw.print("- type : ");
+                pw.println(DefaultThreadPool.getType(config));
                 final ThreadPoolExecutor tpe = entry.getExecutor();
                 if ( tpe != null ) {
                     pw.print("- active count : ");
@@ -121,6 +123,17 @@ public class WebConsolePrinter {
                     pw.print("- task count : ");
                     pw.println(tpe.getTaskCount());
                 }
+                final ThreadPoolStatistics statistics = entry.getStatistics();
+                pw.print("- rejected task count : ");
+                pw.println(statistics.getRejectedCount());
+                pw.print("- queue wait time (avg/max ms) : ");
+                pw.print(statistics.getQueueWaitTime().getAverageMs());
+                pw.print(" / ");
+                pw.println(statistics.getQueueWaitTime().getMaxMs());
+                pw.print("- task run time (avg/max ms) : ");
+                pw.print(statistics.getRunTime().getAverageMs());
+                pw.print(" / ");
+                pw.println(statistics.getRunTime().getMaxMs());
                 pw.println();
             }
         } else {
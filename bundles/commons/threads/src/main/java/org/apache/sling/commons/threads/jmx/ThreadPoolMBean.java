@@ -156,4 +156,72 @@ public interface ThreadPoolMBean {
      */
     boolean isUsed();
 
+    /**
+     * Return the configured type of the thread pool.
+     * 
+     * @return The configured type.
+     * @since 1.1.0
+     */
+    String getType();
+
+    /**
+     * Return the number of tasks rejected by the pool. Rejected tasks
+     * are handled according to the block policy.
+     * 
+     * @return The number of rejected tasks.
+     * @since 1.1.0
+     */
+    long getRejectedTaskCount();
+
+    /**
+     * Return the average time tasks waited before being executed, in milliseconds.
+     * 
+     * @return The average queue wait time.
+     * @since 1.1.0
+     */
+    double getAverageQueueWaitTimeMs();
+
+    /**
+     * Return the maximum time a task waited before being executed, in milliseconds.
+     * 
+     * @return The maximum queue wait time.
+     * @since 1.1.0
+     */
+    long getMaxQueueWaitTimeMs();
+
+    /**
+     * Return the histogram of the time tasks waited before being executed.
+     * The buckets count the tasks with a wait time below 1ms, 10ms, 100ms,
+     * 1s, 10s and the last bucket counts the tasks waiting longer.
+     * 
+     * @return The number of tasks per bucket.
+     * @since 1.1.0
+     */
+    long[] getQueueWaitTimeHistogram();
+
+    /**
+     * Return the average run time of the tasks, in milliseconds.
+     * 
+     * @return The average run time.
+     * @since 1.1.0
+     */
+    double getAverageTaskRunTimeMs();
+
+    /**
+     * Return the maximum run time of a task, in milliseconds.
+     * 
+     * @return The maximum run time.
+     * @since 1.1.0
+     */
+    long getMaxTaskRunTimeMs();
+
+    /**
+     * Return the histogram of the run time of the tasks, using the
+     * same buckets as {@link #getQueueWaitTimeHistogram()}.
+     * 
+     * @return The number of tasks per bucket.
+     * @since 1.1.0
+     */
+    long[] getTaskRunTimeHistogram();
+
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.commons.threads.ModifiableThreadPoolConfig;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolPolicy;
+import org.apache.sling.commons.threads.ThreadPoolConfig.ThreadPoolType;
+import org.junit.After;
+import org.junit.Test;
+
+public class DefaultThreadPoolTest {
+
+    private DefaultThreadPool pool;
+
+    @After
+    public void tearDown() {
+        if ( pool != null ) {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean isSupported(final String className) {
+        try {
+            Class.forName(className);
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void testForkJoinPool() throws Exception {
+        assumeTrue(isSupported("java.util.concurrent.ForkJoinPool"));
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setType(ThreadPoolType.FORKJOIN);
+        pool = new DefaultThreadPool("forkjoin", config);
+
+        assertEquals(ThreadPoolType.FORKJOIN, DefaultThreadPool.getType(pool.getConfiguration()));
+        assertNull(pool.getExecutor());
+        assertEquals("result", pool.submit(new Callable<String>() {
+
+            public String call() {
+                return "result";
+            }
+        }).get(10, TimeUnit.SECONDS));
+        assertEquals(1, pool.getStatistics().getRunTime().getCount());
+    }
+
+    @Test
+    public void testUnsupportedTypeFallsBackToDefault() throws Exception {
+        boolean virtualThreads;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            virtualThreads = true;
+        } catch (final NoSuchMethodException e) {
+            virtualThreads = false;
+        }
+        assumeTrue(!virtualThreads);
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setType(ThreadPoolType.VIRTUAL);
+        pool = new DefaultThreadPool("virtual", config);
+
+        assertEquals(ThreadPoolType.DEFAULT, DefaultThreadPool.getType(pool.getConfiguration()));
+        assertNotNull(pool.getExecutor());
+        pool.submit(new Runnable() {
+
+            public void run() {
+                // nothing to do
+            }
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRejectedTaskIsCounted() throws Exception {
+        final ModifiableThreadPoolConfig config = new ModifiableThreadPoolConfig();
+        config.setMinPoolSize(1);
+        config.setMaxPoolSize(1);
+        config.setQueueSize(0);
+        config.setBlockPolicy(ThreadPoolPolicy.ABORT);
+        pool = new DefaultThreadPool("rejecting", config);
+
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        pool.execute(new Runnable() {
+
+            public void run() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            running.await();
+            try {
+                pool.execute(new Runnable() {
+
+                    public void run() {
+                        // never executed
+                    }
+                });
+            } catch (final RejectedExecutionException e) {
+                // expected
+            }
+            assertEquals(1, pool.getStatistics().getRejectedCount());
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.commons.threads.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ThreadPoolStatisticsTest {
+
+    private static long ms(final long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        final ThreadPoolStatistics.Histogram histogram = new ThreadPoolStatistics.Histogram();
+        histogram.record(ms(0));
+        histogram.record(ms(1));
+        histogram.record(ms(9));
+        histogram.record(ms(10));
+        histogram.record(ms(999));
+        histogram.record(ms(1000));
+        histogram.record(ms(10000));
+        histogram.record(ms(100000));
+
+        assertArrayEquals(new long[] {1, 2, 1, 1, 1, 2}, histogram.getBuckets());
+        assertEquals(8, histogram.getCount());
+        assertEquals(100000, histogram.getMaxMs());
+        assertEquals((1 + 9 + 10 + 999 + 1000 + 10000 + 100000) / 8.0, histogram.getAverageMs(), 0.001);
+    }
+
+    @Test
+    public void testWrap() {
+        final ThreadPoolStatistics statistics = new ThreadPoolStatistics();
+        final boolean[] ran = new boolean[1];
+        statistics.wrap(new Runnable() {
+
+            public void run() {
+                ran[0] = true;
+            }
+        }).run();
+        assertEquals(true, ran[0]);
+        assertEquals(1, statistics.getQueueWaitTime().getCount());
+        assertEquals(1, statistics.getRunTime().getCount());
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.sling.engine.impl;
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
 
+import org.apache.sling.engine.impl.log.RequestLogWriter;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
 
@@ -146,6 +147,7 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
         this.servletCallCountSumX=0d;
         this.servletCallCountSumX2=0d;
         this.n = 0;
+        RequestLogWriter.resetDroppedCount();
     }
 
     public int getMaxPeakRecursionDepth() {
@@ -198,4 +200,11 @@ class RequestProcessorMBeanImpl extends StandardMBean implements RequestProcesso
         return 0;
     }
 
+    public long getDroppedRequestLogMessageCount() {
+        return RequestLogWriter.getDroppedCount();
+    }
+
+    public int getRequestLogBacklog() {
+        return RequestLogWriter.getBacklog();
+    }
 }
@@ -57,6 +57,7 @@ import org.apache.sling.engine.impl.helper.RequestListenerManager;
 import org.apache.sling.engine.impl.helper.SlingServletContext;
 import org.apache.sling.engine.impl.request.RequestData;
 import org.apache.sling.engine.impl.request.RequestHistoryConsolePlugin;
+import org.apache.sling.engine.impl.request.SlingRequestProgressTracker;
 import org.apache.sling.engine.jmx.RequestProcessorMBean;
 import org.apache.sling.engine.servlets.ErrorHandler;
 import org.osgi.framework.BundleContext;
@@ -105,6 +106,15 @@ public class SlingMainServlet extends GenericServlet {
     @Property(unbounded=PropertyUnbounded.ARRAY)
     private static final String PROP_TRACK_PATTERNS_REQUESTS = "sling.store.pattern.requests";
 
+    @Property(intValue = 0)
+    private static final String PROP_MAX_RECORD_SLOW_REQUESTS = "sling.max.record.slow.requests";
+
+    @Property(longValue = RequestHistoryConsolePlugin.DEFAULT_SLOW_REQUEST_THRESHOLD)
+    private static final String PROP_SLOW_REQUEST_THRESHOLD = "sling.slow.request.threshold";
+
+    @Property(intValue = SlingRequestProgressTracker.DEFAULT_MAX_ENTRIES)
+    private static final String PROP_MAX_TRACKER_ENTRIES = "sling.max.tracker.entries";
+
     private static final String PROP_DEFAULT_PARAMETER_ENCODING = "sling.default.parameter.encoding";
 
     @Property
@@ -377,6 +387,9 @@ public class SlingMainServlet extends GenericServlet {
         RequestData.setMaxCallCounter(PropertiesUtil.toInteger(
             componentConfig.get(PROP_MAX_CALL_COUNTER),
             RequestData.DEFAULT_MAX_CALL_COUNTER));
+        RequestData.setMaxTrackerEntries(PropertiesUtil.toInteger(
+            componentConfig.get(PROP_MAX_TRACKER_ENTRIES),
+            SlingRequestProgressTracker.DEFAULT_MAX_ENTRIES));
         RequestData.setSlingMainServlet(this);
 
         // configure default request parameter encoding
@@ -433,7 +446,13 @@ public class SlingMainServlet extends GenericServlet {
                     compiledPatterns.add(Pattern.compile(pattern));
                 }
             }
-            RequestHistoryConsolePlugin.initPlugin(bundleContext, maxRequests, compiledPatterns);
+            int maxSlowRequests = PropertiesUtil.toInteger(
+                componentConfig.get(PROP_MAX_RECORD_SLOW_REQUESTS), 0);
+            long slowRequestThreshold = PropertiesUtil.toLong(
+                componentConfig.get(PROP_SLOW_REQUEST_THRESHOLD),
+                RequestHistoryConsolePlugin.DEFAULT_SLOW_REQUEST_THRESHOLD);
+            RequestHistoryConsolePlugin.initPlugin(bundleContext, maxRequests, compiledPatterns,
+                maxSlowRequests, slowRequestThreshold);
         } catch (Throwable t) {
             log.debug(
                 "Unable to register web console request recorder plugin.", t);
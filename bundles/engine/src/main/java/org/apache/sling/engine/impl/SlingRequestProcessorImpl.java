@@ -226,9 +226,16 @@ public class SlingRequestProcessorImpl implements SlingRequestProcessor {
             handleError(t, request, response);
 
         } finally {
+            // format the tracked messages, the request history keeps the
+            // tracker after the request objects are gone
+            request.getRequestProgressTracker().done();
+
             if (mbean != null) {
                 mbean.addRequestData(requestData);
             }
+
+            // keep the trace of slow requests for the web console display
+            RequestHistoryConsolePlugin.recordSlowRequest(request);
         }
     }
 
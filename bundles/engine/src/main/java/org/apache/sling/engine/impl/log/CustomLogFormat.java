@@ -55,6 +55,21 @@ class CustomLogFormat {
      */
     Parameter[] logParameters;
 
+    /**
+     * The maximum capacity of a buffer kept for reuse by a thread.
+     */
+    private static final int MAX_BUFFER_CAPACITY = 8192;
+
+    /**
+     * The buffer reused by each thread to build the log messages.
+     */
+    private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
     /**
      * Creates a new instance from of this class parsing the log format pattern.
      *
@@ -82,11 +97,17 @@ class CustomLogFormat {
      */
     String format(RequestLoggerRequest request, RequestLoggerResponse response) {
         if (this.logParameters != null) {
-            StringBuilder buf = new StringBuilder();
+            StringBuilder buf = buffers.get();
+            buf.setLength(0);
             for (int i = 0; i < this.logParameters.length; i++) {
                 this.logParameters[i].print(buf, request, response);
             }
-            return buf.toString();
+            final String message = buf.toString();
+            if (buf.capacity() > MAX_BUFFER_CAPACITY) {
+                // do not keep an exceptionally large buffer
+                buffers.remove();
+            }
+            return message;
         }
 
         return null;
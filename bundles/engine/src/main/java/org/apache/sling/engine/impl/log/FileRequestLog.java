@@ -18,22 +18,24 @@
  */
 package org.apache.sling.engine.impl.log;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.Writer;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.sling.engine.RequestLog;
+import org.slf4j.LoggerFactory;
 
 /**
  * The <code>FileRequestLog</code> class is an implementation of the
  * {@link RequestLog} interface writing the log messages to an plain file. This
  * class supports sharing the files for different log formatters, in that an
- * internal map of log files is kept and access to the <code>PrintWriter</code>s
- * to write to the file is synchronized.
+ * internal map of log files is kept, each written by a shared
+ * {@link RequestLogWriter}.
  * <p>
  * This class has a defined lifecycle to ensure correct operation: To ensure no
  * log files are kept open, the {@link RequestLoggerFilter} object calls
@@ -46,41 +48,77 @@ import org.apache.sling.engine.RequestLog;
  * last user has closed the log, (3) optimize the first strategy by keeping the
  * files open for some time.
  * <p>
- * Note: Currently, the <code>PrintWriter</code> used to log the message is
- * flushed after each log message written. Future development should probably
- * implement better buffering in conjunction with the temporary open/close
- * cycles of the files.
+ * Messages are written synchronously unless a flush interval has been
+ * configured with {@link #configure(long, int)}. Configuring replaces the
+ * writers of the open files, the instances of this class always look up the
+ * current writer of their file.
  */
 class FileRequestLog implements RequestLog {
 
-    // The map of shared open files (actually PrintWriter instances)
-    private static Map<String, PrintWriter> logFiles = new HashMap<String, PrintWriter>();
+    // The map of shared open files, modified while holding the lock of the map
+    private static final ConcurrentMap<String, RequestLogWriter> logFiles = new ConcurrentHashMap<String, RequestLogWriter>();
 
-    // Dispose class by closing all open PrintWeiter instances
+    // The flush interval in ms, 0 to write synchronously
+    private static long flushInterval;
+
+    // The maximum number of queued messages per file
+    private static int maxBacklog = RequestLogger.DEFAULT_FILE_MAX_BACKLOG;
+
+    /**
+     * Configure the writers of the log files. The writers of files which are
+     * already open are replaced if their configuration changed.
+     * @param interval The flush interval in ms, 0 to write synchronously
+     * @param backlog The maximum number of queued messages per file
+     */
+    static void configure(long interval, int backlog) {
+        synchronized (logFiles) {
+            flushInterval = interval;
+            maxBacklog = backlog;
+            for (final Map.Entry<String, RequestLogWriter> entry : logFiles.entrySet()) {
+                final RequestLogWriter old = entry.getValue();
+                if (!old.isConfigured(interval, backlog)) {
+                    try {
+                        // replace the writer first, so that only messages
+                        // written concurrently to closing the old one are lost
+                        entry.setValue(open(new File(entry.getKey())));
+                        old.close();
+                    } catch (IOException ioe) {
+                        LoggerFactory.getLogger(FileRequestLog.class).warn(
+                            "Unable to reopen request log " + entry.getKey() + ", keeping the previous configuration", ioe);
+                    }
+                }
+            }
+        }
+    }
+
+    // Dispose class by closing all open writers
     static void dispose() {
-        for (final Writer w : logFiles.values()) {
-            try {
+        synchronized (logFiles) {
+            for (final RequestLogWriter w : logFiles.values()) {
                 w.close();
-            } catch (IOException ioe) {
-                // don't care
             }
+            logFiles.clear();
         }
-        logFiles.clear();
     }
 
-    // The PrintWriter used by this instance to write the messages
-    private PrintWriter output;
+    // Opens the file for appending with the current configuration
+    private static RequestLogWriter open(File logFile) throws IOException {
+        logFile.getParentFile().mkdirs();
+        FileWriter fw = new FileWriter(logFile, true);
+        final PrintWriter pw = new PrintWriter(flushInterval > 0 ? new BufferedWriter(fw) : fw);
+        return new RequestLogWriter(logFile.getAbsolutePath(), pw, flushInterval, maxBacklog);
+    }
+
+    // The name of the file written by this instance, null once closed
+    private volatile String fileName;
 
     FileRequestLog(File logFile) throws IOException {
         synchronized (logFiles) {
             final String fileName = logFile.getAbsolutePath();
-            this.output = logFiles.get(fileName);
-            if (this.output == null) {
-                logFile.getParentFile().mkdirs();
-                FileWriter fw = new FileWriter(logFile, true);
-                this.output = new PrintWriter(fw);
-                logFiles.put(fileName, this.output);
+            if (!logFiles.containsKey(fileName)) {
+                logFiles.put(fileName, open(logFile));
             }
+            this.fileName = fileName;
         }
     }
 
@@ -91,17 +129,17 @@ class FileRequestLog implements RequestLog {
         // use a local copy of the reference to not encounter NPE when this
         // log happens to be closed asynchronously while at the same time not
         // requiring synchronization
-        PrintWriter writer = this.output;
-        if (writer != null) {
-            synchronized (writer) {
-                writer.println(message);
-                writer.flush();
+        final String name = this.fileName;
+        if (name != null) {
+            final RequestLogWriter writer = logFiles.get(name);
+            if (writer != null) {
+                writer.write(message);
             }
         }
     }
 
     public void close() {
         // just drop the reference to the output
-        this.output = null;
+        this.fileName = null;
     }
 }
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import java.io.PrintWriter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The <code>RequestLogWriter</code> writes the messages of a log file.
+ * <p>
+ * If a flush interval is configured, messages are handed over to a writer
+ * thread through a lock-free queue and the request threads never block on
+ * the file. The writer thread writes all queued messages at once and flushes
+ * the file once per batch. If more than the maximum backlog of messages are
+ * queued, further messages are dropped.
+ * <p>
+ * Without a flush interval each message is written and flushed
+ * synchronously.
+ */
+public class RequestLogWriter implements Runnable {
+
+    // The number of messages dropped by all writers
+    private static final AtomicLong droppedCount = new AtomicLong();
+
+    // The number of messages queued in all writers
+    private static final AtomicInteger totalBacklog = new AtomicInteger();
+
+    /**
+     * Returns the number of messages dropped because the backlog was full.
+     */
+    public static long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Resets the number of dropped messages.
+     */
+    public static void resetDroppedCount() {
+        droppedCount.set(0);
+    }
+
+    /**
+     * Returns the number of messages waiting to be written.
+     */
+    public static int getBacklog() {
+        return totalBacklog.get();
+    }
+
+    private final PrintWriter output;
+
+    private final long flushInterval;
+
+    private final long flushIntervalNanos;
+
+    private final int maxBacklog;
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<String>();
+
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    // Whether the output is closed, guarded by the lock of the output
+    private boolean closed;
+
+    /**
+     * Creates a writer.
+     * @param name The name of the log file
+     * @param output The writer for the log file
+     * @param flushInterval The flush interval in milliseconds, if this is not
+     *            positive, messages are written synchronously.
+     * @param maxBacklog The maximum number of queued messages
+     */
+    RequestLogWriter(final String name, final PrintWriter output, final long flushInterval, final int maxBacklog) {
+        this.output = output;
+        this.flushInterval = flushInterval;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        this.maxBacklog = maxBacklog;
+        if (flushInterval > 0) {
+            this.thread = new Thread(this, "Sling Request Log Writer " + name);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        } else {
+            this.thread = null;
+        }
+    }
+
+    void write(final String message) {
+        if (!this.running) {
+            // closed
+            return;
+        } else if (this.thread == null) {
+            synchronized (this.output) {
+                this.output.println(message);
+                this.output.flush();
+            }
+        } else if (this.backlog.incrementAndGet() > this.maxBacklog) {
+            this.backlog.decrementAndGet();
+            droppedCount.incrementAndGet();
+        } else {
+            totalBacklog.incrementAndGet();
+            this.queue.offer(message);
+            if (!this.running) {
+                // closed concurrently, the message might have been queued
+                // after the writer thread wrote the last messages
+                synchronized (this.output) {
+                    if (this.closed) {
+                        this.discard();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether this writer has been created with the given
+     * configuration.
+     */
+    boolean isConfigured(final long flushInterval, final int maxBacklog) {
+        if (this.thread == null) {
+            return flushInterval <= 0;
+        }
+        return this.flushInterval == flushInterval && this.maxBacklog == maxBacklog;
+    }
+
+    /**
+     * Writes the queued messages until the writer is closed.
+     */
+    public void run() {
+        while (this.running) {
+            LockSupport.parkNanos(this.flushIntervalNanos);
+            this.drain();
+        }
+        // write messages queued while closing
+        this.drain();
+    }
+
+    private void drain() {
+        int count = 0;
+        String message;
+        while ((message = this.queue.poll()) != null) {
+            this.output.println(message);
+            count++;
+        }
+        if (count > 0) {
+            this.backlog.addAndGet(-count);
+            totalBacklog.addAndGet(-count);
+            this.output.flush();
+        }
+    }
+
+    // Drops the messages which can't be written anymore
+    private void discard() {
+        int count = 0;
+        while (this.queue.poll() != null) {
+            count++;
+        }
+        if (count > 0) {
+            this.backlog.addAndGet(-count);
+            totalBacklog.addAndGet(-count);
+            droppedCount.addAndGet(count);
+        }
+    }
+
+    /**
+     * Writes the queued messages and closes the log file.
+     */
+    void close() {
+        this.running = false;
+        if (this.thread != null) {
+            LockSupport.unpark(this.thread);
+            boolean interrupted = false;
+            while (this.thread.isAlive()) {
+                try {
+                    this.thread.join();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this.output) {
+            this.closed = true;
+            this.discard();
+            this.output.close();
+        }
+    }
+}
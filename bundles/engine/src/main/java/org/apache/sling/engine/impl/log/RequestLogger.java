@@ -67,6 +67,18 @@ public class RequestLogger {
     @Property(boolValue = true)
     public static final String PROP_ACCESS_LOG_ENABLED = "access.log.enabled";
 
+    @Property(longValue = 0)
+    public static final String PROP_FILE_FLUSH_INTERVAL = "request.log.file.flushinterval";
+
+    @Property(intValue = RequestLogger.DEFAULT_FILE_MAX_BACKLOG)
+    public static final String PROP_FILE_MAX_BACKLOG = "request.log.file.maxbacklog";
+
+    /**
+     * The default maximum number of messages queued per log file (value is
+     * 10000).
+     */
+    static final int DEFAULT_FILE_MAX_BACKLOG = 10000;
+
     /**
      * The log format string for the request log entry message (value is "%t
      * [%R] -> %m %U%q %H").
@@ -97,6 +109,11 @@ public class RequestLogger {
     @Activate
     protected void activate(BundleContext bundleContext, Map<String, Object> props) {
 
+        // configure the writers of the log files, this replaces the writers
+        // of already open files if the configuration changed
+        FileRequestLog.configure(toLong(props.get(PROP_FILE_FLUSH_INTERVAL), 0),
+            (int) toLong(props.get(PROP_FILE_MAX_BACKLOG), DEFAULT_FILE_MAX_BACKLOG));
+
         // prepare the request loggers if a name is configured and the
         // request loggers are enabled
         Object requestLogName = props.get(PROP_REQUEST_LOG_OUTPUT);
@@ -129,6 +146,19 @@ public class RequestLogger {
         services.clear();
     }
 
+    private static long toLong(Object value, long defaultValue) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value != null) {
+            try {
+                return Long.parseLong(value.toString().trim());
+            } catch (NumberFormatException nfe) {
+                // fall back to default
+            }
+        }
+        return defaultValue;
+    }
+
     private static void createRequestLoggerService(Map<ServiceRegistration, RequestLoggerService> services,
             BundleContext bundleContext, boolean onEntry, Object format, Object output, Object outputType) {
         final Hashtable<String, Object> config = new Hashtable<String, Object>();
@@ -23,7 +23,13 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 
 /**
- * The <code>ContainerRequestParameter</code> TODO
+ * The <code>ContainerRequestParameter</code> represents a request parameter
+ * from the query string, a www-form-encoded POST request or the servlet
+ * container.
+ * <p>
+ * Parameters parsed by Sling keep the raw bytes and only decode the string
+ * value when it is first requested. Changing the encoding thus does not
+ * decode the value again.
  */
 public class ContainerRequestParameter extends AbstractRequestParameter {
 
@@ -37,15 +43,18 @@ public class ContainerRequestParameter extends AbstractRequestParameter {
         this.content = null;
     }
 
+    ContainerRequestParameter(String name, byte[] content, String encoding) {
+        super(name, encoding);
+        this.value = null;
+        this.content = content;
+    }
+
     @Override
     public void setEncoding(String encoding) {
-        // recode this parameter by encoding the string with the current
-        // encoding and decode the bytes with the encoding
-        try {
-            this.value = getString(encoding);
-        } catch (UnsupportedEncodingException uee) {
-            throw new SlingUnsupportedEncodingException(uee);
-        }
+        // keep the bytes of this parameter and decode them with the
+        // new encoding once the string value is requested
+        this.get();
+        this.value = null;
 
         super.setEncoding(encoding);
     }
@@ -56,10 +65,10 @@ public class ContainerRequestParameter extends AbstractRequestParameter {
     public byte[] get() {
         if (content == null) {
             try {
-                content = getString().getBytes(getEncoding());
+                content = value.getBytes(getEncoding());
             } catch (Exception e) {
                 // UnsupportedEncodingException, IllegalArgumentException
-                content = getString().getBytes();
+                content = value.getBytes();
             }
         }
         return content;
@@ -99,6 +108,13 @@ public class ContainerRequestParameter extends AbstractRequestParameter {
      * @see org.apache.sling.api.request.RequestParameter#getString()
      */
     public String getString() {
+        if (value == null) {
+            try {
+                value = getString(getEncoding());
+            } catch (UnsupportedEncodingException uee) {
+                throw new SlingUnsupportedEncodingException(uee);
+            }
+        }
         return value;
     }
 
@@ -51,6 +51,10 @@ public class ParameterMap extends LinkedHashMap<String, RequestParameter[]> impl
     ParameterMap.maxParameters = (maxParameters > 0) ? maxParameters : -1;
     }
 
+    static int getMaxParameters() {
+        return ParameterMap.maxParameters;
+    }
+
     public RequestParameter getValue(String name) {
         RequestParameter[] params = getValues(name);
         return (params != null && params.length > 0) ? params[0] : null;
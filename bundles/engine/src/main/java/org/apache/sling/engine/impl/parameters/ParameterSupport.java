@@ -18,11 +18,13 @@
  */
 package org.apache.sling.engine.impl.parameters;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
@@ -32,13 +34,17 @@ import java.util.Map;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
 
 import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.RequestContext;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.servlet.ServletRequestContext;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.sling.api.request.RequestParameter;
 import org.apache.sling.api.request.RequestParameterMap;
 import org.apache.sling.api.resource.ResourceResolver;
@@ -63,6 +69,39 @@ public class ParameterSupport {
      */
     public final static String MARKER_IS_SERVICE_PROCESSING = ParameterSupport.class.getName() + "/ServiceProcessingMarker";
 
+    /**
+     * Request header which, if set to {@link #UPLOADMODE_STREAM}, causes a
+     * multipart POST request to be streamed: only the form fields preceding
+     * the first file part are read into the request parameters. The parts
+     * starting with the first file part are provided as an
+     * {@code Iterator<javax.servlet.http.Part>} in the
+     * {@link #REQUEST_PARTS_ITERATOR_ATTRIBUTE} request attribute. The same
+     * applies if the query string contains the {@link #UPLOADMODE_PARAM}
+     * parameter set to {@link #UPLOADMODE_STREAM}.
+     */
+    public final static String UPLOADMODE_HEADER = "Sling-uploadmode";
+
+    /**
+     * Query string parameter requesting streamed multipart POST processing.
+     * @see #UPLOADMODE_HEADER
+     */
+    public final static String UPLOADMODE_PARAM = "uploadmode";
+
+    /**
+     * Value of the {@link #UPLOADMODE_HEADER} header and the
+     * {@link #UPLOADMODE_PARAM} parameter requesting streamed multipart POST
+     * processing.
+     */
+    public final static String UPLOADMODE_STREAM = "stream";
+
+    /**
+     * Name of the request attribute providing the remaining parts of a
+     * streamed multipart POST request. Each part must be consumed before the
+     * next part is retrieved from the iterator.
+     * @see #UPLOADMODE_HEADER
+     */
+    public final static String REQUEST_PARTS_ITERATOR_ATTRIBUTE = "request-parts-iterator";
+
     // name of the request attribute caching the ParameterSupport instance
     // used during the request
     private static final String ATTR_NAME = ParameterSupport.class.getName();
@@ -70,6 +109,15 @@ public class ParameterSupport {
     /** Content type signaling parameters in request body */
     private static final String WWW_FORM_URL_ENC = "application/x-www-form-urlencoded";
 
+    /**
+     * Number of single parameter lookups served from the raw query string
+     * before the full parameter map is created.
+     */
+    private static final int MAX_QUERY_STRING_LOOKUPS = 8;
+
+    /** Marker returned by {@link #getQueryStringValues(String, boolean)} */
+    private static final String[] QUERY_STRING_UNAVAILABLE = new String[0];
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -102,6 +150,8 @@ public class ParameterSupport {
 
     private ParameterMap postParameterMap;
 
+    private QueryStringParameters queryStringParameters;
+
     private boolean requestDataUsed;
 
     /**
@@ -146,6 +196,14 @@ public class ParameterSupport {
         ParameterSupport.fileSizeThreshold = (fileSizeThreshold > 0) ? fileSizeThreshold : 256000;
     }
 
+    /**
+     * Returns the directory location where files are stored or {@code null}
+     * if the default temporary directory is used.
+     */
+    static File getLocation() {
+        return ParameterSupport.location;
+    }
+
     private ParameterSupport(HttpServletRequest servletRequest) {
         this.servletRequest = servletRequest;
     }
@@ -159,10 +217,18 @@ public class ParameterSupport {
     }
 
     public String getParameter(String name) {
+        final String[] values = getQueryStringValues(name, true);
+        if (values != QUERY_STRING_UNAVAILABLE) {
+            return (values != null) ? values[0] : null;
+        }
         return getRequestParameterMapInternal().getStringValue(name);
     }
 
     public String[] getParameterValues(String name) {
+        final String[] values = getQueryStringValues(name, false);
+        if (values != QUERY_STRING_UNAVAILABLE) {
+            return values;
+        }
         return getRequestParameterMapInternal().getStringValues(name);
     }
 
@@ -210,20 +276,74 @@ public class ParameterSupport {
         return getRequestParameterMapInternal().getRequestParameterList();
     }
 
+    /**
+     * Looks up the values of a single parameter in the query string without
+     * creating the parameter map. This is only possible as long as the map
+     * has not been created yet and all parameters of the request are
+     * contained in the query string.
+     *
+     * @return The values, {@code null} if there is no such parameter or
+     *         {@link #QUERY_STRING_UNAVAILABLE} if the parameter map has to
+     *         be used
+     */
+    private String[] getQueryStringValues(final String name, final boolean firstOnly) {
+        if (this.postParameterMap != null || name == null) {
+            return QUERY_STRING_UNAVAILABLE;
+        }
+
+        if (this.queryStringParameters == null) {
+            final String query = getServletRequest().getQueryString();
+            if (query == null || hasRequestDataParameters()
+                || !Util.ENCODING_DIRECT.equalsIgnoreCase(getRequestEncoding())) {
+                return QUERY_STRING_UNAVAILABLE;
+            }
+            this.queryStringParameters = new QueryStringParameters(query);
+        } else if (this.queryStringParameters.getLookups() >= MAX_QUERY_STRING_LOOKUPS) {
+            // many parameters are used, decode them all at once
+            this.queryStringParameters = null;
+            return QUERY_STRING_UNAVAILABLE;
+        }
+
+        try {
+            return this.queryStringParameters.getValues(name, firstOnly);
+        } catch (UnsupportedEncodingException e) {
+            throw new SlingUnsupportedEncodingException(e);
+        } catch (Exception e) {
+            // IllegalArgumentException, IOException: let the parameter
+            // map log the problem and provide the parameters parsed so far
+            this.queryStringParameters = null;
+            return QUERY_STRING_UNAVAILABLE;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the request body contains parameters.
+     */
+    private boolean hasRequestDataParameters() {
+        return "POST".equals(this.getServletRequest().getMethod())
+            && (isWWWFormEncodedContent(this.getServletRequest())
+                || ServletFileUpload.isMultipartContent(new ServletRequestContext(this.getServletRequest())));
+    }
+
+    private String getRequestEncoding() {
+        // SLING-508 Try to force servlet container to decode parameters
+        // as ISO-8859-1 such that we can recode later
+        String encoding = getServletRequest().getCharacterEncoding();
+        if (encoding == null) {
+            encoding = Util.ENCODING_DIRECT;
+            try {
+                getServletRequest().setCharacterEncoding(encoding);
+            } catch (UnsupportedEncodingException uee) {
+                throw new SlingUnsupportedEncodingException(uee);
+            }
+        }
+        return encoding;
+    }
+
     private ParameterMap getRequestParameterMapInternal() {
         if (this.postParameterMap == null) {
 
-            // SLING-508 Try to force servlet container to decode parameters
-            // as ISO-8859-1 such that we can recode later
-            String encoding = getServletRequest().getCharacterEncoding();
-            if (encoding == null) {
-                encoding = Util.ENCODING_DIRECT;
-                try {
-                    getServletRequest().setCharacterEncoding(encoding);
-                } catch (UnsupportedEncodingException uee) {
-                    throw new SlingUnsupportedEncodingException(uee);
-                }
-            }
+            final String encoding = getRequestEncoding();
 
             // SLING-152 Get parameters from the servlet Container
             ParameterMap parameters = new ParameterMap();
@@ -267,7 +387,11 @@ public class ParameterSupport {
 
                 // Multipart POST
                 if (ServletFileUpload.isMultipartContent(new ServletRequestContext(this.getServletRequest()))) {
-                    this.parseMultiPartPost(parameters);
+                    if (isStreamed(parameters)) {
+                        this.parseMultiPartPostStreamed(parameters);
+                    } else {
+                        this.parseMultiPartPost(parameters);
+                    }
                     this.requestDataUsed = true;
                     useFallback = false;
                 }
@@ -280,6 +404,7 @@ public class ParameterSupport {
             Util.fixEncoding(parameters);
 
             this.postParameterMap = parameters;
+            this.queryStringParameters = null;
         }
         return this.postParameterMap;
     }
@@ -317,6 +442,21 @@ public class ParameterSupport {
     }
 
 
+    private boolean isStreamed(final ParameterMap parameters) {
+        return UPLOADMODE_STREAM.equals(this.getServletRequest().getHeader(UPLOADMODE_HEADER))
+            || UPLOADMODE_STREAM.equals(parameters.getStringValue(UPLOADMODE_PARAM));
+    }
+
+    private RequestContext getMultiPartRequestContext() {
+        return new ServletRequestContext(this.getServletRequest()) {
+            @Override
+            public String getCharacterEncoding() {
+                String enc = super.getCharacterEncoding();
+                return (enc != null) ? enc : Util.ENCODING_DIRECT;
+            }
+        };
+    }
+
     private void parseMultiPartPost(ParameterMap parameters) {
 
         // Create a new file upload handler
@@ -326,13 +466,7 @@ public class ParameterSupport {
         upload.setFileItemFactory(new DiskFileItemFactory(ParameterSupport.fileSizeThreshold,
             ParameterSupport.location));
 
-        RequestContext rc = new ServletRequestContext(this.getServletRequest()) {
-            @Override
-            public String getCharacterEncoding() {
-                String enc = super.getCharacterEncoding();
-                return (enc != null) ? enc : Util.ENCODING_DIRECT;
-            }
-        };
+        RequestContext rc = getMultiPartRequestContext();
 
         // Parse the request
         List<?> /* FileItem */items = null;
@@ -351,4 +485,39 @@ public class ParameterSupport {
         }
     }
 
+    /**
+     * Reads the form fields up to the first file part into the parameters
+     * and provides the remaining parts in the
+     * {@link #REQUEST_PARTS_ITERATOR_ATTRIBUTE} request attribute without
+     * buffering them.
+     */
+    private void parseMultiPartPostStreamed(ParameterMap parameters) {
+
+        ServletFileUpload upload = new ServletFileUpload();
+        upload.setSizeMax(ParameterSupport.maxRequestSize);
+        upload.setFileSizeMax(ParameterSupport.maxFileSize);
+
+        Iterator<Part> parts = Collections.<Part> emptyList().iterator();
+        try {
+            FileItemIterator items = upload.getItemIterator(getMultiPartRequestContext());
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                if (!item.isFormField()) {
+                    parts = new RequestPartsIterator(items, item);
+                    break;
+                }
+                ByteArrayOutputStream value = new ByteArrayOutputStream();
+                Streams.copy(item.openStream(), value, true);
+                parameters.addParameter(new ContainerRequestParameter(item.getFieldName(), value.toByteArray(),
+                    Util.ENCODING_DIRECT), false);
+            }
+        } catch (FileUploadException fue) {
+            this.log.error("parseMultiPartPostStreamed: Error parsing request", fue);
+        } catch (IOException ioe) {
+            this.log.error("parseMultiPartPostStreamed: Error parsing request", ioe);
+        }
+
+        this.getServletRequest().setAttribute(REQUEST_PARTS_ITERATOR_ATTRIBUTE, parts);
+    }
+
 }
\ No newline at end of file
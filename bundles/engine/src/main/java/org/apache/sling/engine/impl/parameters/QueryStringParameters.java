@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.engine.impl.parameters.Util.NVPairBuffer;
+import org.apache.sling.engine.impl.parameters.Util.NVPairHandler;
+
+/**
+ * The <code>QueryStringParameters</code> class looks up single parameters
+ * directly in the raw query string of a request whose parameters are all
+ * contained in the query string.
+ * <p>
+ * The values are the same as those of the {@link ParameterMap} created for
+ * the request with the {@link ParameterSupport#PARAMETER_FORMENCODING form
+ * encoding} applied, but no request parameter objects are created and only
+ * the values of the requested parameters are decoded. This requires the query
+ * string to have been decoded with {@link Util#ENCODING_DIRECT}.
+ * <p>
+ * The query string is scanned once on the first lookup, building an index
+ * of the decoded parameter names to the raw bytes of their values.
+ */
+class QueryStringParameters {
+
+    private static final byte[] FORMENCODING_NAME = Util.fromIdentityEncodedString(ParameterSupport.PARAMETER_FORMENCODING);
+
+    private final byte[] query;
+
+    private String formEncoding;
+
+    /** The raw values by decoded parameter name, created on the first lookup. */
+    private Map<String, List<byte[]>> index;
+
+    private int lookups;
+
+    QueryStringParameters(final String query) {
+        this.query = Util.fromIdentityEncodedString(query);
+    }
+
+    /**
+     * Returns the number of lookups done so far.
+     */
+    int getLookups() {
+        return this.lookups;
+    }
+
+    /**
+     * Returns the value(s) of the parameter or {@code null} if the query
+     * string does not contain the parameter.
+     *
+     * @param name The name of the parameter
+     * @param firstOnly Whether only the first value is needed
+     * @throws IllegalArgumentException if the query string is malformed
+     */
+    String[] getValues(final String name, final boolean firstOnly) throws IOException {
+        this.lookups++;
+        final String encoding = getFormEncoding();
+        final List<byte[]> rawValues = getIndex(encoding).get(name);
+        if (rawValues == null) {
+            return null;
+        }
+
+        final int count = firstOnly ? 1 : rawValues.size();
+        final String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = new String(rawValues.get(i), encoding);
+        }
+        return values;
+    }
+
+    /**
+     * Returns the index of the raw values by decoded parameter name.
+     */
+    private Map<String, List<byte[]>> getIndex(final String encoding) throws IOException {
+        if (this.index == null) {
+            final Map<String, List<byte[]>> names = new HashMap<String, List<byte[]>>();
+            parse(new NVPairHandler() {
+                public boolean handle(final NVPairBuffer n, final NVPairBuffer v) throws UnsupportedEncodingException {
+                    final String name = n.toString(encoding);
+                    List<byte[]> values = names.get(name);
+                    if (values == null) {
+                        values = new ArrayList<byte[]>(1);
+                        names.put(name, values);
+                    }
+                    values.add(v.toByteArray());
+                    return true;
+                }
+            });
+            this.index = names;
+        }
+        return this.index;
+    }
+
+    /**
+     * Returns the form encoding as applied by {@link Util#fixEncoding(ParameterMap)}.
+     */
+    private String getFormEncoding() throws IOException {
+        if (this.formEncoding == null) {
+            final String[] charset = new String[1];
+            parse(new NVPairHandler() {
+                public boolean handle(final NVPairBuffer n, final NVPairBuffer v) {
+                    if (n.contentEquals(FORMENCODING_NAME)) {
+                        charset[0] = Util.toIdentityEncodedString(v.toByteArray());
+                        return false;
+                    }
+                    return true;
+                }
+            });
+            this.formEncoding = (charset[0] != null)
+                    ? Util.validateEncoding(charset[0])
+                    : Util.getDefaultFixEncoding();
+        }
+        return this.formEncoding;
+    }
+
+    /**
+     * Parses the query string considering at most the maximum number of
+     * parameters supported by the {@link ParameterMap}.
+     */
+    private void parse(final NVPairHandler handler) throws IOException {
+        final int maxParameters = ParameterMap.getMaxParameters();
+        Util.parseQueryString(new ByteArrayInputStream(this.query), new NVPairHandler() {
+            private int count;
+
+            public boolean handle(final NVPairBuffer name, final NVPairBuffer value) throws UnsupportedEncodingException {
+                if (count++ == maxParameters) {
+                    return false;
+                }
+                return handler.handle(name, value);
+            }
+        });
+    }
+}
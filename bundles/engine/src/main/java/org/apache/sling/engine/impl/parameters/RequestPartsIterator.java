@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.servlet.http.Part;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.sling.api.SlingException;
+
+/**
+ * The <code>RequestPartsIterator</code> provides the parts of a streamed
+ * multipart request in the order they are read from the request. A part
+ * can only be read until the next part is retrieved.
+ */
+class RequestPartsIterator implements Iterator<Part> {
+
+    private final FileItemIterator items;
+
+    private FileItemStream next;
+
+    RequestPartsIterator(final FileItemIterator items, final FileItemStream first) {
+        this.items = items;
+        this.next = first;
+    }
+
+    public boolean hasNext() {
+        if (this.next == null) {
+            try {
+                if (this.items.hasNext()) {
+                    this.next = this.items.next();
+                }
+            } catch (FileUploadException fue) {
+                throw new SlingException("Error reading request parts", fue);
+            } catch (IOException ioe) {
+                throw new SlingException("Error reading request parts", ioe);
+            }
+        }
+        return this.next != null;
+    }
+
+    public Part next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Part part = new StreamedPart(this.next);
+        this.next = null;
+        return part;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import javax.servlet.http.Part;
+
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.Streams;
+
+/**
+ * The <code>StreamedPart</code> is a part of a streamed multipart request
+ * which is read directly from the request input stream. Its size is not
+ * known in advance.
+ */
+public class StreamedPart implements Part {
+
+    private final FileItemStream item;
+
+    public StreamedPart(final FileItemStream item) {
+        this.item = item;
+    }
+
+    public InputStream getInputStream() throws IOException {
+        return this.item.openStream();
+    }
+
+    public String getContentType() {
+        return this.item.getContentType();
+    }
+
+    public String getName() {
+        return this.item.getFieldName();
+    }
+
+    /**
+     * Returns the file name submitted by the client.
+     */
+    public String getSubmittedFileName() {
+        return this.item.getName();
+    }
+
+    /**
+     * Always returns -1 as the part has not been read yet.
+     */
+    public long getSize() {
+        return -1;
+    }
+
+    /**
+     * Copies the part to the file. A relative file name is resolved against
+     * the configured upload location, the location used for the files of a
+     * buffered multipart request.
+     */
+    public void write(String fileName) throws IOException {
+        File file = new File(fileName);
+        if (!file.isAbsolute()) {
+            final File location = ParameterSupport.getLocation();
+            file = new File((location != null) ? location : new File(System.getProperty("java.io.tmpdir")), fileName);
+        }
+        final InputStream in = getInputStream();
+        try {
+            Streams.copy(in, new FileOutputStream(file), true);
+        } finally {
+            in.close();
+        }
+    }
+
+    public void delete() {
+        // nothing to delete, the part is not buffered
+    }
+
+    public String getHeader(String name) {
+        final FileItemHeaders headers = this.item.getHeaders();
+        return (headers != null) ? headers.getHeader(name) : null;
+    }
+
+    public Collection<String> getHeaders(String name) {
+        final FileItemHeaders headers = this.item.getHeaders();
+        return (headers != null) ? toList(headers.getHeaders(name)) : Collections.<String> emptyList();
+    }
+
+    public Collection<String> getHeaderNames() {
+        final FileItemHeaders headers = this.item.getHeaders();
+        return (headers != null) ? toList(headers.getHeaderNames()) : Collections.<String> emptyList();
+    }
+
+    private static Collection<String> toList(final Iterator<String> values) {
+        final ArrayList<String> list = new ArrayList<String>();
+        while (values.hasNext()) {
+            list.add(values.next());
+        }
+        return list;
+    }
+}
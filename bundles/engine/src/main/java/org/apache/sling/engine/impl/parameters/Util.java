@@ -180,7 +180,7 @@ public class Util {
      * @param encoding The encoding to validate
      * @return The encoding if supported or {@link #defaultFixEncoding}
      */
-    private static String validateEncoding(final String encoding) {
+    static String validateEncoding(final String encoding) {
         if (encoding != null && encoding.length() > 0) {
             // check for the existence of the encoding
             try {
@@ -209,31 +209,48 @@ public class Util {
      *             supported
      * @throws IOException if an error occurrs reading from {@code data}
      */
-    public static void parseQueryString(InputStream data, String encoding, ParameterMap map, boolean prependNew)
-            throws UnsupportedEncodingException, IOException {
+    public static void parseQueryString(InputStream data, final String encoding, final ParameterMap map,
+            final boolean prependNew) throws UnsupportedEncodingException, IOException {
 
-        parseNVPairString(data, encoding, map, '&', false, prependNew);
+        parseNVPairString(data, '&', false, new NVPairHandler() {
+            public boolean handle(NVPairBuffer name, NVPairBuffer value) throws UnsupportedEncodingException {
+                addNVPair(map, name, value, encoding, prependNew);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Parse a query string and hand each name/value pair to the handler
+     * without creating request parameters.
+     *
+     * @param data querystring data
+     * @param handler the handler called for each name/value pair
+     * @throws IllegalArgumentException if the nv string is malformed
+     * @throws IOException if an error occurrs reading from {@code data} or
+     *             in the handler
+     */
+    static void parseQueryString(InputStream data, NVPairHandler handler) throws IOException {
+        parseNVPairString(data, '&', false, handler);
     }
 
     /**
      * Parse a name/value pair string and populate a map with key -> value[s]
      *
      * @param data name value data
-     * @param encoding encoding to use for converting bytes to characters
-     * @param map map to populate
      * @param separator multi-value separator character
      * @param allowSpaces allow spaces inside name/values
-     * @param prependNew whether to prepend new values
+     * @param handler the handler called for each name/value pair
      * @throws IllegalArgumentException if the nv string is malformed
-     * @throws UnsupportedEncodingException if the {@code encoding} is not
-     *             supported
+     * @throws UnsupportedEncodingException if the encoding used by the
+     *             {@code handler} is not supported
      * @throws IOException if an error occurrs reading from {@code data}
      */
-    private static void parseNVPairString(InputStream data, String encoding, ParameterMap map, char separator,
-            boolean allowSpaces, boolean prependNew) throws UnsupportedEncodingException, IOException {
+    private static void parseNVPairString(InputStream data, char separator, boolean allowSpaces,
+            NVPairHandler handler) throws UnsupportedEncodingException, IOException {
 
-        ByteArrayOutputStream keyBuffer   = new ByteArrayOutputStream(256);
-        ByteArrayOutputStream valueBuffer = new ByteArrayOutputStream(256);
+        NVPairBuffer keyBuffer   = new NVPairBuffer(256);
+        NVPairBuffer valueBuffer = new NVPairBuffer(256);
         char[] chCode = new char[2];
 
         int state = BEFORE_NAME;
@@ -266,7 +283,9 @@ public class Util {
                         state = ESC_NAME;
                         subState = 0;
                     } else if (ch == '&') {
-                        addNVPair(map, keyBuffer, valueBuffer, encoding, prependNew);
+                        if (!handlePair(handler, keyBuffer, valueBuffer)) {
+                            return;
+                        }
                         state = BEFORE_NAME;
                     } else {
                         keyBuffer.write(ch);
@@ -300,7 +319,9 @@ public class Util {
                         valueBuffer.write(' ');
                         state = INSIDE_VALUE;
                     } else if (ch == separator) {
-                        addNVPair(map, keyBuffer, valueBuffer, encoding, prependNew);
+                        if (!handlePair(handler, keyBuffer, valueBuffer)) {
+                            return;
+                        }
                         state = BEFORE_NAME;
                     } else {
                         valueBuffer.write(ch);
@@ -309,7 +330,9 @@ public class Util {
                     break;
                 case INSIDE_VALUE:
                     if (ch == separator) {
-                        addNVPair(map, keyBuffer, valueBuffer, encoding, prependNew);
+                        if (!handlePair(handler, keyBuffer, valueBuffer)) {
+                            return;
+                        }
                         state = BEFORE_NAME;
                     } else if (ch == '+' && !allowSpaces) {
                         valueBuffer.write(' ');
@@ -342,16 +365,59 @@ public class Util {
         }
 
         if (keyBuffer.size() > 0) {
-            addNVPair(map, keyBuffer, valueBuffer, encoding, prependNew);
+            handlePair(handler, keyBuffer, valueBuffer);
         }
     }
 
+    private static boolean handlePair(NVPairHandler handler, NVPairBuffer keyBuffer, NVPairBuffer valueBuffer)
+            throws UnsupportedEncodingException {
+        final boolean proceed = handler.handle(keyBuffer, valueBuffer);
+        keyBuffer.reset();
+        valueBuffer.reset();
+        return proceed;
+    }
+
     private static void addNVPair(ParameterMap map, ByteArrayOutputStream keyBuffer, ByteArrayOutputStream valueBuffer,
             String encoding, boolean prependNew) throws UnsupportedEncodingException {
         final String key = keyBuffer.toString(encoding);
-        final String value = valueBuffer.toString(encoding);
-        map.addParameter(new ContainerRequestParameter(key, value, encoding), prependNew);
-        keyBuffer.reset();
-        valueBuffer.reset();
+        // the value is only decoded once it is requested
+        map.addParameter(new ContainerRequestParameter(key, valueBuffer.toByteArray(), encoding), prependNew);
+    }
+
+    /**
+     * Receives the name/value pairs of a parsed name/value pair string.
+     */
+    interface NVPairHandler {
+
+        /**
+         * Handles a name/value pair. The buffers are reused for the next
+         * pair once this method returns.
+         *
+         * @return {@code true} to continue parsing, {@code false} to stop
+         */
+        boolean handle(NVPairBuffer name, NVPairBuffer value) throws UnsupportedEncodingException;
+    }
+
+    /**
+     * Buffer for the decoded bytes of a name or value which can be compared
+     * without copying its content.
+     */
+    static final class NVPairBuffer extends ByteArrayOutputStream {
+
+        NVPairBuffer(int size) {
+            super(size);
+        }
+
+        boolean contentEquals(byte[] data) {
+            if (data.length != count) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (buf[i] != data[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 }
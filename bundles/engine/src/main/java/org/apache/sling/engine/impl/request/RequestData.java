@@ -112,6 +112,13 @@ public class RequestData {
      */
     private static int maxCallCounter = DEFAULT_MAX_CALL_COUNTER;
 
+    /**
+     * The maximum number of entries kept by the request progress tracker
+     * of each request (default
+     * {@link SlingRequestProgressTracker#DEFAULT_MAX_ENTRIES}).
+     */
+    private static int maxTrackerEntries = SlingRequestProgressTracker.DEFAULT_MAX_ENTRIES;
+
     /**
      * The name of the request attribute to override the max call number (-1 for infinite or integer value).
      */
@@ -190,6 +197,14 @@ public class RequestData {
         return maxInclusionCounter;
     }
 
+    public static void setMaxTrackerEntries(int maxTrackerEntries) {
+        RequestData.maxTrackerEntries = maxTrackerEntries;
+    }
+
+    public static int getMaxTrackerEntries() {
+        return maxTrackerEntries;
+    }
+
     public static void setSlingMainServlet(final SlingMainServlet slingMainServlet) {
         RequestData.SLING_MAIN_SERVLET = slingMainServlet;
         RequestData.REQUEST_FACTORY = null;
@@ -216,7 +231,7 @@ public class RequestData {
         this.slingResponse = new SlingHttpServletResponseImpl(this,
             servletResponse);
 
-        this.requestProgressTracker = new SlingRequestProgressTracker();
+        this.requestProgressTracker = new SlingRequestProgressTracker(maxTrackerEntries);
         this.requestProgressTracker.log(
         		"Method={0}, PathInfo={1}",
         		this.slingRequest.getMethod(), this.slingRequest.getPathInfo()
@@ -62,6 +62,12 @@ public class RequestHistoryConsolePlugin {
 
     public static final int STORED_REQUESTS_COUNT = 20;
 
+    /**
+     * The default processing time in milliseconds after which a request
+     * is recorded as a slow request.
+     */
+    public static final long DEFAULT_SLOW_REQUEST_THRESHOLD = 1000;
+
     private RequestHistoryConsolePlugin() {
     }
 
@@ -71,9 +77,25 @@ public class RequestHistoryConsolePlugin {
         }
     }
 
+    /**
+     * Records the request as a slow request if its processing took at least
+     * the configured threshold. This method is expected to be called once
+     * the request has been processed.
+     */
+    public static void recordSlowRequest(SlingHttpServletRequest r) {
+        if (instance != null) {
+            instance.addSlowRequest(r);
+        }
+    }
+
     public static void initPlugin(BundleContext context, int maxRequests, List<Pattern> storePatterns) {
+        initPlugin(context, maxRequests, storePatterns, 0, DEFAULT_SLOW_REQUEST_THRESHOLD);
+    }
+
+    public static void initPlugin(BundleContext context, int maxRequests, List<Pattern> storePatterns,
+            int maxSlowRequests, long slowRequestThreshold) {
         if (instance == null) {
-            Plugin tmp = new Plugin(maxRequests, storePatterns);
+            Plugin tmp = new Plugin(maxRequests, storePatterns, maxSlowRequests, slowRequestThreshold);
             final Dictionary<String, Object> props = new Hashtable<String, Object>();
             props.put(Constants.SERVICE_DESCRIPTION,
                 "Web Console Plugin to display information about recent Sling requests");
@@ -106,12 +128,20 @@ public class RequestHistoryConsolePlugin {
 
         private final RequestInfoMap requests;
 
+        private final RequestInfoMap slowRequests;
+
+        private final long slowRequestThreshold;
+
         private final List<Pattern> storePatterns;
 
-        Plugin(int maxRequests, List<Pattern> storePatterns) {
+        Plugin(int maxRequests, List<Pattern> storePatterns, int maxSlowRequests, long slowRequestThreshold) {
             this.requests = (maxRequests > 0)
                     ? new RequestInfoMap(maxRequests)
                     : null;
+            this.slowRequests = (maxSlowRequests > 0)
+                    ? new RequestInfoMap(maxSlowRequests)
+                    : null;
+            this.slowRequestThreshold = slowRequestThreshold;
             this.storePatterns = storePatterns;
         }
 
@@ -125,26 +155,39 @@ public class RequestHistoryConsolePlugin {
         }
 
         private void addRequest(SlingHttpServletRequest r) {
-            if (requests != null) {
-                String requestPath = r.getPathInfo();
-                boolean accept = true;
-                if (storePatterns != null && storePatterns.size() > 0) {
-                    accept = false;
-                    for (Pattern pattern : storePatterns) {
-                        if (pattern.matcher(requestPath).matches()) {
-                            accept = true;
-                            break;
-                        }
-                    }
+            if (requests != null && accept(r)) {
+                synchronized (requests) {
+                    RequestInfo info = new RequestInfo(r);
+                    requests.put(info.getKey(), info);
                 }
+            }
+        }
 
-                if (accept) {
-                    synchronized (requests) {
+        private void addSlowRequest(SlingHttpServletRequest r) {
+            if (slowRequests != null) {
+                final RequestProgressTracker tracker = r.getRequestProgressTracker();
+                if (tracker instanceof SlingRequestProgressTracker
+                    && ((SlingRequestProgressTracker) tracker).getDuration() >= slowRequestThreshold
+                    && accept(r)) {
+                    synchronized (slowRequests) {
                         RequestInfo info = new RequestInfo(r);
-                        requests.put(info.getKey(), info);
+                        slowRequests.put(info.getKey(), info);
+                    }
+                }
+            }
+        }
+
+        private boolean accept(SlingHttpServletRequest r) {
+            if (storePatterns != null && storePatterns.size() > 0) {
+                String requestPath = r.getPathInfo();
+                for (Pattern pattern : storePatterns) {
+                    if (pattern.matcher(requestPath).matches()) {
+                        return true;
                     }
                 }
+                return false;
             }
+            return true;
         }
 
         private void clear() {
@@ -153,9 +196,14 @@ public class RequestHistoryConsolePlugin {
                     requests.clear();
                 }
             }
+            if (slowRequests != null) {
+                synchronized (slowRequests) {
+                    slowRequests.clear();
+                }
+            }
         }
 
-        private String getLinksTable(String currentRequestIndex) {
+        private String getLinksTable(RequestInfoMap requests, String currentRequestIndex) {
             final List<String> links = new ArrayList<String>();
             if (requests != null) {
                 synchronized (requests) {
@@ -220,6 +268,11 @@ public class RequestHistoryConsolePlugin {
                     info = requests.get(key);
                 }
             }
+            if (info == null && key != null && slowRequests != null) {
+                synchronized (slowRequests) {
+                    info = slowRequests.get(key);
+                }
+            }
 
             final PrintWriter pw = resp.getWriter();
 
@@ -236,9 +289,18 @@ public class RequestHistoryConsolePlugin {
             pw.println("<form method='POST'><input type='hidden' name='clear' value='clear'><input type='submit' value='Clear' class='ui-state-default ui-corner-all'></form>");
             pw.println("</div>");
 
-            pw.println(getLinksTable(key));
+            pw.println(getLinksTable(requests, key));
             pw.println("<br/>");
 
+            if (slowRequests != null) {
+                pw.println("<p class='statline ui-state-highlight'>Recorded "
+                    + slowRequests.size() + " slow requests taking at least "
+                    + slowRequestThreshold + "ms (max: "
+                    + slowRequests.getMaxSize() + ")</p>");
+                pw.println(getLinksTable(slowRequests, key));
+                pw.println("<br/>");
+            }
+
             if (info != null) {
 
                 pw.println("<table class='nicetable ui-widget'>");
@@ -20,11 +20,9 @@ package org.apache.sling.engine.impl.request;
 
 import java.io.PrintWriter;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.sling.api.request.RequestProgressTracker;
 
@@ -88,9 +86,24 @@ import org.apache.sling.api.request.RequestProgressTracker;
  * <li>The absolute time of the timer in parenthesis.
  * <li>The entry message
  * </ol>
+ * <p>
+ * <b>Storage of Tracking Entries</b>
+ * <p>
+ * To keep tracking cheap enough to be always enabled, entries are not
+ * formatted when they are logged. Only the time stamp, the message or
+ * message format and a reference to the message arguments are recorded in
+ * preallocated arrays. The messages are formatted when they are retrieved
+ * through {@link #getMessages()} or {@link #dump(PrintWriter)}. Therefore
+ * arguments modified after logging are formatted with their modified state.
+ * <p>
+ * The number of entries kept is limited. Once the limit is reached, the
+ * storage is used as a ring buffer and the oldest entries are overwritten.
  */
 public class SlingRequestProgressTracker implements RequestProgressTracker {
 
+    /** The default maximum number of tracking entries kept. */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
     /**
      * The name of the timer tracking the processing time of the complete
      * process.
@@ -109,6 +122,29 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
     /** The leading millisecond number is left-padded with white-space to this width. */
     private static final int PADDING_WIDTH = 7;
 
+    /** The initial number of entries and timers the storage is allocated for. */
+    private static final int INITIAL_CAPACITY = 32;
+
+    /** Entry kind: comment with a literal message */
+    private static final byte KIND_COMMENT = 0;
+
+    /** Entry kind: log message, formatted if the arguments are not null */
+    private static final byte KIND_LOG = 1;
+
+    /** Entry kind: start of the named timer */
+    private static final byte KIND_TIMER_START = 2;
+
+    /** Entry kind: end of the named timer with optional message */
+    private static final byte KIND_TIMER_END = 3;
+
+    /** Arguments of a log message without arguments which must be formatted */
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * The maximum number of entries kept, zero or negative for no limit.
+     */
+    private final int maxEntries;
+
     /**
      * The system time at creation of this instance or the last {@link #reset()}.
      */
@@ -119,20 +155,67 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     private long processingEnd;
 
+    // the tracking entries stored in parallel arrays, the oldest entry
+    // is at index head and the entries continue from there in a ring
+
+    private long[] timeStamps;
+
+    private byte[] kinds;
+
+    /** The message, message format or the timer name of each entry */
+    private String[] texts;
+
+    /** The optional message format of timer end entries */
+    private String[] formats;
+
     /**
-     * The list of tracking entries.
+     * The arguments of the message formats, formatted lazily until
+     * {@link #done()} is called. Entries without arguments are not formatted.
      */
-    private final List<TrackingEntry> entries = new ArrayList<TrackingEntry>();
+    private Object[][] args;
+
+    /** The elapsed time of timer end entries */
+    private long[] elapsed;
+
+    private int head;
+
+    private int size;
+
+    /** The number of entries overwritten since the last reset */
+    private int dropped;
+
+    // the named timers with their start time
+
+    private String[] timerNames = new String[8];
+
+    private long[] timerStarts = new long[8];
+
+    private int timerCount;
+
     /**
-     * Map of named timers indexed by timer name storing the system time of
-     * start of the respective timer.
+     * Creates a new request progress tracker keeping at most
+     * {@link #DEFAULT_MAX_ENTRIES} entries.
      */
-    private final Map<String, Long> namedTimerEntries = new HashMap<String, Long>();
+    public SlingRequestProgressTracker() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
 
     /**
-     * Creates a new request progress tracker.
+     * Creates a new request progress tracker keeping at most the given
+     * number of entries.
+     *
+     * @param maxEntries The maximum number of entries, zero or negative for
+     *            no limit.
      */
-    public SlingRequestProgressTracker() {
+    public SlingRequestProgressTracker(final int maxEntries) {
+        this.maxEntries = maxEntries;
+        final int capacity = (maxEntries > 0) ? Math.min(maxEntries, INITIAL_CAPACITY) : INITIAL_CAPACITY;
+        this.timeStamps = new long[capacity];
+        this.kinds = new byte[capacity];
+        this.texts = new String[capacity];
+        this.formats = new String[capacity];
+        this.args = new Object[capacity][];
+        this.elapsed = new long[capacity];
         reset();
     }
 
@@ -142,14 +225,25 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     public void reset() {
         // remove all entries
-        entries.clear();
-        namedTimerEntries.clear();
+        for (int i = 0; i < size; i++) {
+            final int idx = (head + i) % texts.length;
+            texts[idx] = null;
+            formats[idx] = null;
+            args[idx] = null;
+        }
+        head = 0;
+        size = 0;
+        dropped = 0;
+        for (int i = 0; i < timerCount; i++) {
+            timerNames[i] = null;
+        }
+        timerCount = 0;
 
         // enter initial messages
         processingStart = startTimerInternal(REQUEST_PROCESSING_TIMER);
         processingEnd = -1;
 
-        entries.add(new TrackingEntry(COMMENT_PREFIX + "timer_end format is " + TIMER_END_FORMAT));
+        addEntry(System.currentTimeMillis(), KIND_COMMENT, "timer_end format is " + TIMER_END_FORMAT, null, null, 0);
     }
 
     /**
@@ -157,17 +251,30 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     public Iterator<String> getMessages() {
         return new Iterator<String>() {
-            private final Iterator<TrackingEntry> entryIter = entries.iterator();
+            private final int first = head;
+
+            private final int count = size;
+
+            private int index = (dropped > 0) ? -1 : 0;
 
             public boolean hasNext() {
-                return entryIter.hasNext();
+                return index < count;
             }
 
             public String next() {
-                // throws NoSuchElementException if no entries any more
-                final TrackingEntry entry = entryIter.next();
-                final long offset = entry.getTimeStamp() - getTimeStamp();
-                return formatMessage(offset, entry.getMessage());
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final String message;
+                if (index < 0) {
+                    message = formatMessage(timeStamps[first] - getTimeStamp(),
+                        COMMENT_PREFIX + dropped + " older entries have been dropped");
+                } else {
+                    final int idx = (first + index) % texts.length;
+                    message = formatMessage(timeStamps[idx] - getTimeStamp(), getMessage(idx));
+                }
+                index++;
+                return message;
             }
 
             public void remove() {
@@ -176,6 +283,39 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
         };
     }
 
+    /**
+     * Creates the message of the entry at the given index.
+     */
+    private String getMessage(final int idx) {
+        switch (kinds[idx]) {
+            case KIND_COMMENT:
+                return COMMENT_PREFIX + texts[idx];
+            case KIND_LOG:
+                if (args[idx] == null) {
+                    return LOG_PREFIX + texts[idx];
+                }
+                return LOG_PREFIX + format(texts[idx], args[idx]);
+            case KIND_TIMER_START:
+                return "TIMER_START{" + texts[idx] + "}";
+            default:
+                final StringBuilder sb = new StringBuilder();
+                sb.append("TIMER_END{");
+                sb.append(elapsed[idx]);
+                sb.append(',');
+                sb.append(texts[idx]);
+                sb.append('}');
+                if (formats[idx] != null) {
+                    sb.append(' ');
+                    if (args[idx] == null) {
+                        sb.append(formats[idx]);
+                    } else {
+                        sb.append(format(formats[idx], args[idx]));
+                    }
+                }
+                return sb.toString();
+        }
+    }
+
     private String formatMessage(long offset, String message) {
         // Set exact length to avoid array copies within StringBuilder
         final StringBuilder sb = new StringBuilder(PADDING_WIDTH + 1 +  message.length() + 1);
@@ -205,13 +345,12 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
 
     /** Creates an entry with the given message. */
     public void log(String message) {
-        entries.add(new TrackingEntry(LOG_PREFIX + message));
+        addEntry(System.currentTimeMillis(), KIND_LOG, message, null, null, 0);
     }
 
     /** Creates an entry with the given entry tag and message */
     public void log(String format, Object... args) {
-        String message = MessageFormat.format(format, args);
-        entries.add(new TrackingEntry(LOG_PREFIX + message));
+        addEntry(System.currentTimeMillis(), KIND_LOG, format, null, (args != null) ? args : NO_ARGS, 0);
     }
 
     /**
@@ -231,17 +370,38 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      */
     private long startTimerInternal(String name) {
         long timer = System.currentTimeMillis();
-        namedTimerEntries.put(name, timer);
-        entries.add(new TrackingEntry(timer, "TIMER_START{" + name + "}"));
+        int idx = indexOfTimer(name);
+        if (idx < 0) {
+            if (timerCount == timerNames.length) {
+                timerNames = grow(timerNames, new String[timerCount * 2], 0, timerCount);
+                final long[] starts = new long[timerCount * 2];
+                System.arraycopy(timerStarts, 0, starts, 0, timerCount);
+                timerStarts = starts;
+            }
+            idx = timerCount++;
+            timerNames[idx] = name;
+        }
+        timerStarts[idx] = timer;
+        addEntry(timer, KIND_TIMER_START, name, null, null, 0);
         return timer;
     }
 
+    private int indexOfTimer(String name) {
+        for (int i = 0; i < timerCount; i++) {
+            if (timerNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Log a timer entry, including start, end and elapsed time.
      */
     public void logTimer(String name) {
-        if (namedTimerEntries.containsKey(name)) {
-            logTimerInternal(name, null, namedTimerEntries.get(name));
+        final int idx = indexOfTimer(name);
+        if (idx >= 0) {
+            logTimerInternal(name, null, null, timerStarts[idx]);
         }
     }
 
@@ -249,70 +409,131 @@ public class SlingRequestProgressTracker implements RequestProgressTracker {
      * Log a timer entry, including start, end and elapsed time.
      */
     public void logTimer(String name, String format, Object... args) {
-        if (namedTimerEntries.containsKey(name)) {
-            logTimerInternal(name, MessageFormat.format(format, args), namedTimerEntries.get(name));
+        final int idx = indexOfTimer(name);
+        if (idx >= 0) {
+            logTimerInternal(name, format, (args != null) ? args : NO_ARGS, timerStarts[idx]);
         }
     }
 
     /**
      * Log a timer entry, including start, end and elapsed time using TIMER_END_FORMAT
      */
-    private void logTimerInternal(String name, String msg, long startTime) {
-        final StringBuilder sb = new StringBuilder();
-        sb.append("TIMER_END{");
-        sb.append(System.currentTimeMillis() - startTime);
-        sb.append(',');
-        sb.append(name);
-        sb.append('}');
-        if(msg != null) {
-            sb.append(' ');
-            sb.append(msg);
+    private void logTimerInternal(String name, String format, Object[] args, long startTime) {
+        final long now = System.currentTimeMillis();
+        addEntry(now, KIND_TIMER_END, name, format, args, now - startTime);
+    }
+
+    /**
+     * Adds an entry, growing the storage until the maximum number of entries
+     * is reached and overwriting the oldest entry afterwards.
+     */
+    private void addEntry(long timeStamp, byte kind, String text, String format, Object[] arguments, long elapsedTime) {
+        int idx;
+        if (size < texts.length) {
+            idx = (head + size) % texts.length;
+            size++;
+        } else if (maxEntries <= 0 || size < maxEntries) {
+            growEntries();
+            idx = size++;
+        } else {
+            idx = head;
+            head = (head + 1) % texts.length;
+            dropped++;
+        }
+        timeStamps[idx] = timeStamp;
+        kinds[idx] = kind;
+        texts[idx] = text;
+        formats[idx] = format;
+        args[idx] = arguments;
+        elapsed[idx] = elapsedTime;
+        if (arguments != null && processingEnd != -1) {
+            formatArguments(idx);
+        }
+    }
+
+    /**
+     * Doubles the storage (limited by the maximum number of entries) and
+     * moves the entries to the start of the new arrays.
+     */
+    private void growEntries() {
+        int capacity = size * 2;
+        if (maxEntries > 0 && capacity > maxEntries) {
+            capacity = maxEntries;
+        }
+        final long[] newTimeStamps = new long[capacity];
+        final byte[] newKinds = new byte[capacity];
+        final long[] newElapsed = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            final int idx = (head + i) % texts.length;
+            newTimeStamps[i] = timeStamps[idx];
+            newKinds[i] = kinds[idx];
+            newElapsed[i] = elapsed[idx];
+        }
+        texts = grow(texts, new String[capacity], head, size);
+        formats = grow(formats, new String[capacity], head, size);
+        args = grow(args, new Object[capacity][], head, size);
+        timeStamps = newTimeStamps;
+        kinds = newKinds;
+        elapsed = newElapsed;
+        head = 0;
+    }
+
+    private static <T> T[] grow(T[] source, T[] target, int first, int count) {
+        for (int i = 0; i < count; i++) {
+            target[i] = source[(first + i) % source.length];
         }
-        entries.add(new TrackingEntry(sb.toString()));
+        return target;
     }
 
     public void done() {
         if(processingEnd != -1) return;
         logTimer(REQUEST_PROCESSING_TIMER, REQUEST_PROCESSING_TIMER);
         processingEnd = System.currentTimeMillis();
+        formatArguments();
     }
 
-    private long getTimeStamp() {
-        return processingStart;
-    }
-
-    public long getDuration() {
-        if (processingEnd != -1) {
-            return processingEnd - processingStart;
+    /**
+     * Formats the messages of all entries with arguments and drops the
+     * arguments: the tracker may be kept after the request, e.g. in the
+     * request history, when the arguments can't be used anymore.
+     */
+    private void formatArguments() {
+        for (int i = 0; i < size; i++) {
+            formatArguments((head + i) % texts.length);
         }
-        return System.currentTimeMillis() - processingStart;
     }
 
-    /** Process tracker entry keeping timestamp, tag and message */
-    private static class TrackingEntry {
-
-        // creation time stamp
-        private final long timeStamp;
-
-        // tracking message
-        private final String message;
-
-        TrackingEntry(String message) {
-            this.timeStamp = System.currentTimeMillis();
-            this.message = message;
+    private void formatArguments(final int idx) {
+        if (args[idx] != null) {
+            if (kinds[idx] == KIND_LOG) {
+                texts[idx] = format(texts[idx], args[idx]);
+            } else if (formats[idx] != null) {
+                formats[idx] = format(formats[idx], args[idx]);
+            }
+            args[idx] = null;
         }
+    }
 
-        TrackingEntry(long timeStamp, String message) {
-            this.timeStamp = timeStamp;
-            this.message = message;
+    /**
+     * Formats the message, an invalid pattern must not fail the request as
+     * messages are only formatted once the request is done.
+     */
+    private static String format(final String pattern, final Object[] arguments) {
+        try {
+            return MessageFormat.format(pattern, arguments);
+        } catch (final IllegalArgumentException iae) {
+            return pattern + ' ' + Arrays.toString(arguments);
         }
+    }
 
-        long getTimeStamp() {
-            return timeStamp;
-        }
+    private long getTimeStamp() {
+        return processingStart;
+    }
 
-        String getMessage() {
-            return message;
+    public long getDuration() {
+        if (processingEnd != -1) {
+            return processingEnd - processingStart;
         }
+        return System.currentTimeMillis() - processingStart;
     }
 }
@@ -133,6 +133,24 @@ public interface RequestProcessorMBean {
      */
     double getStandardDeviationServletCallCount();
 
+    /**
+     * Returns the number of request log messages dropped since last
+     * resetting the statistics because too many messages were waiting
+     * to be written to a log file.
+     *
+     * @see #resetStatistics()
+     * @since 1.1.0
+     */
+    long getDroppedRequestLogMessageCount();
+
+    /**
+     * Returns the number of request log messages currently waiting to be
+     * written to log files.
+     *
+     * @since 1.1.0
+     */
+    int getRequestLogBacklog();
+
     /**
      * Resets all statistics values and restarts from zero.
      */
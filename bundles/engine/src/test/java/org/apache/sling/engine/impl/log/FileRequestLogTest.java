@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRequestLogTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("request", ".log");
+        FileRequestLog.configure(0, RequestLogger.DEFAULT_FILE_MAX_BACKLOG);
+    }
+
+    @After
+    public void tearDown() {
+        FileRequestLog.dispose();
+        FileRequestLog.configure(0, RequestLogger.DEFAULT_FILE_MAX_BACKLOG);
+        file.delete();
+    }
+
+    private String content() throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            int off = 0;
+            while (off < bytes.length) {
+                off += in.read(bytes, off, bytes.length - off);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(bytes);
+    }
+
+    @Test
+    public void testConfigureOpenFile() throws IOException {
+        final FileRequestLog log = new FileRequestLog(file);
+        log.write("a");
+        assertEquals("a" + NL, content());
+
+        // the writer thread does not wake up before the file is closed
+        FileRequestLog.configure(TimeUnit.HOURS.toMillis(1), 10);
+        log.write("b");
+        assertEquals("a" + NL, content());
+
+        FileRequestLog.dispose();
+        assertEquals("a" + NL + "b" + NL, content());
+    }
+}
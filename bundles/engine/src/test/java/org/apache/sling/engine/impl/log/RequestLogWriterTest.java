@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestLogWriterTest {
+
+    private static final String NL = System.getProperty("line.separator");
+
+    @Test
+    public void testSynchronousWrite() {
+        final StringWriter out = new StringWriter();
+        final RequestLogWriter writer = new RequestLogWriter("sync", new PrintWriter(out), 0, 1);
+        writer.write("a");
+        writer.write("b");
+        assertEquals("a" + NL + "b" + NL, out.toString());
+        writer.close();
+    }
+
+    @Test
+    public void testAsynchronousWrite() {
+        final StringWriter out = new StringWriter();
+        final long dropped = RequestLogWriter.getDroppedCount();
+        // the writer thread does not wake up before the writer is closed
+        final RequestLogWriter writer = new RequestLogWriter("async", new PrintWriter(out),
+            TimeUnit.HOURS.toMillis(1), 2);
+        writer.write("a");
+        writer.write("b");
+        writer.write("c");
+        assertEquals("", out.toString());
+        assertEquals(dropped + 1, RequestLogWriter.getDroppedCount());
+
+        // closing writes the queued messages
+        writer.close();
+        assertEquals("a" + NL + "b" + NL, out.toString());
+
+        writer.write("d");
+        assertEquals("a" + NL + "b" + NL, out.toString());
+    }
+
+    @Test
+    public void testBacklogAfterClose() {
+        final int backlog = RequestLogWriter.getBacklog();
+        final RequestLogWriter writer = new RequestLogWriter("backlog", new PrintWriter(new StringWriter()),
+            TimeUnit.HOURS.toMillis(1), 10);
+        writer.write("a");
+        assertEquals(backlog + 1, RequestLogWriter.getBacklog());
+        writer.close();
+        writer.write("b");
+        assertEquals(backlog, RequestLogWriter.getBacklog());
+    }
+
+    @Test
+    public void testIsConfigured() {
+        final RequestLogWriter sync = new RequestLogWriter("sync", new PrintWriter(new StringWriter()), 0, 1);
+        assertTrue(sync.isConfigured(0, 2));
+        assertFalse(sync.isConfigured(10, 1));
+        sync.close();
+
+        final RequestLogWriter async = new RequestLogWriter("async", new PrintWriter(new StringWriter()), 10, 1);
+        assertTrue(async.isConfigured(10, 1));
+        assertFalse(async.isConfigured(10, 2));
+        assertFalse(async.isConfigured(0, 1));
+        async.close();
+    }
+}
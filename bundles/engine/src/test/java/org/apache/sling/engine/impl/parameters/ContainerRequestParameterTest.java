@@ -44,6 +44,18 @@ public class ContainerRequestParameterTest extends TestCase {
         testInternal("\u00e1\u009b\u0082\u00e3\u0083\u0091\u00ef\u00be\u0089", LATIN1, UTF8);
     }
 
+    public void testChangeEncodingRawContent() throws UnsupportedEncodingException {
+        byte[] content = "\u00f6\u00e4\u00fc".getBytes(UTF8);
+        ContainerRequestParameter par = new ContainerRequestParameter("name", content, LATIN1);
+
+        assertEquals(new String(content, LATIN1), par.getString());
+        par.setEncoding(UTF8);
+        assertEquals(UTF8, par.getEncoding());
+        assertEquals("\u00f6\u00e4\u00fc", par.getString());
+        assertEquals("byte[] value mismatch", content, par.get());
+        assertEquals(content.length, par.getSize());
+    }
+
     private void testInternal(String value, String baseEncoding,
             String targetEncoding) throws UnsupportedEncodingException {
         ContainerRequestParameter par = new ContainerRequestParameter("name", value,
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class QueryStringParametersTest extends TestCase {
+
+    private static final String[] NAMES = { "a", "b", "c", "d", "label", "title", "\u00e4", "_charset_", "x" };
+
+    public void test_same_as_parameter_map() throws Exception {
+        assertSameAsParameterMap("a=1&b=2&c=3&a=4&b=5");
+        assertSameAsParameterMap("label=&title=Some Page&title=+other+&d");
+        assertSameAsParameterMap("a=%C3%A4&%C3%A4=%C3%B6");
+        assertSameAsParameterMap("a=%C3%A4&%C3%A4=%C3%B6&_charset_=UTF-8");
+        assertSameAsParameterMap("_charset_=XX_invalid_XX&a=%E4");
+        assertSameAsParameterMap("a=1&&b=2&c==3&");
+    }
+
+    public void test_configured_fix_encoding() throws Exception {
+        Util.setDefaultFixEncoding("UTF-8");
+        try {
+            assertSameAsParameterMap("a=%C3%A4&%C3%A4=%C3%B6");
+        } finally {
+            Util.setDefaultFixEncoding(Util.ENCODING_DIRECT);
+        }
+    }
+
+    public void test_max_parameters() throws Exception {
+        ParameterMap.setMaxParameters(2);
+        try {
+            assertSameAsParameterMap("a=1&b=2&c=3&a=4");
+        } finally {
+            ParameterMap.setMaxParameters(ParameterMap.DEFAULT_MAX_PARAMS);
+        }
+    }
+
+    public void test_malformed() throws Exception {
+        try {
+            new QueryStringParameters("a=%X1").getValues("a", true);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+    }
+
+    public void test_lookups() throws Exception {
+        final QueryStringParameters params = new QueryStringParameters("a=1");
+        params.getValues("a", true);
+        params.getValues("b", false);
+        assertEquals(2, params.getLookups());
+    }
+
+    private void assertSameAsParameterMap(final String query) throws Exception {
+        final ParameterMap map = new ParameterMap();
+        Util.parseQueryString(Util.toInputStream(query), Util.ENCODING_DIRECT, map, false);
+        Util.fixEncoding(map);
+
+        final QueryStringParameters params = new QueryStringParameters(query);
+        for (final String name : NAMES) {
+            assertEquals(query + ": " + name, Arrays.toString(map.getStringValues(name)),
+                Arrays.toString(params.getValues(name, false)));
+            final String[] first = params.getValues(name, true);
+            assertEquals(query + ": " + name, map.getStringValue(name), (first != null) ? first[0] : null);
+        }
+    }
+}
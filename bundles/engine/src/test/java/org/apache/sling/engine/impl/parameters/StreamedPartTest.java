@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.engine.impl.parameters;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.fileupload.FileItemHeaders;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.Streams;
+
+public class StreamedPartTest extends TestCase {
+
+    private static final String CONTENT = "streamed content";
+
+    private File location;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        location = File.createTempFile("streamed", "");
+        location.delete();
+        location.mkdir();
+        ParameterSupport.configure(-1, location.getPath(), -1, -1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ParameterSupport.configure(-1, null, -1, -1);
+        for (final File file : location.listFiles()) {
+            file.delete();
+        }
+        location.delete();
+        super.tearDown();
+    }
+
+    public void test_write_relative() throws Exception {
+        new StreamedPart(new TestItem()).write("part.txt");
+        assertEquals(CONTENT, read(new File(location, "part.txt")));
+    }
+
+    public void test_write_absolute() throws Exception {
+        final File file = new File(location, "absolute.txt");
+        new StreamedPart(new TestItem()).write(file.getAbsolutePath());
+        assertEquals(CONTENT, read(file));
+    }
+
+    private static String read(final File file) throws IOException {
+        return Streams.asString(new FileInputStream(file), "UTF-8");
+    }
+
+    private static class TestItem implements FileItemStream {
+
+        public InputStream openStream() throws IOException {
+            return new ByteArrayInputStream(CONTENT.getBytes("UTF-8"));
+        }
+
+        public String getContentType() {
+            return "text/plain";
+        }
+
+        public String getName() {
+            return "part.txt";
+        }
+
+        public String getFieldName() {
+            return "file";
+        }
+
+        public boolean isFormField() {
+            return false;
+        }
+
+        public FileItemHeaders getHeaders() {
+            return null;
+        }
+
+        public void setHeaders(final FileItemHeaders headers) {
+            // not used
+        }
+    }
+}
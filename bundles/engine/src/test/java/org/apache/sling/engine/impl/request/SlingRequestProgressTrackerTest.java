@@ -62,6 +62,102 @@ public class SlingRequestProgressTrackerTest {
         assertEquals(expected.length, messageCounter);
     }
 
+    @Test
+    public void ringBuffer() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker(5);
+        for (int i = 0; i < 10; i++) {
+            tracker.log("message {0}", i);
+        }
+
+        final String[] expected = {
+                "COMMENT 7 older entries have been dropped\n",
+                "LOG message 5\n",
+                "LOG message 6\n",
+                "LOG message 7\n",
+                "LOG message 8\n",
+                "LOG message 9\n"
+        };
+        assertMessages(expected, tracker.getMessages());
+
+        tracker.reset();
+        tracker.log("after reset");
+        assertMessages(new String[] {
+                "TIMER_START{Request Processing}\n",
+                "COMMENT timer_end format is {<elapsed msec>,<timer name>} <optional message>\n",
+                "LOG after reset\n"
+        }, tracker.getMessages());
+    }
+
+    @Test
+    public void unlimitedEntries() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker(0);
+        for (int i = 0; i < 100; i++) {
+            tracker.log("message");
+        }
+        int count = 0;
+        for (Iterator<String> messages = tracker.getMessages(); messages.hasNext(); messages.next()) {
+            count++;
+        }
+        assertEquals(102, count);
+    }
+
+    @Test
+    public void literalAndFormattedMessages() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker();
+        tracker.log("literal {0} it''s");
+        tracker.log("formatted it''s", new Object[0]);
+        final Iterator<String> messages = tracker.getMessages();
+        messages.next();
+        messages.next();
+        assertEquals("LOG literal {0} it''s\n", messages.next().substring(8));
+        assertEquals("LOG formatted it's\n", messages.next().substring(8));
+    }
+
+    @Test
+    public void argumentsFormattedOnDone() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker();
+        final StringBuilder arg = new StringBuilder("before");
+        tracker.log("value {0} it''s", arg);
+        tracker.log("literal {0} it''s");
+        tracker.startTimer("foo");
+        tracker.logTimer("foo", "timer {0}", arg);
+        tracker.done();
+        arg.setLength(0);
+        arg.append("after");
+
+        final Iterator<String> messages = tracker.getMessages();
+        messages.next();
+        messages.next();
+        assertEquals("LOG value before it's\n", messages.next().substring(8));
+        assertEquals("LOG literal {0} it''s\n", messages.next().substring(8));
+        messages.next();
+        assertEquals(",foo} timer before\n", substringAfter(messages.next(), ','));
+    }
+
+    @Test
+    public void invalidPatternOnDone() {
+        final SlingRequestProgressTracker tracker = new SlingRequestProgressTracker();
+        tracker.log("bad {x", "a");
+        tracker.startTimer("foo");
+        tracker.logTimer("foo", "timer {x", "b");
+        tracker.done();
+
+        final Iterator<String> messages = tracker.getMessages();
+        messages.next();
+        messages.next();
+        assertEquals("LOG bad {x [a]\n", messages.next().substring(8));
+        messages.next();
+        assertEquals(",foo} timer {x [b]\n", substringAfter(messages.next(), ','));
+    }
+
+    private void assertMessages(final String[] expected, final Iterator<String> messages) {
+        int messageCounter = 0;
+        while (messages.hasNext()) {
+            assertEquals(expected[messageCounter++], messages.next().substring(8));
+        }
+        assertEquals(expected.length, messageCounter);
+    }
+
     private String substringAfter(String string, char ch) {
         final int pos = string.indexOf(ch);
         return string.substring(pos);
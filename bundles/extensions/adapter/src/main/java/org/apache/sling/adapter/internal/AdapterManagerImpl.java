@@ -24,13 +24,17 @@ import static org.apache.sling.api.adapter.AdapterFactory.ADAPTER_CLASSES;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Dictionary;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
@@ -98,16 +102,26 @@ public class AdapterManagerImpl implements AdapterManager {
     private final Map<String, AdapterFactoryDescriptorMap> descriptors = new HashMap<String, AdapterFactoryDescriptorMap>();
 
     /**
-     * Matrix of {@link AdapterFactoryDescriptor} instances primarily indexed by the fully
-     * qualified name of the class to be adapted and secondarily indexed by the
-     * fully qualified name of the class to adapt to (the target class).
+     * Dispatch tables of {@link AdapterFactoryDescriptor} instances primarily indexed
+     * by the fully qualified name of the class to be adapted and secondarily indexed
+     * by the fully qualified name of the class to adapt to (the target class).
+     * A table contains all target classes for which a factory exists, so a
+     * missing target class is answered without walking the type hierarchy again.
      * <p>
      * This cache is built on demand by calling the
-     * {@link #getAdapterFactories(Class)} method. It is cleared
-     * whenever an adapter factory is registered on unregistered.
+     * {@link #getAdapterFactories(Class)} method. Whenever an adapter factory
+     * is registered or unregistered, only the tables of the adaptable classes
+     * extending or implementing one of the adaptable classes of the factory
+     * are removed.
      */
-    private final ConcurrentMap<String, Map<String, List<AdapterFactoryDescriptor>>> factoryCache
-    = new ConcurrentHashMap<String, Map<String, List<AdapterFactoryDescriptor>>>();
+    private final ConcurrentMap<String, FactoryCacheEntry> factoryCache
+    = new ConcurrentHashMap<String, FactoryCacheEntry>();
+
+    /**
+     * Incremented whenever entries are removed from the {@link #factoryCache}
+     * to prevent caching tables built from outdated factory registrations.
+     */
+    private final AtomicLong factoryCacheGeneration = new AtomicLong();
 
     /**
      * The service tracker for the event admin
@@ -130,12 +144,12 @@ public class AdapterManagerImpl implements AdapterManager {
             final Class<AdapterType> type) {
 
         // get the adapter factories for the type of adaptable object
-        final Map<String, List<AdapterFactoryDescriptor>> factories = getAdapterFactories(adaptable.getClass());
+        final FactoryCacheEntry factories = getAdapterFactories(adaptable.getClass());
 
         // get the factory for the target type
-        final List<AdapterFactoryDescriptor> descList = factories.get(type.getName());
+        final AdapterFactoryDescriptor[] descList = factories.get(type.getName());
 
-        if (descList != null && descList.size() > 0) {
+        if (descList != null) {
             for (AdapterFactoryDescriptor desc : descList) {
                 final AdapterFactory factory = desc == null ? null : desc.getFactory();
 
@@ -236,7 +250,7 @@ public class AdapterManagerImpl implements AdapterManager {
      * <strong><em>THIS METHOD IS FOR UNIT TESTING ONLY. IT MAY BE REMOVED OR
      * MODIFIED WITHOUT NOTICE.</em></strong>
      */
-    Map<String, Map<String, List<AdapterFactoryDescriptor>>> getFactoryCache() {
+    Map<String, FactoryCacheEntry> getFactoryCache() {
         return factoryCache;
     }
 
@@ -283,8 +297,8 @@ public class AdapterManagerImpl implements AdapterManager {
             }
         }
 
-        // clear the factory cache to force rebuild on next access
-        this.factoryCache.clear();
+        // remove the affected cache entries to force rebuild on next access
+        invalidateFactoryCache(adaptables);
 
         // register adaption
         final Dictionary<String, Object> props = new Hashtable<String, Object>();
@@ -370,10 +384,10 @@ public class AdapterManagerImpl implements AdapterManager {
             }
         }
 
-        // only remove cache if some adapter factories have actually been
+        // only remove cache entries if some adapter factories have actually been
         // removed
         if (factoriesModified) {
-            this.factoryCache.clear();
+            invalidateFactoryCache(adaptables);
         }
 
         // unregister adaption
@@ -398,23 +412,45 @@ public class AdapterManagerImpl implements AdapterManager {
     }
 
     /**
-     * Returns the map of adapter factories index by adapter (target) class name
-     * for the given adaptable <code>clazz</code>. If no adapter exists for
-     * the <code>clazz</code> and empty map is returned.
+     * Removes the cached dispatch tables of all adaptable classes which are
+     * or extend or implement one of the given adaptable classes.
+     */
+    private void invalidateFactoryCache(final String[] adaptables) {
+        this.factoryCacheGeneration.incrementAndGet();
+        for (final Map.Entry<String, FactoryCacheEntry> entry : this.factoryCache.entrySet()) {
+            for (final String adaptable : adaptables) {
+                if (entry.getValue().isAssignableTo(adaptable)) {
+                    this.factoryCache.remove(entry.getKey(), entry.getValue());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the dispatch table of adapter factories index by adapter (target)
+     * class name for the given adaptable <code>clazz</code>. If no adapter
+     * exists for the <code>clazz</code> an empty table is returned.
      *
      * @param clazz The adaptable <code>Class</code> for which to return the
      *            adapter factory map by target class name.
-     * @return The map of adapter factories by target class name. The map may be
+     * @return The table of adapter factories by target class name. The table may be
      *         empty if there is no adapter factory for the adaptable
      *         <code>clazz</code>.
      */
-    private Map<String, List<AdapterFactoryDescriptor>> getAdapterFactories(final Class<?> clazz) {
+    private FactoryCacheEntry getAdapterFactories(final Class<?> clazz) {
         final String className = clazz.getName();
-        Map<String, List<AdapterFactoryDescriptor>> entry = this.factoryCache.get(className);
+        FactoryCacheEntry entry = this.factoryCache.get(className);
         if (entry == null) {
             // create entry
+            final long generation = this.factoryCacheGeneration.get();
             entry = createAdapterFactoryMap(clazz);
             this.factoryCache.put(className, entry);
+
+            // drop the entry again if factories changed while it was created
+            if (generation != this.factoryCacheGeneration.get()) {
+                this.factoryCache.remove(className, entry);
+            }
         }
 
         return entry;
@@ -428,12 +464,14 @@ public class AdapterManagerImpl implements AdapterManager {
      *
      * @param clazz The adaptable <code>Class</code> for which to build the
      *            adapter factory map by target class name.
-     * @return The map of adapter factories by target class name. The map may be
+     * @return The table of adapter factories by target class name. The table may be
      *         empty if there is no adapter factory for the adaptable
      *         <code>clazz</code>.
      */
-    private Map<String, List<AdapterFactoryDescriptor>> createAdapterFactoryMap(final Class<?> clazz) {
+    private FactoryCacheEntry createAdapterFactoryMap(final Class<?> clazz) {
         final Map<String, List<AdapterFactoryDescriptor>> afm = new HashMap<String, List<AdapterFactoryDescriptor>>();
+        final Set<String> types = new HashSet<String>();
+        types.add(clazz.getName());
 
         // AdapterFactories for this class
         AdapterFactoryDescriptorMap afdMap = null;
@@ -462,16 +500,16 @@ public class AdapterManagerImpl implements AdapterManager {
         // AdapterFactories for the interfaces
         final Class<?>[] interfaces = clazz.getInterfaces();
         for (final Class<?> iFace : interfaces) {
-            copyAdapterFactories(afm, iFace);
+            copyAdapterFactories(afm, types, iFace);
         }
 
         // AdapterFactories for the super class
         final Class<?> superClazz = clazz.getSuperclass();
         if (superClazz != null) {
-            copyAdapterFactories(afm, superClazz);
+            copyAdapterFactories(afm, types, superClazz);
         }
 
-        return afm;
+        return new FactoryCacheEntry(types, afm);
     }
 
     /**
@@ -483,17 +521,20 @@ public class AdapterManagerImpl implements AdapterManager {
      * @param dest The map of target class name to adapter factory into which
      *            additional factories are copied. Existing factories are not
      *            replaced.
+     * @param destTypes The set of type names of the adaptable class to which
+     *            the type names of <code>clazz</code> are added.
      * @param clazz The adaptable class whose adapter factories are considered
      *            for adding into <code>dest</code>.
      */
     private void copyAdapterFactories(final Map<String, List<AdapterFactoryDescriptor>> dest,
-            final Class<?> clazz) {
+            final Set<String> destTypes, final Class<?> clazz) {
 
         // get the adapter factories for the adaptable clazz
-        final Map<String, List<AdapterFactoryDescriptor>> scMap = getAdapterFactories(clazz);
+        final FactoryCacheEntry scEntry = getAdapterFactories(clazz);
+        destTypes.addAll(scEntry.types);
 
         // for each target class copy the entry to dest and put it in the list or create the list
-        for (Map.Entry<String, List<AdapterFactoryDescriptor>> entry : scMap.entrySet()) {
+        for (Map.Entry<String, AdapterFactoryDescriptor[]> entry : scEntry.factories.entrySet()) {
 
             List<AdapterFactoryDescriptor> factoryDescriptors = dest.get(entry.getKey());
 
@@ -506,4 +547,43 @@ public class AdapterManagerImpl implements AdapterManager {
             }
         }
     }
+
+    /**
+     * The <code>FactoryCacheEntry</code> is the immutable dispatch table of an
+     * adaptable class in the factory cache. Besides the adapter factories by
+     * target class name it holds the names of all classes and interfaces the
+     * adaptable class extends or implements.
+     */
+    static final class FactoryCacheEntry {
+
+        private final Set<String> types;
+
+        private final Map<String, AdapterFactoryDescriptor[]> factories;
+
+        FactoryCacheEntry(final Set<String> types, final Map<String, List<AdapterFactoryDescriptor>> factories) {
+            this.types = Collections.unmodifiableSet(types);
+            final Map<String, AdapterFactoryDescriptor[]> table = new HashMap<String, AdapterFactoryDescriptor[]>(
+                    factories.size() * 2);
+            for (final Map.Entry<String, List<AdapterFactoryDescriptor>> entry : factories.entrySet()) {
+                table.put(entry.getKey(), entry.getValue().toArray(new AdapterFactoryDescriptor[entry.getValue().size()]));
+            }
+            this.factories = table;
+        }
+
+        /**
+         * Returns the adapter factories for the target class name or
+         * <code>null</code> if there is none.
+         */
+        AdapterFactoryDescriptor[] get(final String adapter) {
+            return factories.get(adapter);
+        }
+
+        /**
+         * Returns <code>true</code> if the adaptable class is or extends or
+         * implements the class or interface with the given name.
+         */
+        boolean isAssignableTo(final String type) {
+            return types.contains(type);
+        }
+    }
 }
\ No newline at end of file
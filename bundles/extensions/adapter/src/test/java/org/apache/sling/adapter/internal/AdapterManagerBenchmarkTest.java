@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.adapter.internal;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junitx.util.PrivateAccessor;
+
+import org.apache.sling.adapter.mock.MockAdapterFactory;
+import org.apache.sling.api.adapter.AdapterFactory;
+import org.apache.sling.api.adapter.SlingAdaptable;
+import org.junit.Assume;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.packageadmin.ExportedPackage;
+import org.osgi.service.packageadmin.PackageAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the dispatch of {@link SlingAdaptable#adaptTo(Class)} through the
+ * {@link AdapterManagerImpl}: cold, i.e. with the dispatch tables dropped
+ * before each call, warm, and while another thread keeps binding and
+ * unbinding an adapter factory, either for an unrelated adaptable class or
+ * for the adapted class itself.
+ * <p>
+ * The benchmark is skipped unless the numbers of registered factories are
+ * specified:
+ * <pre>
+ * mvn test -Dtest=AdapterManagerBenchmarkTest -Dadapter.benchmark=10,100,1000
+ * </pre>
+ * The JVM used is logged before the results.
+ */
+public class AdapterManagerBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdapterManagerBenchmarkTest.class);
+
+    private static final String PROPERTY_FACTORIES = "adapter.benchmark";
+
+    /** The duration of each measurement. */
+    private static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    private static final InvocationHandler NOP_INVOCATION_HANDLER = new InvocationHandler() {
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+        }
+    };
+
+    private long serviceId;
+
+    @Test
+    public void testAdaptTo() throws Exception {
+        final String factories = System.getProperty(PROPERTY_FACTORIES);
+        Assume.assumeTrue(factories != null && factories.trim().length() > 0);
+        LOG.info("java.vm={} {} duration={}s", new Object[] {System.getProperty("java.vm.name"),
+                System.getProperty("java.version"), TimeUnit.NANOSECONDS.toSeconds(DURATION_NANOS)});
+
+        for (String count : factories.split(",")) {
+            run(Integer.parseInt(count.trim()));
+        }
+    }
+
+    private void run(int factories) throws Exception {
+        final AdapterManagerImpl am = new AdapterManagerImpl();
+        PrivateAccessor.setField(am, "packageAdmin", proxy(PackageAdmin.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return proxy(ExportedPackage.class, NOP_INVOCATION_HANDLER);
+            }
+        }));
+        am.activate(createComponentContext());
+        try {
+            // the adapted factory and factories for other targets and adaptables
+            am.bindAdapterFactory(createServiceReference(BenchmarkAdaptable.class.getName(), BenchmarkAdapter.class.getName()));
+            for (int i = 0; i < factories; i++) {
+                am.bindAdapterFactory(createServiceReference(BenchmarkAdaptable.class.getName(), "org.example.Target" + i));
+                am.bindAdapterFactory(createServiceReference("org.example.Adaptable" + i, BenchmarkAdapter.class.getName()));
+            }
+            final ServiceReference unrelated = createServiceReference(UnrelatedAdaptable.class.getName(), BenchmarkAdapter.class.getName());
+            final ServiceReference related = createServiceReference(BenchmarkAdaptable.class.getName(), "org.example.ChurnTarget");
+
+            // warm up
+            adapt(am, true, null);
+            adapt(am, false, null);
+
+            final long[] unrelatedChurn = new long[1];
+            final long[] relatedChurn = new long[1];
+            LOG.info("factories={} adaptTo/s cold={} warm={} unrelated churn={} ({} binds/s) related churn={} ({} binds/s)",
+                    new Object[] {factories, adapt(am, true, null), adapt(am, false, null),
+                    adapt(am, false, new Churn(am, unrelated, unrelatedChurn)), unrelatedChurn[0],
+                    adapt(am, false, new Churn(am, related, relatedChurn)), relatedChurn[0]});
+        } finally {
+            am.deactivate(null);
+        }
+    }
+
+    /**
+     * Adapts new adaptables repeatedly for a fixed duration.
+     *
+     * @param cold - whether to drop the dispatch tables before each call
+     * @param churn - the factory churn to run concurrently or {@code null}
+     * @return - the number of adaptTo calls per second
+     */
+    private long adapt(AdapterManagerImpl am, boolean cold, Churn churn) throws InterruptedException {
+        if (churn != null) {
+            churn.start();
+        }
+        long calls = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        try {
+            do {
+                if (cold) {
+                    am.getFactoryCache().clear();
+                }
+                assertNotNull(new BenchmarkAdaptable().adaptTo(BenchmarkAdapter.class));
+                calls++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < DURATION_NANOS);
+        } finally {
+            if (churn != null) {
+                churn.finish();
+            }
+        }
+        return calls * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    private ComponentContext createComponentContext() {
+        final BundleContext bundleContext = proxy(BundleContext.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("registerService")) {
+                    return proxy(ServiceRegistration.class, NOP_INVOCATION_HANDLER);
+                }
+                return null;
+            }
+        });
+        final AdapterFactory factory = new MockAdapterFactory();
+        return proxy(ComponentContext.class, new InvocationHandler() {
+
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("locateService")) {
+                    return factory;
+                } else if (method.getName().equals("getBundleContext")) {
+                    return bundleContext;
+                }
+                return null;
+            }
+        });
+    }
+
+    private ServiceReference createServiceReference(String adaptable, String adapter) {
+        return new BenchmarkServiceReference(++serviceId, adaptable, adapter);
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    /**
+     * Binds and unbinds an adapter factory until finished.
+     */
+    private static final class Churn extends Thread {
+
+        private final AdapterManagerImpl am;
+
+        private final ServiceReference reference;
+
+        private final long[] bindsPerSecond;
+
+        private final AtomicBoolean running = new AtomicBoolean(true);
+
+        private final AtomicLong binds = new AtomicLong();
+
+        private long start;
+
+        Churn(AdapterManagerImpl am, ServiceReference reference, long[] bindsPerSecond) {
+            this.am = am;
+            this.reference = reference;
+            this.bindsPerSecond = bindsPerSecond;
+        }
+
+        @Override
+        public void start() {
+            this.start = System.nanoTime();
+            super.start();
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                am.bindAdapterFactory(reference);
+                am.unbindAdapterFactory(reference);
+                binds.incrementAndGet();
+            }
+        }
+
+        void finish() throws InterruptedException {
+            running.set(false);
+            join();
+            bindsPerSecond[0] = binds.get() * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - start);
+        }
+    }
+
+    private static final class BenchmarkServiceReference implements ServiceReference {
+
+        private final Long id;
+
+        private final String[] adaptables;
+
+        private final String[] adapters;
+
+        BenchmarkServiceReference(long id, String adaptable, String adapter) {
+            this.id = id;
+            this.adaptables = new String[] {adaptable};
+            this.adapters = new String[] {adapter};
+        }
+
+        public Object getProperty(String key) {
+            if (key.equals(Constants.SERVICE_ID)) {
+                return id;
+            } else if (key.equals(AdapterFactory.ADAPTABLE_CLASSES)) {
+                return adaptables;
+            } else if (key.equals(AdapterFactory.ADAPTER_CLASSES)) {
+                return adapters;
+            }
+            return null;
+        }
+
+        public String[] getPropertyKeys() {
+            return new String[] {Constants.SERVICE_ID, AdapterFactory.ADAPTABLE_CLASSES, AdapterFactory.ADAPTER_CLASSES};
+        }
+
+        public Bundle getBundle() {
+            return null;
+        }
+
+        public Bundle[] getUsingBundles() {
+            return null;
+        }
+
+        public boolean isAssignableTo(Bundle bundle, String className) {
+            return false;
+        }
+
+        public int compareTo(Object reference) {
+            return id.compareTo((Long) ((ServiceReference) reference).getProperty(Constants.SERVICE_ID));
+        }
+    }
+
+    //---------- Benchmark Adaptable and Adapter Classes ----------------------
+
+    public static interface BenchmarkAdapter {
+    }
+
+    public static interface First {
+    }
+
+    public static interface Second extends First {
+    }
+
+    public static class BaseAdaptable extends SlingAdaptable implements First {
+    }
+
+    public static class BenchmarkAdaptable extends BaseAdaptable implements Second, Runnable {
+
+        public void run() {
+            // not used
+        }
+    }
+
+    public static class UnrelatedAdaptable extends SlingAdaptable {
+    }
+}
@@ -44,6 +44,7 @@ import java.util.Map;
 
 import junitx.util.PrivateAccessor;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -335,6 +336,37 @@ public class AdapterManagerTest {
         assertTrue(adapter instanceof TestAdapter);
     }
 
+    @org.junit.Test public void testFactoryCacheInvalidation() throws Exception {
+        am.activate(this.createComponentContext());
+
+        final ServiceReference ref = createServiceReference();
+        am.bindAdapterFactory(ref);
+
+        assertNotNull(am.getAdapter(new TestSlingAdaptable(), ITestAdapter.class));
+        assertNotNull(am.getAdapter(new TestSlingAdaptable2(), ITestAdapter.class));
+        assertNull(am.getAdapter(new AdapterObject(Want.INDIFFERENT), ITestAdapter.class));
+        assertTrue(am.getFactoryCache().containsKey(TestSlingAdaptable.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(TestSlingAdaptable2.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(AdapterObject.class.getName()));
+
+        // only the cache entries of TestSlingAdaptable2 and its subclasses are affected
+        final ServiceReference ref2 = createServiceReference2();
+        am.bindAdapterFactory(ref2);
+        assertTrue(am.getFactoryCache().containsKey(TestSlingAdaptable.class.getName()));
+        assertFalse(am.getFactoryCache().containsKey(TestSlingAdaptable2.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(AdapterObject.class.getName()));
+        assertNotNull(am.getAdapter(new TestSlingAdaptable2(), TestAdapter.class));
+
+        // the entries of TestSlingAdaptable and its subclass TestSlingAdaptable2 are affected
+        assertNull(am.getAdapter(new TestSlingAdaptable2(), TestSlingAdaptable.class));
+        final ServiceReference ref3 = new ServiceReferenceImpl(3, new String[]{ TestSlingAdaptable.class.getName() }, new String[]{TestSlingAdaptable.class.getName()});
+        am.bindAdapterFactory(ref3);
+        assertFalse(am.getFactoryCache().containsKey(TestSlingAdaptable.class.getName()));
+        assertFalse(am.getFactoryCache().containsKey(TestSlingAdaptable2.class.getName()));
+        assertTrue(am.getFactoryCache().containsKey(AdapterObject.class.getName()));
+        assertNotNull(am.getAdapter(new TestSlingAdaptable2(), TestSlingAdaptable.class));
+    }
+
     @org.junit.Test public void testAdaptMultipleAdapterFactories() throws Exception {
         final ServiceReference firstAdaptable = new ServiceReferenceImpl(1, new String[]{AdapterObject.class.getName()},  new String[]{ ParentInterface.class.getName(), FirstImplementation.class.getName()});
         final ServiceReference secondAdaptable = new ServiceReferenceImpl(2, new String[]{ AdapterObject.class.getName() }, new String[]{ParentInterface.class.getName(), SecondImplementation.class.getName()});
@@ -176,6 +176,13 @@ public class Config {
     private static final String BACKOFF_STABLE_FACTOR = "backoffStableFactor";
     private static final int DEFAULT_BACKOFF_STABLE_FACTOR = 5;
 
+    /**
+     * If set to true, the view is only checked against the repository on membership relevant
+     * changes and the local heartbeat is written less frequently while the view is stable.
+     */
+    @Property(boolValue=false)
+    private static final String INCREMENTAL_HEARTBEAT_ENABLED = "incrementalHeartbeatEnabled";
+
     private String leaderElectionRepositoryDescriptor ;
 
     private boolean invertRepositoryDescriptor = false; /* default: false */
@@ -216,6 +223,9 @@ public class Config {
     
     /** the maximum backoff factor to be used for stable connectors **/
     private int backoffStableFactor = DEFAULT_BACKOFF_STABLE_FACTOR;
+
+    /** true when the view check is driven by observation events **/
+    private boolean incrementalHeartbeatEnabled;
     
     @Activate
     protected void activate(final Map<String, Object> properties) {
@@ -330,6 +340,7 @@ public class Config {
                 DEFAULT_BACKOFF_STANDBY_FACTOR);
         backoffStableFactor = PropertiesUtil.toInteger(properties.get(BACKOFF_STABLE_FACTOR), 
                 DEFAULT_BACKOFF_STABLE_FACTOR);
+        incrementalHeartbeatEnabled = PropertiesUtil.toBoolean(properties.get(INCREMENTAL_HEARTBEAT_ENABLED), false);
     }
 
     /**
@@ -400,6 +411,14 @@ public class Config {
         return topologyConnectorWhitelist;
     }
 
+    /**
+     * Returns the resource path below which all discovery informations are stored.
+     * @return the discovery resource path, ending with a slash
+     */
+    public String getDiscoveryResourcePath() {
+        return discoveryResourcePath;
+    }
+
     /**
      * Returns the resource path where cluster instance informations are stored.
      * @return the resource path where cluster instance informations are stored
@@ -524,6 +543,14 @@ public class Config {
         return backoffStableFactor;
     }
 
+    /**
+     * @return true if the view is only checked against the repository on membership
+     * relevant changes and the local heartbeat is written at an adaptive interval
+     */
+    public boolean isIncrementalHeartbeatEnabled() {
+        return incrementalHeartbeatEnabled;
+    }
+
     /**
      * Returns the backoff interval for standby (loop) connectors in seconds
      * @return the backoff interval for standby (loop) connectors in seconds
@@ -22,7 +22,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Dictionary;
 import java.util.HashMap;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +40,7 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.resource.LoginException;
 import org.apache.sling.api.resource.ModifiableValueMap;
 import org.apache.sling.api.resource.PersistenceException;
@@ -60,7 +63,11 @@ import org.apache.sling.settings.SlingSettingsService;
 import org.osgi.framework.BundleException;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.osgi.service.http.HttpService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,13 +78,18 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Local heartbeats are stored in the repository. Remote heartbeats are POSTs to
  * remote TopologyConnectorServlets.
+ * <p>
+ * With the incremental heartbeat enabled, the heartbeats of the other instances
+ * are tracked in a {@link HeartbeatView} based on observation events and the
+ * view is only checked against the repository when it (might) have changed.
+ * The handler is only registered as an event handler in this mode.
  */
 @Component
 @Service(value = { HeartbeatHandler.class, StartupListener.class })
 @Reference(referenceInterface=HttpService.class,
            cardinality=ReferenceCardinality.OPTIONAL_MULTIPLE,
            policy=ReferencePolicy.DYNAMIC)
-public class HeartbeatHandler implements Runnable, StartupListener {
+public class HeartbeatHandler implements Runnable, StartupListener, EventHandler {
 
     private static final String PROPERTY_ID_LAST_HEARTBEAT = "lastHeartbeat";
 
@@ -155,6 +167,12 @@ public class HeartbeatHandler implements Runnable, StartupListener {
     /** SLING-4765 : store endpoints to /clusterInstances for more verbose duplicate slingId/ghost detection **/
     private final Map<Long, String[]> endpoints = new HashMap<Long, String[]>();
 
+    /** the heartbeats of the cluster instances as noticed by observation, used in incremental mode **/
+    private final HeartbeatView heartbeatView = new HeartbeatView();
+
+    /** the registration as event handler, only registered in incremental mode **/
+    private ServiceRegistration eventHandlerRegistration;
+
     public void inform(StartupMode mode, boolean finished) {
     	if (finished) {
     		startupFinished(mode);
@@ -190,8 +208,10 @@ public class HeartbeatHandler implements Runnable, StartupListener {
 	        // SLING-2895: reset variables to avoid unnecessary log.error
 	        firstHeartbeatWritten = -1;
 	        lastHeartbeatWritten = null;
+	        heartbeatView.reset();
 
 	        activated = true;
+	        registerEventHandler(context);
 	        logger.info("activate: activated with runtimeId: {}, slingId: {}", runtimeId, slingId);
     	}
     }
@@ -201,6 +221,32 @@ public class HeartbeatHandler implements Runnable, StartupListener {
         // SLING-3365 : dont synchronize on deactivate
         activated = false;
     	scheduler.removeJob(NAME);
+    	if (eventHandlerRegistration != null) {
+    	    eventHandlerRegistration.unregister();
+    	    eventHandlerRegistration = null;
+    	}
+    }
+
+    /**
+     * Register for the resource events below the discovery resource path
+     * if the incremental heartbeat is enabled. A configuration change
+     * reactivates this component, as the config is a static reference.
+     */
+    private void registerEventHandler(final ComponentContext context) {
+        if (!config.isIncrementalHeartbeatEnabled()) {
+            return;
+        }
+        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(Constants.SERVICE_DESCRIPTION, "Discovery Incremental Heartbeat Event Handler");
+        properties.put(Constants.SERVICE_VENDOR, "The Apache Software Foundation");
+        properties.put(EventConstants.EVENT_TOPIC, new String[] {
+                SlingConstants.TOPIC_RESOURCE_ADDED,
+                SlingConstants.TOPIC_RESOURCE_CHANGED,
+                SlingConstants.TOPIC_RESOURCE_REMOVED });
+        properties.put(EventConstants.EVENT_FILTER,
+                "(" + SlingConstants.PROPERTY_PATH + "=" + config.getDiscoveryResourcePath() + "*)");
+        eventHandlerRegistration = context.getBundleContext().registerService(
+                EventHandler.class.getName(), this, properties);
     }
 
     /**
@@ -245,6 +291,67 @@ public class HeartbeatHandler implements Runnable, StartupListener {
         }
     }
 
+    /**
+     * Handle resource events in incremental mode: take note of the heartbeats
+     * of the cluster instances and of membership relevant changes, ie of
+     * instances joining or leaving, of votings and of the established view.
+     */
+    public void handleEvent(final Event event) {
+        final Config config = this.config;
+        if (config == null || !config.isIncrementalHeartbeatEnabled()) {
+            return;
+        }
+        final String resourcePath = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+        if (resourcePath == null) {
+            // not of my business
+            return;
+        }
+        if (resourcePath.startsWith(config.getEstablishedViewPath())
+                || resourcePath.startsWith(config.getOngoingVotingsPath())) {
+            heartbeatView.changed();
+            return;
+        }
+        final String clusterInstancesPath = config.getClusterInstancesPath() + "/";
+        if (!resourcePath.startsWith(clusterInstancesPath)) {
+            // not of my business
+            return;
+        }
+        final String relativePath = resourcePath.substring(clusterInstancesPath.length());
+        final int slash = relativePath.indexOf('/');
+        final String instanceId = slash == -1 ? relativePath : relativePath.substring(0, slash);
+        if (instanceId.length() == 0) {
+            return;
+        }
+        if (slash == -1) {
+            if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic())) {
+                heartbeatView.removed(instanceId);
+            } else {
+                heartbeatView.heartbeat(instanceId, System.currentTimeMillis());
+                if (!isHeartbeatOnly(event)) {
+                    // an instance joined or changed its leaderElectionId
+                    heartbeatView.changed();
+                }
+            }
+        } else if (relativePath.substring(slash + 1).equals(PROPERTY_ID_LAST_HEARTBEAT)) {
+            // the heartbeat property itself, as reported by plain jcr observation
+            heartbeatView.heartbeat(instanceId, System.currentTimeMillis());
+        }
+        // changes of announcements or properties do not affect the membership
+    }
+
+    /** Check whether the given event only reports a changed lastHeartbeat **/
+    private boolean isHeartbeatOnly(final Event event) {
+        if (!SlingConstants.TOPIC_RESOURCE_CHANGED.equals(event.getTopic())
+                || event.getProperty(SlingConstants.PROPERTY_ADDED_ATTRIBUTES) != null
+                || event.getProperty(SlingConstants.PROPERTY_REMOVED_ATTRIBUTES) != null) {
+            return false;
+        }
+        final Object changedAttributes = event.getProperty(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES);
+        return changedAttributes instanceof String[]
+                && ((String[]) changedAttributes).length == 1
+                && PROPERTY_ID_LAST_HEARTBEAT.equals(((String[]) changedAttributes)[0]);
+    }
+
     /** Get or create a ResourceResolver **/
     private ResourceResolver getResourceResolver() throws LoginException {
         if (resourceResolverFactory == null) {
@@ -287,10 +394,29 @@ public class HeartbeatHandler implements Runnable, StartupListener {
         } else {
             discoveryService.updateProperties();
         }
-        issueClusterLocalHeartbeat();
+        if (isClusterLocalHeartbeatDue()) {
+            issueClusterLocalHeartbeat();
+        } else if (logger.isDebugEnabled()) {
+            logger.debug("issueHeartbeat: view is stable, skipping cluster-local heartbeat for "+slingId);
+        }
         issueRemoteHeartbeats();
     }
 
+    /**
+     * Check whether a cluster-local heartbeat is to be written. In incremental
+     * mode heartbeats are skipped while the view is stable, as long as the last
+     * one written is not about to time out for the other instances.
+     */
+    private boolean isClusterLocalHeartbeatDue() {
+        if (!config.isIncrementalHeartbeatEnabled() || lastHeartbeatWritten == null
+                || firstHeartbeatWritten == -1 || resetLeaderElectionId || heartbeatView.hasChanged()) {
+            return true;
+        }
+        // leave the other instances at least one more interval to notice the next heartbeat
+        final long maxHeartbeatAge = config.getHeartbeatTimeoutMillis() - 2000 * config.getHeartbeatInterval();
+        return System.currentTimeMillis() - lastHeartbeatWritten.getTimeInMillis() >= maxHeartbeatAge;
+    }
+
     /** Issue a remote heartbeat using the topology connectors **/
     private void issueRemoteHeartbeats() {
         if (connectorRegistry == null) {
@@ -470,6 +596,12 @@ public class HeartbeatHandler implements Runnable, StartupListener {
         }
         announcementRegistry.checkExpiredAnnouncements();
 
+        if (config.isIncrementalHeartbeatEnabled() && !heartbeatView.needsCheck(
+                System.currentTimeMillis(), config.getHeartbeatTimeoutMillis())) {
+            logger.debug("checkView: no membership relevant changes noticed. view is fine.");
+            return;
+        }
+
         ResourceResolver resourceResolver = null;
         try {
             resourceResolver = getResourceResolver();
@@ -491,6 +623,7 @@ public class HeartbeatHandler implements Runnable, StartupListener {
     /** do the established-against-heartbeat view check using the given resourceResolver.
      */
     private void doCheckView(final ResourceResolver resourceResolver) throws PersistenceException {
+        final long changes = heartbeatView.getChanges();
 
         if (votingHandler==null) {
             logger.info("doCheckView: votingHandler is null! slingId="+slingId);
@@ -520,14 +653,22 @@ public class HeartbeatHandler implements Runnable, StartupListener {
 
         final Resource clusterNodesRes = ResourceHelper.getOrCreateResource(
                 resourceResolver, config.getClusterInstancesPath());
-        final Set<String> liveInstances = ViewHelper.determineLiveInstances(
-                clusterNodesRes, config);
+        final Set<String> liveInstances;
+        if (config.isIncrementalHeartbeatEnabled()) {
+            heartbeatView.readHeartbeats(clusterNodesRes);
+            liveInstances = heartbeatView.getLiveInstances(
+                    System.currentTimeMillis(), config.getHeartbeatTimeoutMillis());
+        } else {
+            liveInstances = ViewHelper.determineLiveInstances(
+                    clusterNodesRes, config);
+        }
 
         if (ViewHelper.establishedViewMatches(resourceResolver, config, liveInstances)) {
             // that's the normal case. the established view matches what we're
             // seeing.
             // all happy and fine
             logger.debug("doCheckView: no pending nor winning votes. view is fine. we're all happy.");
+            heartbeatView.checked(changes, liveInstances);
             return;
         }
     	if (logger.isDebugEnabled()) {
@@ -571,6 +712,7 @@ public class HeartbeatHandler implements Runnable, StartupListener {
             final Set<String> liveInstances = ViewHelper.determineLiveInstances(
                     clusterNodesRes, config);
             doStartNewVoting(resourceResolver, liveInstances);
+            heartbeatView.changed();
             logger.info("startNewVoting: explicit new voting was started.");
         } catch (LoginException e) {
             logger.error("startNewVoting: could not log in administratively: " + e,
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.discovery.impl.common.heartbeat;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+
+/**
+ * In-memory view of the heartbeats of the cluster instances.
+ * <p>
+ * The view is read from the repository on each full view check and kept
+ * up to date by observation events in between. As long as neither the
+ * instances considered live nor any membership relevant resource changed,
+ * the full view check against the repository can be skipped.
+ */
+class HeartbeatView {
+
+    /** the time of the last heartbeat of each instance, keyed by slingId **/
+    private final Map<String, Long> heartbeats = new HashMap<String, Long>();
+
+    /** number of membership relevant changes noticed so far **/
+    private long changes = 0;
+
+    /** number of changes noticed before the last settled view check **/
+    private long checkedChanges = -1;
+
+    /** the live instances as of the last settled view check **/
+    private Set<String> checkedInstances;
+
+    /** Take note of a heartbeat of the given instance **/
+    synchronized void heartbeat(final String slingId, final long time) {
+        final Long previous = heartbeats.get(slingId);
+        if (previous == null || previous < time) {
+            heartbeats.put(slingId, time);
+        }
+    }
+
+    /** Take note of the removal of the given instance **/
+    synchronized void removed(final String slingId) {
+        heartbeats.remove(slingId);
+        changes++;
+    }
+
+    /** Take note of a membership relevant change, eg of a voting **/
+    synchronized void changed() {
+        changes++;
+    }
+
+    /** Returns the number of membership relevant changes noticed so far **/
+    synchronized long getChanges() {
+        return changes;
+    }
+
+    /** Returns whether there were membership relevant changes since the last settled view check **/
+    synchronized boolean hasChanged() {
+        return changes != checkedChanges;
+    }
+
+    /**
+     * Replaces the heartbeats with the ones stored with the given cluster
+     * instances resource.
+     */
+    synchronized void readHeartbeats(final Resource clusterInstancesResource) {
+        heartbeats.clear();
+        final Iterator<Resource> it = clusterInstancesResource.getChildren().iterator();
+        while (it.hasNext()) {
+            final Resource aClusterInstance = it.next();
+            final ValueMap properties = aClusterInstance.adaptTo(ValueMap.class);
+            final Date lastHeartbeat = properties == null ? null : properties.get("lastHeartbeat", Date.class);
+            if (lastHeartbeat != null) {
+                heartbeats.put(aClusterInstance.getName(), lastHeartbeat.getTime());
+            }
+        }
+    }
+
+    /** Returns the instances with a heartbeat within the given timeout **/
+    synchronized Set<String> getLiveInstances(final long now, final long heartbeatTimeoutMillis) {
+        final Set<String> liveInstances = new HashSet<String>();
+        for (final Map.Entry<String, Long> entry : heartbeats.entrySet()) {
+            if (now - entry.getValue() < heartbeatTimeoutMillis) {
+                liveInstances.add(entry.getKey());
+            }
+        }
+        return liveInstances;
+    }
+
+    /**
+     * Returns whether the view has to be checked against the repository,
+     * which is the case if there were membership relevant changes or if the
+     * live instances differ from the ones of the last settled view check.
+     */
+    synchronized boolean needsCheck(final long now, final long heartbeatTimeoutMillis) {
+        return hasChanged() || checkedInstances == null
+                || !checkedInstances.equals(getLiveInstances(now, heartbeatTimeoutMillis));
+    }
+
+    /**
+     * Take note of a view check which found the view to be settled, ie
+     * without votings and matching the established view.
+     *
+     * @param changesBeforeCheck the number of changes noticed before the check started
+     * @param liveInstances the live instances found by the check
+     */
+    synchronized void checked(final long changesBeforeCheck, final Set<String> liveInstances) {
+        checkedChanges = changesBeforeCheck;
+        checkedInstances = liveInstances;
+    }
+
+    /** Forget about the last settled view check, forcing the next one **/
+    synchronized void reset() {
+        heartbeats.clear();
+        checkedChanges = -1;
+        checkedInstances = null;
+    }
+}
@@ -386,6 +386,18 @@ public class Announcement {
         return asJSONObject().toString();
     }
 
+    /**
+     * Convert this announcement into json which, unlike {@link #asJSON()},
+     * only changes if the information carried by this announcement changes
+     **/
+    public String asComparableJSON() throws JSONException {
+        final JSONObject announcement = asJSONObject(true);
+        if (backoffInterval>0) {
+            announcement.put("backoffInterval", backoffInterval);
+        }
+        return announcement.toString();
+    }
+
     /** the key which is unique to this announcement **/
     public String getPrimaryKey() {
         return ownerId;
@@ -283,7 +283,9 @@ public class AnnouncementRegistryImpl implements AnnouncementRegistry {
                 logger.debug("registerAnnouncement: got existing cached announcement for ownerId="+topologyAnnouncement.getOwnerId());
             }
             try{
-                if (topologyAnnouncement.correspondsTo(cachedAnnouncement.getAnnouncement())) {
+                // unchanged announcements are passed in as the very same instance
+                if (topologyAnnouncement == cachedAnnouncement.getAnnouncement()
+                        || topologyAnnouncement.correspondsTo(cachedAnnouncement.getAnnouncement())) {
                     // then nothing has changed with this announcement, so just update
                     // the heartbeat and fine is.
                     // this should actually be the normal case for a stable connector
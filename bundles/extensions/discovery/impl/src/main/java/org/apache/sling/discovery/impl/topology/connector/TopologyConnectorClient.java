@@ -29,6 +29,7 @@ import java.util.zip.GZIPOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.http.Header;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -44,7 +45,10 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
 import org.apache.sling.discovery.ClusterView;
 import org.apache.sling.discovery.InstanceDescription;
 import org.apache.sling.discovery.impl.Config;
@@ -110,6 +114,18 @@ public class TopologyConnectorClient implements
 
     /** SLING-3382: unix-time at which point the backoff-period ends and pings can be sent again **/
     private long backoffPeriodEnd = -1;
+
+    /** the http client, keeping the connection to the server alive between pings **/
+    private CloseableHttpClient httpClient;
+
+    /** the version of the announcement of this instance which the server holds **/
+    private String serverKnownVersion;
+
+    /** the version of the last announcement received from the server **/
+    private String lastReplyVersion;
+
+    /** the last announcement received from the server **/
+    private Announcement lastReplyAnnouncement;
     
     TopologyConnectorClient(final ClusterViewService clusterViewService,
             final AnnouncementRegistry announcementRegistry, final Config config,
@@ -159,7 +175,7 @@ public class TopologyConnectorClient implements
     		logger.debug("ping: connectorUrl=" + connectorUrl + ", complete uri=" + uri);
     	}
     	final HttpClientContext clientContext = HttpClientContext.create();
-    	final CloseableHttpClient httpClient = createHttpClient();
+    	final CloseableHttpClient httpClient = getHttpClient();
     	final HttpPut putRequest = new HttpPut(uri);
 
     	// setting the connection timeout (idle connection, configured in seconds)
@@ -169,6 +185,8 @@ public class TopologyConnectorClient implements
     			build());
 
         Announcement resultingAnnouncement = null;
+        CloseableHttpResponse response = null;
+        boolean resend = false;
         try {
             String userInfo = connectorUrl.getUserInfo();
             if (userInfo != null) {
@@ -208,7 +226,24 @@ public class TopologyConnectorClient implements
                     return false;
                 }
             });
-            final String p = requestValidator.encodeMessage(topologyAnnouncement.asJSON());
+            final String version = TopologyRequestValidator.getVersion(
+                    topologyAnnouncement.asComparableJSON());
+            final boolean unchanged = !force && version.equals(serverKnownVersion);
+            final String body;
+            if (unchanged) {
+                // the server holds this announcement already, only refer to it
+                final JSONObject unchangedJson = new JSONObject();
+                unchangedJson.put(TopologyRequestValidator.UNCHANGED_SINCE, version);
+                body = unchangedJson.toString();
+                putRequest.addHeader(TopologyRequestValidator.UNCHANGED_HEADER, "true");
+            } else {
+                body = topologyAnnouncement.asJSON();
+            }
+            putRequest.addHeader(TopologyRequestValidator.VERSION_HEADER, version);
+            if (lastReplyVersion != null) {
+                putRequest.addHeader(TopologyRequestValidator.KNOWN_VERSION_HEADER, lastReplyVersion);
+            }
+            final String p = requestValidator.encodeMessage(body);
             
             if (logger.isDebugEnabled()) {
                 logger.debug("ping: topologyAnnouncement json is: " + p);
@@ -235,14 +270,20 @@ public class TopologyConnectorClient implements
             // independent of request-gzipping, we do accept the response to be gzipped,
             // so indicate this to the server:
             putRequest.addHeader("Accept-Encoding", "gzip");
-            final CloseableHttpResponse response = httpClient.execute(putRequest, clientContext);
+            response = httpClient.execute(putRequest, clientContext);
         	if (logger.isDebugEnabled()) {
 	            logger.debug("ping: done. code=" + response.getStatusLine().getStatusCode() + " - "
 	                    + response.getStatusLine().getReasonPhrase());
         	}
             lastStatusCode = response.getStatusLine().getStatusCode();
             lastResponseEncoding = null;
-            if (response.getStatusLine().getStatusCode()==HttpServletResponse.SC_OK) {
+            if (unchanged && lastStatusCode==HttpServletResponse.SC_CONFLICT) {
+                // the server no longer holds the announcement, send it in full
+                logger.debug("ping: server does not know the unchanged announcement, resending it.");
+                serverKnownVersion = null;
+                resultingAnnouncement = lastInheritedAnnouncement;
+                resend = true;
+            } else if (response.getStatusLine().getStatusCode()==HttpServletResponse.SC_OK) {
                 final Header contentEncoding = response.getFirstHeader("Content-Encoding");
                 if (contentEncoding!=null && contentEncoding.getValue()!=null &&
                         contentEncoding.getValue().contains("gzip")) {
@@ -254,9 +295,10 @@ public class TopologyConnectorClient implements
             	if (logger.isDebugEnabled()) {
             		logger.debug("ping: response body=" + responseBody);
             	}
+                final Header knownVersion = response.getFirstHeader(TopologyRequestValidator.KNOWN_VERSION_HEADER);
+                serverKnownVersion = knownVersion==null ? null : knownVersion.getValue();
                 if (responseBody!=null && responseBody.length()>0) {
-                    Announcement inheritedAnnouncement = Announcement
-                            .fromJSON(responseBody);
+                    Announcement inheritedAnnouncement = readReplyAnnouncement(response, responseBody);
                     final long backoffInterval = inheritedAnnouncement.getBackoffInterval();
                     if (backoffInterval>0) {
                         // then reset the backoffPeriodEnd:
@@ -321,24 +363,87 @@ public class TopologyConnectorClient implements
             logger.warn("ping: got RuntimeException: " + re, re);
             statusDetails = re.toString();
         } finally {
+            if (response != null) {
+                // consume the response such that the connection can be reused
+                try {
+                    EntityUtils.consume(response.getEntity());
+                    response.close();
+                } catch (IOException e) {
+                    logger.debug("ping: could not release the response: "+e);
+                }
+            }
             putRequest.releaseConnection();
+            if (resultingAnnouncement == null) {
+                // start over with full announcements in either direction
+                serverKnownVersion = null;
+                lastReplyVersion = null;
+                lastReplyAnnouncement = null;
+            }
             lastInheritedAnnouncement = resultingAnnouncement;
             lastPingedAt = System.currentTimeMillis();
+        }
+        if (resend) {
+            ping(force);
+        }
+    }
+
+    /**
+     * Returns the announcement replied by the server, which is the last one
+     * received if the server only refers to it.
+     */
+    private Announcement readReplyAnnouncement(final HttpResponse response, final String responseBody)
+            throws JSONException {
+        if (response.getFirstHeader(TopologyRequestValidator.UNCHANGED_HEADER) != null) {
+            final String unchangedSince = new JSONObject(responseBody).optString(
+                    TopologyRequestValidator.UNCHANGED_SINCE, null);
+            if (lastReplyAnnouncement == null || unchangedSince == null
+                    || !unchangedSince.equals(lastReplyVersion)) {
+                throw new JSONException("unchanged reply refers to an unknown announcement: "+unchangedSince);
+            }
+            logger.debug("ping: servlet replied with the unchanged announcement.");
+            return lastReplyAnnouncement;
+        }
+        final Announcement announcement = Announcement.fromJSON(responseBody);
+        final Header version = response.getFirstHeader(TopologyRequestValidator.VERSION_HEADER);
+        lastReplyVersion = version==null ? null : version.getValue();
+        lastReplyAnnouncement = announcement;
+        return announcement;
+    }
+
+    /** Returns the http client, which is kept until this connector is disconnected **/
+    private synchronized CloseableHttpClient getHttpClient() {
+        if (httpClient == null) {
+            httpClient = createHttpClient();
+        }
+        return httpClient;
+    }
+
+    /** Closes the http client and with it the pooled connections **/
+    private synchronized void closeHttpClient() {
+        if (httpClient != null) {
             try {
-				httpClient.close();
-			} catch (IOException e) {
-				logger.error("disconnect: could not close httpClient: "+e, e);
-			}
+                httpClient.close();
+            } catch (IOException e) {
+                logger.error("disconnect: could not close httpClient: "+e, e);
+            }
+            httpClient = null;
         }
     }
 
 	private CloseableHttpClient createHttpClient() {
 		final HttpClientBuilder builder = HttpClientBuilder.create();
+		// pooling the connections to the server, such that pings reuse
+		// a kept-alive connection instead of connecting every time
+		final PoolingHttpClientConnectionManager connectionManager =
+		        new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(2);
+		connectionManager.setDefaultMaxPerRoute(2);
     	// setting the SoTimeout (which is configured in seconds)
-    	builder.setDefaultSocketConfig(SocketConfig.
+		connectionManager.setDefaultSocketConfig(SocketConfig.
     			custom().
     			setSoTimeout(1000*config.getSoTimeout()).
     			build());
+		builder.setConnectionManager(connectionManager);
 		builder.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
 
     	return builder.build();
@@ -447,7 +552,7 @@ public class TopologyConnectorClient implements
         }
 
         final HttpClientContext clientContext = HttpClientContext.create();
-        final CloseableHttpClient httpClient = createHttpClient();
+        final CloseableHttpClient httpClient = getHttpClient();
         final HttpDelete deleteRequest = new HttpDelete(uri);
         // setting the connection timeout (idle connection, configured in seconds)
         deleteRequest.setConfig(RequestConfig.
@@ -478,11 +583,7 @@ public class TopologyConnectorClient implements
             logger.error("disconnect: got RuntimeException: " + re, re);
         } finally {
             deleteRequest.releaseConnection();
-            try {
-				httpClient.close();
-			} catch (IOException e) {
-				logger.error("disconnect: could not close httpClient: "+e, e);
-			}
+            closeHttpClient();
         }
     }
 }
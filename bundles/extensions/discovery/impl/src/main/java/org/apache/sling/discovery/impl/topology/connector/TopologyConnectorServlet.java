@@ -24,8 +24,10 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
@@ -39,6 +41,7 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
 import org.apache.sling.discovery.ClusterView;
 import org.apache.sling.discovery.impl.Config;
 import org.apache.sling.discovery.impl.cluster.ClusterViewService;
@@ -96,6 +99,26 @@ public class TopologyConnectorServlet extends HttpServlet {
 
     private TopologyRequestValidator requestValidator;
 
+    /**
+     * The last announcement received from each client supporting unchanged
+     * announcements, keyed by the client's slingId.
+     **/
+    private final Map<String, ReceivedAnnouncement> receivedAnnouncements =
+            new ConcurrentHashMap<String, ReceivedAnnouncement>();
+
+    /** An announcement received from a client together with its version **/
+    private static final class ReceivedAnnouncement {
+
+        private final String version;
+
+        private final Announcement announcement;
+
+        ReceivedAnnouncement(final String version, final Announcement announcement) {
+            this.version = version;
+            this.announcement = announcement;
+        }
+    }
+
     @Activate
     protected void activate(final ComponentContext context) {
         whitelist.clear();
@@ -120,6 +143,7 @@ public class TopologyConnectorServlet extends HttpServlet {
     @Deactivate
     protected void deactivate() {
         httpService.unregister(TOPOLOGY_CONNECTOR_PREFIX);
+        receivedAnnouncements.clear();
     }
 
     void initWhitelist(String[] whitelistConfig) {
@@ -189,6 +213,7 @@ public class TopologyConnectorServlet extends HttpServlet {
         }
         final String selector = pathInfo.length==3 ? pathInfo[1] : "";
 
+        receivedAnnouncements.remove(selector);
         announcementRegistry.unregisterAnnouncement(selector);
     }
     
@@ -217,10 +242,29 @@ public class TopologyConnectorServlet extends HttpServlet {
 	        logger.debug("doPost: incoming topology announcement is: "
 	                + topologyAnnouncementJSON);
     	}
+        // clients supporting unchanged announcements send the version of theirs
+        String incomingVersion = request.getHeader(TopologyRequestValidator.VERSION_HEADER);
         final Announcement incomingTopologyAnnouncement;
         try {
-            incomingTopologyAnnouncement = Announcement
-                    .fromJSON(topologyAnnouncementJSON);
+            if (request.getHeader(TopologyRequestValidator.UNCHANGED_HEADER)!=null) {
+                // the client only refers to the announcement it sent before
+                final String unchangedSince = new JSONObject(topologyAnnouncementJSON).optString(
+                        TopologyRequestValidator.UNCHANGED_SINCE, null);
+                final ReceivedAnnouncement received = receivedAnnouncements.get(selector);
+                if (received==null || !received.version.equals(unchangedSince)) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("doPut: unknown version of unchanged announcement from "+selector
+                                +", asking for the full announcement");
+                    }
+                    response.sendError(HttpServletResponse.SC_CONFLICT);
+                    return;
+                }
+                incomingTopologyAnnouncement = received.announcement;
+                incomingVersion = received.version;
+            } else {
+                incomingTopologyAnnouncement = Announcement
+                        .fromJSON(topologyAnnouncementJSON);
+            }
 
             if (!incomingTopologyAnnouncement.getOwnerId().equals(selector)) {
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST);
@@ -301,7 +345,31 @@ public class TopologyConnectorServlet extends HttpServlet {
                     logger.debug("doPost: backoffInterval for client set to "+replyAnnouncement.getBackoffInterval());
                 }
             }
-            final String p = requestValidator.encodeMessage(replyAnnouncement.asJSON());
+            String replyJSON = null;
+            if (incomingVersion!=null) {
+                // remember registered announcements such that the client can refer to them
+                if (replyAnnouncement.isLoop()) {
+                    receivedAnnouncements.remove(selector);
+                } else {
+                    receivedAnnouncements.put(selector,
+                            new ReceivedAnnouncement(incomingVersion, incomingTopologyAnnouncement));
+                    response.setHeader(TopologyRequestValidator.KNOWN_VERSION_HEADER, incomingVersion);
+                }
+                // and only refer to the reply if the client has it already
+                final String replyVersion = TopologyRequestValidator.getVersion(
+                        replyAnnouncement.asComparableJSON());
+                response.setHeader(TopologyRequestValidator.VERSION_HEADER, replyVersion);
+                if (replyVersion.equals(request.getHeader(TopologyRequestValidator.KNOWN_VERSION_HEADER))) {
+                    response.setHeader(TopologyRequestValidator.UNCHANGED_HEADER, "true");
+                    final JSONObject unchanged = new JSONObject();
+                    unchanged.put(TopologyRequestValidator.UNCHANGED_SINCE, replyVersion);
+                    replyJSON = unchanged.toString();
+                }
+            }
+            if (replyJSON==null) {
+                replyJSON = replyAnnouncement.asJSON();
+            }
+            final String p = requestValidator.encodeMessage(replyJSON);
             requestValidator.trustMessage(response, request, p);
             // gzip the response if the client accepts this
             final String acceptEncodingHeader = request.getHeader("Accept-Encoding");
@@ -68,6 +68,28 @@ public class TopologyRequestValidator {
 
     public static final String HASH_HEADER = "X-SlingTopologyHash";
 
+    /**
+     * Version of the announcement of the sender, set by peers supporting
+     * unchanged announcements.
+     */
+    public static final String VERSION_HEADER = "X-SlingTopologyAnnouncementVersion";
+
+    /**
+     * Version of the announcement of the peer which the sender holds.
+     */
+    public static final String KNOWN_VERSION_HEADER = "X-SlingTopologyKnownVersion";
+
+    /**
+     * Marks a message whose body only refers to the announcement the peer
+     * holds already instead of carrying it.
+     */
+    public static final String UNCHANGED_HEADER = "X-SlingTopologyAnnouncementUnchanged";
+
+    /**
+     * Key of the version in the body of an unchanged message.
+     */
+    public static final String UNCHANGED_SINCE = "unchangedSince";
+
     /**
      * Maximum number of keys to keep in memory.
      */
@@ -301,11 +323,22 @@ public class TopologyRequestValidator {
         }
     }
 
+    /**
+     * Computes the version of an announcement, which changes whenever its
+     * json representation changes.
+     *
+     * @param announcementJson the json of the announcement.
+     * @return the version.
+     */
+    public static String getVersion(String announcementJson) {
+        return hash(announcementJson);
+    }
+
     /**
      * @param body
      * @return a hash of body base64 encoded.
      */
-    private String hash(String toHash) {
+    private static String hash(String toHash) {
         try {
             MessageDigest m = MessageDigest.getInstance("SHA-256");
             return new String(Base64.encodeBase64(m.digest(toHash.getBytes("UTF-8"))), "UTF-8");
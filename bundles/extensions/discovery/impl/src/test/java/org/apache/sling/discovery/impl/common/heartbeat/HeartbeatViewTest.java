@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.discovery.impl.common.heartbeat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Set;
+
+import junitx.util.PrivateAccessor;
+
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.scheduler.Scheduler;
+import org.apache.sling.discovery.impl.Config;
+import org.apache.sling.settings.SlingSettingsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+
+public class HeartbeatViewTest {
+
+    private static final long TIMEOUT = 10000;
+
+    private HeartbeatView view;
+
+    @Before
+    public void setUp() {
+        view = new HeartbeatView();
+    }
+
+    private Set<String> set(String... slingIds) {
+        return new HashSet<String>(Arrays.asList(slingIds));
+    }
+
+    private Resource instance(String slingId, Date lastHeartbeat) {
+        final Resource resource = mock(Resource.class);
+        when(resource.getName()).thenReturn(slingId);
+        final ValueMap properties = new ValueMapDecorator(new Hashtable<String, Object>());
+        if (lastHeartbeat != null) {
+            properties.put("lastHeartbeat", lastHeartbeat);
+        }
+        when(resource.adaptTo(ValueMap.class)).thenReturn(properties);
+        return resource;
+    }
+
+    @Test
+    public void testNeedsCheck() {
+        final long now = System.currentTimeMillis();
+        assertTrue(view.needsCheck(now, TIMEOUT));
+
+        view.heartbeat("a", now);
+        view.heartbeat("b", now);
+        view.checked(view.getChanges(), set("a", "b"));
+        assertFalse(view.needsCheck(now, TIMEOUT));
+
+        // heartbeats keep the view stable, older ones are ignored
+        view.heartbeat("a", now + 5000);
+        view.heartbeat("a", now);
+        assertFalse(view.needsCheck(now + 5000, TIMEOUT));
+
+        // but a timed out instance requires a check
+        assertTrue(view.needsCheck(now + TIMEOUT, TIMEOUT));
+        assertEquals(set("a"), view.getLiveInstances(now + TIMEOUT, TIMEOUT));
+    }
+
+    @Test
+    public void testChanges() {
+        final long now = System.currentTimeMillis();
+        view.heartbeat("a", now);
+        final long changes = view.getChanges();
+        view.checked(changes, set("a"));
+        assertFalse(view.hasChanged());
+
+        view.changed();
+        assertTrue(view.hasChanged());
+        assertTrue(view.needsCheck(now, TIMEOUT));
+
+        // a change during the check is not lost
+        final long changesBeforeCheck = view.getChanges();
+        view.removed("a");
+        view.checked(changesBeforeCheck, Collections.<String>emptySet());
+        assertTrue(view.needsCheck(now, TIMEOUT));
+        view.checked(view.getChanges(), Collections.<String>emptySet());
+        assertFalse(view.needsCheck(now, TIMEOUT));
+
+        view.reset();
+        assertTrue(view.needsCheck(now, TIMEOUT));
+    }
+
+    @Test
+    public void testReadHeartbeats() {
+        final long now = System.currentTimeMillis();
+        view.heartbeat("gone", now);
+        final Iterable<Resource> children = Arrays.asList(
+                instance("a", new Date(now - 1000)),
+                instance("b", new Date(now - 2 * TIMEOUT)),
+                instance("c", null));
+        final Resource clusterInstances = mock(Resource.class);
+        when(clusterInstances.getChildren()).thenReturn(children);
+        view.readHeartbeats(clusterInstances);
+        assertEquals(set("a"), view.getLiveInstances(now, TIMEOUT));
+    }
+
+    private Event event(String topic, String path, String... changedAttributes) {
+        final Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put(SlingConstants.PROPERTY_PATH, path);
+        if (changedAttributes.length > 0) {
+            properties.put(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, changedAttributes);
+        }
+        return new Event(topic, properties);
+    }
+
+    @Test
+    public void testHandleEvent() throws Throwable {
+        final HeartbeatHandler handler = new HeartbeatHandler();
+        final Config config = mock(Config.class);
+        when(config.isIncrementalHeartbeatEnabled()).thenReturn(true);
+        when(config.getClusterInstancesPath()).thenReturn("/var/discovery/impl/clusterInstances");
+        when(config.getEstablishedViewPath()).thenReturn("/var/discovery/impl/establishedView");
+        when(config.getOngoingVotingsPath()).thenReturn("/var/discovery/impl/ongoingVotings");
+        PrivateAccessor.setField(handler, "config", config);
+        final HeartbeatView view = (HeartbeatView) PrivateAccessor.getField(handler, "heartbeatView");
+        view.checked(view.getChanges(), Collections.<String>emptySet());
+
+        // heartbeats are noted without being a membership change
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED,
+                "/var/discovery/impl/clusterInstances/a", "lastHeartbeat"));
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED,
+                "/var/discovery/impl/clusterInstances/b/lastHeartbeat"));
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_ADDED,
+                "/var/discovery/impl/clusterInstances/a/announcements/x"));
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED,
+                "/var/discovery/impl/previousView/x"));
+        assertFalse(view.hasChanged());
+        assertEquals(set("a", "b"), view.getLiveInstances(System.currentTimeMillis(), TIMEOUT));
+
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED,
+                "/var/discovery/impl/clusterInstances/a", "lastHeartbeat", "leaderElectionId"));
+        assertTrue(view.hasChanged());
+
+        view.checked(view.getChanges(), set("a", "b"));
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_REMOVED,
+                "/var/discovery/impl/clusterInstances/b"));
+        assertTrue(view.hasChanged());
+        assertEquals(set("a"), view.getLiveInstances(System.currentTimeMillis(), TIMEOUT));
+
+        view.checked(view.getChanges(), set("a"));
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_ADDED,
+                "/var/discovery/impl/ongoingVotings/v"));
+        assertTrue(view.hasChanged());
+
+        view.checked(view.getChanges(), set("a"));
+        handler.handleEvent(event(SlingConstants.TOPIC_RESOURCE_CHANGED,
+                "/var/discovery/impl/establishedView/v"));
+        assertTrue(view.hasChanged());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventHandlerRegistration() throws Throwable {
+        final Config config = mock(Config.class);
+        when(config.getDiscoveryResourcePath()).thenReturn("/var/discovery/impl/");
+        final BundleContext bundleContext = mock(BundleContext.class);
+        final ServiceRegistration registration = mock(ServiceRegistration.class);
+        when(bundleContext.registerService(anyString(), any(), any(Dictionary.class))).thenReturn(registration);
+        final ComponentContext context = mock(ComponentContext.class);
+        when(context.getBundleContext()).thenReturn(bundleContext);
+
+        final HeartbeatHandler handler = new HeartbeatHandler();
+        PrivateAccessor.setField(handler, "config", config);
+        PrivateAccessor.setField(handler, "slingSettingsService", mock(SlingSettingsService.class));
+        PrivateAccessor.setField(handler, "scheduler", mock(Scheduler.class));
+
+        // not registered by default
+        PrivateAccessor.invoke(handler, "activate", new Class[] {ComponentContext.class}, new Object[] {context});
+        verify(bundleContext, never()).registerService(anyString(), any(), any(Dictionary.class));
+        PrivateAccessor.invoke(handler, "deactivate", null, null);
+
+        when(config.isIncrementalHeartbeatEnabled()).thenReturn(true);
+        PrivateAccessor.invoke(handler, "activate", new Class[] {ComponentContext.class}, new Object[] {context});
+        final ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+        verify(bundleContext).registerService(eq(EventHandler.class.getName()), eq(handler), properties.capture());
+        assertEquals("(path=/var/discovery/impl/*)", properties.getValue().get(EventConstants.EVENT_FILTER));
+
+        PrivateAccessor.invoke(handler, "deactivate", null, null);
+        verify(registration).unregister();
+    }
+}
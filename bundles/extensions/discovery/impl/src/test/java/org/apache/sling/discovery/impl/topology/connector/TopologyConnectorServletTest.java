@@ -18,18 +18,43 @@
  */
 package org.apache.sling.discovery.impl.topology.connector;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import junitx.util.PrivateAccessor;
 
+import org.apache.sling.commons.json.JSONObject;
 import org.apache.sling.discovery.impl.Config;
+import org.apache.sling.discovery.impl.cluster.ClusterViewService;
+import org.apache.sling.discovery.impl.common.DefaultClusterViewImpl;
+import org.apache.sling.discovery.impl.common.DefaultInstanceDescriptionImpl;
+import org.apache.sling.discovery.impl.topology.announcement.Announcement;
+import org.apache.sling.discovery.impl.topology.announcement.AnnouncementRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class TopologyConnectorServletTest {
 
@@ -112,4 +137,91 @@ public class TopologyConnectorServletTest {
         assertFalse(servlet.isWhitelisted(getRequest("foo", "3.4.5.6")));
         assertFalse(servlet.isWhitelisted(getRequest("foo", "3.4.5.7")));
     }
+
+    private DefaultClusterViewImpl createClusterView(final String slingId) {
+        final DefaultClusterViewImpl cluster = new DefaultClusterViewImpl(UUID.randomUUID().toString());
+        new DefaultInstanceDescriptionImpl(cluster, true, true, slingId, new HashMap<String, String>());
+        return cluster;
+    }
+
+    private HttpServletRequest getPutRequest(final String slingId, final String body,
+            final Map<String, String> headers) throws Exception {
+        final HttpServletRequest request = getRequest("foo", "x");
+        when(request.getPathInfo()).thenReturn("/connector." + slingId + ".json");
+        when(request.getRequestURI()).thenReturn("/libs/sling/topology/connector." + slingId + ".json");
+        when(request.getReader()).thenReturn(new BufferedReader(new StringReader(body)));
+        when(request.getHeader(anyString())).thenAnswer(new Answer<String>() {
+            public String answer(InvocationOnMock invocation) {
+                return headers.get(invocation.getArguments()[0]);
+            }
+        });
+        return request;
+    }
+
+    private HttpServletResponse getResponse(final StringWriter body,
+            final Map<String, String> headers) throws Exception {
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                headers.put((String) invocation.getArguments()[0], (String) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(response).setHeader(anyString(), anyString());
+        return response;
+    }
+
+    @Test
+    public void testUnchangedAnnouncements() throws Exception {
+        final String clientId = UUID.randomUUID().toString();
+        final String serverId = UUID.randomUUID().toString();
+
+        final AnnouncementRegistry registry = mock(AnnouncementRegistry.class);
+        final ClusterViewService clusterViewService = mock(ClusterViewService.class);
+        when(clusterViewService.getSlingId()).thenReturn(serverId);
+        when(clusterViewService.getClusterView()).thenReturn(createClusterView(serverId));
+        PrivateAccessor.setField(servlet, "announcementRegistry", registry);
+        PrivateAccessor.setField(servlet, "clusterViewService", clusterViewService);
+        PrivateAccessor.setField(servlet, "requestValidator",
+                new TopologyRequestValidator((Config) PrivateAccessor.getField(servlet, "config")));
+        servlet.initWhitelist(new String[] {"foo"});
+
+        final Announcement announcement = new Announcement(clientId);
+        announcement.setLocalCluster(createClusterView(clientId));
+        final String version = TopologyRequestValidator.getVersion(announcement.asComparableJSON());
+
+        // a full announcement is registered and its version acknowledged
+        final Map<String, String> requestHeaders = new HashMap<String, String>();
+        requestHeaders.put(TopologyRequestValidator.VERSION_HEADER, version);
+        final Map<String, String> responseHeaders = new HashMap<String, String>();
+        StringWriter body = new StringWriter();
+        servlet.doPut(getPutRequest(clientId, announcement.asJSON(), requestHeaders),
+                getResponse(body, responseHeaders));
+        assertEquals(version, responseHeaders.get(TopologyRequestValidator.KNOWN_VERSION_HEADER));
+        final String replyVersion = responseHeaders.get(TopologyRequestValidator.VERSION_HEADER);
+        assertNotNull(replyVersion);
+        assertNull(responseHeaders.get(TopologyRequestValidator.UNCHANGED_HEADER));
+        assertEquals(serverId, Announcement.fromJSON(body.toString()).getOwnerId());
+
+        // an unchanged announcement renews the registration, the unchanged reply is only referred to
+        final JSONObject unchanged = new JSONObject();
+        unchanged.put(TopologyRequestValidator.UNCHANGED_SINCE, version);
+        requestHeaders.put(TopologyRequestValidator.UNCHANGED_HEADER, "true");
+        requestHeaders.put(TopologyRequestValidator.KNOWN_VERSION_HEADER, replyVersion);
+        responseHeaders.clear();
+        body = new StringWriter();
+        servlet.doPut(getPutRequest(clientId, unchanged.toString(), requestHeaders),
+                getResponse(body, responseHeaders));
+        verify(registry, times(2)).registerAnnouncement(any(Announcement.class));
+        assertEquals(version, responseHeaders.get(TopologyRequestValidator.KNOWN_VERSION_HEADER));
+        assertEquals("true", responseHeaders.get(TopologyRequestValidator.UNCHANGED_HEADER));
+        assertEquals(replyVersion, new JSONObject(body.toString()).getString(TopologyRequestValidator.UNCHANGED_SINCE));
+
+        // an unknown version asks the client for the full announcement
+        unchanged.put(TopologyRequestValidator.UNCHANGED_SINCE, "unknown");
+        final HttpServletResponse conflict = getResponse(new StringWriter(), new HashMap<String, String>());
+        servlet.doPut(getPutRequest(clientId, unchanged.toString(), requestHeaders), conflict);
+        verify(conflict).sendError(HttpServletResponse.SC_CONFLICT);
+        verify(registry, times(2)).registerAnnouncement(any(Announcement.class));
+    }
 }
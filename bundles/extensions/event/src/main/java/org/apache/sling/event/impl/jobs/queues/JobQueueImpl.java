@@ -517,6 +517,15 @@ public class JobQueueImpl
         this.cache.handleNewTopics(topics);
     }
 
+    /**
+     * Inform the queue about a new job.
+     * @param topic the topic of the job
+     * @param jobId the id of the job
+     */
+    public void wakeUpQueue(final String topic, final String jobId) {
+        this.cache.handleNewJob(topic, jobId);
+    }
+
     /**
      * Put a job back in the queue
      * @param handler The job handler
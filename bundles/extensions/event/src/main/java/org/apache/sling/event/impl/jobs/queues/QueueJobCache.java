@@ -19,10 +19,12 @@
 package org.apache.sling.event.impl.jobs.queues;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
@@ -47,14 +49,22 @@ import org.slf4j.LoggerFactory;
 /**
  * The queue job cache caches jobs per queue based on the topics the queue is actively
  * processing.
+ *
+ * Jobs are cached per topic. A topic is only scanned in the resource tree if its
+ * cached jobs are exhausted and not all jobs of the topic are known. Once all
+ * jobs of a topic are cached, new jobs for this topic are read directly
+ * based on the job added notifications instead of scanning the topic again.
  */
 public class QueueJobCache {
 
     /** Logger. */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    /** The minimum of pre loaded jobs for a topic. */
+    private static final int MIN_PRELOAD_LIMIT = 10;
+
     /** The maximum of pre loaded jobs for a topic. */
-    private final int maxPreloadLimit = 10;
+    private static final int MAX_PRELOAD_LIMIT = 1000;
 
     /** The job manager configuration. */
     private final JobManagerConfiguration configuration;
@@ -65,8 +75,14 @@ public class QueueJobCache {
     /** The set of new topics to scan. */
     private final Set<String> topicsWithNewJobs = new HashSet<String>();
 
-    /** The cache of current objects. */
-    private final List<JobImpl> cache = new ArrayList<JobImpl>();
+    /** The ids of new jobs per topic - guarded by {@link #topicsWithNewJobs}. */
+    private final Map<String, Set<String>> newJobIds = new HashMap<String, Set<String>>();
+
+    /** The cache of current objects, per topic. */
+    private final Map<String, TopicCache> cache = new LinkedHashMap<String, TopicCache>();
+
+    /** The topic of the last job returned - for round robin queues. */
+    private String lastTopic;
 
     /** The queue type. */
     private final QueueConfiguration.Type queueType;
@@ -106,11 +122,16 @@ public class QueueJobCache {
     public boolean isEmpty() {
         boolean result = true;
         synchronized ( this.cache ) {
-            result = this.cache.isEmpty();
+            for(final TopicCache topicCache : this.cache.values()) {
+                if ( !topicCache.jobs.isEmpty() || !topicCache.isComplete() ) {
+                    result = false;
+                    break;
+                }
+            }
         }
         if ( result ) {
             synchronized ( this.topicsWithNewJobs ) {
-                result = this.topicsWithNewJobs.isEmpty();
+                result = this.topicsWithNewJobs.isEmpty() && this.newJobIds.isEmpty();
             }
         }
         return result;
@@ -125,11 +146,23 @@ public class QueueJobCache {
      * No need to sync as this is called from the constructor.
      */
     private void fillCache(final String queueName, final StatisticsManager statisticsManager) {
-        final Set<String> checkingTopics = new HashSet<String>();
-        checkingTopics.addAll(this.topics);
-        if ( !checkingTopics.isEmpty() ) {
-            this.loadJobs(queueName, checkingTopics, statisticsManager);
+        for(final String topic : this.topics) {
+            this.getTopicCache(topic).needsScan = true;
         }
+        this.refill(queueName, false, statisticsManager);
+    }
+
+    /**
+     * Get the cache for a topic, create it if necessary.
+     * Must be called while holding the lock on the cache.
+     */
+    private TopicCache getTopicCache(final String topic) {
+        TopicCache topicCache = this.cache.get(topic);
+        if ( topicCache == null ) {
+            topicCache = new TopicCache();
+            this.cache.put(topic, topicCache);
+        }
+        return topicCache;
     }
 
     /**
@@ -149,22 +182,10 @@ public class QueueJobCache {
                 boolean retry;
                 do {
                     retry = false;
-                    if ( this.cache.isEmpty() ) {
-                        final Set<String> checkingTopics = new HashSet<String>();
-                        synchronized ( this.topicsWithNewJobs ) {
-                            checkingTopics.addAll(this.topicsWithNewJobs);
-                            this.topicsWithNewJobs.clear();
-                        }
-                        if ( doFull ) {
-                            checkingTopics.addAll(this.topics);
-                        }
-                        if ( !checkingTopics.isEmpty() ) {
-                            this.loadJobs(queue.getName(), checkingTopics, statisticsManager);
-                        }
-                    }
+                    this.refill(queue.getName(), doFull, statisticsManager);
 
-                    if ( !this.cache.isEmpty() ) {
-                        final JobImpl job = this.cache.remove(0);
+                    final JobImpl job = this.removeNextJob();
+                    if ( job != null ) {
                         final JobExecutor consumer = jobConsumerManager.getExecutor(job.getTopic());
 
                         handler = new JobHandler(job, consumer, this.configuration);
@@ -194,75 +215,163 @@ public class QueueJobCache {
     }
 
     /**
-     * Load the next N x numberOf(topics) jobs
-     * @param checkingTopics The set of topics to check.
+     * Remove the next job from the cache based on the queue type.
+     * Must be called while holding the lock on the cache.
+     * @return The next job or {@code null}
      */
-    private void loadJobs( final String queueName, final Set<String> checkingTopics,
-            final StatisticsManager statisticsManager) {
-        logger.debug("Starting jobs loading from {}...", checkingTopics);
-
-        final Map<String, List<JobImpl>> topicCache = new HashMap<String, List<JobImpl>>();
+    private JobImpl removeNextJob() {
+        String selectedTopic = null;
+        TopicCache selected = null;
+        if ( this.queueType == Type.ORDERED
+             || this.queueType == Type.UNORDERED) {
+            // oldest job of all topics
+            for(final Map.Entry<String, TopicCache> entry : this.cache.entrySet()) {
+                final TopicCache topicCache = entry.getValue();
+                if ( !topicCache.jobs.isEmpty()
+                     && (selected == null || topicCache.jobs.getFirst().compareTo(selected.jobs.getFirst()) < 0) ) {
+                    selectedTopic = entry.getKey();
+                    selected = topicCache;
+                }
+            }
+        } else {
+            // topic round robin
+            final List<String> candidates = new ArrayList<String>(this.cache.keySet());
+            final int start = this.lastTopic == null ? 0 : candidates.indexOf(this.lastTopic) + 1;
+            for(int i = 0; i < candidates.size() && selected == null; i++) {
+                final String topic = candidates.get((start + i) % candidates.size());
+                final TopicCache topicCache = this.cache.get(topic);
+                if ( !topicCache.jobs.isEmpty() ) {
+                    selectedTopic = topic;
+                    selected = topicCache;
+                }
+            }
+        }
+        if ( selected == null ) {
+            return null;
+        }
+        this.lastTopic = selectedTopic;
+        final JobImpl job = selected.jobs.removeFirst();
+        selected.jobIds.remove(job.getId());
+        if ( selected.jobs.isEmpty() && !selected.isComplete() ) {
+            // there are more jobs in the resource tree
+            selected.needsScan = true;
+        }
+        return job;
+    }
 
-        final ResourceResolver resolver = this.configuration.createResourceResolver();
-        try {
-            final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
-            // sanity check - should never be null
-            if ( baseResource != null ) {
-                for(final String topic : checkingTopics) {
+    /**
+     * Update the cache with the information about new jobs and
+     * scan all topics which need to be scanned.
+     * Must be called while holding the lock on the cache.
+     */
+    private void refill(final String queueName,
+            final boolean doFull,
+            final StatisticsManager statisticsManager) {
+        final Set<String> checkingTopics = new HashSet<String>();
+        final Map<String, Set<String>> checkingJobIds = new HashMap<String, Set<String>>();
+        synchronized ( this.topicsWithNewJobs ) {
+            checkingTopics.addAll(this.topicsWithNewJobs);
+            this.topicsWithNewJobs.clear();
+            checkingJobIds.putAll(this.newJobIds);
+            this.newJobIds.clear();
+        }
+        boolean isEmpty = true;
+        for(final TopicCache topicCache : this.cache.values()) {
+            if ( !topicCache.jobs.isEmpty() ) {
+                isEmpty = false;
+                break;
+            }
+        }
+        if ( doFull && isEmpty ) {
+            checkingTopics.addAll(this.topics);
+        }
+        for(final String topic : checkingTopics) {
+            this.getTopicCache(topic).needsScan = true;
+        }
 
-                    final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
-                    if ( topicResource != null ) {
-                        topicCache.put(topic, loadJobs(queueName, topic, topicResource, statisticsManager));
-                    }
+        final List<String> scanTopics = new ArrayList<String>();
+        final Map<String, Set<String>> readJobIds = new HashMap<String, Set<String>>();
+        for(final Map.Entry<String, TopicCache> entry : this.cache.entrySet()) {
+            final TopicCache topicCache = entry.getValue();
+            if ( topicCache.needsScan ) {
+                // new jobs of a topic which is not completely cached yet are found by the scan
+                if ( topicCache.jobs.isEmpty() ) {
+                    scanTopics.add(entry.getKey());
+                }
+            } else {
+                final Set<String> ids = checkingJobIds.get(entry.getKey());
+                if ( ids != null ) {
+                    readJobIds.put(entry.getKey(), ids);
                 }
             }
-        } finally {
-            resolver.close();
         }
-        orderTopics(topicCache);
+        for(final Map.Entry<String, Set<String>> entry : checkingJobIds.entrySet()) {
+            if ( !this.cache.containsKey(entry.getKey()) ) {
+                this.getTopicCache(entry.getKey()).needsScan = true;
+                scanTopics.add(entry.getKey());
+            }
+        }
 
-        logger.debug("Finished jobs loading {}", this.cache.size());
+        if ( !scanTopics.isEmpty() || !readJobIds.isEmpty() ) {
+            final ResourceResolver resolver = this.configuration.createResourceResolver();
+            try {
+                if ( !scanTopics.isEmpty() ) {
+                    this.loadJobs(resolver, queueName, scanTopics, statisticsManager);
+                }
+                for(final Map.Entry<String, Set<String>> entry : readJobIds.entrySet()) {
+                    this.readJobs(resolver, queueName, entry.getKey(), entry.getValue(), statisticsManager);
+                }
+            } finally {
+                resolver.close();
+            }
+        }
     }
 
     /**
-     * Order the topics based on the queue type and put them in the cache.
-     * @param topicCache The topic based cache
+     * Load the next N jobs for each of the topics.
+     * @param checkingTopics The topics to check.
      */
-    private void orderTopics(final Map<String, List<JobImpl>> topicCache) {
-        if ( this.queueType == Type.ORDERED
-             || this.queueType == Type.UNORDERED) {
-            for(final List<JobImpl> list : topicCache.values()) {
-                this.cache.addAll(list);
-            }
-            Collections.sort(this.cache);
-        } else {
-            // topic round robin
-            boolean done = true;
-            do {
-                done = true;
-                for(final Map.Entry<String, List<JobImpl>> entry : topicCache.entrySet()) {
-                    if ( !entry.getValue().isEmpty() ) {
-                        this.cache.add(entry.getValue().remove(0));
-                        if ( !entry.getValue().isEmpty() ) {
-                            done = false;
-                        }
-                    }
+    private void loadJobs(final ResourceResolver resolver,
+            final String queueName,
+            final List<String> checkingTopics,
+            final StatisticsManager statisticsManager) {
+        logger.debug("Starting jobs loading from {}...", checkingTopics);
+
+        final Resource baseResource = resolver.getResource(this.configuration.getLocalJobsPath());
+        // sanity check - should never be null
+        if ( baseResource != null ) {
+            for(final String topic : checkingTopics) {
+                final TopicCache topicCache = this.cache.get(topic);
+                final Resource topicResource = baseResource.getChild(topic.replace('/', '.'));
+                if ( topicResource != null ) {
+                    loadJobs(queueName, topic, topicResource, topicCache, statisticsManager);
+                } else {
+                    // no jobs at all for this topic
+                    topicCache.needsScan = false;
+                    topicCache.hasMoreJobs = false;
                 }
-            } while ( !done ) ;
+            }
         }
+
+        logger.debug("Finished jobs loading from {}", checkingTopics);
     }
 
     /**
-     * Load the next N x numberOf(topics) jobs.
+     * Load the next N jobs of a topic.
+     * If the preload limit has been reached, the topic is scanned again once
+     * the cached jobs are exhausted - in this case the limit is increased for
+     * the next scan.
      * @param topic The topic
      * @param topicResource The parent resource of the jobs
-     * @return The cache which will be filled with the jobs.
+     * @param topicCache The cache which will be filled with the jobs.
      */
-    private List<JobImpl> loadJobs(final String queueName, final String topic,
+    private void loadJobs(final String queueName, final String topic,
             final Resource topicResource,
+            final TopicCache topicCache,
             final StatisticsManager statisticsManager) {
         logger.debug("Loading jobs from topic {}", topic);
         final List<JobImpl> list = new ArrayList<JobImpl>();
+        final int limit = topicCache.preloadLimit;
 
         final AtomicBoolean scanTopic = new AtomicBoolean(false);
 
@@ -272,8 +381,7 @@ public class QueueJobCache {
             public boolean handle(final JobImpl job) {
                 if ( job.getProcessingStarted() == null && !job.hasReadErrors() ) {
                     list.add(job);
-                    statisticsManager.jobQueued(queueName, topic);
-                    if ( list.size() == maxPreloadLimit ) {
+                    if ( list.size() == limit ) {
                         scanTopic.set(true);
                     }
                 } else {
@@ -282,17 +390,50 @@ public class QueueJobCache {
                     }
                     logger.debug("Ignoring job because {} or {}", job.getProcessingStarted(), job.hasReadErrors());
                 }
-                return list.size() < maxPreloadLimit;
+                return list.size() < limit;
             }
         });
-        if ( scanTopic.get() ) {
-            synchronized ( this.topicsWithNewJobs ) {
-                this.topicsWithNewJobs.add(topic);
+        for(final JobImpl job : list) {
+            if ( topicCache.add(job) ) {
+                statisticsManager.jobQueued(queueName, topic);
             }
         }
+        topicCache.needsScan = false;
+        topicCache.hasMoreJobs = scanTopic.get();
+        if ( topicCache.hasMoreJobs ) {
+            topicCache.preloadLimit = Math.min(MAX_PRELOAD_LIMIT, limit * 2);
+        } else {
+            topicCache.preloadLimit = Math.max(MIN_PRELOAD_LIMIT, limit / 2);
+        }
         logger.debug("Caching {} jobs for topic {}", list.size(), topic);
+    }
 
-        return list;
+    /**
+     * Read new jobs of a completely cached topic directly.
+     */
+    private void readJobs(final ResourceResolver resolver,
+            final String queueName,
+            final String topic,
+            final Set<String> jobIds,
+            final StatisticsManager statisticsManager) {
+        final TopicCache topicCache = this.cache.get(topic);
+        final String topicPath = this.configuration.getLocalJobsPath() + '/' + topic.replace('/', '.') + '/';
+        for(final String jobId : jobIds) {
+            if ( !topicCache.jobIds.contains(jobId) ) {
+                final JobImpl job = Utility.readJob(logger, resolver.getResource(topicPath + jobId));
+                if ( job != null && job.getProcessingStarted() == null && !job.hasReadErrors() ) {
+                    if ( topicCache.add(job) ) {
+                        statisticsManager.jobQueued(queueName, topic);
+                    }
+                } else if ( job == null || job.hasReadErrors() ) {
+                    // fall back to scanning the topic
+                    topicCache.hasMoreJobs = true;
+                    if ( topicCache.jobs.isEmpty() ) {
+                        topicCache.needsScan = true;
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -307,6 +448,26 @@ public class QueueJobCache {
         this.topics.addAll(topics);
     }
 
+    /**
+     * Inform the queue cache about a new job.
+     * If all jobs of the topic are cached, the job is read directly
+     * instead of scanning the topic again.
+     * @param topic The topic of the job
+     * @param jobId The id of the job
+     */
+    public void handleNewJob(final String topic, final String jobId) {
+        logger.debug("Update cache to handle new job {} for topic {}", jobId, topic);
+        synchronized ( this.topicsWithNewJobs ) {
+            Set<String> ids = this.newJobIds.get(topic);
+            if ( ids == null ) {
+                ids = new HashSet<String>();
+                this.newJobIds.put(topic, ids);
+            }
+            ids.add(jobId);
+        }
+        this.topics.add(topic);
+    }
+
     /**
      * Reschedule a job
      * Reschedule the job and add it back into the cache.
@@ -315,13 +476,60 @@ public class QueueJobCache {
     public void reschedule(final String queueName, final JobHandler handler, final StatisticsManager statisticsManager) {
         synchronized ( this.cache ) {
             if ( handler.reschedule() ) {
+                final JobImpl job = handler.getJob();
+                final TopicCache topicCache = this.getTopicCache(job.getTopic());
                 if ( this.queueType == Type.ORDERED ) {
-                    this.cache.add(0, handler.getJob());
+                    topicCache.jobs.addFirst(job);
                 } else {
-                    this.cache.add(handler.getJob());
+                    topicCache.jobs.addLast(job);
+                }
+                topicCache.jobIds.add(job.getId());
+                statisticsManager.jobQueued(queueName, job.getTopic());
+            }
+        }
+    }
+
+    /**
+     * The cached jobs of a single topic.
+     */
+    private static final class TopicCache {
+
+        /** The cached jobs. */
+        public final LinkedList<JobImpl> jobs = new LinkedList<JobImpl>();
+
+        /** The ids of the cached jobs. */
+        public final Set<String> jobIds = new HashSet<String>();
+
+        /** Whether the topic has to be scanned. */
+        public boolean needsScan;
+
+        /** Whether the topic contains more jobs than cached. */
+        public boolean hasMoreJobs = true;
+
+        /** The number of jobs to load with the next scan. */
+        public int preloadLimit = MIN_PRELOAD_LIMIT;
+
+        public boolean isComplete() {
+            return !this.needsScan && !this.hasMoreJobs;
+        }
+
+        /**
+         * Add a job in creation order.
+         * @return {@code true} if the job has been added, {@code false} if it is already cached.
+         */
+        public boolean add(final JobImpl job) {
+            if ( !this.jobIds.add(job.getId()) ) {
+                return false;
+            }
+            final ListIterator<JobImpl> iter = this.jobs.listIterator(this.jobs.size());
+            while ( iter.hasPrevious() ) {
+                if ( iter.previous().compareTo(job) <= 0 ) {
+                    iter.next();
+                    break;
                 }
-                statisticsManager.jobQueued(queueName, handler.getJob().getTopic());
             }
+            iter.add(job);
+            return true;
         }
     }
 }
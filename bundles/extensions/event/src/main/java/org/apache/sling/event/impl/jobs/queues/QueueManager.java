@@ -219,9 +219,11 @@ public class QueueManager
      *
      * @param queueInfo The queue info
      * @param topics The topics
+     * @param jobId The id of the new job or {@code null}
      */
     private void start(final QueueInfo queueInfo,
-                       final Set<String> topics) {
+                       final Set<String> topics,
+                       final String jobId) {
         final InternalQueueConfiguration config = queueInfo.queueConfiguration;
         // get or create queue
         boolean isNewQueue = false;
@@ -247,7 +249,11 @@ public class QueueManager
         }
         if ( queue != null ) {
             if ( !isNewQueue ) {
-                queue.wakeUpQueue(topics);
+                if ( jobId != null && topics.size() == 1 ) {
+                    queue.wakeUpQueue(topics.iterator().next(), jobId);
+                } else {
+                    queue.wakeUpQueue(topics);
+                }
             }
             queue.startJobs();
         }
@@ -370,7 +376,7 @@ public class QueueManager
         final Map<QueueInfo, Set<String>> mapping = this.updateTopicMapping(topics);
         // start queues
         for(final Map.Entry<QueueInfo, Set<String>> entry : mapping.entrySet() ) {
-            this.start(entry.getKey(), entry.getValue());
+            this.start(entry.getKey(), entry.getValue(), null);
         }
     }
 
@@ -407,8 +413,9 @@ public class QueueManager
     public void handleEvent(final Event event) {
         final String topic = (String)event.getProperty(NotificationConstants.NOTIFICATION_PROPERTY_JOB_TOPIC);
         if ( this.isActive.get() && topic != null ) {
+            final String jobId = (String)event.getProperty(NotificationConstants.NOTIFICATION_PROPERTY_JOB_ID);
             final QueueInfo info = this.configuration.getQueueConfigurationManager().getQueueInfo(topic);
-            this.start(info, Collections.singleton(topic));
+            this.start(info, Collections.singleton(topic), jobId);
         }
     }
 
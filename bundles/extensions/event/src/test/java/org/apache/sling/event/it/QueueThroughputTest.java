@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.event.it;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.event.impl.jobs.config.ConfigurationConstants;
+import org.apache.sling.event.jobs.Job;
+import org.apache.sling.event.jobs.JobManager;
+import org.apache.sling.event.jobs.NotificationConstants;
+import org.apache.sling.event.jobs.Queue;
+import org.apache.sling.event.jobs.QueueConfiguration;
+import org.apache.sling.event.jobs.consumer.JobConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.ops4j.pax.exam.junit.PaxExam;
+import org.ops4j.pax.exam.spi.reactors.ExamReactorStrategy;
+import org.ops4j.pax.exam.spi.reactors.PerMethod;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the number of jobs per second processed by an ordered and
+ * an unordered queue with jobs spread across several topics.
+ */
+@RunWith(PaxExam.class)
+@ExamReactorStrategy(PerMethod.class)
+public class QueueThroughputTest extends AbstractJobHandlingTest {
+
+    private static final String ORDERED_QUEUE_NAME = "throughputorderedqueue";
+    private static final String ORDERED_TOPIC = "sling/throughputordered";
+
+    private static final String UNORDERED_QUEUE_NAME = "throughputunorderedqueue";
+    private static final String UNORDERED_TOPIC = "sling/throughputunordered";
+
+    private static final int NUM_TOPICS = 10;
+    private static final int NUM_JOBS = 2000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private String orderedConfPid;
+
+    private String unorderedConfPid;
+
+    @Override
+    @Before
+    public void setup() throws IOException {
+        super.setup();
+
+        this.orderedConfPid = this.createQueue(ORDERED_QUEUE_NAME, QueueConfiguration.Type.ORDERED, ORDERED_TOPIC, 1);
+        this.unorderedConfPid = this.createQueue(UNORDERED_QUEUE_NAME, QueueConfiguration.Type.UNORDERED, UNORDERED_TOPIC, 5);
+
+        this.sleep(1000L);
+    }
+
+    private String createQueue(final String name, final QueueConfiguration.Type type, final String topic, final int maxParallel)
+    throws IOException {
+        final org.osgi.service.cm.Configuration config = this.configAdmin.createFactoryConfiguration("org.apache.sling.event.jobs.QueueConfiguration", null);
+        final Dictionary<String, Object> props = new Hashtable<String, Object>();
+        props.put(ConfigurationConstants.PROP_NAME, name);
+        props.put(ConfigurationConstants.PROP_TYPE, type.name());
+        props.put(ConfigurationConstants.PROP_TOPICS, topic + "/*");
+        props.put(ConfigurationConstants.PROP_RETRIES, 2);
+        props.put(ConfigurationConstants.PROP_RETRY_DELAY, 2000L);
+        props.put(ConfigurationConstants.PROP_MAX_PARALLEL, maxParallel);
+        config.update(props);
+
+        return config.getPid();
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        this.removeConfiguration(this.orderedConfPid);
+        this.removeConfiguration(this.unorderedConfPid);
+        super.cleanup();
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    public void testOrderedQueueThroughput() throws Exception {
+        this.measure(ORDERED_QUEUE_NAME, ORDERED_TOPIC);
+    }
+
+    @Test(timeout = DEFAULT_TEST_TIMEOUT)
+    public void testUnorderedQueueThroughput() throws Exception {
+        this.measure(UNORDERED_QUEUE_NAME, UNORDERED_TOPIC);
+    }
+
+    private void measure(final String queueName, final String topic) throws Exception {
+        final JobManager jobManager = this.getJobManager();
+
+        final AtomicInteger count = new AtomicInteger(0);
+
+        final ServiceRegistration jcReg = this.registerJobConsumer(topic + "/*",
+                new JobConsumer() {
+
+                    @Override
+                    public JobResult process(final Job job) {
+                        return JobResult.OK;
+                    }
+                });
+        final ServiceRegistration ehReg = this.registerEventHandler(NotificationConstants.TOPIC_JOB_FINISHED,
+                new EventHandler() {
+
+                    @Override
+                    public void handleEvent(final Event event) {
+                        count.incrementAndGet();
+                    }
+                });
+
+        try {
+            // we first sent one job to get the queue started
+            jobManager.addJob(topic + "/start", null);
+            while ( count.get() < 1 ) {
+                sleep(50);
+            }
+
+            final Queue q = jobManager.getQueue(queueName);
+            assertNotNull("Queue '" + queueName + "' should exist!", q);
+
+            // add all jobs while the queue is suspended
+            q.suspend();
+            for(int i = 0; i < NUM_JOBS; i++ ) {
+                jobManager.addJob(topic + "/sub" + (i % NUM_TOPICS), null);
+            }
+
+            final long start = System.currentTimeMillis();
+            q.resume();
+            while ( count.get() < NUM_JOBS + 1 ) {
+                sleep(50);
+            }
+            final long duration = Math.max(1, System.currentTimeMillis() - start);
+
+            logger.info("Queue {} processed {} jobs of {} topics in {}ms: {} jobs/sec",
+                    new Object[] {queueName, NUM_JOBS, NUM_TOPICS, duration, NUM_JOBS * 1000L / duration});
+
+            assertEquals("Finished count", NUM_JOBS + 1, q.getStatistics().getNumberOfFinishedJobs());
+            assertEquals("Failed count", 0, q.getStatistics().getNumberOfFailedJobs());
+        } finally {
+            jcReg.unregister();
+            ehReg.unregister();
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -65,7 +66,7 @@ public class JcrResourceBundle extends ResourceBundle {
 
     static final String QUERY_LANGUAGE_ROOTS = "//element(*,mix:language)[@jcr:language]";
 
-    private final Map<String, Object> resources;
+    private final MessageDictionary resources;
 
     private final Locale locale;
 
@@ -73,6 +74,15 @@ public class JcrResourceBundle extends ResourceBundle {
 
     private final Set<String> languageRoots = new HashSet<String>();
 
+    /** time in ms used to load this resource bundle */
+    private final long loadTime;
+
+    /**
+     * time of the last access to this bundle through the provider, used by
+     * the {@link JcrResourceBundleProvider} to evict bundles from its cache
+     */
+    volatile long lastAccess;
+
     JcrResourceBundle(Locale locale, String baseName,
             ResourceResolver resourceResolver) {
         this.locale = locale;
@@ -83,13 +93,13 @@ public class JcrResourceBundle extends ResourceBundle {
         long start = System.currentTimeMillis();
         resourceResolver.refresh();
         Set<String> roots = loadPotentialLanguageRoots(resourceResolver, locale, baseName);
-        this.resources = loadFully(resourceResolver, roots, this.languageRoots);
+        this.resources = new MessageDictionary(loadFully(resourceResolver, roots, this.languageRoots));
 
-        long end = System.currentTimeMillis();
+        this.loadTime = System.currentTimeMillis() - start;
         if (log.isInfoEnabled()) {
             log.info(
                 "Finished loading {} entries for '{}' (basename: {}) in {}ms",
-                new Object[] { resources.size(), locale, baseName == null ? "<none>" : baseName, (end - start)}
+                new Object[] { resources.size(), locale, baseName == null ? "<none>" : baseName, loadTime}
             );
         }
     }
@@ -98,6 +108,21 @@ public class JcrResourceBundle extends ResourceBundle {
         return languageRoots;
     }
 
+    /**
+     * Returns the time in milliseconds it took to load this bundle.
+     */
+    long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the messages of this
+     * bundle, not including its parents.
+     */
+    long getEstimatedSize() {
+        return resources.getEstimatedSize();
+    }
+
     @Override
     protected void setParent(ResourceBundle parent) {
         super.setParent(parent);
@@ -216,8 +241,8 @@ public class JcrResourceBundle extends ResourceBundle {
             }
         }
 
-        // linked hash map to keep order (not functionally important, but helpful for dictionary debugging)
-        final Map<String, Object> result = new LinkedHashMap<String, Object>();
+        // the merged messages are stored sorted by key in a MessageDictionary
+        final Map<String, Object> result = new HashMap<String, Object>();
 
         // first, add everything that's not under a search path (e.g. /content)
         // below, same strings inside a search path dictionary would overlay them since
@@ -322,32 +347,37 @@ public class JcrResourceBundle extends ResourceBundle {
     }
 
     private Set<String> loadPotentialLanguageRoots(ResourceResolver resourceResolver, Locale locale, String baseName) {
-        final String localeString = locale.toString();
-        final String localeStringLower = localeString.toLowerCase();
-        final String localeRFC4646String = toRFC4646String(locale);
-        final String localeRFC4646StringLower = localeRFC4646String.toLowerCase();
-
         final Set<String> paths = new LinkedHashSet<String>();
         final Iterator<Resource> bundles = resourceResolver.findResources(QUERY_LANGUAGE_ROOTS, "xpath");
         while (bundles.hasNext()) {
             Resource bundle = bundles.next();
             ValueMap properties = bundle.adaptTo(ValueMap.class);
             String language = properties.get(PROP_LANGUAGE, String.class);
-            if (language != null && language.length() > 0) {
-                if (language.equals(localeString)
-                        || language.equals(localeStringLower)
-                        || language.equals(localeRFC4646String)
-                        || language.equals(localeRFC4646StringLower)) {
-
-                    if (baseName == null || baseName.equals(properties.get(PROP_BASENAME, ""))) {
-                        paths.add(bundle.getPath());
-                    }
+            if (isLanguageOf(language, locale)) {
+                if (baseName == null || baseName.equals(properties.get(PROP_BASENAME, ""))) {
+                    paths.add(bundle.getPath());
                 }
             }
         }
         return Collections.unmodifiableSet(paths);
     }
 
+    /**
+     * Returns <code>true</code> if the <code>jcr:language</code> value of a
+     * language root denotes the given locale.
+     */
+    static boolean isLanguageOf(final String language, final Locale locale) {
+        if (language == null || language.length() == 0) {
+            return false;
+        }
+        final String localeString = locale.toString();
+        final String localeRFC4646String = toRFC4646String(locale);
+        return language.equals(localeString)
+                || language.equals(localeString.toLowerCase())
+                || language.equals(localeRFC4646String)
+                || language.equals(localeRFC4646String.toLowerCase());
+    }
+
     // Would be nice if Locale.toString() output RFC 4646, but it doesn't
     private static String toRFC4646String(Locale locale) {
         return locale.toString().replace('_', '-');
@@ -37,6 +37,7 @@ import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Property;
@@ -77,6 +78,10 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private static final int DEFAULT_INVALIDATION_DELAY = 5000;
 
+    private static final long DEFAULT_CACHE_MAX_SIZE = 0;
+
+    private static final String STATISTICS_OBJECT_NAME = "org.apache.sling:type=i18n,service=ResourceBundleCache";
+
     @Property(value = "")
     private static final String PROP_USER = "user";
 
@@ -92,12 +97,21 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
     @Property(longValue = DEFAULT_INVALIDATION_DELAY)
     private static final String PROP_INVALIDATION_DELAY = "invalidation.delay";
 
+    @Property(longValue = DEFAULT_CACHE_MAX_SIZE)
+    private static final String PROP_CACHE_MAX_SIZE = "cache.max.size";
+
     @Reference
     private Scheduler scheduler;
 
     /** job names of scheduled jobs for reloading individual bundles */
     private final Collection<String> scheduledJobNames = Collections.synchronizedList(new ArrayList<String>()) ;
 
+    /** keys of the bundles for which a reload job is scheduled but not run yet */
+    private final Set<Key> pendingReloads = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+
+    /** whether a job for reloading all bundles is scheduled but not run yet */
+    private final AtomicBoolean fullReloadPending = new AtomicBoolean();
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -148,6 +162,20 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private long invalidationDelay;
 
+    /**
+     * The maximum estimated size in bytes of the cached bundles. If the cache
+     * grows larger, the least recently used bundles are evicted. Zero if the
+     * cache is unbounded.
+     */
+    private long maxCacheWeight;
+
+    /** lock serializing cache evictions */
+    private final Object evictionLock = new Object();
+
+    private ResourceBundleCacheStatistics statistics;
+
+    private ServiceRegistration statisticsRegistration;
+
     // ---------- ResourceBundleProvider ---------------------------------------
 
     /**
@@ -194,25 +222,27 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
             log.trace("handleEvent: Detecting event {} for path '{}'", event, path);
 
             // if this change was on languageRootPath level this might change basename and locale as well, therefore
-            // invalidate everything
+            // reload the bundles using the root and the bundles of the language now set on the root
             if (languageRootPaths.contains(path)) {
                 log.debug(
-                        "handleEvent: Detected change of cached language root '{}', removing all cached ResourceBundles",
+                        "handleEvent: Detected change of cached language root '{}', reloading affected ResourceBundles",
                         path);
-                scheduleReloadBundles(true);
+                for (final Key key : getKeysUsingRoot(path)) {
+                    scheduleReloadBundle(key);
+                }
+                scheduleReloadLanguage(path, false);
             } else {
-                // if it is only a change below a root path, only messages of one resource bundle can be affected!
+                // if it is only a change below a root path, only the messages of the bundles using the root are affected
                 for (final String root : languageRootPaths) {
                     if (path.startsWith(root)) {
-                        // figure out which JcrResourceBundle from the cached ones is affected
-                        for (JcrResourceBundle bundle : resourceBundleCache.values()) {
-                            if (bundle.getLanguageRootPaths().contains(root)) {
-                                // reload it
-                                log.debug("handleEvent: Resource changes below '{}', reloading ResourceBundle '{}'",
-                                        root, bundle);
-                                scheduleReloadBundle(bundle);
-                                return;
+                        final Collection<Key> keys = getKeysUsingRoot(root);
+                        if (!keys.isEmpty()) {
+                            log.debug("handleEvent: Resource changes below '{}', reloading ResourceBundles {}",
+                                    root, keys);
+                            for (final Key key : keys) {
+                                scheduleReloadBundle(key);
                             }
+                            return;
                         }
                         log.debug("handleEvent: No cached resource bundle found with root '{}'", root);
                         break;
@@ -220,12 +250,70 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
                 }
                 // may be a completely new dictionary
                 if (isDictionaryResource(path, event)) {
-                    scheduleReloadBundles(true);
+                    scheduleReloadLanguage(path, true);
                 }
             }
         }
     }
 
+    /**
+     * Returns the keys of the cached bundles containing messages of the
+     * given language root.
+     */
+    private Collection<Key> getKeysUsingRoot(final String root) {
+        final Collection<Key> keys = new ArrayList<Key>();
+        for (final Map.Entry<Key, JcrResourceBundle> entry : resourceBundleCache.entrySet()) {
+            if (entry.getValue().getLanguageRootPaths().contains(root)) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Schedules the reload of the cached bundles for the language of the
+     * language root containing the given path. Bundles of other languages
+     * cannot contain the messages of this language root.
+     *
+     * @param path The path of the changed resource
+     * @param reloadAllIfUnknown Whether to reload all bundles if the language
+     *            of the resource cannot be determined
+     */
+    private void scheduleReloadLanguage(final String path, final boolean reloadAllIfUnknown) {
+        final String language = findLanguage(path);
+        if (language == null) {
+            if (reloadAllIfUnknown) {
+                log.debug("handleEvent: No language found for '{}', reloading all ResourceBundles", path);
+                scheduleReloadBundles(true);
+            }
+            return;
+        }
+        for (final Map.Entry<Key, JcrResourceBundle> entry : resourceBundleCache.entrySet()) {
+            if (JcrResourceBundle.isLanguageOf(language, entry.getKey().locale)) {
+                log.debug("handleEvent: Dictionary of language '{}' changed at '{}', reloading ResourceBundle {}",
+                        new Object[] {language, path, entry.getKey()});
+                scheduleReloadBundle(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the language of the closest language root containing the
+     * resource at the given path or <code>null</code> if there is none.
+     */
+    private String findLanguage(final String path) {
+        resourceResolver.refresh();
+        Resource resource = resourceResolver.getResource(path);
+        while (resource != null) {
+            final ValueMap valueMap = resource.adaptTo(ValueMap.class);
+            if (valueMap != null && hasMixin(valueMap, JcrResourceBundle.MIXIN_LANGUAGE)) {
+                return valueMap.get(PROP_LANGUAGE, String.class);
+            }
+            resource = resource.getParent();
+        }
+        return null;
+    }
+
     private boolean isDictionaryResource(final String path, final org.osgi.service.event.Event event) {
         // language node changes happen quite frequently (https://issues.apache.org/jira/browse/SLING-2881)
         // therefore only consider changes either for sling:MessageEntry's 
@@ -278,6 +366,10 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
     }
 
     private void scheduleReloadBundles(boolean withDelay) {
+        if (!fullReloadPending.compareAndSet(false, true)) {
+            log.debug("Reloading all resource bundles is already scheduled");
+            return;
+        }
         // cancel all reload individual bundle jobs!
         synchronized(scheduledJobNames) {
             for (String scheduledJobName : scheduledJobNames) {
@@ -285,6 +377,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
             }
         }
         scheduledJobNames.clear();
+        pendingReloads.clear();
         // defer this job
         final ScheduleOptions options;
         if (withDelay) {
@@ -296,6 +389,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         scheduler.schedule(new Runnable() {
             @Override
             public void run() {
+                fullReloadPending.set(false);
                 log.info("Reloading all resource bundles");
                 clearCache();
                 preloadBundles();
@@ -303,11 +397,12 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         }, options);
     }
 
-    private void scheduleReloadBundle(JcrResourceBundle bundle) {
-        String baseName = bundle.getBaseName();
-        Locale locale = bundle.getLocale();
-        final Key key = new Key(baseName, locale);
-        
+    private void scheduleReloadBundle(final Key key) {
+        if (fullReloadPending.get() || !pendingReloads.add(key)) {
+            log.debug("Reloading resource bundle for {} is already scheduled", key);
+            return;
+        }
+
         // defer this job
         ScheduleOptions options = scheduler.AT(new Date(System.currentTimeMillis() + invalidationDelay));
         final String jobName = "JcrResourceBundleProvider: reload bundle with key " + key.toString();
@@ -316,6 +411,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         scheduler.schedule(new Runnable() {
             @Override
             public void run() {
+                pendingReloads.remove(key);
                 synchronized(JcrResourceBundleProvider.this) {
                     reloadBundle(key);
                 }
@@ -326,15 +422,13 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     void reloadBundle(final Key key) {
         // remove bundle from cache
-        resourceBundleCache.remove(key);
+        final JcrResourceBundle removed = resourceBundleCache.remove(key);
+        if (removed != null) {
+            statistics.removed(removed.getEstimatedSize(), false);
+        }
         log.info("Reloading resource bundle for {}", key);
         // unregister bundle
-        ServiceRegistration serviceRegistration = bundleServiceRegistrations.remove(key);
-        if (serviceRegistration != null) {
-            serviceRegistration.unregister();
-        } else {
-            log.warn("Could not find resource bundle service for {}", key);
-        }
+        unregisterResourceBundle(key);
 
         Collection<JcrResourceBundle> dependentBundles = new ArrayList<JcrResourceBundle>();
         // this bundle might be a parent of a cached bundle -> invalidate those dependent bundles as well
@@ -386,8 +480,16 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         this.preloadBundles = PropertiesUtil.toBoolean(props.get(PROP_PRELOAD_BUNDLES), DEFAULT_PRELOAD_BUNDLES);
 
         this.bundleContext = context.getBundleContext();
-        this.bundleServiceRegistrations = new HashMap<Key, ServiceRegistration>();
+        this.bundleServiceRegistrations = new ConcurrentHashMap<Key, ServiceRegistration>();
         invalidationDelay = PropertiesUtil.toLong(props.get(PROP_INVALIDATION_DELAY), DEFAULT_INVALIDATION_DELAY);
+        maxCacheWeight = 1024 * Math.max(0, PropertiesUtil.toLong(props.get(PROP_CACHE_MAX_SIZE), DEFAULT_CACHE_MAX_SIZE));
+
+        this.statistics = new ResourceBundleCacheStatistics(maxCacheWeight);
+        final Dictionary<String, Object> mbeanProps = new Hashtable<String, Object>();
+        mbeanProps.put("jmx.objectname", STATISTICS_OBJECT_NAME);
+        this.statisticsRegistration = bundleContext.registerService(
+            ResourceBundleCacheStatisticsMBean.class.getName(), statistics, mbeanProps);
+
         if (this.resourceResolverFactory != null) { // this is only null during test execution!
             if (repoCredentials == null) {
                 resourceResolver = resourceResolverFactory.getAdministrativeResourceResolver(null);
@@ -400,6 +502,10 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
     }
 
     protected void deactivate() {
+        if (statisticsRegistration != null) {
+            statisticsRegistration.unregister();
+            statisticsRegistration = null;
+        }
         clearCache();
         resourceResolver.close();
     }
@@ -420,6 +526,8 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         JcrResourceBundle resourceBundle = resourceBundleCache.get(key);
         if (resourceBundle != null) {
             log.debug("getResourceBundleInternal({}): got cache hit on first try", key);
+            statistics.hit();
+            touch(resourceBundle);
         } else {
             if (loadingGuards.get(key) == null) {
                 loadingGuards.putIfAbsent(key, new Semaphore(1));
@@ -430,11 +538,18 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
                 resourceBundle = resourceBundleCache.get(key);
                 if (resourceBundle != null) {
                     log.debug("getResourceBundleInternal({}): got cache hit on second try", key);
+                    statistics.hit();
+                    touch(resourceBundle);
                 } else {
                     log.debug("getResourceBundleInternal({}): reading from Repository", key);
+                    statistics.miss();
                     resourceBundle = createResourceBundle(key.baseName, key.locale);
+                    statistics.loaded(resourceBundle.getLoadTime());
+                    touch(resourceBundle);
                     resourceBundleCache.put(key, resourceBundle);
+                    statistics.added(resourceBundle.getEstimatedSize());
                     registerResourceBundle(key, resourceBundle);
+                    evictBundles(key, resourceBundle);
                 }
             } catch (InterruptedException e) {
                 Thread.interrupted();
@@ -454,7 +569,7 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         serviceProps.put("locale", key.locale.toString());
         ServiceRegistration serviceReg = bundleContext.registerService(ResourceBundle.class.getName(),
                 resourceBundle, serviceProps);
-        synchronized (this) {
+        if (serviceReg != null) {
             bundleServiceRegistrations.put(key, serviceReg);
         }
 
@@ -465,6 +580,94 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
         log.info("Currently loaded dictionaries across all locales: {}", languageRootPaths);
     }
 
+    private void unregisterResourceBundle(final Key key) {
+        final ServiceRegistration serviceRegistration = bundleServiceRegistrations.remove(key);
+        if (serviceRegistration != null) {
+            serviceRegistration.unregister();
+        } else {
+            log.warn("Could not find resource bundle service for {}", key);
+        }
+    }
+
+    /**
+     * Marks the bundle and its parents as recently used unless the cache is
+     * unbounded. Parents are marked as well as they are used through their
+     * children without being requested from the provider.
+     */
+    private void touch(final JcrResourceBundle resourceBundle) {
+        if (maxCacheWeight > 0) {
+            final long now = System.nanoTime();
+            ResourceBundle bundle = resourceBundle;
+            while (bundle instanceof JcrResourceBundle) {
+                ((JcrResourceBundle) bundle).lastAccess = now;
+                bundle = ((JcrResourceBundle) bundle).getParent();
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used bundles from the cache until the cached
+     * bundles fit into the configured maximum cache weight. The just loaded
+     * bundle and its parents are never evicted.
+     */
+    private void evictBundles(final Key loadedKey, final JcrResourceBundle loadedBundle) {
+        if (maxCacheWeight <= 0) {
+            return;
+        }
+        synchronized (evictionLock) {
+            while (statistics.getCacheWeight() > maxCacheWeight) {
+                Key lruKey = null;
+                long lruAccess = Long.MAX_VALUE;
+                for (final Map.Entry<Key, JcrResourceBundle> entry : resourceBundleCache.entrySet()) {
+                    final Key key = entry.getKey();
+                    if (entry.getValue().lastAccess < lruAccess && !key.equals(loadedKey)
+                            && !dependsOn(loadedBundle, key)) {
+                        lruKey = key;
+                        lruAccess = entry.getValue().lastAccess;
+                    }
+                }
+                if (lruKey == null) {
+                    break;
+                }
+                evictBundle(lruKey);
+            }
+        }
+    }
+
+    /**
+     * Removes the bundle and all bundles having it as a parent from the cache.
+     */
+    private void evictBundle(final Key key) {
+        final JcrResourceBundle bundle = resourceBundleCache.remove(key);
+        if (bundle != null) {
+            log.debug("Evicting resource bundle for {} from the cache", key);
+            statistics.removed(bundle.getEstimatedSize(), true);
+            unregisterResourceBundle(key);
+
+            for (final Map.Entry<Key, JcrResourceBundle> entry : resourceBundleCache.entrySet()) {
+                if (dependsOn(entry.getValue(), key)) {
+                    evictBundle(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the bundle with the given key is one of the
+     * parents of the bundle.
+     */
+    private static boolean dependsOn(final JcrResourceBundle bundle, final Key key) {
+        ResourceBundle parent = bundle.getParent();
+        while (parent instanceof JcrResourceBundle) {
+            final JcrResourceBundle parentBundle = (JcrResourceBundle) parent;
+            if (key.equals(new Key(parentBundle.getBaseName(), parentBundle.getLocale()))) {
+                return true;
+            }
+            parent = parentBundle.getParent();
+        }
+        return false;
+    }
+
     /**
      * Creates the resource bundle for the give locale.
      *
@@ -533,13 +736,14 @@ public class JcrResourceBundleProvider implements ResourceBundleProvider, EventH
 
     private void clearCache() {
         resourceBundleCache.clear();
+        statistics.cleared();
         languageRootPaths.clear();
 
-        synchronized (this) {
-            for (ServiceRegistration serviceReg : bundleServiceRegistrations.values()) {
-                serviceReg.unregister();
-            }
-            bundleServiceRegistrations.clear();
+        final Iterator<ServiceRegistration> registrations = bundleServiceRegistrations.values().iterator();
+        while (registrations.hasNext()) {
+            final ServiceRegistration serviceReg = registrations.next();
+            registrations.remove();
+            serviceReg.unregister();
         }
     }
 
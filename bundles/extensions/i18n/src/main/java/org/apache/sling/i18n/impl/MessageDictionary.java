@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The <code>MessageDictionary</code> is an immutable map of message keys to
+ * messages stored in two arrays sorted by key. Messages are looked up by
+ * binary search.
+ * <p>
+ * The keys are interned as the same keys are usually used by the
+ * dictionaries of all languages.
+ */
+final class MessageDictionary {
+
+    /** Estimated memory used by a string besides its characters */
+    private static final int STRING_OVERHEAD = 40;
+
+    private final String[] keys;
+
+    private final Object[] values;
+
+    private final long estimatedSize;
+
+    MessageDictionary(final Map<String, Object> messages) {
+        final String[] sortedKeys = messages.keySet().toArray(new String[messages.size()]);
+        Arrays.sort(sortedKeys);
+
+        long size = 32 + 8L * sortedKeys.length;
+        this.keys = new String[sortedKeys.length];
+        this.values = new Object[sortedKeys.length];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            this.keys[i] = sortedKeys[i].intern();
+            this.values[i] = messages.get(sortedKeys[i]);
+            size += STRING_OVERHEAD + 2 * sortedKeys[i].length();
+            if (this.values[i] instanceof String) {
+                size += STRING_OVERHEAD + 2 * ((String) this.values[i]).length();
+            }
+        }
+        this.estimatedSize = size;
+    }
+
+    /**
+     * Returns the message for the key or <code>null</code> if there is none.
+     */
+    Object get(final String key) {
+        final int idx = Arrays.binarySearch(keys, key);
+        return (idx >= 0) ? values[idx] : null;
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by this dictionary.
+     */
+    long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    /**
+     * Returns an unmodifiable set view of the keys in ascending order.
+     */
+    Set<String> keySet() {
+        return new AbstractSet<String>() {
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<String>() {
+
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return keys[index++];
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("remove");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+            @Override
+            public boolean contains(final Object o) {
+                return (o instanceof String) && Arrays.binarySearch(keys, o) >= 0;
+            }
+        };
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>ResourceBundleCacheStatistics</code> collects the statistics of
+ * the resource bundle cache updated by the {@link JcrResourceBundleProvider}.
+ */
+public class ResourceBundleCacheStatistics implements ResourceBundleCacheStatisticsMBean {
+
+    private final long maxCacheWeight;
+
+    private final AtomicInteger bundleCount = new AtomicInteger();
+
+    private final AtomicLong cacheWeight = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    private final AtomicLong maxLoadTime = new AtomicLong();
+
+    ResourceBundleCacheStatistics(final long maxCacheWeight) {
+        this.maxCacheWeight = maxCacheWeight;
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void loaded(final long loadTime) {
+        loads.incrementAndGet();
+        totalLoadTime.addAndGet(loadTime);
+        long max = maxLoadTime.get();
+        while (loadTime > max && !maxLoadTime.compareAndSet(max, loadTime)) {
+            max = maxLoadTime.get();
+        }
+    }
+
+    void added(final long weight) {
+        bundleCount.incrementAndGet();
+        cacheWeight.addAndGet(weight);
+    }
+
+    void removed(final long weight, final boolean evicted) {
+        bundleCount.decrementAndGet();
+        cacheWeight.addAndGet(-weight);
+        if (evicted) {
+            evictions.incrementAndGet();
+        }
+    }
+
+    void cleared() {
+        bundleCount.set(0);
+        cacheWeight.set(0);
+    }
+
+    @Override
+    public int getBundleCount() {
+        return bundleCount.get();
+    }
+
+    @Override
+    public long getCacheWeight() {
+        return cacheWeight.get();
+    }
+
+    @Override
+    public long getMaxCacheWeight() {
+        return maxCacheWeight;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.get();
+    }
+
+    @Override
+    public long getTotalLoadTime() {
+        return totalLoadTime.get();
+    }
+
+    @Override
+    public long getAverageLoadTime() {
+        final long count = loads.get();
+        return (count == 0) ? 0 : totalLoadTime.get() / count;
+    }
+
+    @Override
+    public long getMaxLoadTime() {
+        return maxLoadTime.get();
+    }
+
+    @Override
+    public void resetStatistics() {
+        evictions.set(0);
+        hits.set(0);
+        misses.set(0);
+        loads.set(0);
+        totalLoadTime.set(0);
+        maxLoadTime.set(0);
+    }
+}
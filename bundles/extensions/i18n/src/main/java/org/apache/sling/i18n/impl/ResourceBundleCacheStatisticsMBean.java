@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+/**
+ * The <code>ResourceBundleCacheStatisticsMBean</code> exposes the occupancy
+ * and load statistics of the resource bundle cache of the
+ * {@link JcrResourceBundleProvider}.
+ */
+public interface ResourceBundleCacheStatisticsMBean {
+
+    /** Returns the number of cached resource bundles */
+    int getBundleCount();
+
+    /** Returns the estimated size in bytes of all cached resource bundles */
+    long getCacheWeight();
+
+    /** Returns the configured maximum cache weight in bytes, 0 if unbounded */
+    long getMaxCacheWeight();
+
+    /** Returns the number of resource bundles evicted from the cache */
+    long getEvictions();
+
+    /** Returns the number of resource bundle requests served from the cache */
+    long getHits();
+
+    /** Returns the number of resource bundle requests not found in the cache */
+    long getMisses();
+
+    /** Returns the number of resource bundles loaded from the repository */
+    long getLoads();
+
+    /** Returns the total time in ms spent loading resource bundles */
+    long getTotalLoadTime();
+
+    /** Returns the average time in ms spent loading a resource bundle */
+    long getAverageLoadTime();
+
+    /** Returns the maximum time in ms spent loading a resource bundle */
+    long getMaxLoadTime();
+
+    /** Resets the hit, miss, eviction and load counters */
+    void resetStatistics();
+}
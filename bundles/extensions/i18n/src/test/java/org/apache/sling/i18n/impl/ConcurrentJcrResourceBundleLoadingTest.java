@@ -55,6 +55,7 @@ public class ConcurrentJcrResourceBundleLoadingTest {
 
     @Mock JcrResourceBundle english;
     @Mock JcrResourceBundle german;
+    @Mock JcrResourceBundle french;
     
     private JcrResourceBundleProvider provider;
     
@@ -137,6 +138,34 @@ public class ConcurrentJcrResourceBundleLoadingTest {
         verifyPrivate(provider, times(2)).invoke("createResourceBundle", eq(null), eq(Locale.GERMAN));
     }
 
+    @Test
+    public void evictLeastRecentlyUsedBundles() throws Exception {
+        final JcrResourceBundleProvider boundedProvider = spy(new JcrResourceBundleProvider());
+        Hashtable<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("locale.default", "en");
+        properties.put("cache.max.size", 1L);
+        boundedProvider.activate(createComponentContext(properties));
+        doReturn(english).when(boundedProvider, "createResourceBundle", eq(null), eq(Locale.ENGLISH));
+        doReturn(german).when(boundedProvider, "createResourceBundle", eq(null), eq(Locale.GERMAN));
+        doReturn(french).when(boundedProvider, "createResourceBundle", eq(null), eq(Locale.FRENCH));
+        Mockito.when(french.getLocale()).thenReturn(Locale.FRENCH);
+        Mockito.when(french.getParent()).thenReturn(english);
+        Mockito.when(english.getEstimatedSize()).thenReturn(400L);
+        Mockito.when(german.getEstimatedSize()).thenReturn(400L);
+        Mockito.when(french.getEstimatedSize()).thenReturn(400L);
+
+        boundedProvider.getResourceBundle(Locale.ENGLISH);
+        boundedProvider.getResourceBundle(Locale.GERMAN);
+        // exceeds the maximum size: german is evicted, but not its parent english
+        boundedProvider.getResourceBundle(Locale.FRENCH);
+        boundedProvider.getResourceBundle(Locale.FRENCH);
+        boundedProvider.getResourceBundle(Locale.GERMAN);
+
+        verifyPrivate(boundedProvider, times(1)).invoke("createResourceBundle", eq(null), eq(Locale.ENGLISH));
+        verifyPrivate(boundedProvider, times(2)).invoke("createResourceBundle", eq(null), eq(Locale.GERMAN));
+        verifyPrivate(boundedProvider, times(1)).invoke("createResourceBundle", eq(null), eq(Locale.FRENCH));
+    }
+
     private ComponentContext createComponentContext(Hashtable<String, Object> config) {
         final ComponentContext componentContext = PowerMockito.mock(ComponentContext.class);
         Mockito.when(componentContext.getBundleContext()).thenReturn(PowerMockito.mock(BundleContext.class));
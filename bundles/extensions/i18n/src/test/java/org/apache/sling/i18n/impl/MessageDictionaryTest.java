@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.i18n.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * The <code>MessageDictionaryTest</code> tests the lookup and key set of the
+ * sorted <code>MessageDictionary</code>.
+ */
+public class MessageDictionaryTest extends TestCase {
+
+    public void test_get() {
+        final Map<String, Object> messages = new HashMap<String, Object>();
+        messages.put("zebra", "Zebra");
+        messages.put("apple", "Apfel");
+        messages.put("mango", "Mango");
+
+        final MessageDictionary dictionary = new MessageDictionary(messages);
+        assertEquals(3, dictionary.size());
+        assertEquals("Apfel", dictionary.get("apple"));
+        assertEquals("Mango", dictionary.get("mango"));
+        assertEquals("Zebra", dictionary.get("zebra"));
+        assertNull(dictionary.get("banana"));
+        assertNull(dictionary.get(""));
+    }
+
+    public void test_keySet() {
+        final Map<String, Object> messages = new HashMap<String, Object>();
+        messages.put("b", "2");
+        messages.put("c", "3");
+        messages.put("a", "1");
+
+        final Set<String> keys = new MessageDictionary(messages).keySet();
+        assertEquals(3, keys.size());
+        assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(keys.toArray()));
+        assertTrue(keys.contains("b"));
+        assertFalse(keys.contains("d"));
+        assertFalse(keys.contains(Integer.valueOf(1)));
+    }
+
+    public void test_interned_keys() {
+        final Map<String, Object> messages = new HashMap<String, Object>();
+        messages.put(new String("key"), "value");
+
+        final String key = new MessageDictionary(messages).keySet().iterator().next();
+        assertSame("key", key);
+    }
+
+    public void test_empty() {
+        final MessageDictionary dictionary = new MessageDictionary(new HashMap<String, Object>());
+        assertEquals(0, dictionary.size());
+        assertNull(dictionary.get("key"));
+        assertTrue(dictionary.keySet().isEmpty());
+        assertTrue(dictionary.getEstimatedSize() > 0);
+    }
+}
@@ -40,7 +40,6 @@ import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
-import javax.annotation.PostConstruct;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.apache.commons.lang.StringUtils;
@@ -142,6 +141,12 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
             cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     private final @Nonnull RankedServices<Injector> injectors = new RankedServices<Injector>();
 
+    /**
+     * Cache of the injectors to try for each injector name given by a {@code @Source}
+     * annotation, built from the current list of injectors.
+     */
+    private volatile InjectorsBySource injectorsBySource;
+
     @Reference(name = "injectAnnotationProcessorFactory", referenceInterface = InjectAnnotationProcessorFactory.class,
             cardinality = ReferenceCardinality.OPTIONAL_MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     private final @Nonnull RankedServices<InjectAnnotationProcessorFactory> injectAnnotationProcessorFactories = new RankedServices<InjectAnnotationProcessorFactory>();
@@ -320,6 +325,54 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         return null;
     }
 
+    /**
+     * The injectors to try for each source, resolved from one version of the
+     * list of ranked injectors.
+     */
+    private static final class InjectorsBySource {
+
+        private static final String ALL_SOURCES = "";
+
+        private final Collection<Injector> injectors;
+
+        private final ConcurrentMap<String, Injector[]> bySource = new ConcurrentHashMap<String, Injector[]>();
+
+        private InjectorsBySource(Collection<Injector> injectors) {
+            this.injectors = injectors;
+        }
+
+        private Injector[] get(String source) {
+            final String key = (source == null) ? ALL_SOURCES : source;
+            Injector[] result = bySource.get(key);
+            if (result == null) {
+                List<Injector> matching = new ArrayList<Injector>(injectors.size());
+                for (Injector injector : injectors) {
+                    if (source == null || source.equals(injector.getName())) {
+                        matching.add(injector);
+                    }
+                }
+                result = matching.toArray(new Injector[matching.size()]);
+                bySource.put(key, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the injectors in ranking order to be used for the given source
+     * or all injectors if no source is given.
+     */
+    private Injector[] getInjectors(String source) {
+        final Collection<Injector> current = injectors.get();
+        InjectorsBySource cache = this.injectorsBySource;
+        if (cache == null || cache.injectors != current) {
+            // the ranked services create a new collection whenever an injector is (un)bound
+            cache = new InjectorsBySource(current);
+            this.injectorsBySource = cache;
+        }
+        return cache.get(source);
+    }
+
     private static interface InjectCallback {
         /**
          * Is called each time when the given value should be injected into the given element
@@ -402,16 +455,14 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         RuntimeException lastInjectionException = null;
         if (injectionAdaptable != null) {
             // find the right injector
-            for (Injector injector : injectors) {
-                if (source == null || source.equals(injector.getName())) {
-                    if (name != null || injector instanceof AcceptsNullName) {
-                        Object value = injector.getValue(injectionAdaptable, name, element.getType(), element.getAnnotatedElement(), registry);
-                        if (value != null) {
-                            lastInjectionException = callback.inject(element, value);
-                            if (lastInjectionException == null) {
-                                wasInjectionSuccessful = true;
-                                break;
-                            }
+            for (Injector injector : getInjectors(source)) {
+                if (name != null || injector instanceof AcceptsNullName) {
+                    Object value = injector.getValue(injectionAdaptable, name, element.getType(), element.getAnnotatedElement(), registry);
+                    if (value != null) {
+                        lastInjectionException = callback.inject(element, value);
+                        if (lastInjectionException == null) {
+                            wasInjectionSuccessful = true;
+                            break;
                         }
                     }
                 }
@@ -465,15 +516,18 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         DisposalCallbackRegistryImpl registry = new DisposalCallbackRegistryImpl();
         registerCallbackRegistry(handler, registry);
 
-        MissingElementsException missingElements = new MissingElementsException("Could not create all mandatory methods for interface of model " + modelClass);
+        MissingElementsException missingElements = null;
         for (InjectableMethod method : injectableMethods) {
             RuntimeException t = injectElement(method, adaptable, modelClass.getModelAnnotation(), registry, callback);
             if (t != null) {
+                if (missingElements == null) {
+                    missingElements = new MissingElementsException("Could not create all mandatory methods for interface of model " + modelClass);
+                }
                 missingElements.addMissingElementExceptions(new MissingElementException(method.getAnnotatedElement(), t));
             }
         }
         registry.seal();
-        if (!missingElements.isEmpty()) {
+        if (missingElements != null) {
             return new Result<InvocationHandler>(missingElements);
         }
         return new Result<InvocationHandler>(handler);
@@ -525,20 +579,23 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         InjectCallback callback = new SetFieldCallback(object);
 
         InjectableField[] injectableFields = modelClass.getInjectableFields();
-        MissingElementsException missingElements = new MissingElementsException("Could not inject all required fields into " + modelClass.getType());
+        MissingElementsException missingElements = null;
         for (InjectableField field : injectableFields) {
             RuntimeException t = injectElement(field, adaptable, modelClass.getModelAnnotation(), registry, callback);
             if (t != null) {
+                if (missingElements == null) {
+                    missingElements = new MissingElementsException("Could not inject all required fields into " + modelClass.getType());
+                }
                 missingElements.addMissingElementExceptions(new MissingElementException(field.getAnnotatedElement(), t));
             }
         }
 
         registry.seal();
-        if (!missingElements.isEmpty()) {
+        if (missingElements != null) {
             return new Result<ModelType>(missingElements);
         }
         try {
-            invokePostConstruct(object);
+            invokePostConstruct(modelClass, object);
         } catch (InvocationTargetException e) {
             return new Result<ModelType>(new PostConstructException("Post-construct method has thrown an exception for model " + modelClass.getType(), e.getCause()));
         } catch (IllegalAccessException e) {
@@ -587,14 +644,17 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         List<Object> paramValues = new ArrayList<Object>(Arrays.asList(new Object[parameters.length]));
         InjectCallback callback = new SetConstructorParameterCallback(paramValues);
 
-        MissingElementsException missingElements = new MissingElementsException("Required constructor parameters were not able to be injected on model " + modelClass.getType());
+        MissingElementsException missingElements = null;
         for (int i = 0; i < parameters.length; i++) {
             RuntimeException t = injectElement(parameters[i], adaptable, modelClass.getModelAnnotation(), registry, callback);
             if (t != null) {
+                if (missingElements == null) {
+                    missingElements = new MissingElementsException("Required constructor parameters were not able to be injected on model " + modelClass.getType());
+                }
                 missingElements.addMissingElementExceptions(new MissingElementException(parameters[i].getAnnotatedElement(), t));
             }
         }
-        if (!missingElements.isEmpty()) {
+        if (missingElements != null) {
             return new Result<ModelType>(missingElements);
         }
         return new Result<ModelType>(constructor.getConstructor().newInstance(paramValues.toArray(new Object[paramValues.size()])));
@@ -694,43 +754,10 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         return element.getName();
     }
 
-    private boolean addMethodIfNotOverriden(List<Method> methods, Method newMethod) {
-        for (Method method : methods) {
-            if (method.getName().equals(newMethod.getName())) {
-                if (Arrays.equals(method.getParameterTypes(),newMethod.getParameterTypes())) {
-                    return false;
-                }
-            }
-        }
-        methods.add(newMethod);
-        return true;
-    }
-
-    private void invokePostConstruct(Object object) throws InvocationTargetException, IllegalAccessException {
-        Class<?> clazz = object.getClass();
-        List<Method> postConstructMethods = new ArrayList<Method>();
-        while (clazz != null) {
-            Method[] methods = clazz.getDeclaredMethods();
-            for (Method method : methods) {
-                if (method.isAnnotationPresent(PostConstruct.class)) {
-                    addMethodIfNotOverriden(postConstructMethods, method);
-                }
-            }
-            clazz = clazz.getSuperclass();
-        }
-        Collections.reverse(postConstructMethods);
-        for (Method method : postConstructMethods) {
-            boolean accessible = method.isAccessible();
-            try {
-                if (!accessible) {
-                    method.setAccessible(true);
-                }
-                method.invoke(object);
-            } finally {
-                if (!accessible) {
-                    method.setAccessible(false);
-                }
-            }
+    private void invokePostConstruct(ModelClass<?> modelClass, Object object) throws InvocationTargetException, IllegalAccessException {
+        // the methods are collected and made accessible once per model class
+        for (Method method : modelClass.getPostConstructMethods()) {
+            method.invoke(object);
         }
     }
 
@@ -738,18 +765,11 @@ public class ModelAdapterFactory implements AdapterFactory, Runnable, ModelFacto
         Field field = injectableField.getField();
         Result<Object> result = adaptIfNecessary(value, field.getType(), field.getGenericType());
         if (result.wasSuccessfull()) {
-            boolean accessible = field.isAccessible();
+            // the field has already been made accessible by the InjectableField
             try {
-                if (!accessible) {
-                    field.setAccessible(true);
-                }
                 field.set(createdObject, result.getValue());
             } catch (Exception e) {
                 return new ModelClassException("Could not inject field due to reflection issues", e);
-            } finally {
-                if (!accessible) {
-                    field.setAccessible(false);
-                }
             }
             return null;
         } else {
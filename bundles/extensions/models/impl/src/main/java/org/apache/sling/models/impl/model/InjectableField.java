@@ -31,6 +31,10 @@ public class InjectableField extends AbstractInjectableElement {
     public InjectableField(Field field, StaticInjectAnnotationProcessorFactory[] processorFactories, DefaultInjectionStrategy defaultInjectionStrategy) {
         super(field, ReflectionUtil.mapPrimitiveClasses(field.getGenericType()), field.getName(), processorFactories, defaultInjectionStrategy);
         this.field = field;
+        // make the field accessible once instead of for every injection
+        if (!field.isAccessible()) {
+            field.setAccessible(true);
+        }
     }
     
     public Field getField() {
@@ -78,6 +78,20 @@ public class CustomInjectorTest {
         assertEquals("custom value", model.getCustomString());
     }
 
+    @Test
+    public void testInjectorBoundAfterAdaptation() {
+        assertNull(factory.getAdapter(new Object(), TestModel.class));
+
+        SimpleInjector injector = new SimpleInjector();
+        factory.bindInjector(injector, new ServicePropertiesMap(1, 1));
+        TestModel model = factory.getAdapter(new Object(), TestModel.class);
+        assertNotNull(model);
+        assertEquals("test string", model.getTestString());
+
+        factory.unbindInjector(injector, new ServicePropertiesMap(1, 1));
+        assertNull(factory.getAdapter(new Object(), TestModel.class));
+    }
+
     @Model(adaptables = Object.class)
     public interface TestModel {
         @Inject
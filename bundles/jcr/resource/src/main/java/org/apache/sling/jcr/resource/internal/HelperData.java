@@ -18,9 +18,11 @@
  */
 package org.apache.sling.jcr.resource.internal;
 
+import javax.jcr.Node;
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.jcr.resource.internal.helper.jcr.PathMapper;
 
 /**
@@ -35,10 +37,41 @@ public class HelperData {
 
     private volatile String[] namespacePrefixes;
 
+    /** The shared value map cache, if enabled. */
+    private volatile SharedValueMapCache valueMapCache;
+
     public HelperData(final ClassLoader dynamicClassLoader,
             final PathMapper pathMapper) {
+        this(dynamicClassLoader, pathMapper, null);
+    }
+
+    public HelperData(final ClassLoader dynamicClassLoader,
+            final PathMapper pathMapper,
+            final SharedValueMapCache valueMapCache) {
         this.dynamicClassLoader = dynamicClassLoader;
         this.pathMapper = pathMapper;
+        this.valueMapCache = valueMapCache;
+    }
+
+    /**
+     * Create the value map for a node, using the shared value map
+     * cache if enabled.
+     */
+    public ValueMap createValueMap(final Node node) {
+        final SharedValueMapCache cache = this.valueMapCache;
+        if ( cache != null ) {
+            return cache.getValueMap(node, this);
+        }
+        return new JcrValueMap(node, this);
+    }
+
+    /**
+     * Stop using the shared value map cache. This is called once the
+     * session might save changes, as the cache is only updated once the
+     * observation event for these changes has been processed.
+     */
+    public void disableValueMapCache() {
+        this.valueMapCache = null;
     }
 
     public String[] getNamespacePrefixes(final Session session)
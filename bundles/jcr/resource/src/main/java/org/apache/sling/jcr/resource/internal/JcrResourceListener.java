@@ -20,12 +20,21 @@ package org.apache.sling.jcr.resource.internal;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -49,8 +58,31 @@ import org.slf4j.LoggerFactory;
  * The <code>JcrResourceListener</code> listens for JCR observation
  * events and creates resource events which are sent through the
  * OSGi event admin.
+ * <p>
+ * If a batch window is configured, the events queued within the window are
+ * coalesced before they are sent: events for the same resource are merged
+ * and the removal of a resource replaces all events for its subtree. The
+ * coalesced events are sent in the order in which their resources were first
+ * seen within the window.
+ * <p>
+ * If change sets are enabled as well, the events of a window are grouped by
+ * subtree: only the event for the top-most path of a subtree is sent, the
+ * paths of the added, changed and removed resources below it are listed in
+ * the {@link #PROPERTY_ADDED_PATHS}, {@link #PROPERTY_CHANGED_PATHS} and
+ * {@link #PROPERTY_REMOVED_PATHS} properties of that event. The resource
+ * type is only looked up for the sent events. It can't be looked up lazily
+ * as the OSGi event copies its properties when it is created.
  */
-public class JcrResourceListener implements EventListener, Closeable {
+public class JcrResourceListener implements EventListener, Closeable, JcrResourceListenerMBean {
+
+    /** Change set property: the paths of the added resources below the event path. */
+    public static final String PROPERTY_ADDED_PATHS = "resourceAddedPaths";
+
+    /** Change set property: the paths of the changed resources below the event path. */
+    public static final String PROPERTY_CHANGED_PATHS = "resourceChangedPaths";
+
+    /** Change set property: the paths of the removed resources below the event path. */
+    public static final String PROPERTY_REMOVED_PATHS = "resourceRemovedPaths";
 
     /** Logger */
     private final Logger logger = LoggerFactory.getLogger(JcrResourceListener.class);
@@ -74,18 +106,70 @@ public class JcrResourceListener implements EventListener, Closeable {
 
     private final PathMapper pathMapper;
 
+    /** The shared value map cache or <code>null</code>. */
+    private final SharedValueMapCache valueMapCache;
+
     /**
      * Marker event for {@link #processOsgiEventQueue()} to be signaled to
      * terminate processing Events.
      */
     private final Map<String, Object> TERMINATE_PROCESSING = new HashMap<String, Object>(1);
 
+    /**
+     * Internal event property holding the time the event was queued, removed
+     * before the event is sent.
+     */
+    private static final String PROPERTY_QUEUED = ":queued";
+
+    /** Time in milliseconds to collect events for coalescing, 0 to disable. */
+    private final long batchWindow;
+
+    /** Send one event per subtree within the batch window? */
+    private final boolean changeSets;
+
+    private final AtomicLong sentEvents = new AtomicLong();
+
+    private final AtomicLong coalescedEvents = new AtomicLong();
+
     public JcrResourceListener(
                     final String mountPrefix,
                     final ObservationListenerSupport support,
                     final PathMapper pathMapper)
+    throws RepositoryException {
+        this(mountPrefix, support, pathMapper, null);
+    }
+
+    public JcrResourceListener(
+                    final String mountPrefix,
+                    final ObservationListenerSupport support,
+                    final PathMapper pathMapper,
+                    final SharedValueMapCache valueMapCache)
+    throws RepositoryException {
+        this(mountPrefix, support, pathMapper, valueMapCache, 0);
+    }
+
+    public JcrResourceListener(
+                    final String mountPrefix,
+                    final ObservationListenerSupport support,
+                    final PathMapper pathMapper,
+                    final SharedValueMapCache valueMapCache,
+                    final long batchWindow)
+    throws RepositoryException {
+        this(mountPrefix, support, pathMapper, valueMapCache, batchWindow, false);
+    }
+
+    public JcrResourceListener(
+                    final String mountPrefix,
+                    final ObservationListenerSupport support,
+                    final PathMapper pathMapper,
+                    final SharedValueMapCache valueMapCache,
+                    final long batchWindow,
+                    final boolean changeSets)
     throws RepositoryException {
         this.pathMapper = pathMapper;
+        this.batchWindow = batchWindow;
+        this.changeSets = changeSets;
+        this.valueMapCache = valueMapCache;
         boolean foundClass = false;
         try {
             this.getClass().getClassLoader().loadClass(JackrabbitEvent.class.getName());
@@ -134,7 +218,7 @@ public class JcrResourceListener implements EventListener, Closeable {
     public void onEvent(final EventIterator events) {
         // if the event admin is currently not available, we just skip this
         final EventAdmin localEA = this.support.getEventAdmin();
-        if ( localEA == null ) {
+        if ( localEA == null && this.valueMapCache == null ) {
             return;
         }
         final Map<String, Map<String, Object>> addedEvents = new HashMap<String, Map<String, Object>>();
@@ -143,6 +227,9 @@ public class JcrResourceListener implements EventListener, Closeable {
         while ( events.hasNext() ) {
             final Event event = events.nextEvent();
             try {
+                if ( this.valueMapCache != null ) {
+                    this.invalidateValueMapCache(event);
+                }
                 final String eventPath;
                 if ( this.mountPrefix != null ) {
                     eventPath = this.mountPrefix + event.getPath();
@@ -171,6 +258,10 @@ public class JcrResourceListener implements EventListener, Closeable {
             }
         }
 
+        if ( localEA == null ) {
+            return;
+        }
+
         for (final Entry<String, Map<String, Object>> e : removedEvents.entrySet()) {
             // Launch an OSGi event
             sendOsgiEvent(e.getKey(), e.getValue(), SlingConstants.TOPIC_RESOURCE_REMOVED,
@@ -190,6 +281,22 @@ public class JcrResourceListener implements EventListener, Closeable {
         }
     }
 
+    /**
+     * Remove the snapshots affected by the event from the shared value
+     * map cache. The cache is keyed by the JCR path.
+     */
+    private void invalidateValueMapCache(final Event event) throws RepositoryException {
+        final String path = event.getPath();
+        if ( event.getType() == Event.NODE_REMOVED ) {
+            this.valueMapCache.invalidateTree(path);
+        } else if ( event.getType() == Event.NODE_ADDED ) {
+            this.valueMapCache.invalidate(path);
+        } else {
+            final int lastSlash = path.lastIndexOf('/');
+            this.valueMapCache.invalidate(lastSlash == 0 ? "/" : path.substring(0, lastSlash));
+        }
+    }
+
     private static final class ChangedAttributes {
 
         private final Map<String, Object> properties;
@@ -304,6 +411,7 @@ public class JcrResourceListener implements EventListener, Closeable {
             // set the path (might have been changed for nt:file content)
             properties.put(SlingConstants.PROPERTY_PATH, resourcePath);
             properties.put(EventConstants.EVENT_TOPIC, topic);
+            properties.put(PROPERTY_QUEUED, System.currentTimeMillis());
 
             // enqueue event for dispatching
             this.osgiEventQueue.offer(properties);
@@ -318,7 +426,8 @@ public class JcrResourceListener implements EventListener, Closeable {
      * {@link #TERMINATE_PROCESSING} event is received.
      */
     void processOsgiEventQueue() {
-        while (true) {
+        boolean terminate = false;
+        while (!terminate) {
             final Map<String, Object> event;
             try {
                 event = this.osgiEventQueue.take();
@@ -331,67 +440,334 @@ public class JcrResourceListener implements EventListener, Closeable {
                 break;
             }
 
-            try {
-                final EventAdmin localEa = this.support.getEventAdmin();
-                final ResourceResolver resolver = this.support.getResourceResolver();
-                if (localEa != null && resolver != null ) {
-                    final String topic = (String) event.remove(EventConstants.EVENT_TOPIC);
-                    final String path = (String) event.get(SlingConstants.PROPERTY_PATH);
+            if ( this.batchWindow <= 0 ) {
+                sendOsgiEvent(event);
+                continue;
+            }
+
+            // collect the events queued within the batch window
+            final List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+            batch.add(event);
+            final long end = System.currentTimeMillis() + this.batchWindow;
+            long wait;
+            while ( (wait = end - System.currentTimeMillis()) > 0 ) {
+                final Map<String, Object> next;
+                try {
+                    next = this.osgiEventQueue.poll(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (next == null) {
+                    break;
+                }
+                if (next == TERMINATE_PROCESSING) {
+                    terminate = true;
+                    break;
+                }
+                batch.add(next);
+            }
+
+            List<Map<String, Object>> coalesced = coalesce(batch);
+            if ( this.changeSets ) {
+                coalesced = toChangeSets(coalesced);
+            }
+            this.coalescedEvents.addAndGet(batch.size() - coalesced.size());
+            for (final Map<String, Object> e : coalesced) {
+                sendOsgiEvent(e);
+            }
+        }
+
+        this.osgiEventQueue.clear();
+    }
+
+    /**
+     * Sends a queued event, adding the resource type for added and changed
+     * resources.
+     */
+    private void sendOsgiEvent(final Map<String, Object> event) {
+        event.remove(PROPERTY_QUEUED);
+        try {
+            final EventAdmin localEa = this.support.getEventAdmin();
+            final ResourceResolver resolver = this.support.getResourceResolver();
+            if (localEa != null && resolver != null ) {
+                final String topic = (String) event.remove(EventConstants.EVENT_TOPIC);
+                final String path = (String) event.get(SlingConstants.PROPERTY_PATH);
+                boolean sendEvent = true;
+                if (!SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic)) {
                     Resource resource = resolver.getResource(path);
-                    boolean sendEvent = true;
-                    if (!SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic)) {
-                        if (resource != null) {
-                            // check if this is a JCR backed resource, otherwise it is not visible!
-                            final Node node = resource.adaptTo(Node.class);
-                            if (node != null) {
-                                // check for nt:file nodes
-                                if (path.endsWith("/jcr:content")) {
-                                    try {
-                                        if (node.getParent().isNodeType("nt:file")) {
-                                            final Resource parentResource = resource.getParent();
-                                            if (parentResource != null) {
-                                                resource = parentResource;
-                                                event.put(SlingConstants.PROPERTY_PATH, resource.getPath());
-                                            }
+                    if (resource != null) {
+                        // check if this is a JCR backed resource, otherwise it is not visible!
+                        final Node node = resource.adaptTo(Node.class);
+                        if (node != null) {
+                            // check for nt:file nodes
+                            if (path.endsWith("/jcr:content")) {
+                                try {
+                                    if (node.getParent().isNodeType("nt:file")) {
+                                        final Resource parentResource = resource.getParent();
+                                        if (parentResource != null) {
+                                            resource = parentResource;
+                                            event.put(SlingConstants.PROPERTY_PATH, resource.getPath());
                                         }
-                                    } catch (final RepositoryException re) {
-                                        // ignore this
                                     }
+                                } catch (final RepositoryException re) {
+                                    // ignore this
                                 }
-
-                                final String resourceType = resource.getResourceType();
-                                if (resourceType != null) {
-                                    event.put(SlingConstants.PROPERTY_RESOURCE_TYPE, resource.getResourceType());
-                                }
-                                final String resourceSuperType = resource.getResourceSuperType();
-                                if (resourceSuperType != null) {
-                                    event.put(SlingConstants.PROPERTY_RESOURCE_SUPER_TYPE, resource.getResourceSuperType());
-                                }
-                            } else {
-                                // this is not a jcr backed resource
-                                sendEvent = false;
                             }
 
+                            final String resourceType = resource.getResourceType();
+                            if (resourceType != null) {
+                                event.put(SlingConstants.PROPERTY_RESOURCE_TYPE, resource.getResourceType());
+                            }
+                            final String resourceSuperType = resource.getResourceSuperType();
+                            if (resourceSuperType != null) {
+                                event.put(SlingConstants.PROPERTY_RESOURCE_SUPER_TYPE, resource.getResourceSuperType());
+                            }
                         } else {
-                            // take a quite silent note of not being able to
-                            // resolve the resource
-                            logger.debug(
-                                "processOsgiEventQueue: Resource at {} not found, which is not expected for an added or modified node",
-                                path);
+                            // this is not a jcr backed resource
                             sendEvent = false;
                         }
+
+                    } else {
+                        // take a quite silent note of not being able to
+                        // resolve the resource
+                        logger.debug(
+                            "processOsgiEventQueue: Resource at {} not found, which is not expected for an added or modified node",
+                            path);
+                        sendEvent = false;
                     }
+                }
 
-                    if ( sendEvent ) {
-                        localEa.sendEvent(new org.osgi.service.event.Event(topic, new EventProperties(event)));
+                if ( sendEvent ) {
+                    localEa.sendEvent(new org.osgi.service.event.Event(topic, new EventProperties(event)));
+                    this.sentEvents.incrementAndGet();
+                }
+            }
+        } catch (final Exception e) {
+            logger.warn("processOsgiEventQueue: Unexpected problem processing event " + event, e);
+        }
+    }
+
+    /**
+     * The events queued for a single resource path in a batch.
+     */
+    private static final class PendingEvents {
+
+        /** The removal event or <code>null</code>. */
+        Map<String, Object> removed;
+
+        /** The position of the removal event in the batch. */
+        int removedIndex;
+
+        /**
+         * The added or changed event following the removal, if any, or
+         * <code>null</code>.
+         */
+        Map<String, Object> modified;
+
+        /** The position of the first added or changed event in the batch. */
+        int modifiedIndex;
+    }
+
+    /**
+     * Coalesces a batch of queued events. Added and changed events for the
+     * same resource are merged into one event, a removal drops all events
+     * queued before it for the resource and its subtree. The result keeps
+     * the order of the batch, a merged event takes the position of the
+     * first event for the resource.
+     */
+    static List<Map<String, Object>> coalesce(final List<Map<String, Object>> batch) {
+        final TreeMap<String, PendingEvents> pending = new TreeMap<String, PendingEvents>();
+        int index = 0;
+        for (final Map<String, Object> event : batch) {
+            index++;
+            final String path = (String) event.get(SlingConstants.PROPERTY_PATH);
+            final String topic = (String) event.get(EventConstants.EVENT_TOPIC);
+            if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic)) {
+                final String prefix = path.endsWith("/") ? path : path + "/";
+                final Iterator<String> subtree = pending.subMap(prefix, prefix + Character.MAX_VALUE).keySet().iterator();
+                while (subtree.hasNext()) {
+                    subtree.next();
+                    subtree.remove();
+                }
+                final PendingEvents entry = getPendingEvents(pending, path);
+                if (entry.removed == null) {
+                    entry.removed = event;
+                    entry.removedIndex = index;
+                }
+                entry.modified = null;
+            } else {
+                final PendingEvents entry = getPendingEvents(pending, path);
+                if (entry.modified == null) {
+                    entry.modified = event;
+                    entry.modifiedIndex = index;
+                } else {
+                    if (SlingConstants.TOPIC_RESOURCE_ADDED.equals(topic)) {
+                        entry.modified.put(EventConstants.EVENT_TOPIC, topic);
                     }
+                    mergeAttributes(entry.modified, event, SlingConstants.PROPERTY_ADDED_ATTRIBUTES);
+                    mergeAttributes(entry.modified, event, SlingConstants.PROPERTY_CHANGED_ATTRIBUTES);
+                    mergeAttributes(entry.modified, event, SlingConstants.PROPERTY_REMOVED_ATTRIBUTES);
                 }
-            } catch (final Exception e) {
-                logger.warn("processOsgiEventQueue: Unexpected problem processing event " + event, e);
             }
         }
 
-        this.osgiEventQueue.clear();
+        final TreeMap<Integer, Map<String, Object>> ordered = new TreeMap<Integer, Map<String, Object>>();
+        for (final PendingEvents entry : pending.values()) {
+            if (entry.removed != null) {
+                ordered.put(entry.removedIndex, entry.removed);
+            }
+            if (entry.modified != null) {
+                ordered.put(entry.modifiedIndex, entry.modified);
+            }
+        }
+        return new ArrayList<Map<String, Object>>(ordered.values());
+    }
+
+    /**
+     * Groups coalesced events by subtree. Only the events for the top-most
+     * paths are kept, in their order. The paths of the events below such a
+     * path are added to the last event for that path, grouped by topic.
+     */
+    static List<Map<String, Object>> toChangeSets(final List<Map<String, Object>> events) {
+        final Set<String> paths = new HashSet<String>();
+        for (final Map<String, Object> event : events) {
+            paths.add((String) event.get(SlingConstants.PROPERTY_PATH));
+        }
+        // the last event for each top-most path collects the paths below it
+        final Map<String, Map<String, Object>> roots = new HashMap<String, Map<String, Object>>();
+        final List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        for (final Map<String, Object> event : events) {
+            final String path = (String) event.get(SlingConstants.PROPERTY_PATH);
+            if (getSubtreeRoot(paths, path).equals(path)) {
+                roots.put(path, event);
+                result.add(event);
+            }
+        }
+        final Map<Map<String, Object>, ChangeSet> changeSets = new IdentityHashMap<Map<String, Object>, ChangeSet>();
+        for (final Map<String, Object> event : events) {
+            final String path = (String) event.get(SlingConstants.PROPERTY_PATH);
+            final Map<String, Object> root = roots.get(getSubtreeRoot(paths, path));
+            if (root != event) {
+                ChangeSet changeSet = changeSets.get(root);
+                if (changeSet == null) {
+                    changeSet = new ChangeSet();
+                    changeSets.put(root, changeSet);
+                }
+                changeSet.add((String) event.get(EventConstants.EVENT_TOPIC), path);
+            }
+        }
+        for (final Entry<Map<String, Object>, ChangeSet> entry : changeSets.entrySet()) {
+            entry.getValue().mergeInto(entry.getKey());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the top-most path of the given paths which is the path itself
+     * or one of its ancestors.
+     */
+    private static String getSubtreeRoot(final Set<String> paths, final String path) {
+        String root = path;
+        String current = path;
+        int pos;
+        while ((pos = current.lastIndexOf('/')) > 0) {
+            current = current.substring(0, pos);
+            if (paths.contains(current)) {
+                root = current;
+            }
+        }
+        if (!"/".equals(path) && paths.contains("/")) {
+            root = "/";
+        }
+        return root;
+    }
+
+    /**
+     * The paths below the path of a change set event.
+     */
+    private static final class ChangeSet {
+
+        final Set<String> added = new TreeSet<String>();
+
+        final Set<String> changed = new TreeSet<String>();
+
+        final Set<String> removed = new TreeSet<String>();
+
+        void add(final String topic, final String path) {
+            if (SlingConstants.TOPIC_RESOURCE_ADDED.equals(topic)) {
+                added.add(path);
+            } else if (SlingConstants.TOPIC_RESOURCE_REMOVED.equals(topic)) {
+                removed.add(path);
+            } else {
+                changed.add(path);
+            }
+        }
+
+        void mergeInto(final Map<String, Object> event) {
+            if (!added.isEmpty()) {
+                event.put(PROPERTY_ADDED_PATHS, added.toArray(new String[added.size()]));
+            }
+            if (!changed.isEmpty()) {
+                event.put(PROPERTY_CHANGED_PATHS, changed.toArray(new String[changed.size()]));
+            }
+            if (!removed.isEmpty()) {
+                event.put(PROPERTY_REMOVED_PATHS, removed.toArray(new String[removed.size()]));
+            }
+        }
+    }
+
+    private static PendingEvents getPendingEvents(final Map<String, PendingEvents> pending, final String path) {
+        PendingEvents entry = pending.get(path);
+        if (entry == null) {
+            entry = new PendingEvents();
+            pending.put(path, entry);
+        }
+        return entry;
+    }
+
+    private static void mergeAttributes(final Map<String, Object> target, final Map<String, Object> source, final String key) {
+        final String[] values = (String[]) source.get(key);
+        if (values != null) {
+            final String[] existing = (String[]) target.get(key);
+            if (existing == null) {
+                target.put(key, values);
+            } else {
+                final Set<String> merged = new HashSet<String>(Arrays.asList(existing));
+                merged.addAll(Arrays.asList(values));
+                target.put(key, merged.toArray(new String[merged.size()]));
+            }
+        }
+    }
+
+    //---------- JcrResourceListenerMBean
+
+    public int getQueueSize() {
+        return this.osgiEventQueue.size();
+    }
+
+    public long getQueueLag() {
+        final Map<String, Object> head = this.osgiEventQueue.peek();
+        final Object queued = (head != null) ? head.get(PROPERTY_QUEUED) : null;
+        if (queued instanceof Long) {
+            return Math.max(0, System.currentTimeMillis() - (Long) queued);
+        }
+        return 0;
+    }
+
+    public long getBatchWindow() {
+        return this.batchWindow;
+    }
+
+    public boolean isChangeSets() {
+        return this.changeSets;
+    }
+
+    public long getSentEvents() {
+        return this.sentEvents.get();
+    }
+
+    public long getCoalescedEvents() {
+        return this.coalescedEvents.get();
     }
 
     private boolean isExternal(final Event event) {
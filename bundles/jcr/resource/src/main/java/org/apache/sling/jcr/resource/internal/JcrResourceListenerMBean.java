@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+/**
+ * MBean interface for the {@link JcrResourceListener}.
+ */
+public interface JcrResourceListenerMBean {
+
+    /**
+     * Returns the number of events waiting to be sent.
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the time in milliseconds the oldest waiting event has been
+     * queued or <code>0</code> if the queue is empty.
+     */
+    long getQueueLag();
+
+    /**
+     * Returns the time in milliseconds events are collected for coalescing
+     * or <code>0</code> if events are sent one by one.
+     */
+    long getBatchWindow();
+
+    /**
+     * Returns whether the events of a batch window are sent as one event
+     * per subtree.
+     */
+    boolean isChangeSets();
+
+    long getSentEvents();
+
+    /**
+     * Returns the number of events which have been merged into other events
+     * or dropped because their resource has been removed.
+     */
+    long getCoalescedEvents();
+}
@@ -75,6 +75,9 @@ public class OakResourceListener extends NodeObserver implements Closeable {
 
     private final PathMapper pathMapper;
 
+    /** The shared value map cache or <code>null</code>. */
+    private final SharedValueMapCache valueMapCache;
+
     public OakResourceListener(
             final String mountPrefix,
             final ObservationListenerSupport support,
@@ -82,10 +85,23 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final Executor executor,
             final PathMapper pathMapper,
             final int  observationQueueLength)
+    throws RepositoryException {
+        this(mountPrefix, support, bundleContext, executor, pathMapper, observationQueueLength, null);
+    }
+
+    public OakResourceListener(
+            final String mountPrefix,
+            final ObservationListenerSupport support,
+            final BundleContext bundleContext,
+            final Executor executor,
+            final PathMapper pathMapper,
+            final int  observationQueueLength,
+            final SharedValueMapCache valueMapCache)
     throws RepositoryException {
         super("/", "jcr:primaryType", "sling:resourceType", "sling:resourceSuperType");
         this.support = support;
         this.pathMapper = pathMapper;
+        this.valueMapCache = valueMapCache;
         this.mountPrefix = (mountPrefix == null || mountPrefix.length() == 0 || mountPrefix.equals("/") ? null : mountPrefix);
 
         final Dictionary<String, Object> props = new Hashtable<String, Object>();
@@ -121,6 +137,9 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final CommitInfo commitInfo) {
         final Map<String, Object> changes = toEventProperties(added, deleted, changed);
         addCommitInfo(changes, commitInfo);
+        if ( this.valueMapCache != null ) {
+            this.valueMapCache.invalidate(path);
+        }
         logger.debug("added(changes={})", changes);
         sendOsgiEvent(path, TOPIC_RESOURCE_ADDED, changes, properties);
     }
@@ -134,6 +153,9 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final CommitInfo commitInfo) {
         final Map<String, Object> changes = toEventProperties(added, deleted, changed);
         addCommitInfo(changes, commitInfo);
+        if ( this.valueMapCache != null ) {
+            this.valueMapCache.invalidateTree(path);
+        }
         logger.debug("deleted(changes={})", changes);
         sendOsgiEvent(path, TOPIC_RESOURCE_REMOVED, changes, properties);
     }
@@ -147,6 +169,9 @@ public class OakResourceListener extends NodeObserver implements Closeable {
             final CommitInfo commitInfo) {
         final Map<String, Object> changes = toEventProperties(added, deleted, changed);
         addCommitInfo(changes, commitInfo);
+        if ( this.valueMapCache != null ) {
+            this.valueMapCache.invalidate(path);
+        }
         logger.debug("changed (changes={})", changes);
         sendOsgiEvent(path, TOPIC_RESOURCE_CHANGED, changes, properties);
     }
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.Value;
+
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.resource.internal.SharedValueMapCache.Snapshot;
+import org.apache.sling.jcr.resource.internal.SharedValueMapCache.SnapshotValue;
+import org.apache.sling.jcr.resource.internal.helper.JcrPropertyMapCacheEntry;
+
+/**
+ * A value map serving the properties of a node from a snapshot of the
+ * {@link SharedValueMapCache}.
+ * <p>
+ * A property of the snapshot is only returned if the session of the node
+ * is allowed to read it. Requests which can't be answered by the snapshot
+ * (relative paths and the {@link Property} type) are delegated to a
+ * {@link JcrValueMap}.
+ */
+class SharedValueMap implements ValueMap {
+
+    private final Node node;
+
+    private final HelperData helper;
+
+    private final Snapshot snapshot;
+
+    /** The readable properties which have been accessed so far. */
+    private final Map<String, JcrPropertyMapCacheEntry> cache = new LinkedHashMap<String, JcrPropertyMapCacheEntry>();
+
+    /** Have all properties been checked? */
+    private boolean fullyRead;
+
+    private JcrValueMap delegatee;
+
+    SharedValueMap(final Node node, final HelperData helper, final Snapshot snapshot) {
+        this.node = node;
+        this.helper = helper;
+        this.snapshot = snapshot;
+    }
+
+    private JcrValueMap getDelegatee() {
+        if ( this.delegatee == null ) {
+            this.delegatee = new JcrValueMap(this.node, this.helper);
+        }
+        return this.delegatee;
+    }
+
+    private String checkKey(final String key) {
+        if ( key == null ) {
+            throw new NullPointerException("Key must not be null.");
+        }
+        if ( key.startsWith("./") ) {
+            return key.substring(2);
+        }
+        return key;
+    }
+
+    // ---------- ValueMap
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(final String aKey, final Class<T> type) {
+        final String key = checkKey(aKey);
+        if ( key.indexOf('/') != -1 || type == Property.class ) {
+            return this.getDelegatee().get(key, type);
+        }
+        if ( type == null ) {
+            return (T) get(key);
+        }
+        final JcrPropertyMapCacheEntry entry = this.read(key);
+        if ( entry == null ) {
+            return null;
+        }
+        return entry.convertToType(type, this.node, this.helper.dynamicClassLoader);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(final String aKey, final T defaultValue) {
+        final String key = checkKey(aKey);
+        if ( defaultValue == null ) {
+            return (T) get(key);
+        }
+
+        // special handling in case the default value implements one
+        // of the interface types supported by the convertToType method
+        final Class<T> type = (Class<T>) normalizeClass(defaultValue.getClass());
+
+        T value = get(key, type);
+        if ( value == null ) {
+            value = defaultValue;
+        }
+        return value;
+    }
+
+    // ---------- Map
+
+    public Object get(final Object aKey) {
+        final String key = checkKey(aKey.toString());
+        if ( key.indexOf('/') != -1 ) {
+            return this.getDelegatee().get(key);
+        }
+        final JcrPropertyMapCacheEntry entry = this.read(key);
+        return (entry == null ? null : entry.getPropertyValueOrNull());
+    }
+
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    public boolean containsValue(final Object value) {
+        return getValues().containsValue(value);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        readFully();
+        return cache.size();
+    }
+
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return Collections.unmodifiableSet(getValues().entrySet());
+    }
+
+    public Set<String> keySet() {
+        readFully();
+        return Collections.unmodifiableSet(cache.keySet());
+    }
+
+    public Collection<Object> values() {
+        return Collections.unmodifiableCollection(getValues().values());
+    }
+
+    // ---------- Unsupported Modification methods
+
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object put(final String key, final Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void putAll(final Map<? extends String, ? extends Object> t) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Object remove(final Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    // ---------- Implementation helper
+
+    /**
+     * Read a single property from the snapshot.
+     * @throws IllegalArgumentException if a repository exception occurs
+     */
+    private JcrPropertyMapCacheEntry read(final String key) {
+        JcrPropertyMapCacheEntry entry = cache.get(key);
+        if ( fullyRead || entry != null ) {
+            return entry;
+        }
+        final SnapshotValue value = snapshot.values.get(key);
+        if ( value != null && isReadable(value) ) {
+            entry = new JcrPropertyMapCacheEntry(value.copyValue(), value.isArray);
+            cache.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Read all readable properties from the snapshot.
+     * @throws IllegalArgumentException if a repository exception occurs
+     */
+    private void readFully() {
+        if ( !fullyRead ) {
+            for (final String key : snapshot.values.keySet()) {
+                read(key);
+            }
+            fullyRead = true;
+        }
+    }
+
+    private boolean isReadable(final SnapshotValue value) {
+        final String propPath = snapshot.path.equals("/") ? "/".concat(value.name) : snapshot.path + '/' + value.name;
+        try {
+            return node.getSession().hasPermission(propPath, Session.ACTION_READ);
+        } catch (final RepositoryException re) {
+            throw new IllegalArgumentException(re);
+        }
+    }
+
+    private Map<String, Object> getValues() {
+        readFully();
+        final Map<String, Object> values = new LinkedHashMap<String, Object>(cache.size());
+        for (final Map.Entry<String, JcrPropertyMapCacheEntry> entry : cache.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getPropertyValueOrNull());
+        }
+        return values;
+    }
+
+    private Class<?> normalizeClass(Class<?> type) {
+        if (Calendar.class.isAssignableFrom(type)) {
+            type = Calendar.class;
+        } else if (Date.class.isAssignableFrom(type)) {
+            type = Date.class;
+        } else if (Value.class.isAssignableFrom(type)) {
+            type = Value.class;
+        } else if (Property.class.isAssignableFrom(type)) {
+            type = Property.class;
+        }
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return "SharedValueMap [node=" + this.node + ", values=" + getValues() + "]";
+    }
+}
@@ -0,0 +1,549 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.math.BigDecimal;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.PropertyIterator;
+import javax.jcr.PropertyType;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.jackrabbit.util.ISO9075;
+import org.apache.jackrabbit.util.Text;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.jcr.api.SlingRepository;
+import org.apache.sling.jcr.resource.JcrResourceUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>SharedValueMapCache</code> keeps immutable snapshots of the
+ * properties of JCR nodes which are shared by all resource resolvers.
+ * <p>
+ * Snapshots are keyed by the JCR path of the node and are removed by the
+ * observation listeners once the node changes. Snapshots are read through
+ * administrative sessions which are able to read all properties, each value
+ * map served from a snapshot checks through its own session whether a
+ * property is readable before returning it. Nodes with binary properties
+ * are never cached as their values are bound to a session.
+ * <p>
+ * Snapshots are eventually consistent: a change saved by any session is
+ * visible through the cache once its observation event has been processed.
+ * A resource resolver sees its own changes immediately, as it stops using
+ * the cache once its session had pending changes, once it has been adapted
+ * to the session, which might be saved directly, or once it committed.
+ * <p>
+ * The cache is split into a number of segments, each of which is a least
+ * recently used map guarded by its own lock. Each segment reads its
+ * snapshots through its own session, which is only refreshed if an
+ * invalidation has been received since its last refresh, so cache misses
+ * of different segments don't wait for each other.
+ */
+public class SharedValueMapCache implements SharedValueMapCacheMBean {
+
+    /** The maximum number of segments. */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** The minimum number of entries per segment. */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    /** Marker for nodes which can't be cached. */
+    private static final Snapshot UNCACHEABLE = new Snapshot(null, Collections.<String, SnapshotValue> emptyMap(), 0);
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Segment[] segments;
+
+    private final int maxSize;
+
+    /** The number of invalidation counters. */
+    private static final int STAMPS = 1024;
+
+    /** The repository used to log in the sessions reading the snapshots. */
+    private final SlingRepository repository;
+
+    private final String workspaceName;
+
+    /** Set once the cache is disposed, no more sessions are logged in. */
+    private volatile boolean disposed;
+
+    /**
+     * Invalidation counters, indexed by the hash of the invalidated path,
+     * to detect snapshots read concurrently to an invalidation.
+     */
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+
+    /** Incremented when the whole cache is cleared. */
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Incremented with each invalidation, to detect stale sessions. */
+    private final AtomicLong changes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong memoryUsage = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most (roughly) <code>maxSize</code> nodes
+     * of the default workspace of the repository. The snapshots are read
+     * through administrative sessions which are logged in on demand and
+     * logged out by {@link #dispose()}.
+     */
+    public SharedValueMapCache(final int maxSize, final SlingRepository repository)
+    throws RepositoryException {
+        this.repository = repository;
+        // the first session is used to determine the workspace name
+        final Session first = repository.loginAdministrative(null);
+        this.workspaceName = first.getWorkspace().getName();
+        int count = 1;
+        while ( count < MAX_SEGMENTS && maxSize / (count * 2) >= MIN_SEGMENT_SIZE ) {
+            count = count * 2;
+        }
+        final int segmentSize = (maxSize + count - 1) / count;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(segmentSize);
+        }
+        this.segments[0].session = first;
+        this.maxSize = segmentSize * count;
+    }
+
+    /**
+     * Returns a value map for the node. If the node can't be served from
+     * the cache, a {@link JcrValueMap} is returned.
+     * <p>
+     * A session with pending changes is about to write, so the helper
+     * of its resource resolver stops using the cache: the saved changes
+     * would only become visible once their observation event arrives.
+     */
+    public ValueMap getValueMap(final Node node, final HelperData helper) {
+        try {
+            // transient changes are only visible to the session itself
+            final Session nodeSession = node.getSession();
+            if ( nodeSession.hasPendingChanges() ) {
+                helper.disableValueMapCache();
+                return new JcrValueMap(node, helper);
+            }
+            if ( !workspaceName.equals(nodeSession.getWorkspace().getName()) ) {
+                return new JcrValueMap(node, helper);
+            }
+            final String path = node.getPath();
+            final Segment segment = segmentFor(path);
+            Snapshot snapshot = segment.get(path);
+            if ( snapshot != null ) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                final long stamp = stampOf(path);
+                snapshot = segment.read(path);
+                if ( snapshot == null ) {
+                    return new JcrValueMap(node, helper);
+                }
+                segment.put(path, snapshot, stamp);
+            }
+            if ( snapshot == UNCACHEABLE ) {
+                return new JcrValueMap(node, helper);
+            }
+            return new SharedValueMap(node, helper, snapshot);
+        } catch (final RepositoryException re) {
+            logger.debug("Unable to use shared value map cache for " + node, re);
+            return new JcrValueMap(node, helper);
+        }
+    }
+
+    /**
+     * Removes the snapshot of the node at the given path. This is called
+     * by the observation listeners, until then the cache serves the
+     * properties of the node as they were before the change.
+     */
+    public void invalidate(final String path) {
+        changes.incrementAndGet();
+        stamps.incrementAndGet(stampIndex(path));
+        if ( segmentFor(path).remove(path) ) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the snapshots of the node at the given path and of all
+     * nodes below it.
+     */
+    public void invalidateTree(final String path) {
+        changes.incrementAndGet();
+        // the counter of a path covers all nodes below it, see stampOf
+        stamps.incrementAndGet(stampIndex(path));
+        final String prefix = path.endsWith("/") ? path : path.concat("/");
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.removeTree(path, prefix);
+        }
+        invalidations.addAndGet(count);
+    }
+
+    /**
+     * Removes all snapshots.
+     */
+    public void clear() {
+        changes.incrementAndGet();
+        generation.incrementAndGet();
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.clear();
+        }
+        invalidations.addAndGet(count);
+    }
+
+    /**
+     * Removes all snapshots and logs out the sessions.
+     */
+    public void dispose() {
+        this.disposed = true;
+        this.clear();
+        for (final Segment segment : segments) {
+            segment.logout();
+        }
+    }
+
+    // ---------- SharedValueMapCacheMBean
+
+    public int getCacheSize() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getMaxCacheSize() {
+        return maxSize;
+    }
+
+    public long getCacheHits() {
+        return hits.get();
+    }
+
+    public long getCacheMisses() {
+        return misses.get();
+    }
+
+    public double getHitRatio() {
+        final long h = hits.get();
+        final long lookups = h + misses.get();
+        return lookups == 0 ? 0 : (double) h / lookups;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public long getEstimatedMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    public void flushCache() {
+        this.clear();
+    }
+
+    // ---------- Implementation helper
+
+    private Segment segmentFor(final String path) {
+        int h = path.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static int stampIndex(final String path) {
+        int h = path.hashCode();
+        h ^= (h >>> 16);
+        return h & (STAMPS - 1);
+    }
+
+    /**
+     * Returns the sum of the invalidation counters of the path and all of
+     * its ancestors. As the counters only increase, the sum changes with
+     * each invalidation of the node or of a tree containing it.
+     */
+    long stampOf(final String path) {
+        long stamp = generation.get();
+        String current = path;
+        while ( current != null ) {
+            stamp += stamps.get(stampIndex(current));
+            if ( current.length() <= 1 ) {
+                current = null;
+            } else {
+                final int pos = current.lastIndexOf('/');
+                current = pos > 0 ? current.substring(0, pos) : "/";
+            }
+        }
+        return stamp;
+    }
+
+    private static Snapshot createSnapshot(final Node node, final String path)
+    throws RepositoryException {
+        final Map<String, SnapshotValue> values = new LinkedHashMap<String, SnapshotValue>();
+        long size = 64 + 2 * path.length();
+        final PropertyIterator pi = node.getProperties();
+        while ( pi.hasNext() ) {
+            final Property prop = pi.nextProperty();
+            if ( prop.getType() == PropertyType.BINARY ) {
+                return UNCACHEABLE;
+            }
+            final String name = prop.getName();
+            final String key = getKey(name);
+            if ( !values.containsKey(key) ) {
+                final Object value = JcrResourceUtil.toJavaObject(prop);
+                values.put(key, new SnapshotValue(name, value, prop.isMultiple()));
+                size += 64 + 2 * (key.length() + name.length()) + estimateSize(value);
+            }
+        }
+        return new Snapshot(path, Collections.unmodifiableMap(values), size);
+    }
+
+    /**
+     * Calculates the key for a property name the same way as the
+     * {@link org.apache.sling.jcr.resource.JcrPropertyMap} does.
+     */
+    private static String getKey(final String name) {
+        if ( name.indexOf("_x") != -1 ) {
+            // for compatibility with older versions we use the (wrong)
+            // ISO9075 path encoding
+            final String key = ISO9075.decode(name);
+            if ( !key.equals(name) ) {
+                return key;
+            }
+        }
+        return Text.unescapeIllegalJcrChars(name);
+    }
+
+    private static long estimateSize(final Object value) {
+        if ( value instanceof String ) {
+            return 40 + 2 * ((String) value).length();
+        } else if ( value instanceof Calendar ) {
+            return 400;
+        } else if ( value instanceof BigDecimal ) {
+            return 64;
+        } else if ( value instanceof Object[] ) {
+            long size = 16;
+            for (final Object o : (Object[]) value) {
+                size += 8 + estimateSize(o);
+            }
+            return size;
+        }
+        return 16;
+    }
+
+    /**
+     * The immutable properties of a node.
+     */
+    static final class Snapshot {
+
+        final String path;
+
+        final Map<String, SnapshotValue> values;
+
+        final long estimatedSize;
+
+        Snapshot(final String path, final Map<String, SnapshotValue> values, final long estimatedSize) {
+            this.path = path;
+            this.values = values;
+            this.estimatedSize = estimatedSize;
+        }
+    }
+
+    /**
+     * A single property value of a snapshot.
+     */
+    static final class SnapshotValue {
+
+        /** The JCR name of the property. */
+        final String name;
+
+        final Object value;
+
+        final boolean isArray;
+
+        SnapshotValue(final String name, final Object value, final boolean isArray) {
+            this.name = name;
+            this.value = value;
+            this.isArray = isArray;
+        }
+
+        /**
+         * Returns a copy of the value, mutable values are not shared.
+         */
+        Object copyValue() {
+            if ( value instanceof Object[] ) {
+                final Object[] copy = ((Object[]) value).clone();
+                for (int i = 0; i < copy.length; i++) {
+                    if ( copy[i] instanceof Calendar ) {
+                        copy[i] = ((Calendar) copy[i]).clone();
+                    }
+                }
+                return copy;
+            } else if ( value instanceof Calendar ) {
+                return ((Calendar) value).clone();
+            }
+            return value;
+        }
+    }
+
+    private final class Segment {
+
+        private final Map<String, Snapshot> entries;
+
+        /** Guards the session, which is not used while holding the segment lock. */
+        private final Object readLock = new Object();
+
+        /** The session reading the snapshots of this segment. */
+        private Session session;
+
+        /** The value of the change counter at the last refresh of the session. */
+        private long refreshed;
+
+        Segment(final int capacity) {
+            this.entries = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Snapshot> eldest) {
+                    if ( size() > capacity ) {
+                        evictions.incrementAndGet();
+                        memoryUsage.addAndGet(-eldest.getValue().estimatedSize);
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Reads all properties of the node through the session of the
+         * segment, so the snapshot does not depend on the access rights of
+         * the caller. The session is refreshed only if an invalidation has
+         * been received since the last refresh. Returns <code>null</code> if
+         * the node is not visible to that session or the cache is disposed.
+         */
+        Snapshot read(final String path) throws RepositoryException {
+            synchronized ( readLock ) {
+                final long current = changes.get();
+                if ( session == null ) {
+                    if ( disposed ) {
+                        return null;
+                    }
+                    session = repository.loginAdministrative(workspaceName);
+                } else if ( !session.isLive() ) {
+                    return null;
+                } else if ( current != refreshed ) {
+                    // get the latest persisted state
+                    session.refresh(false);
+                }
+                refreshed = current;
+                if ( disposed ) {
+                    // dispose might have missed the new session
+                    logout();
+                    return null;
+                }
+                if ( !session.nodeExists(path) ) {
+                    return null;
+                }
+                return createSnapshot(session.getNode(path), path);
+            }
+        }
+
+        void logout() {
+            synchronized ( readLock ) {
+                if ( session != null ) {
+                    session.logout();
+                }
+            }
+        }
+
+        synchronized Snapshot get(final String path) {
+            return entries.get(path);
+        }
+
+        /**
+         * Adds the snapshot unless the node has been invalidated since it
+         * has been read.
+         */
+        synchronized void put(final String path, final Snapshot snapshot, final long readStamp) {
+            if ( stampOf(path) == readStamp ) {
+                final Snapshot old = entries.put(path, snapshot);
+                memoryUsage.addAndGet(snapshot.estimatedSize - (old == null ? 0 : old.estimatedSize));
+            }
+        }
+
+        synchronized boolean remove(final String path) {
+            final Snapshot old = entries.remove(path);
+            if ( old != null ) {
+                memoryUsage.addAndGet(-old.estimatedSize);
+                return true;
+            }
+            return false;
+        }
+
+        synchronized int removeTree(final String path, final String prefix) {
+            int count = 0;
+            final Iterator<Map.Entry<String, Snapshot>> i = entries.entrySet().iterator();
+            while ( i.hasNext() ) {
+                final Map.Entry<String, Snapshot> entry = i.next();
+                if ( entry.getKey().equals(path) || entry.getKey().startsWith(prefix) ) {
+                    memoryUsage.addAndGet(-entry.getValue().estimatedSize);
+                    i.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized int clear() {
+            final int count = entries.size();
+            for (final Snapshot snapshot : entries.values()) {
+                memoryUsage.addAndGet(-snapshot.estimatedSize);
+            }
+            entries.clear();
+            return count;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
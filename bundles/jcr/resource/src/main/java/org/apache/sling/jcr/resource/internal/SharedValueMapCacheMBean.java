@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+/**
+ * MBean interface for the {@link SharedValueMapCache}.
+ */
+public interface SharedValueMapCacheMBean {
+
+    /**
+     * Returns the number of cached nodes.
+     */
+    int getCacheSize();
+
+    /**
+     * Returns the maximum number of cached nodes.
+     */
+    int getMaxCacheSize();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * Returns the ratio of hits to lookups or <code>0</code> if
+     * there has been no lookup yet.
+     */
+    double getHitRatio();
+
+    long getEvictions();
+
+    long getInvalidations();
+
+    /**
+     * Returns a rough estimate of the memory (in bytes) used by the
+     * cached property values.
+     */
+    long getEstimatedMemoryUsage();
+
+    /**
+     * Removes all entries from the cache.
+     */
+    void flushCache();
+}
@@ -76,6 +76,19 @@ public class JcrPropertyMapCacheEntry {
         }
     }
 
+    /**
+     * Create a new cache entry from a value which has been read from
+     * a property before. Unlike {@link #JcrPropertyMapCacheEntry(Object, Node)}
+     * the value is not checked.
+     * @param value the value
+     * @param isArray whether the value has been read from a multi value property
+     */
+    public JcrPropertyMapCacheEntry(final Object value, final boolean isArray) {
+        this.property = null;
+        this.propertyValue = value;
+        this.isArray = isArray;
+    }
+
     /**
      * Create a new cache entry from a value.
      * @param value the value
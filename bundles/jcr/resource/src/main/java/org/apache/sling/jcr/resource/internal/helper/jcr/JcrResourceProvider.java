@@ -69,6 +69,7 @@ import org.apache.sling.jcr.resource.JcrResourceUtil;
 import org.apache.sling.jcr.resource.internal.HelperData;
 import org.apache.sling.jcr.resource.internal.JcrModifiableValueMap;
 import org.apache.sling.jcr.resource.internal.NodeUtil;
+import org.apache.sling.jcr.resource.internal.SharedValueMapCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -119,8 +120,16 @@ public class JcrResourceProvider
                                final ClassLoader dynamicClassLoader,
                                final RepositoryHolder repositoryHolder,
                                final PathMapper pathMapper) {
+        this(session, dynamicClassLoader, repositoryHolder, pathMapper, null);
+    }
+
+    public JcrResourceProvider(final Session session,
+                               final ClassLoader dynamicClassLoader,
+                               final RepositoryHolder repositoryHolder,
+                               final PathMapper pathMapper,
+                               final SharedValueMapCache valueMapCache) {
         this.session = session;
-        this.helper = new HelperData(dynamicClassLoader, pathMapper);
+        this.helper = new HelperData(dynamicClassLoader, pathMapper, valueMapCache);
         this.repositoryHolder = repositoryHolder;
     }
 
@@ -493,6 +502,8 @@ public class JcrResourceProvider
     @Override
     public <AdapterType> AdapterType adaptTo(Class<AdapterType> type) {
         if (type == Session.class) {
+            // changes saved directly through the session are not seen by the shared cache
+            this.helper.disableValueMapCache();
             return (AdapterType) session;
         } else if (type == Principal.class) {
             try {
@@ -635,6 +646,8 @@ public class JcrResourceProvider
         } catch (final RepositoryException e) {
             throw new PersistenceException("Unable to commit changes to session.", e);
         }
+        // make sure this session sees its own changes
+        this.helper.disableValueMapCache();
     }
 
     /**
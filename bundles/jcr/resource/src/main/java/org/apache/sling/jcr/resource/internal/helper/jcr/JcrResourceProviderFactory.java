@@ -21,6 +21,8 @@ package org.apache.sling.jcr.resource.internal.helper.jcr;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -52,12 +54,16 @@ import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.jcr.api.SlingRepository;
 import org.apache.sling.jcr.resource.JcrResourceConstants;
 import org.apache.sling.jcr.resource.internal.JcrResourceListener;
+import org.apache.sling.jcr.resource.internal.JcrResourceListenerMBean;
 import org.apache.sling.jcr.resource.internal.OakResourceListener;
 import org.apache.sling.jcr.resource.internal.ObservationListenerSupport;
+import org.apache.sling.jcr.resource.internal.SharedValueMapCache;
+import org.apache.sling.jcr.resource.internal.SharedValueMapCacheMBean;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -101,6 +107,41 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
             description = "Maximum number of pending revisions in a observation listener queue")
     private static final String OBSERVATION_QUEUE_LENGTH = "oak.observation.queue-length";
 
+    private static final int DEFAULT_VALUE_MAP_CACHE_SIZE = 0;
+
+    @Property(
+            intValue = DEFAULT_VALUE_MAP_CACHE_SIZE,
+            label = "Shared ValueMap Cache Size",
+            description = "Maximum number of nodes whose properties are cached and shared between all resource resolvers. " +
+                          "Changes become visible once the observation event has been processed, " +
+                          "a resource resolver sees its own changes once it had pending changes, committed " +
+                          "or has been adapted to the JCR session. " +
+                          "A value of 0 (the default) disables the cache.")
+    private static final String VALUE_MAP_CACHE_SIZE = "resource.valuemap.cache.size";
+
+    private static final long DEFAULT_OBSERVATION_BATCH_WINDOW = 0;
+
+    @Property(
+            longValue = DEFAULT_OBSERVATION_BATCH_WINDOW,
+            label = "Observation Batch Window",
+            description = "Time in milliseconds resource events are collected and coalesced before they are sent: " +
+                          "events for the same resource are merged and the removal of a resource replaces all " +
+                          "events for its subtree. Only used if the repository is not Oak. " +
+                          "A value of 0 (the default) sends every event.")
+    private static final String OBSERVATION_BATCH_WINDOW = "resource.observation.batch.window";
+
+    private static final boolean DEFAULT_OBSERVATION_CHANGE_SETS = false;
+
+    @Property(
+            boolValue = DEFAULT_OBSERVATION_CHANGE_SETS,
+            label = "Observation Change Sets",
+            description = "If enabled together with a batch window, only one event is sent per subtree within the " +
+                          "window, for the top-most changed path. The paths of the changes below it are listed in the " +
+                          "resourceAddedPaths, resourceChangedPaths and resourceRemovedPaths properties, event handlers " +
+                          "must read these to see changes below the event path. The resource type is only looked up for " +
+                          "the sent events. Only used if the repository is not Oak. Disabled by default.")
+    private static final String OBSERVATION_CHANGE_SETS = "resource.observation.changesets";
+
     private static final String REPOSITORY_REFERNENCE_NAME = "repository";
 
     /** The dynamic class loader */
@@ -122,6 +163,13 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
     /** The JCR observation listener. */
     private Closeable listener;
 
+    /** The shared value map cache, if enabled. */
+    private volatile SharedValueMapCache valueMapCache;
+
+    private ServiceRegistration valueMapCacheMBeanRegistration;
+
+    private ServiceRegistration listenerMBeanRegistration;
+
     @Activate
     protected void activate(final ComponentContext context) throws RepositoryException {
 
@@ -149,6 +197,11 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
                 }
             }
         }
+        final int valueMapCacheSize = PropertiesUtil.toInteger(context.getProperties().get(VALUE_MAP_CACHE_SIZE), DEFAULT_VALUE_MAP_CACHE_SIZE);
+        // the snapshots of the cache are read through administrative sessions
+        // and filtered by the session of each resource resolver
+        final SharedValueMapCache cache = valueMapCacheSize > 0
+                ? new SharedValueMapCache(valueMapCacheSize, repository) : null;
         final String root = PropertiesUtil.toString(context.getProperties().get(ResourceProvider.ROOTS), "/");
         final ObservationListenerSupport support = new ObservationListenerSupport(context.getBundleContext(), repository);
         boolean closeSupport = true;
@@ -156,7 +209,7 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
             if ( isOak ) {
                 try {
                     int observationQueueLength = PropertiesUtil.toInteger(context.getProperties().get(OBSERVATION_QUEUE_LENGTH), DEFAULT_OBSERVATION_QUEUE_LENGTH);
-                    this.listener = new OakResourceListener(root, support, context.getBundleContext(), executor, pathMapper, observationQueueLength);
+                    this.listener = new OakResourceListener(root, support, context.getBundleContext(), executor, pathMapper, observationQueueLength, cache);
                     log.info("Detected Oak based repository. Using improved JCR Resource Listener with observation queue length {}", observationQueueLength);
                 } catch ( final RepositoryException re ) {
                     throw re;
@@ -165,18 +218,57 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
                 }
             }
             if ( this.listener == null ) {
-                this.listener = new JcrResourceListener(root, support, pathMapper);
+                final long batchWindow = PropertiesUtil.toLong(context.getProperties().get(OBSERVATION_BATCH_WINDOW), DEFAULT_OBSERVATION_BATCH_WINDOW);
+                final boolean changeSets = PropertiesUtil.toBoolean(context.getProperties().get(OBSERVATION_CHANGE_SETS), DEFAULT_OBSERVATION_CHANGE_SETS);
+                final JcrResourceListener jcrListener = new JcrResourceListener(root, support, pathMapper, cache, batchWindow, changeSets);
+                this.listener = jcrListener;
+                try {
+                    final Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+                    mbeanProps.put("jmx.objectname", "org.apache.sling:type=jcrResource,service=JcrResourceListener");
+                    this.listenerMBeanRegistration = context.getBundleContext().registerService(
+                            JcrResourceListenerMBean.class.getName(), jcrListener, mbeanProps);
+                } catch (final Throwable t) {
+                    log.debug("Unable to register mbean");
+                }
             }
             closeSupport = false;
         } finally {
             if ( closeSupport ) {
                 support.dispose();
+                if ( cache != null ) {
+                    cache.dispose();
+                }
+            }
+        }
+        if ( cache != null ) {
+            try {
+                final Dictionary<String, String> mbeanProps = new Hashtable<String, String>();
+                mbeanProps.put("jmx.objectname", "org.apache.sling:type=jcrResource,service=SharedValueMapCache");
+                this.valueMapCacheMBeanRegistration = context.getBundleContext().registerService(
+                        SharedValueMapCacheMBean.class.getName(), cache, mbeanProps);
+            } catch (final Throwable t) {
+                log.debug("Unable to register mbean");
             }
+            log.info("Using shared value map cache with size {}", valueMapCacheSize);
         }
+        this.valueMapCache = cache;
     }
 
     @Deactivate
     protected void deactivate() {
+        if ( this.listenerMBeanRegistration != null ) {
+            this.listenerMBeanRegistration.unregister();
+            this.listenerMBeanRegistration = null;
+        }
+        if ( this.valueMapCacheMBeanRegistration != null ) {
+            this.valueMapCacheMBeanRegistration.unregister();
+            this.valueMapCacheMBeanRegistration = null;
+        }
+        final SharedValueMapCache cache = this.valueMapCache;
+        if ( cache != null ) {
+            this.valueMapCache = null;
+            cache.dispose();
+        }
         if ( this.listener != null ) {
             try {
                 this.listener.close();
@@ -356,7 +448,7 @@ public class JcrResourceProviderFactory implements ResourceProviderFactory {
             holder.setSession(session);
         }
 
-        return new JcrResourceProvider(session, this.getDynamicClassLoader(), holder, pathMapper);
+        return new JcrResourceProvider(session, this.getDynamicClassLoader(), holder, pathMapper, this.valueMapCache);
     }
 
     /**
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.SlingConstants;
+import org.junit.Test;
+import org.osgi.service.event.EventConstants;
+
+/**
+ * Test of the event coalescing of the JcrResourceListener.
+ */
+public class JcrResourceListenerCoalesceTest {
+
+    private final List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+
+    private Map<String, Object> add(final String topic, final String path, final String... changed) {
+        final Map<String, Object> event = new HashMap<String, Object>();
+        event.put(EventConstants.EVENT_TOPIC, topic);
+        event.put(SlingConstants.PROPERTY_PATH, path);
+        if (changed.length > 0) {
+            event.put(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES, changed);
+        }
+        batch.add(event);
+        return event;
+    }
+
+    private void assertEvent(final Map<String, Object> event, final String topic, final String path) {
+        assertEquals(topic, event.get(EventConstants.EVENT_TOPIC));
+        assertEquals(path, event.get(SlingConstants.PROPERTY_PATH));
+    }
+
+    @Test
+    public void testMergeChanges() {
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a", "x");
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/b", "x");
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a", "y");
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a", "x");
+
+        final List<Map<String, Object>> result = JcrResourceListener.coalesce(batch);
+        assertEquals(2, result.size());
+        assertEvent(result.get(0), SlingConstants.TOPIC_RESOURCE_CHANGED, "/a");
+        assertEquals(new HashSet<String>(Arrays.asList("x", "y")), new HashSet<String>(Arrays.asList(
+            (String[]) result.get(0).get(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES))));
+        assertEvent(result.get(1), SlingConstants.TOPIC_RESOURCE_CHANGED, "/b");
+    }
+
+    @Test
+    public void testAddedAbsorbsChanges() {
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a/b", "x");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/a");
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a", "y");
+
+        final List<Map<String, Object>> result = JcrResourceListener.coalesce(batch);
+        assertEquals(2, result.size());
+        assertEvent(result.get(0), SlingConstants.TOPIC_RESOURCE_CHANGED, "/a/b");
+        assertEvent(result.get(1), SlingConstants.TOPIC_RESOURCE_ADDED, "/a");
+        assertEquals(Arrays.asList("y"), Arrays.asList(
+            (String[]) result.get(1).get(SlingConstants.PROPERTY_CHANGED_ATTRIBUTES)));
+    }
+
+    @Test
+    public void testRemovalReplacesSubtree() {
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/a");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/a/b");
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a/b/c", "x");
+        add(SlingConstants.TOPIC_RESOURCE_REMOVED, "/a/b/c");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/ab");
+        add(SlingConstants.TOPIC_RESOURCE_REMOVED, "/a");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/a");
+
+        final List<Map<String, Object>> result = JcrResourceListener.coalesce(batch);
+        assertEquals(3, result.size());
+        assertEvent(result.get(0), SlingConstants.TOPIC_RESOURCE_ADDED, "/ab");
+        assertEvent(result.get(1), SlingConstants.TOPIC_RESOURCE_REMOVED, "/a");
+        assertEvent(result.get(2), SlingConstants.TOPIC_RESOURCE_ADDED, "/a");
+    }
+
+    @Test
+    public void testChangeSets() {
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a/b", "x");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/c");
+        add(SlingConstants.TOPIC_RESOURCE_CHANGED, "/a", "y");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/a/b/c");
+        add(SlingConstants.TOPIC_RESOURCE_REMOVED, "/a/d");
+        add(SlingConstants.TOPIC_RESOURCE_ADDED, "/ab");
+
+        final List<Map<String, Object>> result = JcrResourceListener.toChangeSets(JcrResourceListener.coalesce(batch));
+        assertEquals(3, result.size());
+        assertEvent(result.get(0), SlingConstants.TOPIC_RESOURCE_ADDED, "/c");
+        assertEvent(result.get(1), SlingConstants.TOPIC_RESOURCE_CHANGED, "/a");
+        assertEquals(Arrays.asList("/a/b/c"), Arrays.asList(
+            (String[]) result.get(1).get(JcrResourceListener.PROPERTY_ADDED_PATHS)));
+        assertEquals(Arrays.asList("/a/b"), Arrays.asList(
+            (String[]) result.get(1).get(JcrResourceListener.PROPERTY_CHANGED_PATHS)));
+        assertEquals(Arrays.asList("/a/d"), Arrays.asList(
+            (String[]) result.get(1).get(JcrResourceListener.PROPERTY_REMOVED_PATHS)));
+        assertEvent(result.get(2), SlingConstants.TOPIC_RESOURCE_ADDED, "/ab");
+        assertNull(result.get(2).get(JcrResourceListener.PROPERTY_ADDED_PATHS));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.jcr.resource.internal;
+
+import java.io.ByteArrayInputStream;
+import java.util.Calendar;
+
+import javax.jcr.Node;
+import javax.jcr.Property;
+import javax.jcr.Session;
+
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+
+public class SharedValueMapCacheTest extends RepositoryTestBase {
+
+    private String rootPath;
+
+    private Node rootNode;
+
+    private SharedValueMapCache cache;
+
+    private HelperData helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        rootPath = "/test_" + System.currentTimeMillis();
+        rootNode = getSession().getRootNode().addNode(rootPath.substring(1), "nt:unstructured");
+        rootNode.setProperty("string", "test");
+        rootNode.setProperty("long", 1L);
+        rootNode.setProperty("multi", new String[] {"a", "b"});
+        rootNode.setProperty("date", Calendar.getInstance());
+        getSession().save();
+
+        cache = new SharedValueMapCache(100, getRepository());
+        helper = new HelperData(null, new PathMapperImpl(), cache);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cache.dispose();
+        if (rootNode != null) {
+            rootNode.remove();
+            getSession().save();
+        }
+        super.tearDown();
+    }
+
+    public void testSharedBetweenSessions() throws Exception {
+        final ValueMap first = helper.createValueMap(rootNode);
+        assertTrue(first instanceof SharedValueMap);
+        assertEquals(1, cache.getCacheMisses());
+
+        final Session other = getRepository().loginAdministrative(null);
+        try {
+            final ValueMap second = helper.createValueMap(other.getNode(rootPath));
+            assertEquals(1, cache.getCacheHits());
+            assertEquals(0.5, cache.getHitRatio(), 0.001);
+            assertEquals(1, cache.getCacheSize());
+            assertTrue(cache.getEstimatedMemoryUsage() > 0);
+
+            final ValueMap expected = new JcrValueMap(rootNode, helper);
+            assertEquals(expected.keySet(), second.keySet());
+            assertEquals("test", second.get("string"));
+            assertEquals(Long.valueOf(1), second.get("long", Long.class));
+            assertEquals("1", second.get("long", String.class));
+            assertEquals(5, second.get("missing", 5).intValue());
+            assertEquals(2, second.get("multi", String[].class).length);
+            assertNotNull(second.get("string", Property.class));
+        } finally {
+            other.logout();
+        }
+    }
+
+    public void testMutableValuesAreNotShared() throws Exception {
+        final Calendar date = helper.createValueMap(rootNode).get("date", Calendar.class);
+        date.add(Calendar.YEAR, 1);
+        final String[] multi = (String[]) helper.createValueMap(rootNode).get("multi");
+        multi[0] = "changed";
+
+        final ValueMap vm = helper.createValueMap(rootNode);
+        assertFalse(date.equals(vm.get("date", Calendar.class)));
+        assertEquals("a", ((String[]) vm.get("multi"))[0]);
+    }
+
+    public void testInvalidate() throws Exception {
+        assertEquals("test", helper.createValueMap(rootNode).get("string"));
+        rootNode.setProperty("string", "changed");
+        // pending changes are not served from the cache
+        assertEquals("changed", helper.createValueMap(rootNode).get("string"));
+        getSession().save();
+
+        cache.invalidate(rootPath);
+        assertEquals(1, cache.getInvalidations());
+        final HelperData other = new HelperData(null, new PathMapperImpl(), cache);
+        assertEquals("changed", other.createValueMap(rootNode).get("string"));
+    }
+
+    public void testReadYourWritesAfterPendingChanges() throws Exception {
+        assertTrue(helper.createValueMap(rootNode) instanceof SharedValueMap);
+        rootNode.setProperty("string", "changed");
+        assertTrue(helper.createValueMap(rootNode) instanceof JcrValueMap);
+        getSession().save();
+
+        // no observation event yet, the resolver must still see its own change
+        assertEquals("changed", helper.createValueMap(rootNode).get("string"));
+        assertTrue(helper.createValueMap(rootNode) instanceof JcrValueMap);
+    }
+
+    public void testEventuallyConsistentForOtherSessions() throws Exception {
+        assertEquals("test", helper.createValueMap(rootNode).get("string"));
+
+        final Session other = getRepository().loginAdministrative(null);
+        try {
+            other.getNode(rootPath).setProperty("string", "changed");
+            other.save();
+        } finally {
+            other.logout();
+        }
+
+        // the change becomes visible once the observation event is processed
+        assertEquals("test", helper.createValueMap(rootNode).get("string"));
+        cache.invalidate(rootPath);
+        assertEquals("changed", helper.createValueMap(rootNode).get("string"));
+        assertTrue(helper.createValueMap(rootNode) instanceof SharedValueMap);
+    }
+
+    public void testInvalidateTree() throws Exception {
+        final Node child = rootNode.addNode("child", "nt:unstructured");
+        getSession().save();
+        helper.createValueMap(rootNode);
+        helper.createValueMap(child);
+        assertEquals(2, cache.getCacheSize());
+
+        cache.invalidateTree(rootPath + "/child");
+        assertEquals(1, cache.getCacheSize());
+        cache.invalidateTree(rootPath);
+        assertEquals(0, cache.getCacheSize());
+        assertEquals(0, cache.getEstimatedMemoryUsage());
+    }
+
+    public void testBinaryNotCached() throws Exception {
+        final Node child = rootNode.addNode("binary", "nt:unstructured");
+        child.setProperty("data", getSession().getValueFactory().createBinary(new ByteArrayInputStream(new byte[] {1, 2})));
+        getSession().save();
+
+        assertTrue(helper.createValueMap(child) instanceof JcrValueMap);
+        assertTrue(helper.createValueMap(child) instanceof JcrValueMap);
+    }
+
+    public void testEviction() throws Exception {
+        final SharedValueMapCache small = new SharedValueMapCache(2, getRepository());
+        try {
+            final HelperData smallHelper = new HelperData(null, new PathMapperImpl(), small);
+            for (int i = 0; i < 5; i++) {
+                final Node child = rootNode.addNode("child" + i, "nt:unstructured");
+                getSession().save();
+                smallHelper.createValueMap(child);
+            }
+            assertEquals(2, small.getCacheSize());
+            assertEquals(3, small.getEvictions());
+        } finally {
+            small.dispose();
+        }
+    }
+
+    public void testInvalidationIsTrackedPerPath() throws Exception {
+        final long node = cache.stampOf(rootPath + "/a/b");
+        final long other = cache.stampOf(rootPath + "/c");
+
+        cache.invalidate(rootPath + "/a/b");
+        assertFalse(node == cache.stampOf(rootPath + "/a/b"));
+        assertEquals(other, cache.stampOf(rootPath + "/c"));
+
+        // a tree invalidation covers all descendants
+        final long child = cache.stampOf(rootPath + "/a/b/c");
+        cache.invalidateTree(rootPath + "/a");
+        assertFalse(child == cache.stampOf(rootPath + "/a/b/c"));
+        assertEquals(other, cache.stampOf(rootPath + "/c"));
+    }
+
+    public void testDisposed() throws Exception {
+        cache.dispose();
+        assertTrue(helper.createValueMap(rootNode) instanceof JcrValueMap);
+    }
+
+    public void testDisable() throws Exception {
+        helper.disableValueMapCache();
+        assertTrue(helper.createValueMap(rootNode) instanceof JcrValueMap);
+        assertEquals(0, cache.getCacheSize());
+    }
+}
@@ -22,7 +22,11 @@ import java.security.Principal;
 
 import javax.jcr.Session;
 
+import org.apache.sling.api.resource.ValueMap;
 import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+import org.apache.sling.jcr.resource.internal.JcrValueMap;
+import org.apache.sling.jcr.resource.internal.PathMapperImpl;
+import org.apache.sling.jcr.resource.internal.SharedValueMapCache;
 import org.junit.Assert;
  
 public class JcrResourceProviderTest extends RepositoryTestBase {
@@ -46,6 +50,20 @@ public class JcrResourceProviderTest extends RepositoryTestBase {
         jcrResourceProvider = new JcrResourceProvider(session, null, null, null);
         Assert.assertNotNull(jcrResourceProvider.adaptTo(Principal.class));
     }
+
+    public void testAdaptTo_SessionDisablesValueMapCache() throws Exception {
+        final SharedValueMapCache cache = new SharedValueMapCache(10, getRepository());
+        try {
+            jcrResourceProvider = new JcrResourceProvider(session, null, null, new PathMapperImpl(), cache);
+            Assert.assertFalse(jcrResourceProvider.getResource(null, "/").adaptTo(ValueMap.class) instanceof JcrValueMap);
+
+            // changes might be saved through the session directly
+            Assert.assertNotNull(jcrResourceProvider.adaptTo(Session.class));
+            Assert.assertTrue(jcrResourceProvider.getResource(null, "/").adaptTo(ValueMap.class) instanceof JcrValueMap);
+        } finally {
+            cache.dispose();
+        }
+    }
 }
 
 
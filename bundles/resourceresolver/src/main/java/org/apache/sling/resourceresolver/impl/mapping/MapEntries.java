@@ -108,6 +108,9 @@ public class MapEntries implements EventHandler {
 
     private Map<String, List<MapEntry>> resolveMapsMap;
 
+    /** Index over the global list of the resolve maps. */
+    private volatile MapEntryIndex globalResolveIndex = MapEntryIndex.EMPTY;
+
     private Collection<MapEntry> mapMaps;
 
     private Map <String,List <String>> vanityTargets;
@@ -447,6 +450,7 @@ public class MapEntries implements EventHandler {
         // sort global list and add to map
         Collections.sort(globalResolveMap);
         resolveMapsMap.put(GLOBAL_LIST_KEY, globalResolveMap);
+        this.globalResolveIndex = new MapEntryIndex(globalResolveMap);
         this.mapMaps = Collections.unmodifiableSet(new TreeSet<MapEntry>(newMapMaps.values()));
     }
 
@@ -687,6 +691,8 @@ public class MapEntries implements EventHandler {
     /**
      * Calculate the resolve maps. As the entries have to be sorted by pattern
      * length, we have to create a new list containing all relevant entries.
+     * Only those entries of the global list are considered, whose literal
+     * prefix matches the request path.
      */
     public Iterator<MapEntry> getResolveMapsIterator(final String requestPath) {
         String key = null;
@@ -696,7 +702,8 @@ public class MapEntries implements EventHandler {
             key = requestPath.substring(secondIndex);
         }
 
-        return new MapEntryIterator(key, resolveMapsMap, vanityPathPrecedence);
+        final Iterator<MapEntry> globalListIterator = this.globalResolveIndex.getResolveMaps(requestPath).iterator();
+        return new MapEntryIterator(key, resolveMapsMap, globalListIterator, vanityPathPrecedence);
     }
 
     public Collection<MapEntry> getMapMaps() {
@@ -1432,10 +1439,11 @@ public class MapEntries implements EventHandler {
         
         private boolean vanityPathPrecedence;
 
-        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap, final boolean vanityPathPrecedence) {
+        public MapEntryIterator(final String startKey, final Map<String, List<MapEntry>> resolveMapsMap,
+                final Iterator<MapEntry> globalListIterator, final boolean vanityPathPrecedence) {
             this.key = startKey;
             this.resolveMapsMap = resolveMapsMap;
-            this.globalListIterator = this.resolveMapsMap.get(GLOBAL_LIST_KEY).iterator();
+            this.globalListIterator = globalListIterator;
             this.vanityPathPrecedence = vanityPathPrecedence;
             this.seek();
         }
@@ -0,0 +1,389 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>MapEntryIndex</code> is an immutable index over the sorted
+ * global list of resolve {@link MapEntry} instances.
+ * <p>
+ * Each entry is registered in a path segment trie under the literal prefix
+ * of its (anchored) regular expression, where an unescaped dot is kept as a
+ * placeholder for any single character. Looking up a request path only
+ * walks the trie along the segments of that path and thus only returns the
+ * entries which might possibly match. Entries without a literal prefix (for
+ * example those starting with {@link MapEntries#ANY_SCHEME_HOST}) are kept
+ * at the root and are always returned.
+ * <p>
+ * Segments containing placeholders, like the host segment
+ * <code>localhost.8080</code> of most <code>/etc/map</code> entries, are
+ * indexed by their placeholder positions: a segment of the request path is
+ * looked up with the characters at these positions replaced by a dot, so
+ * the dot only matches a single character within that segment.
+ * <p>
+ * The entries returned by {@link #getResolveMaps(String)} keep the order
+ * of the list the index has been created from.
+ */
+class MapEntryIndex {
+
+    static final MapEntryIndex EMPTY = new MapEntryIndex(Collections.<MapEntry> emptyList());
+
+    private static final Comparator<IndexedEntry> RANK_ORDER = new Comparator<IndexedEntry>() {
+        public int compare(final IndexedEntry o1, final IndexedEntry o2) {
+            return o1.rank < o2.rank ? -1 : (o1.rank == o2.rank ? 0 : 1);
+        }
+    };
+
+    private final Node root = new Node();
+
+    private final int size;
+
+    /**
+     * Creates the index for the given entries, which are expected to be
+     * sorted already.
+     */
+    MapEntryIndex(final List<MapEntry> entries) {
+        int rank = 0;
+        for (final MapEntry entry : entries) {
+            final Prefix prefix = getLiteralPrefix(entry.getPattern());
+            // descend along the complete segments of the prefix
+            Node node = root;
+            int start = 0;
+            int slash;
+            int placeholder = 0;
+            while ((slash = prefix.chars.indexOf('/', start)) != -1) {
+                final int first = placeholder;
+                while (placeholder < prefix.placeholders.length && prefix.placeholders[placeholder] < slash) {
+                    placeholder++;
+                }
+                final String segment = prefix.chars.substring(start, slash);
+                if (placeholder == first) {
+                    node = node.getOrCreateChild(segment);
+                } else {
+                    final int[] positions = new int[placeholder - first];
+                    for (int i = 0; i < positions.length; i++) {
+                        positions[i] = prefix.placeholders[first + i] - start;
+                    }
+                    node = node.getOrCreateMaskedChild(segment, positions);
+                }
+                start = slash + 1;
+            }
+            node.add(new IndexedEntry(rank++, prefix, entry));
+        }
+        this.size = rank;
+    }
+
+    /**
+     * Returns the number of indexed entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the entries whose literal prefix matches the request path,
+     * in the order of the list the index has been created from.
+     */
+    List<MapEntry> getResolveMaps(final String requestPath) {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        final List<IndexedEntry> candidates = new ArrayList<IndexedEntry>();
+        int contributingNodes = root.collect(requestPath, candidates) ? 1 : 0;
+
+        List<Node> nodes = Collections.singletonList(root);
+        int start = 0;
+        int slash;
+        while (!nodes.isEmpty() && (slash = requestPath.indexOf('/', start)) != -1) {
+            final String segment = requestPath.substring(start, slash);
+            final List<Node> children = new ArrayList<Node>(1);
+            for (final Node node : nodes) {
+                node.addChildren(segment, children);
+            }
+            for (final Node node : children) {
+                if (node.collect(requestPath, candidates)) {
+                    contributingNodes++;
+                }
+            }
+            nodes = children;
+            start = slash + 1;
+        }
+
+        // entries of a single node are already in order
+        if (contributingNodes > 1) {
+            Collections.sort(candidates, RANK_ORDER);
+        }
+
+        final List<MapEntry> result = new ArrayList<MapEntry>(candidates.size());
+        for (final IndexedEntry candidate : candidates) {
+            result.add(candidate.entry);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the prefix any value matched by the given anchored regular
+     * expression has to start with. If the pattern contains an alternation,
+     * the empty prefix is returned as the anchor does not apply to all
+     * alternatives.
+     */
+    static Prefix getLiteralPrefix(final String pattern) {
+        if (!pattern.startsWith("^") || containsAlternation(pattern)) {
+            return Prefix.EMPTY;
+        }
+
+        final StringBuilder prefix = new StringBuilder();
+        final List<Integer> placeholders = new ArrayList<Integer>();
+        for (int i = 1; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                // escaped non alphanumeric characters are literals,
+                // anything else is a character class or quotation
+                if (i + 1 < pattern.length() && !Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+                    prefix.append(pattern.charAt(++i));
+                    continue;
+                }
+                break;
+            } else if ("?*+{".indexOf(c) >= 0) {
+                // the quantified character is optional
+                if (prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                    if (!placeholders.isEmpty() && placeholders.get(placeholders.size() - 1) == prefix.length()) {
+                        placeholders.remove(placeholders.size() - 1);
+                    }
+                }
+                break;
+            } else if (c == '.') {
+                placeholders.add(prefix.length());
+            } else if ("[]()^$|".indexOf(c) >= 0) {
+                break;
+            }
+            prefix.append(c);
+        }
+
+        final int[] positions = new int[placeholders.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = placeholders.get(i);
+        }
+        return new Prefix(prefix.toString(), positions);
+    }
+
+    private static boolean containsAlternation(final String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '|') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The literal prefix of a pattern. The characters at the placeholder
+     * positions match any character.
+     */
+    static final class Prefix {
+
+        static final Prefix EMPTY = new Prefix("", new int[0]);
+
+        final String chars;
+
+        final int[] placeholders;
+
+        Prefix(final String chars, final int[] placeholders) {
+            this.chars = chars;
+            this.placeholders = placeholders;
+        }
+
+        boolean matches(final String value) {
+            if (placeholders.length == 0) {
+                return value.startsWith(chars);
+            }
+            if (value.length() < chars.length()) {
+                return false;
+            }
+            int start = 0;
+            for (final int placeholder : placeholders) {
+                if (!value.regionMatches(start, chars, start, placeholder - start)) {
+                    return false;
+                }
+                start = placeholder + 1;
+            }
+            return value.regionMatches(start, chars, start, chars.length() - start);
+        }
+
+        @Override
+        public String toString() {
+            return chars;
+        }
+    }
+
+    private static final class IndexedEntry {
+
+        final int rank;
+
+        final Prefix prefix;
+
+        final MapEntry entry;
+
+        IndexedEntry(final int rank, final Prefix prefix, final MapEntry entry) {
+            this.rank = rank;
+            this.prefix = prefix;
+            this.entry = entry;
+        }
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> children;
+
+        /** The masks of the child segments with placeholders by segment length. */
+        private Map<Integer, List<Mask>> masks;
+
+        private List<IndexedEntry> entries;
+
+        /**
+         * Adds the children matching the segment of a request path.
+         */
+        void addChildren(final String segment, final List<Node> result) {
+            if (children != null) {
+                final Node child = children.get(segment);
+                if (child != null) {
+                    result.add(child);
+                }
+            }
+            if (masks != null) {
+                final List<Mask> candidates = masks.get(segment.length());
+                if (candidates != null) {
+                    for (final Mask mask : candidates) {
+                        final Node child = mask.children.get(mask.apply(segment));
+                        if (child != null) {
+                            result.add(child);
+                        }
+                    }
+                }
+            }
+        }
+
+        Node getOrCreateChild(final String segment) {
+            if (children == null) {
+                children = new HashMap<String, Node>();
+            }
+            Node child = children.get(segment);
+            if (child == null) {
+                child = new Node();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        /**
+         * Returns the child for a segment with placeholders at the given
+         * positions of the segment.
+         */
+        Node getOrCreateMaskedChild(final String segment, final int[] positions) {
+            if (masks == null) {
+                masks = new HashMap<Integer, List<Mask>>();
+            }
+            List<Mask> sameLength = masks.get(segment.length());
+            if (sameLength == null) {
+                sameLength = new ArrayList<Mask>(1);
+                masks.put(segment.length(), sameLength);
+            }
+            Mask mask = null;
+            for (final Mask candidate : sameLength) {
+                if (Arrays.equals(candidate.positions, positions)) {
+                    mask = candidate;
+                    break;
+                }
+            }
+            if (mask == null) {
+                mask = new Mask(positions);
+                sameLength.add(mask);
+            }
+            Node child = mask.children.get(segment);
+            if (child == null) {
+                child = new Node();
+                mask.children.put(segment, child);
+            }
+            return child;
+        }
+
+        void add(final IndexedEntry entry) {
+            if (entries == null) {
+                entries = new ArrayList<IndexedEntry>();
+            }
+            entries.add(entry);
+        }
+
+        /**
+         * Adds the entries of this node matching the request path and
+         * returns <code>true</code> if at least one has been added.
+         */
+        boolean collect(final String requestPath, final List<IndexedEntry> candidates) {
+            boolean added = false;
+            if (entries != null) {
+                for (final IndexedEntry entry : entries) {
+                    if (entry.prefix.matches(requestPath)) {
+                        candidates.add(entry);
+                        added = true;
+                    }
+                }
+            }
+            return added;
+        }
+    }
+
+    /**
+     * The children of segments with placeholders at the same positions,
+     * keyed by the segment with a dot at each of these positions.
+     */
+    private static final class Mask {
+
+        final int[] positions;
+
+        final Map<String, Node> children = new HashMap<String, Node>();
+
+        Mask(final int[] positions) {
+            this.positions = positions;
+        }
+
+        /**
+         * Returns the segment of a request path with a dot at each of the
+         * placeholder positions.
+         */
+        String apply(final String segment) {
+            final char[] chars = segment.toCharArray();
+            for (final int position : positions) {
+                chars[position] = '.';
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.resourceresolver.impl.mapping;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MapEntryIndexTest {
+
+    private static String prefix(final String pattern) {
+        return MapEntryIndex.getLiteralPrefix(pattern).toString();
+    }
+
+    @Test public void test_literal_prefix() {
+        assertEquals("http/localhost.80/", prefix("^http/localhost\\.80/"));
+        assertEquals("http/localhost.80/", prefix("^http/localhost.80/"));
+        assertEquals("http/localhost", prefix("^http/localhost.*"));
+        assertEquals("", prefix("^" + MapEntries.ANY_SCHEME_HOST + "/content"));
+        assertEquals("/conten", prefix("^/content?"));
+        assertEquals("/conten", prefix("^/content{1,2}"));
+        assertEquals("/content", prefix("^/content\\d"));
+        assertEquals("/content", prefix("^/content$"));
+        assertEquals("", prefix("^/content|/other"));
+        assertEquals("", prefix("/content"));
+    }
+
+    @Test public void test_placeholder_prefix() {
+        final MapEntryIndex.Prefix prefix = MapEntryIndex.getLiteralPrefix("^http/localhost.80/");
+        assertTrue(prefix.matches("http/localhost.80/content"));
+        assertTrue(prefix.matches("http/localhostX80/content"));
+        assertFalse(prefix.matches("http/localhost.81/content"));
+        assertFalse(prefix.matches("http/localhost.80"));
+    }
+
+    @Test public void test_candidates_match_global_list() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>();
+        entries.add(new MapEntry("http/localhost.80/", -1, false, 0, "/content/"));
+        entries.add(new MapEntry("http/localhost.80/content/a/", -1, false, 0, "/a/"));
+        entries.add(new MapEntry("http/localhost.80/content/b", -1, false, 0, "/b"));
+        entries.add(new MapEntry("http/example.com.80/", -1, false, 0, "/example/"));
+        entries.add(new MapEntry("http/[^/]+\\.80/", -1, false, 0, "/any/"));
+        entries.add(new MapEntry(MapEntries.ANY_SCHEME_HOST + "/libs", -1, false, 0, "/libs"));
+        entries.add(new MapEntry("https/localhost.443/", 302, false, 0, "http://localhost/"));
+        Collections.sort(entries);
+
+        final MapEntryIndex index = new MapEntryIndex(entries);
+        assertEquals(entries.size(), index.size());
+
+        final String[] paths = {
+            "http/localhost.80/content/a/page.html",
+            "http/localhost.80/content/b.html",
+            "http/localhost.80/",
+            "http/localhost.80",
+            "http/example.com.80/libs/x",
+            "https/localhost.443/content/a",
+            "ftp/localhost.21/",
+            "/content/a"
+        };
+        for (final String path : paths) {
+            final List<MapEntry> candidates = index.getResolveMaps(path);
+            final List<MapEntry> expected = new ArrayList<MapEntry>();
+            for (final MapEntry entry : entries) {
+                if (entry.replace(path) != null) {
+                    expected.add(entry);
+                }
+            }
+            // all matching entries must be returned in the original order
+            final List<MapEntry> matching = new ArrayList<MapEntry>();
+            for (final MapEntry entry : candidates) {
+                if (entry.replace(path) != null) {
+                    matching.add(entry);
+                }
+            }
+            assertEquals(path, expected, matching);
+            assertTrue(path, entries.containsAll(candidates));
+            int last = -1;
+            for (final MapEntry entry : candidates) {
+                final int pos = entries.indexOf(entry);
+                assertTrue(path, pos > last);
+                last = pos;
+            }
+        }
+    }
+
+    @Test public void test_non_matching_entries_are_skipped() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new MapEntry("http/host" + i + ".80/", -1, false, 0, "/content/site" + i + "/"));
+        }
+        Collections.sort(entries);
+
+        final MapEntryIndex index = new MapEntryIndex(entries);
+        assertEquals(1, index.getResolveMaps("http/host42.80/page.html").size());
+        assertEquals(0, index.getResolveMaps("http/unknown.80/page.html").size());
+        assertEquals(0, MapEntryIndex.EMPTY.getResolveMaps("http/host42.80/page.html").size());
+    }
+
+    @Test public void test_host_segment_is_indexed() {
+        final List<MapEntry> entries = new ArrayList<MapEntry>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new MapEntry("http/host" + i + ".80/", -1, false, 0, "/content/site" + i + "/"));
+            entries.add(new MapEntry("http/host" + i + ".80/content/", -1, false, 0, "/content/site" + i + "/"));
+        }
+        entries.add(new MapEntry("http/local\\.host.80/", -1, false, 0, "/local/"));
+        Collections.sort(entries);
+
+        final MapEntryIndex index = new MapEntryIndex(entries);
+        // only the entries of the host are candidates
+        assertEquals(2, index.getResolveMaps("http/host42.80/content/page.html").size());
+        // an unescaped dot matches any character within the host segment
+        assertEquals(1, index.getResolveMaps("http/host42:80/page.html").size());
+        assertEquals(1, index.getResolveMaps("http/local.hostX80/page.html").size());
+        assertEquals(0, index.getResolveMaps("http/localXhost.80/page.html").size());
+    }
+}
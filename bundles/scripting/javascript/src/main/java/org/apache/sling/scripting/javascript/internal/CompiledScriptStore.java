@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.javascript.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.apache.sling.scripting.javascript.io.EspReader;
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.GeneratedClassLoader;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.SecurityController;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The <code>CompiledScriptStore</code> persists the classes generated by
+ * Rhino for a script through a {@link ClassLoaderWriter}, so that scripts
+ * do not have to be parsed and compiled again after a restart.
+ * <p>
+ * The classes of a script are stored in a directory derived from the script
+ * path, the class name contains a digest of the script source, the
+ * optimization level and the Rhino version. Whenever a script is compiled
+ * the directory of the script is cleared, removing outdated classes.
+ */
+class CompiledScriptStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledScriptStore.class);
+
+    /** The package of the generated classes. */
+    static final String PACKAGE = "org.apache.sling.scripting.javascript.compiled";
+
+    private static final String CLASS_PREFIX = "Script_";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Locks to avoid storing the same script concurrently. */
+    private final Object[] locks = new Object[16];
+
+    private final ClassLoaderWriter classLoaderWriter;
+
+    CompiledScriptStore(final ClassLoaderWriter classLoaderWriter) {
+        this.classLoaderWriter = classLoaderWriter;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Get the compiled script, loading the stored classes if the script
+     * has been compiled before or compiling and storing it otherwise.
+     *
+     * @param rhinoContext The current context, its optimization level must
+     *            not be negative
+     * @param scriptName The path of the script
+     * @param source The source of the script, ESP scripts are transformed
+     *            only if they have to be compiled
+     * @return The script
+     * @throws IOException If the script can't be read
+     */
+    Script getScript(final Context rhinoContext, final String scriptName, final String source) throws IOException {
+        final String directory = getDirectory(scriptName);
+        final String className = directory.substring(1).replace('/', '.') + "." + CLASS_PREFIX
+                + digest(source + "\n" + rhinoContext.getOptimizationLevel() + "\n" + rhinoContext.getImplementationVersion());
+
+        synchronized (locks[(scriptName.hashCode() & 0x7fffffff) % locks.length]) {
+            final byte[] stored = load(className);
+            if (stored != null) {
+                LOGGER.debug("Loaded compiled script {} from {}.", scriptName, className);
+                return define(new Object[] {className, stored});
+            }
+
+            String js = source;
+            if (scriptName.endsWith("." + RhinoJavaScriptEngineFactory.ESP_SCRIPT_EXTENSION)) {
+                js = IOUtils.toString(new EspReader(new StringReader(source)));
+            }
+            final CompilerEnvirons env = new CompilerEnvirons();
+            env.initFromContext(rhinoContext);
+            final Object[] classes = new ClassCompiler(env).compileToClassFiles(js, scriptName, 1, className);
+
+            this.classLoaderWriter.delete(directory);
+            for (int i = 0; i < classes.length; i += 2) {
+                store((String) classes[i], (byte[]) classes[i + 1]);
+            }
+            LOGGER.debug("Stored compiled script {} as {}.", scriptName, className);
+            return define(classes);
+        }
+    }
+
+    /**
+     * Define the classes in a new class loader and create the script
+     * from the first class.
+     */
+    private Script define(final Object[] classes) throws IOException {
+        final GeneratedClassLoader loader = SecurityController.createLoader(
+                CompiledScriptStore.class.getClassLoader(), null);
+        Class<?> scriptClass = null;
+        for (int i = 0; i < classes.length; i += 2) {
+            final Class<?> c = loader.defineClass((String) classes[i], (byte[]) classes[i + 1]);
+            loader.linkClass(c);
+            if (scriptClass == null) {
+                scriptClass = c;
+            }
+        }
+        try {
+            return (Script) scriptClass.newInstance();
+        } catch (final Exception e) {
+            final IOException ioe = new IOException("Unable to create script " + scriptClass.getName());
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    private byte[] load(final String className) {
+        final String path = getPath(className);
+        if (this.classLoaderWriter.getLastModified(path) < 0) {
+            return null;
+        }
+        InputStream is = null;
+        try {
+            is = this.classLoaderWriter.getInputStream(path);
+            return IOUtils.toByteArray(is);
+        } catch (final IOException ioe) {
+            LOGGER.debug("Unable to load compiled script " + path, ioe);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    private void store(final String className, final byte[] bytes) {
+        final String path = getPath(className);
+        final OutputStream os = this.classLoaderWriter.getOutputStream(path);
+        try {
+            os.write(bytes);
+        } catch (final IOException ioe) {
+            // the script is compiled again after the next restart
+            LOGGER.warn("Unable to store compiled script " + path, ioe);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+    }
+
+    private static String getPath(final String className) {
+        return "/" + className.replace('.', '/') + ".class";
+    }
+
+    /**
+     * Get the directory for the classes of the script, each segment of
+     * the script path is turned into a valid Java identifier.
+     */
+    static String getDirectory(final String scriptName) {
+        final StringBuilder sb = new StringBuilder("/").append(PACKAGE.replace('.', '/'));
+        for (final String segment : scriptName.split("/")) {
+            if (segment.length() == 0) {
+                continue;
+            }
+            sb.append('/');
+            if (!Character.isJavaIdentifierStart(segment.charAt(0))) {
+                sb.append('_');
+            }
+            for (int i = 0; i < segment.length(); i++) {
+                final char c = segment.charAt(i);
+                if (Character.isJavaIdentifierPart(c) && c != '_') {
+                    sb.append(c);
+                } else {
+                    sb.append('_').append(HEX[(c >> 12) & 0xf]).append(HEX[(c >> 8) & 0xf])
+                            .append(HEX[(c >> 4) & 0xf]).append(HEX[c & 0xf]);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String digest(final String value) {
+        try {
+            final byte[] bytes = MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"));
+            final StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (final byte b : bytes) {
+                sb.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+            }
+            return sb.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -90,7 +90,10 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine implements
             LOGGER.debug("Detected cached script for {}.", scriptName);
             return cachedScript.getCompiledScript();
         } else {
-            scriptReader = wrapReaderIfEspScript(scriptReader, scriptName);
+            final CompiledScriptStore compiledScriptStore = getCompiledScriptStore(scriptName);
+            if (compiledScriptStore == null) {
+                scriptReader = wrapReaderIfEspScript(scriptReader, scriptName);
+            }
             try {
                 final Context rhinoContext = Context.enter();
                 rhinoContext.setOptimizationLevel(optimizationLevel());
@@ -104,7 +107,12 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine implements
                 final int lineNumber = 1;
                 final Object securityDomain = null;
 
-                final Script script = rhinoContext.compileReader(scriptReader, scriptName, lineNumber, securityDomain);
+                final Script script;
+                if (compiledScriptStore != null) {
+                    script = compiledScriptStore.getScript(rhinoContext, scriptName, IOUtils.toString(scriptReader));
+                } else {
+                    script = rhinoContext.compileReader(scriptReader, scriptName, lineNumber, securityDomain);
+                }
                 final SlingCompiledScript slingCompiledScript = new SlingCompiledScript(script, this);
                 cachedScript = new CachedScript() {
                     @Override
@@ -216,6 +224,17 @@ public class RhinoJavaScriptEngine extends AbstractSlingScriptEngine implements
         return ((RhinoJavaScriptEngineFactory)getFactory()).getOptimizationLevel();
     }
 
+    /**
+     * Get the store for the compiled classes of the script, returns
+     * <code>null</code> if the script is not to be persisted.
+     */
+    private CompiledScriptStore getCompiledScriptStore(String scriptName) {
+        if (NO_SCRIPT_NAME.equals(scriptName) || optimizationLevel() < 0) {
+            return null;
+        }
+        return ((RhinoJavaScriptEngineFactory)getFactory()).getCompiledScriptStore();
+    }
+
     private class SlingCompiledScript extends CompiledScript {
 
         private final Script script;
@@ -32,6 +32,7 @@ import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
 import org.apache.sling.commons.classloader.DynamicClassLoaderManager;
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.scripting.api.AbstractScriptEngineFactory;
@@ -91,6 +92,16 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory im
 
     public final static int DEFAULT_OPTIMIZATION_LEVEL = 9;
 
+    public final static boolean DEFAULT_PERSIST_COMPILED_SCRIPTS = false;
+
+    @Property(
+            label = "Persist compiled scripts",
+            boolValue = DEFAULT_PERSIST_COMPILED_SCRIPTS,
+            description = "If enabled the classes generated for the scripts are stored through the class loader writer and " +
+                    "loaded from there after a restart instead of compiling the scripts again. Requires an optimization level of 0 or higher."
+    )
+    public final static String PERSIST_COMPILED_SCRIPTS_CONFIG = "org.apache.sling.scripting.javascript.persistCompiledScripts";
+
     public final static String ECMA_SCRIPT_EXTENSION = "ecma";
 
     public final static String ESP_SCRIPT_EXTENSION = "esp";
@@ -123,6 +134,13 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory im
     @Reference
     private ScriptCache scriptCache = null;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC)
+    private volatile ClassLoaderWriter classLoaderWriter;
+
+    private boolean persistCompiledScripts;
+
+    private volatile CompiledScriptStore compiledScriptStore;
+
     public ScriptEngine getScriptEngine() {
         return new RhinoJavaScriptEngine(this, getRootScope(), scriptCache);
     }
@@ -146,6 +164,15 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory im
         return optimizationLevel;
     }
 
+    /**
+     * Get the store for the classes of the compiled scripts.
+     *
+     * @return the store or <code>null</code> if compiled scripts are not persisted
+     */
+    CompiledScriptStore getCompiledScriptStore() {
+        return compiledScriptStore;
+    }
+
     public Object getParameter(String name) {
         if ("THREADING".equals(name)) {
             return "MULTITHREADED";
@@ -215,6 +242,9 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory im
         boolean debugging = getProperty("org.apache.sling.scripting.javascript.debug", props, context.getBundleContext(), false);
 
         optimizationLevel = readOptimizationLevel(props);
+        persistCompiledScripts = PropertiesUtil.toBoolean(props.get(PERSIST_COMPILED_SCRIPTS_CONFIG),
+                DEFAULT_PERSIST_COMPILED_SCRIPTS);
+        updateCompiledScriptStore();
 
         // setup the wrap factory
         wrapFactory = new SlingWrapFactory();
@@ -256,6 +286,7 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory im
 
         // remove references
         wrapFactory = null;
+        compiledScriptStore = null;
         hostObjectProvider.clear();
     }
 
@@ -277,8 +308,27 @@ public class RhinoJavaScriptEngineFactory extends AbstractScriptEngineFactory im
         }
     }
 
+    @SuppressWarnings("unused")
+    protected void bindClassLoaderWriter(ClassLoaderWriter classLoaderWriter) {
+        this.classLoaderWriter = classLoaderWriter;
+        updateCompiledScriptStore();
+    }
+
+    @SuppressWarnings("unused")
+    protected void unbindClassLoaderWriter(ClassLoaderWriter classLoaderWriter) {
+        if (this.classLoaderWriter == classLoaderWriter) {
+            this.classLoaderWriter = null;
+            updateCompiledScriptStore();
+        }
+    }
+
     // ---------- internal
 
+    private void updateCompiledScriptStore() {
+        final ClassLoaderWriter writer = classLoaderWriter;
+        compiledScriptStore = (persistCompiledScripts && writer != null) ? new CompiledScriptStore(writer) : null;
+    }
+
     private void addHostObjects(Scriptable scope, Class<? extends Scriptable>[] classes) {
         if (classes != null) {
             for (Class<? extends Scriptable> clazz : classes) {
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sling.scripting.javascript.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+public class CompiledScriptStoreTest {
+
+    private MemoryClassLoaderWriter writer;
+
+    private Context rhinoContext;
+
+    @Before
+    public void setUp() {
+        writer = new MemoryClassLoaderWriter();
+        rhinoContext = Context.enter();
+        rhinoContext.setOptimizationLevel(9);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    private Object exec(final Script script) {
+        final Scriptable scope = rhinoContext.initStandardObjects();
+        return Context.toString(script.exec(rhinoContext, scope));
+    }
+
+    @Test
+    public void testLoadAfterRestart() throws Exception {
+        final String source = "var a = 20; a + 22;";
+        assertEquals("42", exec(new CompiledScriptStore(writer).getScript(rhinoContext, "/apps/test/test.ecma", source)));
+        assertEquals(1, writer.files.size());
+        assertEquals(1, writer.writes);
+
+        // a new store, e.g. after a restart, loads the stored class
+        assertEquals("42", exec(new CompiledScriptStore(writer).getScript(rhinoContext, "/apps/test/test.ecma", source)));
+        assertEquals(1, writer.files.size());
+        assertEquals(1, writer.writes);
+    }
+
+    @Test
+    public void testChangedScript() throws Exception {
+        final CompiledScriptStore store = new CompiledScriptStore(writer);
+        store.getScript(rhinoContext, "/apps/test/test.ecma", "1 + 1;");
+        final String oldPath = writer.files.firstKey();
+
+        assertEquals("3", exec(store.getScript(rhinoContext, "/apps/test/test.ecma", "1 + 2;")));
+        assertEquals(1, writer.files.size());
+        assertTrue(!writer.files.containsKey(oldPath));
+
+        // other scripts are kept
+        store.getScript(rhinoContext, "/apps/test/other.ecma", "1 + 1;");
+        assertEquals(2, writer.files.size());
+    }
+
+    @Test
+    public void testEspScript() throws Exception {
+        final Script script = new CompiledScriptStore(writer).getScript(rhinoContext, "/apps/test/test.esp",
+                "<% var a = 42; %><%= a %>");
+        final Scriptable scope = rhinoContext.initStandardObjects();
+        rhinoContext.evaluateString(scope,
+                "var response = { writer: { text: '', write: function(s) { this.text += s; } } };", "setup", 1, null);
+        script.exec(rhinoContext, scope);
+        assertEquals("42", Context.toString(rhinoContext.evaluateString(scope, "response.writer.text", "check", 1, null)));
+    }
+
+    @Test
+    public void testDirectory() {
+        assertEquals("/org/apache/sling/scripting/javascript/compiled/apps/my_002dapp/_1_005ftest_002eesp",
+                CompiledScriptStore.getDirectory("/apps/my-app/1_test.esp"));
+    }
+
+    private static final class MemoryClassLoaderWriter implements ClassLoaderWriter {
+
+        final TreeMap<String, byte[]> files = new TreeMap<String, byte[]>();
+
+        int writes;
+
+        public OutputStream getOutputStream(final String path) {
+            writes++;
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    files.put(path, toByteArray());
+                }
+            };
+        }
+
+        public InputStream getInputStream(final String path) throws IOException {
+            final byte[] bytes = files.get(path);
+            if (bytes == null) {
+                throw new FileNotFoundException(path);
+            }
+            return new ByteArrayInputStream(bytes);
+        }
+
+        public long getLastModified(final String path) {
+            return files.containsKey(path) ? 1 : -1;
+        }
+
+        public boolean delete(final String path) {
+            boolean deleted = false;
+            final Iterator<Map.Entry<String, byte[]>> i = files.entrySet().iterator();
+            while (i.hasNext()) {
+                final String name = i.next().getKey();
+                if (name.equals(path) || name.startsWith(path + "/")) {
+                    i.remove();
+                    deleted = true;
+                }
+            }
+            return deleted;
+        }
+
+        public boolean rename(final String oldPath, final String newPath) {
+            return false;
+        }
+
+        public ClassLoader getClassLoader() {
+            return getClass().getClassLoader();
+        }
+    }
+}
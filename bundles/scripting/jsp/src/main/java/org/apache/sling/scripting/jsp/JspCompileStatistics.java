@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.sling.api.SlingException;
+
+/**
+ * The compile times of the JSP scripts, kept across renewals of the
+ * JSP runtime context.
+ */
+public class JspCompileStatistics extends StandardMBean implements JspCompileStatisticsMBean {
+
+    private static final String[] ITEM_NAMES = {"path", "compileCount", "lastCompileTimeMsec", "totalCompileTimeMsec"};
+
+    private static final CompositeType SCRIPT_TYPE;
+
+    private static final TabularType SCRIPTS_TYPE;
+
+    static {
+        try {
+            SCRIPT_TYPE = new CompositeType("script", "Compile times of a script", ITEM_NAMES, ITEM_NAMES,
+                    new OpenType[] {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            SCRIPTS_TYPE = new TabularType("scripts", "Compile times per script", SCRIPT_TYPE, new String[] {"path"});
+        } catch ( final OpenDataException ode ) {
+            throw new ExceptionInInitializerError(ode);
+        }
+    }
+
+    private final ConcurrentMap<String, Script> scripts = new ConcurrentHashMap<String, Script>();
+
+    public JspCompileStatistics() {
+        super(JspCompileStatisticsMBean.class, false);
+    }
+
+    /**
+     * Record a compilation of a script.
+     * @param jspUri The script
+     * @param nanos The compile time in nanoseconds
+     */
+    public void record(final String jspUri, final long nanos) {
+        Script script = this.scripts.get(jspUri);
+        if ( script == null ) {
+            script = new Script();
+            final Script existing = this.scripts.putIfAbsent(jspUri, script);
+            if ( existing != null ) {
+                script = existing;
+            }
+        }
+        script.count.incrementAndGet();
+        script.lastNanos.set(nanos);
+        script.totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Remove the statistics of a removed script or of all scripts
+     * below a removed folder.
+     * @param path The path of the removed resource
+     */
+    public void remove(final String path) {
+        final String prefix = path.endsWith("/") ? path : path + '/';
+        final Iterator<String> iter = this.scripts.keySet().iterator();
+        while ( iter.hasNext() ) {
+            final String jspUri = iter.next();
+            if ( jspUri.equals(path) || jspUri.startsWith(prefix) ) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.JspCompileStatisticsMBean#getCompileCount()
+     */
+    @Override
+    public long getCompileCount() {
+        long count = 0;
+        for(final Script script : this.scripts.values()) {
+            count += script.count.get();
+        }
+        return count;
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.JspCompileStatisticsMBean#getTotalCompileTimeMsec()
+     */
+    @Override
+    public long getTotalCompileTimeMsec() {
+        long nanos = 0;
+        for(final Script script : this.scripts.values()) {
+            nanos += script.totalNanos.get();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.JspCompileStatisticsMBean#getScripts()
+     */
+    @Override
+    public TabularData getScripts() {
+        final TabularDataSupport data = new TabularDataSupport(SCRIPTS_TYPE);
+        try {
+            for(final Map.Entry<String, Script> entry : this.scripts.entrySet()) {
+                final Script script = entry.getValue();
+                data.put(new CompositeDataSupport(SCRIPT_TYPE, ITEM_NAMES, new Object[] {
+                        entry.getKey(),
+                        script.count.get(),
+                        TimeUnit.NANOSECONDS.toMillis(script.lastNanos.get()),
+                        TimeUnit.NANOSECONDS.toMillis(script.totalNanos.get())
+                }));
+            }
+        } catch ( final OpenDataException ode ) {
+            throw new SlingException("Unable to create the compile statistics", ode);
+        }
+        return data;
+    }
+
+    /**
+     * @see org.apache.sling.scripting.jsp.JspCompileStatisticsMBean#resetStatistics()
+     */
+    @Override
+    public void resetStatistics() {
+        this.scripts.clear();
+    }
+
+    private static final class Script {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong lastNanos = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Management interface for the compile times of JSP scripts.
+ */
+public interface JspCompileStatisticsMBean {
+
+    /**
+     * Returns the number of script compilations.
+     */
+    long getCompileCount();
+
+    /**
+     * Returns the time in milliseconds spent compiling scripts.
+     */
+    long getTotalCompileTimeMsec();
+
+    /**
+     * Returns the compile count, last and total compile time per script.
+     */
+    TabularData getScripts();
+
+    /**
+     * Resets all statistics values and restarts from zero.
+     */
+    void resetStatistics();
+}
@@ -24,8 +24,22 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.util.Collections;
 import java.util.Dictionary;
-
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.openmbean.CompositeData;
 import javax.script.Bindings;
 import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
@@ -43,13 +57,19 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.SlingException;
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingIOException;
 import org.apache.sling.api.SlingServletException;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.api.scripting.SlingBindings;
 import org.apache.sling.api.scripting.SlingScript;
 import org.apache.sling.api.scripting.SlingScriptConstants;
@@ -60,12 +80,14 @@ import org.apache.sling.commons.compiler.JavaCompiler;
 import org.apache.sling.commons.osgi.PropertiesUtil;
 import org.apache.sling.scripting.api.AbstractScriptEngineFactory;
 import org.apache.sling.scripting.api.AbstractSlingScriptEngine;
+import org.apache.sling.scripting.jsp.jasper.JasperException;
 import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
 import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext.JspFactoryHandler;
 import org.apache.sling.scripting.jsp.jasper.runtime.AnnotationProcessor;
 import org.apache.sling.scripting.jsp.jasper.runtime.JspApplicationContextImpl;
 import org.apache.sling.scripting.jsp.jasper.servlet.JspServletWrapper;
 import org.apache.sling.scripting.jsp.util.TagUtil;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.event.Event;
 import org.osgi.service.event.EventConstants;
@@ -106,6 +128,12 @@ public class JspScriptEngineFactory
     @Property(boolValue = true)
     private static final String PROP_DEFAULT_IS_SESSION = "default.is.session";
 
+    @Property(boolValue = false)
+    private static final String PROP_PRECOMPILE = "precompile";
+
+    @Property(intValue = 2)
+    private static final String PROP_PRECOMPILE_THREADS = "precompile.threads";
+
     /** Default logger */
     private final Logger logger = LoggerFactory.getLogger(JspScriptEngineFactory.class);
 
@@ -123,6 +151,10 @@ public class JspScriptEngineFactory
     @Reference
     private JavaCompiler javaCompiler;
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY, policy = ReferencePolicy.DYNAMIC,
+            bind="bindResourceResolverFactory", unbind="unbindResourceResolverFactory")
+    private volatile ResourceResolverFactory resourceResolverFactory;
+
     /** The io provider for reading and writing. */
     private SlingIOProvider ioProvider;
 
@@ -141,6 +173,21 @@ public class JspScriptEngineFactory
     /** The handler for the jsp factories. */
     private JspFactoryHandler jspFactoryHandler;
 
+    /** The compile times of the scripts. */
+    private final JspCompileStatistics compileStatistics = new JspCompileStatistics();
+
+    /** The registration of the compile statistics MBean. */
+    private ServiceRegistration compileStatisticsRegistration;
+
+    /** The pool precompiling scripts, if precompilation is enabled. */
+    private volatile ExecutorService precompileExecutor;
+
+    /** Whether all scripts have been scheduled for precompilation since the activation. */
+    private volatile boolean precompiledAll;
+
+    /** The scripts waiting to be precompiled. */
+    private final Set<String> pendingScripts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     public static final String[] SCRIPT_TYPE = { "jsp", "jspf", "jspx" };
 
     public static final String[] NAMES = { "jsp", "JSP" };
@@ -366,6 +413,26 @@ public class JspScriptEngineFactory
 
         logger.info("Activating Apache Sling Script Engine for JSP with options {}", options.getProperties());
         logger.debug("IMPORTANT: Do not modify the generated servlet classes directly");
+
+        final Dictionary<String, Object> mbeanProps = new Hashtable<String, Object>();
+        mbeanProps.put("jmx.objectname", "org.apache.sling:type=scripting,service=JSP,name=CompileStatistics");
+        this.compileStatisticsRegistration = componentContext.getBundleContext().registerService(
+                JspCompileStatisticsMBean.class.getName(), this.compileStatistics, mbeanProps);
+
+        if ( PropertiesUtil.toBoolean(properties.get(PROP_PRECOMPILE), false) ) {
+            final int threads = Math.max(1, PropertiesUtil.toInteger(properties.get(PROP_PRECOMPILE_THREADS), 2));
+            final AtomicInteger counter = new AtomicInteger();
+            this.precompileExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread t = new Thread(r, "JSP Precompiler " + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            this.schedulePrecompileAll();
+        }
     }
 
     /**
@@ -374,6 +441,18 @@ public class JspScriptEngineFactory
     protected void deactivate(final ComponentContext componentContext) {
         logger.info("Deactivating Apache Sling Script Engine for JSP");
 
+        if ( this.compileStatisticsRegistration != null ) {
+            this.compileStatisticsRegistration.unregister();
+            this.compileStatisticsRegistration = null;
+        }
+
+        if ( this.precompileExecutor != null ) {
+            this.precompileExecutor.shutdownNow();
+            this.precompileExecutor = null;
+        }
+        this.precompiledAll = false;
+        this.pendingScripts.clear();
+
         if ( this.tldLocationsCache != null ) {
             this.tldLocationsCache.deactivate(componentContext.getBundleContext());
             this.tldLocationsCache = null;
@@ -486,6 +565,26 @@ public class JspScriptEngineFactory
         this.getClassLoader(rclp);
     }
 
+    /**
+     * Bind the resource resolver factory, the startup precompilation is
+     * done once the factory is available.
+     */
+    protected void bindResourceResolverFactory(final ResourceResolverFactory factory) {
+        this.resourceResolverFactory = factory;
+        if ( !this.precompiledAll ) {
+            this.schedulePrecompileAll();
+        }
+    }
+
+    /**
+     * Unbind the resource resolver factory.
+     */
+    protected void unbindResourceResolverFactory(final ResourceResolverFactory factory) {
+        if ( this.resourceResolverFactory == factory ) {
+            this.resourceResolverFactory = null;
+        }
+    }
+
     /**
      * Unbind the class loader provider.
      * @param repositoryClassLoaderProvider the old provider
@@ -589,7 +688,7 @@ public class JspScriptEngineFactory
                 if ( this.jspRuntimeContext == null ) {
                     // Initialize the JSP Runtime Context
                     this.jspRuntimeContext = new JspRuntimeContext(slingServletContext,
-                            options, ioProvider);
+                            options, ioProvider, compileStatistics);
                 }
             }
         }
@@ -630,6 +729,138 @@ public class JspScriptEngineFactory
             if ( rctxt != null && rctxt.handleModification(path) ) {
                 renewJspRuntimeContext();
             }
+            if ( SlingConstants.TOPIC_RESOURCE_REMOVED.equals(event.getTopic()) ) {
+                this.compileStatistics.remove(path);
+            } else if ( this.precompileExecutor != null && path.endsWith(".jsp") ) {
+                this.precompile(path);
+            }
+        }
+    }
+
+    // ---------- Precompilation -----------------------------------------------
+
+    /**
+     * Schedule the compilation of the script unless it is already scheduled.
+     */
+    private void precompile(final String path) {
+        if ( this.pendingScripts.add(path) ) {
+            this.executePrecompile(new Runnable() {
+
+                @Override
+                public void run() {
+                    pendingScripts.remove(path);
+                    compile(path);
+                }
+            });
+        }
+    }
+
+    private void schedulePrecompileAll() {
+        this.executePrecompile(new Runnable() {
+
+            @Override
+            public void run() {
+                precompileAll();
+            }
+        });
+    }
+
+    private void executePrecompile(final Runnable task) {
+        final ExecutorService executor = this.precompileExecutor;
+        if ( executor != null ) {
+            try {
+                executor.execute(task);
+            } catch ( final RejectedExecutionException ree ) {
+                // shut down concurrently
+            }
+        }
+    }
+
+    /**
+     * Schedule the compilation of all scripts in the search paths.
+     */
+    private void precompileAll() {
+        final ResourceResolverFactory factory = this.resourceResolverFactory;
+        if ( factory == null ) {
+            logger.info("Not precompiling JSP scripts yet, resource resolver factory is not available.");
+            return;
+        }
+        if ( this.precompiledAll ) {
+            // scheduled by both the activation and the binding of the factory
+            return;
+        }
+        ResourceResolver resolver = null;
+        try {
+            resolver = factory.getAdministrativeResourceResolver(null);
+            int count = 0;
+            for(final String searchPath : resolver.getSearchPath()) {
+                final Resource root = resolver.getResource(searchPath);
+                if ( root != null ) {
+                    count += this.collectScripts(root);
+                }
+            }
+            this.precompiledAll = true;
+            logger.info("Scheduled precompilation of {} JSP scripts", count);
+        } catch ( final LoginException le ) {
+            logger.error("Unable to precompile JSP scripts", le);
+        } finally {
+            if ( resolver != null ) {
+                resolver.close();
+            }
+        }
+    }
+
+    private int collectScripts(final Resource resource) {
+        int count = 0;
+        final Iterator<Resource> children = resource.getResourceResolver().listChildren(resource);
+        while ( children.hasNext() && this.precompileExecutor != null ) {
+            final Resource child = children.next();
+            if ( "nt:file".equals(child.getResourceType()) ) {
+                if ( ResourceUtil.getName(child).endsWith(".jsp") ) {
+                    this.precompile(child.getPath());
+                    count++;
+                }
+            } else {
+                count += this.collectScripts(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compile the script unless its compiled class is up to date.
+     */
+    private void compile(final String path) {
+        final ResourceResolverFactory factory = this.resourceResolverFactory;
+        final SlingIOProvider io = this.ioProvider;
+        final JspFactoryHandler jspfh = this.jspFactoryHandler;
+        if ( factory == null || io == null || jspfh == null ) {
+            return;
+        }
+        ResourceResolver resolver = null;
+        final ClassLoader old = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(this.dynamicClassLoader);
+        try {
+            resolver = factory.getAdministrativeResourceResolver(null);
+            final ResourceResolver oldResolver = io.setRequestResourceResolver(resolver);
+            jspfh.incUsage();
+            try {
+                final JasperException je = getJspWrapper(path, null).compile();
+                if ( je != null ) {
+                    // the error is reported again when the script is requested
+                    logger.debug("Unable to precompile {}: {}", path, je.getMessage());
+                }
+            } finally {
+                jspfh.decUsage();
+                io.resetRequestResourceResolver(oldResolver);
+            }
+        } catch ( final Exception e ) {
+            logger.debug("Unable to precompile " + path, e);
+        } finally {
+            Thread.currentThread().setContextClassLoader(old);
+            if ( resolver != null ) {
+                resolver.close();
+            }
         }
     }
 
@@ -723,9 +954,34 @@ public class JspScriptEngineFactory
                 pw.println("' method='POST'>");
                 pw.println("<input type='submit' value='Recompile all JSPs'>");
                 pw.println("</form>");
+                pw.println("<br/>");
+                pw.println("<table class='nicetable'>");
+                pw.println("<tr><th>Script</th><th>Compilations</th><th>Last Compile Time (ms)</th><th>Total Compile Time (ms)</th></tr>");
+                final SortedMap<String, CompositeData> scripts = new TreeMap<String, CompositeData>();
+                for(final Object value : this.compileStatistics.getScripts().values()) {
+                    final CompositeData script = (CompositeData)value;
+                    scripts.put((String)script.get("path"), script);
+                }
+                for(final Map.Entry<String, CompositeData> entry : scripts.entrySet()) {
+                    final CompositeData script = entry.getValue();
+                    pw.print("<tr><td>");
+                    pw.print(escapeHtml(entry.getKey()));
+                    pw.print("</td><td>");
+                    pw.print(script.get("compileCount"));
+                    pw.print("</td><td>");
+                    pw.print(script.get("lastCompileTimeMsec"));
+                    pw.print("</td><td>");
+                    pw.print(script.get("totalCompileTimeMsec"));
+                    pw.println("</td></tr>");
+                }
+                pw.println("</table>");
                 return;
             }
         }
         throw new ServletException("Request not supported.");
     }
+
+    private static String escapeHtml(final String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
 }
@@ -45,6 +45,7 @@ import javax.servlet.jsp.PageContext;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.sling.scripting.jsp.JspCompileStatistics;
 import org.apache.sling.scripting.jsp.jasper.Constants;
 import org.apache.sling.scripting.jsp.jasper.IOProvider;
 import org.apache.sling.scripting.jsp.jasper.Options;
@@ -202,10 +203,22 @@ public final class JspRuntimeContext {
      * @param context ServletContext for web application
      */
     public JspRuntimeContext(ServletContext context, Options options, final IOProvider ioProvider) {
+        this(context, options, ioProvider, null);
+    }
+
+    /**
+     * Create a JspRuntimeContext for a web application context.
+     *
+     * @param context ServletContext for web application
+     * @param compileStatistics The statistics to record the compile times or <code>null</code>
+     */
+    public JspRuntimeContext(ServletContext context, Options options, final IOProvider ioProvider,
+            final JspCompileStatistics compileStatistics) {
 
         this.context = context;
         this.options = options;
         this.ioProvider = ioProvider;
+        this.compileStatistics = compileStatistics;
 
         if (Constants.IS_SECURITY_ENABLED) {
             initSecurity();
@@ -220,6 +233,7 @@ public final class JspRuntimeContext {
     private ServletContext context;
     private Options options;
     private PermissionCollection permissionCollection;
+    private final JspCompileStatistics compileStatistics;
 
     /**
      * Maps JSP pages to their JspServletWrapper's
@@ -358,6 +372,13 @@ public final class JspRuntimeContext {
         return ioProvider;
     }
 
+    /**
+     * Returns the statistics to record the compile times, might be <code>null</code>.
+     */
+    public JspCompileStatistics getCompileStatistics() {
+        return compileStatistics;
+    }
+
     // -------------------------------------------------------- Private Methods
 
     /**
@@ -47,6 +47,7 @@ import org.apache.sling.api.SlingServletException;
 import org.apache.sling.api.scripting.ScriptEvaluationException;
 import org.apache.sling.api.scripting.SlingBindings;
 import org.apache.sling.commons.classloader.DynamicClassLoader;
+import org.apache.sling.scripting.jsp.JspCompileStatistics;
 import org.apache.sling.scripting.jsp.SlingPageException;
 import org.apache.sling.scripting.jsp.jasper.JasperException;
 import org.apache.sling.scripting.jsp.jasper.JspCompilationContext;
@@ -424,7 +425,7 @@ public class JspServletWrapper {
             if ( log.isDebugEnabled() ) {
                 log.debug("Compiling servlet " + this.jspUri);
             }
-            this.compileException = ctxt.compile();
+            this.compileException = this.compileJsp();
             if ( compileException != null ) {
                 throw compileException;
             }
@@ -434,6 +435,31 @@ public class JspServletWrapper {
         this.theServlet = this.loadServlet();
     }
 
+    /**
+     * Compile the jsp if it either hasn't been compiled yet or is out dated
+     * without loading the servlet, e.g. to precompile it before it is
+     * requested the first time.
+     * @return The compile exception or <code>null</code>
+     */
+    public JasperException compile() {
+        synchronized ( this ) {
+            if ( theServlet == null && compileException == null && isOutDated() ) {
+                return this.compileJsp();
+            }
+        }
+        return null;
+    }
+
+    private JasperException compileJsp() {
+        final long start = System.nanoTime();
+        final JasperException result = ctxt.compile();
+        final JspCompileStatistics statistics = ctxt.getRuntimeContext().getCompileStatistics();
+        if ( statistics != null ) {
+            statistics.record(this.jspUri, System.nanoTime() - start);
+        }
+        return result;
+    }
+
     /**
      * @param bindings
      * @throws SlingIOException
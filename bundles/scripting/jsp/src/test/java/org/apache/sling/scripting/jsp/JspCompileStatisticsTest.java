@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+public class JspCompileStatisticsTest {
+
+    @Test
+    public void testRecord() {
+        final JspCompileStatistics statistics = new JspCompileStatistics();
+        statistics.record("/apps/test/a.jsp", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("/apps/test/a.jsp", TimeUnit.MILLISECONDS.toNanos(30));
+        statistics.record("/apps/test/b.jsp", TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(3, statistics.getCompileCount());
+        assertEquals(45, statistics.getTotalCompileTimeMsec());
+
+        final TabularData scripts = statistics.getScripts();
+        assertEquals(2, scripts.size());
+        final CompositeData a = scripts.get(new Object[] {"/apps/test/a.jsp"});
+        assertEquals(2L, a.get("compileCount"));
+        assertEquals(30L, a.get("lastCompileTimeMsec"));
+        assertEquals(40L, a.get("totalCompileTimeMsec"));
+
+        statistics.resetStatistics();
+        assertEquals(0, statistics.getCompileCount());
+        assertEquals(0, statistics.getScripts().size());
+    }
+
+    @Test
+    public void testRemove() {
+        final JspCompileStatistics statistics = new JspCompileStatistics();
+        statistics.record("/apps/test/a.jsp", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("/apps/test/b/b.jsp", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("/apps/test/bc/c.jsp", TimeUnit.MILLISECONDS.toNanos(10));
+
+        statistics.remove("/apps/test/a.jsp");
+        assertNull(statistics.getScripts().get(new Object[] {"/apps/test/a.jsp"}));
+        assertEquals(2, statistics.getScripts().size());
+
+        statistics.remove("/apps/test/b");
+        assertNull(statistics.getScripts().get(new Object[] {"/apps/test/b/b.jsp"}));
+        assertNotNull(statistics.getScripts().get(new Object[] {"/apps/test/bc/c.jsp"}));
+        assertEquals(1, statistics.getCompileCount());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.scripting.jsp.jasper.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.endsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+import org.apache.sling.scripting.jsp.JspCompileStatistics;
+import org.apache.sling.scripting.jsp.jasper.IOProvider;
+import org.apache.sling.scripting.jsp.jasper.JasperException;
+import org.apache.sling.scripting.jsp.jasper.Options;
+import org.apache.sling.scripting.jsp.jasper.compiler.JspRuntimeContext;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JspServletWrapperTest {
+
+    private static final String JSP = "/apps/test/a.jsp";
+
+    private IOProvider ioProvider;
+
+    private JspCompileStatistics statistics;
+
+    private JspServletWrapper wrapper;
+
+    @Before
+    public void setUp() {
+        final ServletContext servletContext = mock(ServletContext.class);
+        final ServletConfig config = mock(ServletConfig.class);
+        when(config.getServletContext()).thenReturn(servletContext);
+        final Options options = mock(Options.class);
+        when(options.getScratchDir()).thenReturn("/var/classes");
+        this.ioProvider = mock(IOProvider.class);
+        when(this.ioProvider.mkdirs(anyString())).thenReturn(true);
+        when(this.ioProvider.lastModified(JSP)).thenReturn(1000L);
+        this.statistics = new JspCompileStatistics();
+        final JspRuntimeContext rctxt = new JspRuntimeContext(servletContext, options, this.ioProvider, this.statistics);
+        this.wrapper = new JspServletWrapper(config, options, JSP, false, rctxt, true);
+    }
+
+    @Test
+    public void testCompileSkipsUpToDateScript() {
+        when(this.ioProvider.lastModified(endsWith(".class"))).thenReturn(2000L);
+
+        assertNull(this.wrapper.compile());
+        assertEquals(0, this.statistics.getCompileCount());
+    }
+
+    @Test
+    public void testCompileRecordsOutdatedScript() {
+        when(this.ioProvider.lastModified(endsWith(".class"))).thenReturn(500L);
+
+        // the script source is not available, but the attempt is recorded
+        final JasperException je = this.wrapper.compile();
+        assertNotNull(je);
+        assertEquals(1, this.statistics.getCompileCount());
+        assertNotNull(this.statistics.getScripts().get(new Object[] {JSP}));
+    }
+
+    @Test
+    public void testCompileRecordsMissingClass() {
+        when(this.ioProvider.lastModified(endsWith(".class"))).thenReturn(-1L);
+
+        this.wrapper.compile();
+        assertEquals(1, this.statistics.getCompileCount());
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.StandardMBean;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.apache.sling.scripting.sightly.SightlyException;
+
+/**
+ * Records the compile times of Sightly scripts.
+ */
+public class CompileStatistics extends StandardMBean implements CompileStatisticsMBean {
+
+    private static final String[] ITEM_NAMES = {"path", "compileCount", "lastCompileTimeMsec", "totalCompileTimeMsec"};
+
+    private static final CompositeType SCRIPT_TYPE;
+
+    private static final TabularType SCRIPTS_TYPE;
+
+    static {
+        try {
+            SCRIPT_TYPE = new CompositeType("script", "Compile times of a script", ITEM_NAMES, ITEM_NAMES,
+                    new OpenType[] {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            SCRIPTS_TYPE = new TabularType("scripts", "Compile times per script", SCRIPT_TYPE, new String[] {"path"});
+        } catch (OpenDataException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ConcurrentMap<String, Script> scripts = new ConcurrentHashMap<String, Script>();
+
+    public CompileStatistics() {
+        super(CompileStatisticsMBean.class, false);
+    }
+
+    /**
+     * Records a compilation of a script.
+     *
+     * @param path  the path of the script
+     * @param nanos the compile time in nanoseconds
+     */
+    public void record(String path, long nanos) {
+        Script script = scripts.get(path);
+        if (script == null) {
+            script = new Script();
+            Script existing = scripts.putIfAbsent(path, script);
+            if (existing != null) {
+                script = existing;
+            }
+        }
+        script.count.incrementAndGet();
+        script.lastNanos.set(nanos);
+        script.totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Removes the statistics of a removed script or of all the scripts below a removed folder.
+     *
+     * @param path the path of the removed resource
+     */
+    public void remove(String path) {
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Iterator<String> iterator = scripts.keySet().iterator();
+        while (iterator.hasNext()) {
+            String scriptPath = iterator.next();
+            if (scriptPath.equals(path) || scriptPath.startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public long getCompileCount() {
+        long count = 0;
+        for (Script script : scripts.values()) {
+            count += script.count.get();
+        }
+        return count;
+    }
+
+    @Override
+    public long getTotalCompileTimeMsec() {
+        long nanos = 0;
+        for (Script script : scripts.values()) {
+            nanos += script.totalNanos.get();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public TabularData getScripts() {
+        TabularDataSupport data = new TabularDataSupport(SCRIPTS_TYPE);
+        try {
+            for (Map.Entry<String, Script> entry : scripts.entrySet()) {
+                Script script = entry.getValue();
+                data.put(new CompositeDataSupport(SCRIPT_TYPE, ITEM_NAMES, new Object[] {
+                        entry.getKey(),
+                        script.count.get(),
+                        TimeUnit.NANOSECONDS.toMillis(script.lastNanos.get()),
+                        TimeUnit.NANOSECONDS.toMillis(script.totalNanos.get())
+                }));
+            }
+        } catch (OpenDataException e) {
+            throw new SightlyException(e);
+        }
+        return data;
+    }
+
+    @Override
+    public void resetStatistics() {
+        scripts.clear();
+    }
+
+    private static final class Script {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong lastNanos = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+    }
+}
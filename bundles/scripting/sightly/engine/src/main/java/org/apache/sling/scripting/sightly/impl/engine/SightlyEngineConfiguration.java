@@ -54,6 +54,19 @@ import org.osgi.service.component.ComponentContext;
                 label = "Template Files Default Encoding",
                 description = "The default encoding used for reading Sightly template files (this directly affects how Sightly templates" +
                         "are rendered)."
+        ),
+        @Property(
+                name = SightlyEngineConfiguration.SCR_PROP_NAME_PRECOMPILE,
+                boolValue = SightlyEngineConfiguration.SCR_PROP_DEFAULT_PRECOMPILE,
+                label = "Precompile Scripts",
+                description = "If enabled, all Sightly scripts from the search paths are compiled in the background on startup and " +
+                        "added or changed scripts are recompiled right away instead of on their first request."
+        ),
+        @Property(
+                name = SightlyEngineConfiguration.SCR_PROP_NAME_PRECOMPILE_THREADS,
+                intValue = SightlyEngineConfiguration.SCR_PROP_DEFAULT_PRECOMPILE_THREADS,
+                label = "Precompile Threads",
+                description = "The number of threads compiling scripts in the background."
         )
 })
 public class SightlyEngineConfiguration {
@@ -64,9 +77,17 @@ public class SightlyEngineConfiguration {
     public static final String SCR_PROP_NAME_ENCODING = "org.apache.sling.scripting.sightly.encoding";
     public static final String SCR_PROP_DEFAULT_ENCODING = "UTF-8";
 
+    public static final String SCR_PROP_NAME_PRECOMPILE = "org.apache.sling.scripting.sightly.precompile";
+    public static final boolean SCR_PROP_DEFAULT_PRECOMPILE = false;
+
+    public static final String SCR_PROP_NAME_PRECOMPILE_THREADS = "org.apache.sling.scripting.sightly.precompile.threads";
+    public static final int SCR_PROP_DEFAULT_PRECOMPILE_THREADS = 2;
+
     private String engineVersion = "0";
     private boolean devMode = false;
     private String encoding = SCR_PROP_DEFAULT_ENCODING;
+    private boolean precompile = false;
+    private int precompileThreads = SCR_PROP_DEFAULT_PRECOMPILE_THREADS;
 
     public String getEngineVersion() {
         return engineVersion;
@@ -80,6 +101,14 @@ public class SightlyEngineConfiguration {
         return encoding;
     }
 
+    public boolean isPrecompile() {
+        return precompile;
+    }
+
+    public int getPrecompileThreads() {
+        return precompileThreads;
+    }
+
     protected void activate(ComponentContext componentContext) {
         InputStream ins = null;
         try {
@@ -104,5 +133,8 @@ public class SightlyEngineConfiguration {
         Dictionary properties = componentContext.getProperties();
         devMode = PropertiesUtil.toBoolean(properties.get(SCR_PROP_NAME_DEVMODE), SCR_PROP_DEFAULT_DEVMODE);
         encoding = PropertiesUtil.toString(properties.get(SCR_PROP_NAME_ENCODING), SCR_PROP_DEFAULT_ENCODING);
+        precompile = PropertiesUtil.toBoolean(properties.get(SCR_PROP_NAME_PRECOMPILE), SCR_PROP_DEFAULT_PRECOMPILE);
+        precompileThreads = Math.max(1, PropertiesUtil.toInteger(properties.get(SCR_PROP_NAME_PRECOMPILE_THREADS),
+                SCR_PROP_DEFAULT_PRECOMPILE_THREADS));
     }
 }
@@ -87,7 +87,8 @@ public class SightlyScriptEngine extends AbstractSlingScriptEngine {
     }
 
     private void evaluateScript(Resource scriptResource, Bindings bindings, ResourceResolver scriptResourceResolver) throws Exception {
-        RenderContextImpl renderContext = new RenderContextImpl(bindings, extensionRegistryService.extensions(), scriptResourceResolver);
+        RenderContextImpl renderContext = new RenderContextImpl(bindings, extensionRegistryService.extensions(), scriptResourceResolver,
+                ((SightlyScriptEngineFactory) getFactory()).getPropertyAccessorCache());
         RenderUnit renderUnit = unitLoader.createUnit(scriptResource, bindings, renderContext);
         renderUnit.render(renderContext, EMPTY_BINDINGS);
     }
@@ -22,13 +22,19 @@ package org.apache.sling.scripting.sightly.impl.engine;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineFactory;
 
+import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Properties;
 import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.sling.commons.classloader.ClassLoaderWriter;
 import org.apache.sling.scripting.api.AbstractScriptEngineFactory;
+import org.apache.sling.scripting.sightly.impl.engine.runtime.PropertyAccessorCache;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
 
 /**
  * Sightly template engine factory
@@ -58,11 +64,40 @@ public class SightlyScriptEngineFactory extends AbstractScriptEngineFactory {
 
     public final static String EXTENSION = "html";
 
+    private final PropertyAccessorCache propertyAccessorCache = new PropertyAccessorCache();
+
+    private BundleContext bundleContext;
+
+    private final BundleListener bundleListener = new BundleListener() {
+        @Override
+        public void bundleChanged(BundleEvent event) {
+            // classes of the bundle might get unloaded
+            if (event.getType() == BundleEvent.UNRESOLVED || event.getType() == BundleEvent.UPDATED) {
+                propertyAccessorCache.clear();
+            }
+        }
+    };
+
     public SightlyScriptEngineFactory() {
         setNames(SHORT_NAME);
         setExtensions(EXTENSION);
     }
 
+    @Activate
+    @SuppressWarnings("unused")
+    protected void activate(BundleContext bundleContext) {
+        this.bundleContext = bundleContext;
+        bundleContext.addBundleListener(bundleListener);
+    }
+
+    @Deactivate
+    @SuppressWarnings("unused")
+    protected void deactivate() {
+        bundleContext.removeBundleListener(bundleListener);
+        bundleContext = null;
+        propertyAccessorCache.clear();
+    }
+
     @Override
     public String getLanguageName() {
         return LANGUAGE_NAME;
@@ -81,4 +116,12 @@ public class SightlyScriptEngineFactory extends AbstractScriptEngineFactory {
     protected ClassLoader getClassLoader() {
         return classLoaderWriter.getClassLoader();
     }
+
+    /**
+     * Returns the cache of property accessors, cleared if the dynamic class loader has changed.
+     */
+    protected PropertyAccessorCache getPropertyAccessorCache() {
+        propertyAccessorCache.checkClassLoader(getClassLoader());
+        return propertyAccessorCache;
+    }
 }
@@ -21,16 +21,21 @@ package org.apache.sling.scripting.sightly.impl.engine;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.Map;
 import javax.script.Bindings;
+import javax.script.SimpleBindings;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.Service;
+import org.apache.sling.api.SlingConstants;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceMetadata;
@@ -48,7 +53,11 @@ import org.apache.sling.scripting.sightly.impl.engine.compiled.JavaClassTemplate
 import org.apache.sling.scripting.sightly.impl.engine.compiled.SourceIdentifier;
 import org.apache.sling.scripting.sightly.impl.engine.runtime.RenderContextImpl;
 import org.apache.sling.scripting.sightly.impl.engine.runtime.RenderUnit;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +76,10 @@ public class UnitLoader {
     private String mainTemplate;
     private String childTemplate;
 
+    private final CompileStatistics compileStatistics = new CompileStatistics();
+    private ServiceRegistration compileStatisticsRegistration;
+    private ServiceRegistration eventHandlerServiceRegistration;
+
     @Reference
     private SightlyCompilerService sightlyCompilerService = null;
 
@@ -103,8 +116,7 @@ public class UnitLoader {
         SourceIdentifier sourceIdentifier = obtainIdentifier(scriptResource);
         Object obj;
         if (needsUpdate(sourceIdentifier)) {
-            String sourceCode = getSourceCodeForScript(adminResolver, sourceIdentifier, bindings, encoding, renderContext);
-            obj = sightlyJavaCompilerService.compileSource(sourceCode, sourceIdentifier.getFullyQualifiedName());
+            obj = compile(adminResolver, sourceIdentifier, bindings, encoding, renderContext);
         } else {
             obj = sightlyJavaCompilerService.getInstance(adminResolver, null, sourceIdentifier.getFullyQualifiedName());
         }
@@ -114,11 +126,70 @@ public class UnitLoader {
         return (RenderUnit) obj;
     }
 
+    /**
+     * Compile the given script unless it has already been compiled and not changed since.
+     *
+     * @param scriptResource the resource
+     * @param renderContext  the rendering context providing the resource resolver to read the script
+     */
+    public void compileUnit(Resource scriptResource, RenderContextImpl renderContext) {
+        String encoding = scriptResource.getResourceMetadata().getCharacterEncoding();
+        if (encoding == null) {
+            encoding = sightlyEngineConfiguration.getEncoding();
+        }
+        SourceIdentifier sourceIdentifier = obtainIdentifier(scriptResource);
+        if (needsUpdate(sourceIdentifier)) {
+            compile(renderContext.getScriptResourceResolver(), sourceIdentifier, new SimpleBindings(), encoding, renderContext);
+        }
+    }
+
     @Activate
     @SuppressWarnings("unused")
     protected void activate(ComponentContext componentContext) {
         mainTemplate = resourceFile(componentContext, MAIN_TEMPLATE_PATH);
         childTemplate = resourceFile(componentContext, CHILD_TEMPLATE_PATH);
+        Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        properties.put("jmx.objectname", "org.apache.sling:type=scripting,service=Sightly,name=CompileStatistics");
+        compileStatisticsRegistration = componentContext.getBundleContext().registerService(
+                CompileStatisticsMBean.class.getName(), compileStatistics, properties);
+        // removing a folder only sends an event for the folder itself, so the paths are not filtered by extension
+        Dictionary<String, Object> eventHandlerProperties = new Hashtable<String, Object>();
+        eventHandlerProperties.put(EventConstants.EVENT_TOPIC, new String[] {SlingConstants.TOPIC_RESOURCE_REMOVED});
+        eventHandlerServiceRegistration = componentContext.getBundleContext().registerService(
+                EventHandler.class.getName(),
+                new EventHandler() {
+                    @Override
+                    public void handleEvent(Event event) {
+                        String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+                        if (path != null) {
+                            compileStatistics.remove(path);
+                        }
+                    }
+                },
+                eventHandlerProperties
+        );
+    }
+
+    @Deactivate
+    @SuppressWarnings("unused")
+    protected void deactivate(ComponentContext componentContext) {
+        if (eventHandlerServiceRegistration != null) {
+            eventHandlerServiceRegistration.unregister();
+            eventHandlerServiceRegistration = null;
+        }
+        if (compileStatisticsRegistration != null) {
+            compileStatisticsRegistration.unregister();
+            compileStatisticsRegistration = null;
+        }
+    }
+
+    private Object compile(ResourceResolver resolver, SourceIdentifier sourceIdentifier, Bindings bindings, String encoding,
+                           RenderContextImpl renderContext) {
+        long start = System.nanoTime();
+        String sourceCode = getSourceCodeForScript(resolver, sourceIdentifier, bindings, encoding, renderContext);
+        Object obj = sightlyJavaCompilerService.compileSource(sourceCode, sourceIdentifier.getFullyQualifiedName());
+        compileStatistics.record(sourceIdentifier.getResource().getPath(), System.nanoTime() - start);
+        return obj;
     }
 
     private SourceIdentifier obtainIdentifier(Resource resource) {
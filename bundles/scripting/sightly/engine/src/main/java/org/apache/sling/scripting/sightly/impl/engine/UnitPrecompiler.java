@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.script.SimpleBindings;
+
+import org.apache.felix.scr.annotations.Activate;
+import org.apache.felix.scr.annotations.Component;
+import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.sling.api.SlingConstants;
+import org.apache.sling.api.resource.LoginException;
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.apache.sling.scripting.sightly.impl.engine.runtime.RenderContextImpl;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.Event;
+import org.osgi.service.event.EventConstants;
+import org.osgi.service.event.EventHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the Sightly scripts from the search paths in the background, so that the first requests after a startup or a
+ * deployment do not have to wait for the compilation. Added or changed scripts are recompiled as soon as they change.
+ * The precompilation is only done if enabled in the {@link SightlyEngineConfiguration}.
+ */
+@Component
+public class UnitPrecompiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UnitPrecompiler.class);
+
+    private static final String NT_FILE = "nt:file";
+
+    @Reference
+    private ResourceResolverFactory rrf = null;
+
+    @Reference
+    private UnitLoader unitLoader = null;
+
+    @Reference
+    private UnitChangeMonitor unitChangeMonitor = null;
+
+    @Reference
+    private SightlyEngineConfiguration sightlyEngineConfiguration = null;
+
+    @Reference
+    private ExtensionRegistryService extensionRegistryService = null;
+
+    @Reference
+    private ClassLoaderWriter classLoaderWriter = null;
+
+    private final Set<String> pendingScripts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile ExecutorService executor;
+    private ServiceRegistration eventHandlerServiceRegistration;
+
+    @Activate
+    @SuppressWarnings(value = {"unused", "unchecked"})
+    protected void activate(ComponentContext componentContext) {
+        if (!sightlyEngineConfiguration.isPrecompile()) {
+            return;
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(sightlyEngineConfiguration.getPrecompileThreads(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Sightly Precompiler " + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        ResourceResolver adminResolver = null;
+        try {
+            adminResolver = rrf.getAdministrativeResourceResolver(null);
+            StringBuilder eventHandlerFilteredPaths = new StringBuilder("(|");
+            for (String sp : adminResolver.getSearchPath()) {
+                eventHandlerFilteredPaths.append("(path=").append(sp).append("**/*.").append(SightlyScriptEngineFactory.EXTENSION).append(
+                        ")");
+            }
+            eventHandlerFilteredPaths.append(")");
+            Dictionary eventHandlerProperties = new Hashtable();
+            eventHandlerProperties.put(EventConstants.EVENT_FILTER, eventHandlerFilteredPaths.toString());
+            eventHandlerProperties.put(EventConstants.EVENT_TOPIC, new String[]{SlingConstants.TOPIC_RESOURCE_ADDED, SlingConstants
+                    .TOPIC_RESOURCE_CHANGED});
+            eventHandlerServiceRegistration = componentContext.getBundleContext().registerService(
+                    EventHandler.class.getName(),
+                    new EventHandler() {
+                        @Override
+                        public void handleEvent(Event event) {
+                            String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
+                            if (path != null) {
+                                // make sure the script is compiled again even if the change monitor is notified later
+                                unitChangeMonitor.touchScript(path);
+                                precompile(path);
+                            }
+                        }
+                    },
+                    eventHandlerProperties
+            );
+        } catch (LoginException e) {
+            LOG.error("Unable to listen for change events.", e);
+        } finally {
+            if (adminResolver != null) {
+                adminResolver.close();
+            }
+        }
+
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                precompileAll();
+            }
+        });
+    }
+
+    @Deactivate
+    @SuppressWarnings("unused")
+    protected void deactivate(ComponentContext componentContext) {
+        if (eventHandlerServiceRegistration != null) {
+            eventHandlerServiceRegistration.unregister();
+            eventHandlerServiceRegistration = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pendingScripts.clear();
+    }
+
+    /**
+     * Schedules the compilation of the script unless it is already scheduled.
+     *
+     * @param path the path of the script
+     */
+    void precompile(final String path) {
+        if (pendingScripts.add(path)) {
+            execute(new Runnable() {
+                @Override
+                public void run() {
+                    pendingScripts.remove(path);
+                    compile(path);
+                }
+            });
+        }
+    }
+
+    private void execute(Runnable task) {
+        ExecutorService service = executor;
+        if (service != null) {
+            try {
+                service.execute(task);
+            } catch (RejectedExecutionException e) {
+                // shut down concurrently
+            }
+        }
+    }
+
+    private void precompileAll() {
+        ResourceResolver adminResolver = null;
+        try {
+            adminResolver = rrf.getAdministrativeResourceResolver(null);
+            long start = System.currentTimeMillis();
+            int count = 0;
+            for (String sp : adminResolver.getSearchPath()) {
+                Resource searchPath = adminResolver.getResource(sp);
+                if (searchPath != null) {
+                    count += collectScripts(searchPath);
+                }
+            }
+            LOG.info("Scheduled precompilation of {} scripts in {}ms.", count, System.currentTimeMillis() - start);
+        } catch (LoginException e) {
+            LOG.error("Unable to precompile scripts.", e);
+        } finally {
+            if (adminResolver != null) {
+                adminResolver.close();
+            }
+        }
+    }
+
+    private int collectScripts(Resource resource) {
+        int count = 0;
+        Iterator<Resource> children = resource.listChildren();
+        while (children.hasNext() && executor != null) {
+            Resource child = children.next();
+            if (NT_FILE.equals(child.getResourceType())) {
+                if (child.getName().endsWith("." + SightlyScriptEngineFactory.EXTENSION)) {
+                    precompile(child.getPath());
+                    count++;
+                }
+            } else {
+                count += collectScripts(child);
+            }
+        }
+        return count;
+    }
+
+    private void compile(String path) {
+        ResourceResolver adminResolver = null;
+        ClassLoader old = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(classLoaderWriter.getClassLoader());
+            adminResolver = rrf.getAdministrativeResourceResolver(null);
+            Resource scriptResource = adminResolver.getResource(path);
+            if (scriptResource != null) {
+                unitLoader.compileUnit(scriptResource,
+                        new RenderContextImpl(new SimpleBindings(), extensionRegistryService.extensions(), adminResolver));
+            }
+        } catch (Exception e) {
+            // the error is reported again when the script is requested
+            LOG.debug("Unable to precompile script " + path + ": " + e.getMessage());
+        } finally {
+            Thread.currentThread().setContextClassLoader(old);
+            if (adminResolver != null) {
+                adminResolver.close();
+            }
+        }
+    }
+}
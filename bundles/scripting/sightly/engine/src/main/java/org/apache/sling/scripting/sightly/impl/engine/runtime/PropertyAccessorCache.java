@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine.runtime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the accessors of properties per class and property name, so that the
+ * public methods of a class are not scanned on every property access. An
+ * accessor is either a {@link java.lang.reflect.Method}, a {@link java.lang.reflect.Field}
+ * or {@link #MISSING} if the class has no such property.
+ * <p>
+ * The cache keeps strong references to the classes and therefore needs to be
+ * cleared whenever classes might get unloaded, i.e. if bundles are updated or the
+ * dynamic class loader changes.
+ */
+public class PropertyAccessorCache {
+
+    /**
+     * The accessor of properties which do not exist.
+     */
+    static final Object MISSING = new Object();
+
+    private final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> accessors =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Object>>();
+
+    private volatile ClassLoader classLoader;
+
+    /**
+     * Returns the cached accessor.
+     *
+     * @param cls      - the class of the target object
+     * @param property - the property name
+     * @return - the accessor or {@code null} if it is not cached
+     */
+    Object get(Class<?> cls, String property) {
+        ConcurrentMap<String, Object> properties = accessors.get(cls);
+        return properties == null ? null : properties.get(property);
+    }
+
+    void put(Class<?> cls, String property, Object accessor) {
+        ConcurrentMap<String, Object> properties = accessors.get(cls);
+        if (properties == null) {
+            properties = new ConcurrentHashMap<String, Object>();
+            ConcurrentMap<String, Object> existing = accessors.putIfAbsent(cls, properties);
+            if (existing != null) {
+                properties = existing;
+            }
+        }
+        properties.put(property, accessor);
+    }
+
+    /**
+     * Clears the cache if the given class loader differs from the one passed on the last call.
+     *
+     * @param loader - the current dynamic class loader
+     */
+    public void checkClassLoader(ClassLoader loader) {
+        if (loader != classLoader) {
+            classLoader = loader;
+            clear();
+        }
+    }
+
+    /**
+     * Removes all cached accessors.
+     */
+    public void clear() {
+        accessors.clear();
+    }
+}
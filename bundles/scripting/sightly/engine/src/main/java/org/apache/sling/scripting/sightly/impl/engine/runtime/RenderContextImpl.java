@@ -59,11 +59,18 @@ public class RenderContextImpl implements RenderContext {
     private final Bindings bindings;
     private final Map<String, RuntimeExtension> mapping;
     private final ResourceResolver scriptResourceResolver;
+    private final PropertyAccessorCache accessorCache;
 
     public RenderContextImpl(Bindings bindings, Map<String, RuntimeExtension> mapping, ResourceResolver scriptResourceResolver) {
+        this(bindings, mapping, scriptResourceResolver, new PropertyAccessorCache());
+    }
+
+    public RenderContextImpl(Bindings bindings, Map<String, RuntimeExtension> mapping, ResourceResolver scriptResourceResolver,
+                             PropertyAccessorCache accessorCache) {
         this.bindings = bindings;
         this.mapping = mapping;
         this.scriptResourceResolver = scriptResourceResolver;
+        this.accessorCache = accessorCache;
     }
 
     @Override
@@ -319,35 +326,44 @@ public class RenderContextImpl implements RenderContext {
     }
 
     private Object getObjectProperty(Object obj, String property) {
-        try {
-            return getObjectNoArgMethod(obj, property);
-        } catch (NoSuchMethodException nsmex) {
-            return getField(obj, property);
-        }
-    }
-
-    private Object getField(Object obj, String property) {
         if (obj instanceof Object[] && "length".equals(property)) {
             // Working around this limitation: http://docs.oracle.com/javase/7/docs/api/java/lang/Class.html#getFields%28%29
             return ((Object[]) obj).length;
         }
         Class<?> cls = obj.getClass();
-        try {
-            Field field = cls.getDeclaredField(property);
-            return field.get(obj);
-        } catch (Exception e) {
-            return null;
+        Object accessor = accessorCache.get(cls, property);
+        if (accessor == null) {
+            accessor = findAccessor(cls, property);
+            accessorCache.put(cls, property, accessor);
+        }
+        if (accessor instanceof Method) {
+            try {
+                return ((Method) accessor).invoke(obj);
+            } catch (Exception e) {
+                throw new SightlyException(e);
+            }
+        }
+        if (accessor instanceof Field) {
+            try {
+                return ((Field) accessor).get(obj);
+            } catch (Exception e) {
+                return null;
+            }
         }
+        return null;
     }
 
-    private Object getObjectNoArgMethod(Object obj, String property) throws NoSuchMethodException {
-        Class<?> cls = obj.getClass();
-        Method method = findMethod(cls, property);
+    private Object findAccessor(Class<?> cls, String property) {
         try {
-            method = extractMethodInheritanceChain(cls, method);
-            return method.invoke(obj);
-        } catch (Exception e) {
-            throw new SightlyException(e);
+            Method method = findMethod(cls, property);
+            Method inherited = extractMethodInheritanceChain(cls, method);
+            return inherited != null ? inherited : method;
+        } catch (NoSuchMethodException nsmex) {
+            try {
+                return cls.getDeclaredField(property);
+            } catch (Exception e) {
+                return PropertyAccessorCache.MISSING;
+            }
         }
     }
 
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.util.concurrent.TimeUnit;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CompileStatisticsTest {
+
+    @Test
+    public void testRecord() {
+        CompileStatistics statistics = new CompileStatistics();
+        statistics.record("/apps/test/a.html", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("/apps/test/a.html", TimeUnit.MILLISECONDS.toNanos(30));
+        statistics.record("/apps/test/b.html", TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(3, statistics.getCompileCount());
+        assertEquals(45, statistics.getTotalCompileTimeMsec());
+
+        TabularData scripts = statistics.getScripts();
+        assertEquals(2, scripts.size());
+        CompositeData a = scripts.get(new Object[] {"/apps/test/a.html"});
+        assertEquals(2L, a.get("compileCount"));
+        assertEquals(30L, a.get("lastCompileTimeMsec"));
+        assertEquals(40L, a.get("totalCompileTimeMsec"));
+
+        statistics.resetStatistics();
+        assertEquals(0, statistics.getCompileCount());
+        assertEquals(0, statistics.getScripts().size());
+    }
+
+    @Test
+    public void testRemove() {
+        CompileStatistics statistics = new CompileStatistics();
+        statistics.record("/apps/test/a.html", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("/apps/test/b/b.html", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.record("/apps/test/bc/c.html", TimeUnit.MILLISECONDS.toNanos(10));
+
+        statistics.remove("/apps/test/a.html");
+        assertNull(statistics.getScripts().get(new Object[] {"/apps/test/a.html"}));
+        assertEquals(2, statistics.getScripts().size());
+
+        statistics.remove("/apps/test/b");
+        assertNull(statistics.getScripts().get(new Object[] {"/apps/test/b/b.html"}));
+        assertNotNull(statistics.getScripts().get(new Object[] {"/apps/test/bc/c.html"}));
+        assertEquals(1, statistics.getCompileCount());
+    }
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.util.Collections;
+import javax.script.SimpleBindings;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.apache.sling.scripting.sightly.SightlyException;
+import org.apache.sling.scripting.sightly.extension.RuntimeExtension;
+import org.apache.sling.scripting.sightly.impl.compiler.SightlyJavaCompilerService;
+import org.apache.sling.scripting.sightly.impl.engine.runtime.RenderContextImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UnitLoaderTest {
+
+    private static final String SCRIPT_PATH = "/apps/test/test.html";
+    private static final String CLASS_PATH = "/apps/test/SightlyJava_test.class";
+
+    private UnitLoader unitLoader;
+    private ClassLoaderWriter classLoaderWriter;
+    private UnitChangeMonitor unitChangeMonitor;
+    private SightlyJavaCompilerService sightlyJavaCompilerService;
+    private Resource script;
+    private RenderContextImpl renderContext;
+
+    @Before
+    public void setUp() {
+        unitLoader = new UnitLoader();
+        classLoaderWriter = mock(ClassLoaderWriter.class);
+        unitChangeMonitor = mock(UnitChangeMonitor.class);
+        sightlyJavaCompilerService = mock(SightlyJavaCompilerService.class);
+        SightlyEngineConfiguration sightlyEngineConfiguration = mock(SightlyEngineConfiguration.class);
+        when(sightlyEngineConfiguration.getEncoding()).thenReturn("UTF-8");
+        Whitebox.setInternalState(unitLoader, "classLoaderWriter", classLoaderWriter);
+        Whitebox.setInternalState(unitLoader, "unitChangeMonitor", unitChangeMonitor);
+        Whitebox.setInternalState(unitLoader, "sightlyJavaCompilerService", sightlyJavaCompilerService);
+        Whitebox.setInternalState(unitLoader, "sightlyEngineConfiguration", sightlyEngineConfiguration);
+
+        script = mock(Resource.class);
+        when(script.getPath()).thenReturn(SCRIPT_PATH);
+        when(script.getResourceMetadata()).thenReturn(new ResourceMetadata());
+        renderContext = new RenderContextImpl(new SimpleBindings(), Collections.<String, RuntimeExtension>emptyMap(),
+                mock(ResourceResolver.class));
+    }
+
+    @Test
+    public void testCompileUnitSkipsUpToDateUnit() {
+        when(classLoaderWriter.getLastModified(CLASS_PATH)).thenReturn(20L);
+        when(unitChangeMonitor.getLastModifiedDateForScript(SCRIPT_PATH)).thenReturn(10L);
+        unitLoader.compileUnit(script, renderContext);
+        verify(sightlyJavaCompilerService, never()).compileSource(anyString(), anyString());
+    }
+
+    @Test
+    public void testCompileUnitCompilesChangedUnit() {
+        when(classLoaderWriter.getLastModified(CLASS_PATH)).thenReturn(20L);
+        when(unitChangeMonitor.getLastModifiedDateForScript(SCRIPT_PATH)).thenReturn(30L);
+        try {
+            unitLoader.compileUnit(script, renderContext);
+            fail("The script can't be read, so compiling it must fail");
+        } catch (SightlyException e) {
+            // expected, the unit has been compiled again
+        }
+    }
+
+    @Test
+    public void testCompileUnitCompilesMissingUnit() {
+        when(classLoaderWriter.getLastModified(CLASS_PATH)).thenReturn(-1L);
+        try {
+            unitLoader.compileUnit(script, renderContext);
+            fail("The script can't be read, so compiling it must fail");
+        } catch (SightlyException e) {
+            // expected
+        }
+        verify(unitChangeMonitor).touchScript(SCRIPT_PATH);
+    }
+}
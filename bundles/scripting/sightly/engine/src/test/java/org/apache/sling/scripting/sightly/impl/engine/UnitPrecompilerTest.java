@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceResolverFactory;
+import org.apache.sling.commons.classloader.ClassLoaderWriter;
+import org.apache.sling.scripting.sightly.impl.engine.runtime.RenderContextImpl;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.event.EventConstants;
+import org.powermock.reflect.Whitebox;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UnitPrecompilerTest {
+
+    private UnitPrecompiler precompiler;
+    private ResourceResolver resolver;
+    private UnitLoader unitLoader;
+    private SightlyEngineConfiguration sightlyEngineConfiguration;
+    private QueueExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        precompiler = new UnitPrecompiler();
+        resolver = mock(ResourceResolver.class);
+        when(resolver.getSearchPath()).thenReturn(new String[] {"/apps/", "/libs/"});
+        ResourceResolverFactory rrf = mock(ResourceResolverFactory.class);
+        when(rrf.getAdministrativeResourceResolver(null)).thenReturn(resolver);
+        unitLoader = mock(UnitLoader.class);
+        sightlyEngineConfiguration = mock(SightlyEngineConfiguration.class);
+        Whitebox.setInternalState(precompiler, "rrf", rrf);
+        Whitebox.setInternalState(precompiler, "unitLoader", unitLoader);
+        Whitebox.setInternalState(precompiler, "unitChangeMonitor", mock(UnitChangeMonitor.class));
+        Whitebox.setInternalState(precompiler, "sightlyEngineConfiguration", sightlyEngineConfiguration);
+        Whitebox.setInternalState(precompiler, "extensionRegistryService", mock(ExtensionRegistryService.class));
+        Whitebox.setInternalState(precompiler, "classLoaderWriter", mock(ClassLoaderWriter.class));
+        executor = new QueueExecutor();
+        Whitebox.setInternalState(precompiler, "executor", executor);
+    }
+
+    private Resource resource(String path, String resourceType, Resource... children) {
+        Resource resource = mock(Resource.class);
+        when(resource.getPath()).thenReturn(path);
+        when(resource.getName()).thenReturn(path.substring(path.lastIndexOf('/') + 1));
+        when(resource.getResourceType()).thenReturn(resourceType);
+        when(resource.listChildren()).thenReturn(Arrays.asList(children).iterator());
+        when(resolver.getResource(path)).thenReturn(resource);
+        return resource;
+    }
+
+    @Test
+    public void testPrecompileAll() throws Exception {
+        Resource html = resource("/apps/test/test.html", "nt:file");
+        Resource jsp = resource("/apps/test/test.jsp", "nt:file");
+        Resource nested = resource("/apps/test/nested/nested.html", "nt:file");
+        resource("/apps/", "sling:Folder",
+                resource("/apps/test", "sling:Folder", html, jsp,
+                        resource("/apps/test/nested", "sling:Folder", nested)));
+
+        Whitebox.invokeMethod(precompiler, "precompileAll");
+        assertEquals(2, executor.tasks.size());
+        executor.runAll();
+        verify(unitLoader, times(2)).compileUnit(any(Resource.class), any(RenderContextImpl.class));
+        verify(unitLoader).compileUnit(eq(html), any(RenderContextImpl.class));
+        verify(unitLoader).compileUnit(eq(nested), any(RenderContextImpl.class));
+        verify(unitLoader, never()).compileUnit(eq(jsp), any(RenderContextImpl.class));
+    }
+
+    @Test
+    public void testPrecompileScheduledOnce() {
+        resource("/apps/test/test.html", "nt:file");
+        precompiler.precompile("/apps/test/test.html");
+        precompiler.precompile("/apps/test/test.html");
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        verify(unitLoader).compileUnit(any(Resource.class), any(RenderContextImpl.class));
+
+        // scheduled again once compiled
+        precompiler.precompile("/apps/test/test.html");
+        assertEquals(1, executor.tasks.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventFilter() {
+        when(sightlyEngineConfiguration.isPrecompile()).thenReturn(true);
+        when(sightlyEngineConfiguration.getPrecompileThreads()).thenReturn(1);
+        BundleContext bundleContext = mock(BundleContext.class);
+        ComponentContext componentContext = mock(ComponentContext.class);
+        when(componentContext.getBundleContext()).thenReturn(bundleContext);
+
+        precompiler.activate(componentContext);
+        precompiler.deactivate(componentContext);
+        ArgumentCaptor<Dictionary> properties = ArgumentCaptor.forClass(Dictionary.class);
+        verify(bundleContext).registerService(anyString(), any(), properties.capture());
+        assertEquals("(|(path=/apps/**/*.html)(path=/libs/**/*.html))", properties.getValue().get(EventConstants.EVENT_FILTER));
+    }
+
+    /**
+     * Executor queueing the tasks until they are run by the test.
+     */
+    private static final class QueueExecutor extends AbstractExecutorService {
+
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        void runAll() {
+            List<Runnable> current = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : current) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
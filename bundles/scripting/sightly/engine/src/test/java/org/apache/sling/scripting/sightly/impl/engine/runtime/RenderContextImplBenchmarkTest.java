@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.apache.sling.scripting.sightly.impl.engine.runtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.SimpleBindings;
+
+import org.apache.sling.scripting.sightly.extension.RuntimeExtension;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the property resolution done by a list-heavy template, i.e. a
+ * <code>data-sly-list</code> over many models rendering several properties
+ * of each model, with and without the shared accessor cache.
+ * <p>
+ * The benchmark is skipped unless it is enabled:
+ * <pre>
+ * mvn test -Dtest=RenderContextImplBenchmarkTest -Dsightly.benchmark=true
+ * </pre>
+ */
+public class RenderContextImplBenchmarkTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RenderContextImplBenchmarkTest.class);
+
+    private static final int ITEMS = 1000;
+
+    private static final int PAGES = 500;
+
+    private static final String[] PROPERTIES = {"title", "description", "path", "visible", "missing"};
+
+    /** A cache which never caches any accessor. */
+    private static final PropertyAccessorCache NO_CACHE = new PropertyAccessorCache() {
+        @Override
+        void put(Class<?> cls, String property, Object accessor) {
+            // not cached
+        }
+    };
+
+    @Test
+    public void testListRendering() {
+        Assume.assumeTrue(Boolean.getBoolean("sightly.benchmark"));
+        List<Model> models = new ArrayList<Model>();
+        for (int i = 0; i < ITEMS; i++) {
+            models.add(new Model(i));
+        }
+        PropertyAccessorCache cache = new PropertyAccessorCache();
+        // warm up
+        render(models, NO_CACHE);
+        render(models, cache);
+        LOG.info("{} pages of {} items: uncached={}ms cached={}ms", new Object[] {PAGES, ITEMS,
+                render(models, NO_CACHE), render(models, cache)});
+    }
+
+    /**
+     * Renders the list {@link #PAGES} times.
+     *
+     * @return - the time taken in milliseconds
+     */
+    private long render(List<Model> models, PropertyAccessorCache cache) {
+        long start = System.nanoTime();
+        for (int page = 0; page < PAGES; page++) {
+            RenderContextImpl renderContext = new RenderContextImpl(new SimpleBindings(),
+                    new HashMap<String, RuntimeExtension>(), null, cache);
+            StringBuilder out = new StringBuilder();
+            for (Object model : renderContext.toCollection(models)) {
+                for (String property : PROPERTIES) {
+                    out.append(renderContext.toString(renderContext.resolveProperty(model, property)));
+                }
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    public static class Model {
+
+        private final int index;
+
+        public Model(int index) {
+            this.index = index;
+        }
+
+        public String getTitle() {
+            return "Title " + index;
+        }
+
+        public String getDescription() {
+            return "Description " + index;
+        }
+
+        public String getPath() {
+            return "/content/page" + index;
+        }
+
+        public boolean isVisible() {
+            return index % 2 == 0;
+        }
+    }
+}
@@ -72,4 +72,40 @@ public class RenderContextImplTest {
         Collection numberCollection = renderContext.toCollection(numberObject);
         assertTrue(numberCollection.size() == 1 && numberCollection.contains(numberObject));
     }
+
+    @Test
+    public void testResolveObjectProperty() {
+        Bean bean = new Bean();
+        for (int i = 0; i < 2; i++) {
+            // the second iteration uses the cached accessors
+            assertEquals("title", renderContext.resolveProperty(bean, "title"));
+            assertEquals(Boolean.TRUE, renderContext.resolveProperty(bean, "visible"));
+            assertEquals("field", renderContext.resolveProperty(bean, "name"));
+            assertNull(renderContext.resolveProperty(bean, "missing"));
+            assertNull(renderContext.resolveProperty(bean, "class"));
+            assertEquals(2, renderContext.resolveProperty(new Object[] {bean, bean}, "length"));
+        }
+    }
+
+    @Test
+    public void testPropertyAccessorCache() {
+        PropertyAccessorCache cache = new PropertyAccessorCache();
+        cache.put(Bean.class, "missing", PropertyAccessorCache.MISSING);
+        assertSame(PropertyAccessorCache.MISSING, cache.get(Bean.class, "missing"));
+        cache.checkClassLoader(getClass().getClassLoader());
+        assertNull(cache.get(Bean.class, "missing"));
+    }
+
+    public static class Bean {
+
+        public String name = "field";
+
+        public String getTitle() {
+            return "title";
+        }
+
+        public boolean isVisible() {
+            return true;
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Value;
+
+import org.apache.jackrabbit.api.JackrabbitValue;
+
+/**
+ * The <code>ContentIdentity</code> accesses the content identity of
+ * binaries stored by Jackrabbit. It is kept separate such that the optional
+ * Jackrabbit API is only loaded when this class is used.
+ */
+final class ContentIdentity {
+
+    private ContentIdentity() {
+    }
+
+    /**
+     * Returns the content identity of the value of the single-valued
+     * property or <code>null</code> if the repository does not provide one.
+     */
+    static String get(final Property property) throws RepositoryException {
+        final Value value = property.getValue();
+        if (value instanceof JackrabbitValue) {
+            return ((JackrabbitValue) value).getContentIdentity();
+        }
+        return null;
+    }
+}
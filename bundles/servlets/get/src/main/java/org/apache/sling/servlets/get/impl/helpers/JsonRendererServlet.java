@@ -89,37 +89,40 @@ public class JsonRendererServlet extends SlingSafeMethodsServlet {
         resp.setContentType(req.getResponseContentType());
         resp.setCharacterEncoding("UTF-8");
 
-        // We check the tree to see if the nr of nodes isn't bigger than the allowed nr.
-        boolean allowDump = true;
-        int allowedLevel = 0;
+        // The nr of nodes is checked against the allowed nr while the tree is collected or written.
         final boolean tidy = isTidy(req);
         final boolean harray = hasSelector(req, HARRAY);
-        ResourceTraversor traversor = null;
         try {
-            traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, tidy);
-            allowedLevel = traversor.collectResources();
-            if ( allowedLevel != -1 ) {
-			    allowDump = false;
-            }
-        } catch (final JSONException e) {
-            reportException(e);
-        }
-        try {
-            // Dump the resource if we can
-            if (allowDump) {
-                if (tidy || harray) {
+            int allowedLevel = -1;
+            if (tidy || harray) {
+                final ResourceTraversor traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, tidy);
+                allowedLevel = traversor.collectResources();
+                if (allowedLevel == -1) {
                     final JSONRenderer.Options opt = renderer.options()
                             .withIndent(tidy ? INDENT_SPACES : 0)
                             .withArraysForChildren(harray);
                     resp.getWriter().write(renderer.prettyPrint(traversor.getJSONObject(), opt));
-                } else {
-                    // If no rendering options, use the plain toString() method, for
-                    // backwards compatibility. Output might be slightly different
-                    // with prettyPrint and no options
-                    resp.getWriter().write(traversor.getJSONObject().toString());
                 }
-
             } else {
+                // same output as toString() but written without building the tree
+                final JsonResourceWriter resourceWriter = new JsonResourceWriter(maxRecursionLevels, maximumResults);
+                if (!resourceWriter.write(resp.getWriter(), r)) {
+                    if (resourceWriter.isTooDeep()) {
+                        // If no rendering options, use the plain toString() method, for
+                        // backwards compatibility. Output might be slightly different
+                        // with prettyPrint and no options
+                        final ResourceTraversor traversor = new ResourceTraversor(maxRecursionLevels, maximumResults, r, false);
+                        allowedLevel = traversor.collectResources();
+                        if (allowedLevel == -1) {
+                            resp.getWriter().write(traversor.getJSONObject().toString());
+                        }
+                    } else {
+                        allowedLevel = resourceWriter.checkResources(r);
+                    }
+                }
+            }
+
+            if (allowedLevel != -1) {
                 // We are not allowed to do the dump.
                 // Send a 300
                 String tidyUrl = (tidy) ? "tidy." : "";
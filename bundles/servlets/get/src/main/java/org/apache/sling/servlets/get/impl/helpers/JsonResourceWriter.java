@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.JSONObject;
+import org.apache.sling.commons.json.io.JSONWriter;
+import org.apache.sling.commons.json.sling.JsonObjectCreator;
+import org.apache.sling.commons.json.sling.ResourceTraversor;
+
+/**
+ * The <code>JsonResourceWriter</code> writes a resource tree as JSON to a
+ * <code>Writer</code>. Resources are visited depth-first and no
+ * <code>JSONObject</code> tree is built: the properties of each resource
+ * are formatted by {@link JsonObjectCreator} and written right away, only
+ * the children of the resources currently written are held.
+ * <p>
+ * The output is the same as the <code>toString()</code> of the object
+ * collected by a {@link ResourceTraversor} with the same settings.
+ * <p>
+ * Instances of this class are not thread-safe.
+ */
+class JsonResourceWriter {
+
+    /**
+     * The deepest resource level which can be written. {@link JSONWriter}
+     * nests up to 50 levels, one of which is used by the start resource and
+     * one by array property values.
+     */
+    static final int MAX_LEVEL = 48;
+
+    private final int maxRecursionLevels;
+
+    private final long maxResources;
+
+    private long count;
+
+    private boolean tooDeep;
+
+    /**
+     * Creates a writer.
+     *
+     * @param maxRecursionLevels The number of child levels to write, -1 for
+     *            all levels.
+     * @param maxResources The maximum number of resources written for
+     *            traversals deeper than one level.
+     */
+    JsonResourceWriter(final int maxRecursionLevels, final long maxResources) {
+        this.maxRecursionLevels = maxRecursionLevels;
+        this.maxResources = maxResources;
+    }
+
+    /**
+     * Writes the resource and its children up to the configured level. The
+     * resources are counted while they are written. Unless at most one level
+     * is written, the output is held back until the whole tree has been
+     * visited: writing stops as soon as the maximum number of resources is
+     * exceeded or the tree is nested deeper than {@link #MAX_LEVEL}, and
+     * nothing is written in this case.
+     *
+     * @param out The writer to write to
+     * @param resource The start resource
+     * @return <code>true</code> if the tree has been written,
+     *         <code>false</code> if it has too many resources or is nested
+     *         too deep, see {@link #isTooDeep()}.
+     * @throws JSONException If writing fails
+     * @throws IOException If writing fails
+     */
+    boolean write(final Writer out, final Resource resource) throws JSONException, IOException {
+        count = 0;
+        tooDeep = false;
+        if (maxRecursionLevels == 0 || maxRecursionLevels == 1) {
+            // SLING-2320: always allow enumeration of one's children
+            return writeResource(new JSONWriter(out), resource, 0);
+        }
+        final StringWriter buffer = new StringWriter();
+        if (!writeResource(new JSONWriter(buffer), resource, 0)) {
+            return false;
+        }
+        out.write(buffer.toString());
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the last call to
+     *         {@link #write(Writer, Resource)} stopped because the tree is
+     *         nested deeper than {@link #MAX_LEVEL}.
+     */
+    boolean isTooDeep() {
+        return tooDeep;
+    }
+
+    /**
+     * @return The number of resources counted by the last call to
+     *         {@link #write(Writer, Resource)} or
+     *         {@link #checkResources(Resource)}.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Counts the resources below the given resource breadth-first without
+     * adapting them, stopping as soon as the maximum number of resources is
+     * exceeded. This is only required to tell which levels may be requested
+     * instead after {@link #write(Writer, Resource)} found too many
+     * resources.
+     *
+     * @param resource The start resource
+     * @return -1 if the tree may be written, otherwise the deepest level
+     *            which may be requested instead. This is the same value
+     *            {@link ResourceTraversor#collectResources()} returns.
+     */
+    int checkResources(final Resource resource) {
+        count = 0;
+        List<Resource> current = new ArrayList<Resource>();
+        current.add(resource);
+        int level = 0;
+        while (!current.isEmpty() && isLevelActive(level)) {
+            final boolean collect = isLevelActive(level + 1);
+            final List<Resource> next = new ArrayList<Resource>();
+            for (final Resource parent : current) {
+                final Iterator<Resource> children = ResourceUtil.listChildren(parent);
+                while (children.hasNext()) {
+                    final Resource child = children.next();
+                    if (isLimitExceeded()) {
+                        return level;
+                    }
+                    if (collect) {
+                        next.add(child);
+                    }
+                }
+            }
+            current = next;
+            level++;
+        }
+        return -1;
+    }
+
+    private boolean isLevelActive(final int level) {
+        return maxRecursionLevels == -1 || level < maxRecursionLevels;
+    }
+
+    /**
+     * Counts a resource.
+     *
+     * @return <code>true</code> if the maximum number of resources is
+     *         exceeded.
+     */
+    private boolean isLimitExceeded() {
+        count++;
+        // SLING-2320: always allow enumeration of one's children;
+        // DOS-limitation is for deeper traversals.
+        return count > maxResources && maxRecursionLevels != 1;
+    }
+
+    private boolean writeResource(final JSONWriter writer, final Resource resource, final int level)
+    throws JSONException {
+        if (level > MAX_LEVEL) {
+            tooDeep = true;
+            return false;
+        }
+
+        // a JSONObject holds each key once: a child replaces a property or
+        // an earlier child with the same name at the position of the first
+        final Map<String, Resource> children;
+        if (isLevelActive(level)) {
+            children = new LinkedHashMap<String, Resource>();
+            final Iterator<Resource> i = ResourceUtil.listChildren(resource);
+            while (i.hasNext()) {
+                final Resource child = i.next();
+                if (isLimitExceeded()) {
+                    return false;
+                }
+                children.put(ResourceUtil.getName(child), child);
+            }
+        } else {
+            children = Collections.emptyMap();
+        }
+
+        final JSONObject properties = JsonObjectCreator.create(resource, 0);
+        writer.object();
+        final Iterator<String> keys = properties.keys();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            writer.key(key);
+            final Resource child = children.isEmpty() ? null : children.remove(key);
+            if (child == null) {
+                writer.value(properties.get(key));
+            } else if (!writeResource(writer, child, level + 1)) {
+                return false;
+            }
+        }
+        for (final Map.Entry<String, Resource> child : children.entrySet()) {
+            writer.key(child.getKey());
+            if (!writeResource(writer, child.getValue(), level + 1)) {
+                return false;
+            }
+        }
+        writer.endObject();
+        return true;
+    }
+}
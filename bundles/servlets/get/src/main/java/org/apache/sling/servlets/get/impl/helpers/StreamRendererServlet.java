@@ -33,6 +33,7 @@ import java.util.StringTokenizer;
 
 import javax.jcr.Node;
 import javax.jcr.PathNotFoundException;
+import javax.jcr.Property;
 import javax.jcr.RepositoryException;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
@@ -79,6 +80,18 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
     static final int IO_BUFFER_SIZE = 2048;
 
+    /** The <code>If-None-Match</code> request header */
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    /** The <code>ETag</code> response header */
+    private static final String HEADER_ETAG = "ETag";
+
+    /**
+     * Whether the optional Jackrabbit API providing the content identity of
+     * binaries is available.
+     */
+    private static volatile boolean contentIdentityAvailable = true;
+
     /** default log */
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -125,8 +138,9 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
             return;
         }
 
-        // check the last modification time and If-Modified-Since header
-        if (!included) {
+        // check the last modification time and If-Modified-Since header,
+        // which is ignored if an entity tag is given
+        if (!included && request.getHeader(HEADER_IF_NONE_MATCH) == null) {
             ResourceMetadata meta = resource.getResourceMetadata();
             long modifTime = meta.getModificationTime();
             if (unmodified(request, modifTime)) {
@@ -146,10 +160,19 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                 throw new IOException(e);
             }
         }
+
+        // check the entity tag before accessing the binary
+        final String etag = included ? null : getETag(resource);
+        if (etag != null && matches(request.getHeader(HEADER_IF_NONE_MATCH), etag, false)) {
+            response.setHeader(HEADER_ETAG, etag);
+            response.setStatus(SC_NOT_MODIFIED);
+            return;
+        }
+
         InputStream stream = resource.adaptTo(InputStream.class);
         if (stream != null) {
 
-            streamResource(resource, stream, included, request, response);
+            streamResource(resource, stream, etag, included, request, response);
 
         } else {
 
@@ -204,8 +227,91 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
         return false;
     }
 
+    /**
+     * Returns the entity tag of the resource or <code>null</code> if none can
+     * be computed. The tag is strong if the content identity of the binary is
+     * known, otherwise it is a weak tag built from the content length and
+     * the last modification time.
+     */
+    private String getETag(final Resource resource) {
+        final String identity = getContentIdentity(resource);
+        if (identity != null) {
+            return "\"" + identity + "\"";
+        }
+        final ResourceMetadata meta = resource.getResourceMetadata();
+        final long length = meta.getContentLength();
+        final long modifTime = meta.getModificationTime();
+        if (length > 0 && modifTime > 0) {
+            return "W/\"" + length + "-" + modifTime + "\"";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the content identity of the binary of a JCR file, resource or
+     * binary property if provided by the repository.
+     */
+    private String getContentIdentity(final Resource resource) {
+        if (!contentIdentityAvailable) {
+            return null;
+        }
+        try {
+            Property data = resource.adaptTo(Property.class);
+            if (data == null) {
+                Node node = resource.adaptTo(Node.class);
+                if (node != null && node.hasNode(JcrConstants.JCR_CONTENT)) {
+                    node = node.getNode(JcrConstants.JCR_CONTENT);
+                }
+                if (node != null && node.hasProperty(JcrConstants.JCR_DATA)) {
+                    data = node.getProperty(JcrConstants.JCR_DATA);
+                }
+            }
+            if (data != null && !data.getDefinition().isMultiple()) {
+                return ContentIdentity.get(data);
+            }
+        } catch (final RepositoryException re) {
+            log.debug("Cannot get content identity of " + resource, re);
+        } catch (final NoClassDefFoundError ncdfe) {
+            log.info("Jackrabbit API not available, using weak entity tags");
+            contentIdentityAvailable = false;
+        }
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the value of an <code>If-None-Match</code>
+     * or <code>If-Range</code> header contains the entity tag. Weak tags
+     * never match if a strong comparison is requested.
+     */
+    static boolean matches(final String header, final String etag, final boolean strong) {
+        if (header == null) {
+            return false;
+        }
+        if (strong && etag.startsWith("W/")) {
+            return false;
+        }
+        final String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        final StringTokenizer tokenizer = new StringTokenizer(header, ",");
+        while (tokenizer.hasMoreTokens()) {
+            String candidate = tokenizer.nextToken().trim();
+            if ("*".equals(candidate)) {
+                return !strong;
+            }
+            if (candidate.startsWith("W/")) {
+                if (strong) {
+                    continue;
+                }
+                candidate = candidate.substring(2);
+            }
+            if (opaque.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void streamResource(final Resource resource,
-            final InputStream stream, final boolean included,
+            final InputStream stream, final String etag, final boolean included,
             final SlingHttpServletRequest request,
             final SlingHttpServletResponse response) throws IOException {
         // finally stream the resource
@@ -221,7 +327,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // parse optional ranges
                 ranges = parseRange(request, response,
-                    resource.getResourceMetadata());
+                    resource.getResourceMetadata(), etag);
                 if (ranges == null) {
                     // there was something wrong, the parseRange has sent a
                     // response and we are done
@@ -230,6 +336,9 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // set various response headers, unless the request is included
                 setHeaders(resource, response);
+                if (etag != null) {
+                    response.setHeader(HEADER_ETAG, etag);
+                }
             }
 
             ServletOutputStream out = response.getOutputStream();
@@ -264,7 +373,7 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
                     response.setContentType("multipart/byteranges; boundary="
                         + mimeSeparation);
 
-                    copy(resource, out, ranges.iterator());
+                    copy(resource, stream, out, ranges.iterator());
                 }
 
             }
@@ -459,28 +568,29 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
     /**
      * Copies a number of ranges from the given resource to the output stream.
-     * Copy the contents of the specified input stream to the specified output
-     * stream, and ensure that both streams are closed before returning (even in
-     * the face of an exception).
+     * The given stream is used for as long as the ranges are ascending, the
+     * resource is opened again for each range starting before the current
+     * position.
+     * Streams opened by this method are closed before returning (even in the
+     * face of an exception).
      *
      * @param resource The resource from which to send ranges
+     * @param stream The stream of the resource, closed by the caller
      * @param ostream The output stream to write to
      * @param ranges Iterator of the ranges the client wanted to retrieve
      * @exception IOException if an input/output error occurs
      */
-    private void copy(Resource resource, ServletOutputStream ostream,
+    private void copy(Resource resource, InputStream stream, ServletOutputStream ostream,
             Iterator<Range> ranges) throws IOException {
 
         String contentType = resource.getResourceMetadata().getContentType();
         IOException exception = null;
 
-        while ((exception == null) && (ranges.hasNext())) {
-
-            InputStream resourceInputStream = resource.adaptTo(InputStream.class);
-            InputStream istream = new BufferedInputStream(resourceInputStream,
-                IO_BUFFER_SIZE);
+        InputStream istream = stream;
+        long position = 0;
+        try {
+            while ((exception == null) && (ranges.hasNext())) {
 
-            try {
                 Range currentRange = ranges.next();
 
                 // Writing MIME header.
@@ -495,14 +605,25 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // Copy content
                 try {
-                    copy(istream, ostream, currentRange);
+                    if (currentRange.start < position) {
+                        if (istream != stream) {
+                            closeSilently(istream);
+                        }
+                        istream = new BufferedInputStream(
+                            resource.adaptTo(InputStream.class), IO_BUFFER_SIZE);
+                        position = 0;
+                    }
+                    staticCopyRange(istream, ostream, currentRange.start - position,
+                        currentRange.end + 1 - position);
+                    position = currentRange.end + 1;
                 } catch(IOException e) {
                     exception = e;
                 }
-            } finally {
+            }
+        } finally {
+            if (istream != stream) {
                 closeSilently(istream);
             }
-
         }
 
         ostream.println();
@@ -569,13 +690,15 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
      *
      * @param request The servlet request we are processing
      * @param response The servlet response we are creating
+     * @param metadata The metadata of the resource
+     * @param etag The entity tag of the resource or <code>null</code>
      * @return ArrayList of ranges parsed from the Range header or {@link #FULL}
      *         if the full resource should be returned or <code>null</code> if
      *         an error occurred parsing the header and the request has been
      *         finished sending an error status.
      */
     private ArrayList<Range> parseRange(HttpServletRequest request,
-            HttpServletResponse response, ResourceMetadata metadata)
+            HttpServletResponse response, ResourceMetadata metadata, String etag)
             throws IOException {
 
         // Checking If-Range
@@ -593,8 +716,9 @@ public class StreamRendererServlet extends SlingSafeMethodsServlet {
 
                 // If the ETag the client gave does not match the entity
                 // etag, then the entire entity is returned.
-                // Sling: no etag support yet, return full range
-                return FULL;
+                if (etag == null || !matches(headerValue, etag, true)) {
+                    return FULL;
+                }
 
             } else if (metadata.getModificationTime() > (headerValueTime + 1000)) {
 
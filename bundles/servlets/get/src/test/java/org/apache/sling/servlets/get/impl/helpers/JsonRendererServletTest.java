@@ -23,11 +23,20 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.SlingHttpServletResponse;
 import org.apache.sling.api.request.RequestPathInfo;
 import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceMetadata;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
@@ -41,6 +50,7 @@ public class JsonRendererServletTest {
     private SlingHttpServletResponse response;
     private String [] selectors;
     private JsonRendererServlet jrs;
+    private ResourceResolver resolver;
     
     @Before
     public void setup() {
@@ -54,7 +64,8 @@ public class JsonRendererServletTest {
             }
         });
         
-        final Resource resource = Mockito.mock(Resource.class);
+        resolver = Mockito.mock(ResourceResolver.class);
+        final Resource resource = createResource("/content");
         Mockito.when(request.getResource()).thenReturn(resource);
         
         response = Mockito.mock(SlingHttpServletResponse.class);
@@ -109,4 +120,55 @@ public class JsonRendererServletTest {
         jrs.doGet(request, response);
         Mockito.verify(response, Mockito.times(1)).sendError(Matchers.anyInt(), Matchers.anyString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamedOutput() throws IOException {
+        selectors = new String[] { "1" };
+        final Resource resource = request.getResource();
+        final List<Resource> children = Collections.singletonList(createResource("/content/child"));
+        setChildren(resource, children);
+        final StringWriter out = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(out));
+
+        jrs.doGet(request, response);
+        assertEquals("{\"name\":\"content\",\"child\":{\"name\":\"child\"}}", out.toString());
+    }
+
+    @Test
+    public void testTooManyResults() throws IOException {
+        selectors = new String[] { "2" };
+        final Resource resource = request.getResource();
+        final List<Resource> children = new ArrayList<Resource>();
+        for (int i = 0; i < 50; i++) {
+            children.add(createResource("/content/child" + i));
+        }
+        setChildren(resource, children);
+        final StringWriter out = new StringWriter();
+        Mockito.when(response.getWriter()).thenReturn(new PrintWriter(out));
+
+        jrs.doGet(request, response);
+        Mockito.verify(response).setStatus(300);
+        assertEquals("[\"/content.0.json\"]", out.toString());
+    }
+
+    private void setChildren(final Resource resource, final List<Resource> children) {
+        Mockito.when(resolver.listChildren(resource)).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                return children.iterator();
+            }
+        });
+    }
+
+    private Resource createResource(final String path) {
+        final Resource resource = Mockito.mock(Resource.class);
+        Mockito.when(resource.getPath()).thenReturn(path);
+        Mockito.when(resource.getResourceResolver()).thenReturn(resolver);
+        final ResourceMetadata metadata = new ResourceMetadata();
+        metadata.setResolutionPath(path);
+        Mockito.when(resource.getResourceMetadata()).thenReturn(metadata);
+        final ValueMap props = new ValueMapDecorator(Collections.<String, Object> singletonMap(
+            "name", path.substring(path.lastIndexOf('/') + 1)));
+        Mockito.when(resource.adaptTo(ValueMap.class)).thenReturn(props);
+        return resource;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.get.impl.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ValueMap;
+import org.apache.sling.api.wrappers.ValueMapDecorator;
+import org.apache.sling.commons.json.JSONException;
+import org.apache.sling.commons.json.sling.ResourceTraversor;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class JsonResourceWriterTest {
+
+    private final Map<Resource, List<Resource>> children = new HashMap<Resource, List<Resource>>();
+
+    private ResourceResolver resourceResolver;
+
+    private Resource root;
+
+    @Before
+    public void setup() {
+        resourceResolver = Mockito.mock(ResourceResolver.class);
+        when(resourceResolver.listChildren(any(Resource.class))).thenAnswer(new Answer<Object>() {
+            public Object answer(final InvocationOnMock invocation) {
+                final List<Resource> list = children.get(invocation.getArguments()[0]);
+                return (list != null) ? list.iterator() : new ArrayList<Resource>().iterator();
+            }
+        });
+
+        // older versions of the JsonObjectCreator format dates in the default time zone
+        final Calendar date = Calendar.getInstance();
+        date.setTimeInMillis(1234567890000L);
+
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("title", "Root \"quoted\"");
+        props.put("count", 42L);
+        props.put("ratio", 0.5);
+        props.put("flag", true);
+        props.put("date", date);
+        props.put("tags", new String[] { "a", "b" });
+        props.put("empty", new Long[0]);
+        props.put("data", new ByteArrayInputStream(new byte[10]));
+        root = createResource("/root", props);
+
+        for (int i = 0; i < 3; i++) {
+            final Resource child = addChild(root, "child" + i);
+            for (int j = 0; j < 2; j++) {
+                final Resource grandChild = addChild(child, "grandChild" + j);
+                addChild(grandChild, "leaf");
+            }
+        }
+    }
+
+    private Resource createResource(final String path, final Map<String, Object> props) {
+        final Resource r = Mockito.mock(Resource.class);
+        when(r.getPath()).thenReturn(path);
+        when(r.getResourceResolver()).thenReturn(resourceResolver);
+        when(r.adaptTo(ValueMap.class)).thenReturn(new ValueMapDecorator(props));
+        return r;
+    }
+
+    private Resource addChild(final Resource parent, final String name) {
+        final Map<String, Object> props = new LinkedHashMap<String, Object>();
+        props.put("name", name);
+        final Resource child = createResource(parent.getPath() + "/" + name, props);
+        List<Resource> list = children.get(parent);
+        if (list == null) {
+            list = new ArrayList<Resource>();
+            children.put(parent, list);
+        }
+        list.add(child);
+        return child;
+    }
+
+    private String write(final int levels) throws JSONException, IOException {
+        final StringWriter out = new StringWriter();
+        assertTrue(new JsonResourceWriter(levels, Long.MAX_VALUE).write(out, root));
+        return out.toString();
+    }
+
+    private String collect(final int levels) throws JSONException {
+        final ResourceTraversor traversor = new ResourceTraversor(levels, Long.MAX_VALUE, root, false);
+        assertEquals(-1, traversor.collectResources());
+        return traversor.getJSONObject().toString();
+    }
+
+    @Test
+    public void testSameAsTraversor() throws JSONException, IOException {
+        for (final int levels : new int[] { 0, 1, 2, 3, -1 }) {
+            assertEquals("Levels " + levels, collect(levels), write(levels));
+        }
+    }
+
+    @Test
+    public void testDuplicateNames() throws JSONException, IOException {
+        // children replace properties and earlier children with the same name
+        addChild(root, "title");
+        addChild(root, ":data");
+        addChild(addChild(root, "child1"), "leaf");
+        for (final int levels : new int[] { 0, 1, 2, -1 }) {
+            assertEquals("Levels " + levels, collect(levels), write(levels));
+        }
+        assertTrue(write(1).indexOf("\"title\":{\"name\":\"title\"}") > 0);
+    }
+
+    @Test
+    public void testStringResource() throws JSONException, IOException {
+        final Resource r = Mockito.mock(Resource.class);
+        when(r.getPath()).thenReturn("/text");
+        when(r.getResourceResolver()).thenReturn(resourceResolver);
+        when(r.adaptTo(String.class)).thenReturn("value");
+        final StringWriter out = new StringWriter();
+        new JsonResourceWriter(0, 0).write(out, r);
+        assertEquals("{\"text\":\"value\"}", out.toString());
+    }
+
+    @Test
+    public void testCheckResources() throws JSONException {
+        for (final int levels : new int[] { 0, 1, 2, 3, -1 }) {
+            for (long max = 0; max < 25; max++) {
+                final JsonResourceWriter writer = new JsonResourceWriter(levels, max);
+                final ResourceTraversor traversor = new ResourceTraversor(levels, max, root, false);
+                assertEquals("Levels " + levels + ", max " + max,
+                    traversor.collectResources(), writer.checkResources(root));
+            }
+        }
+    }
+
+    @Test
+    public void testLimit() throws JSONException, IOException {
+        for (final int levels : new int[] { 2, 3, -1 }) {
+            for (long max = 0; max < 25; max++) {
+                final ResourceTraversor traversor = new ResourceTraversor(levels, max, root, false);
+                final boolean allowed = traversor.collectResources() == -1;
+                final StringWriter out = new StringWriter();
+                final JsonResourceWriter writer = new JsonResourceWriter(levels, max);
+                assertEquals("Levels " + levels + ", max " + max, allowed, writer.write(out, root));
+                assertEquals(allowed ? traversor.getJSONObject().toString() : "", out.toString());
+                assertFalse(writer.isTooDeep());
+            }
+        }
+    }
+
+    @Test
+    public void testNoLimitForChildren() throws JSONException, IOException {
+        final StringWriter out = new StringWriter();
+        final JsonResourceWriter writer = new JsonResourceWriter(1, 0);
+        assertTrue(writer.write(out, root));
+        assertEquals(collect(1), out.toString());
+        assertEquals(3, writer.getCount());
+    }
+
+    @Test
+    public void testTooDeep() throws JSONException, IOException {
+        Resource parent = root;
+        for (int i = 0; i < JsonResourceWriter.MAX_LEVEL; i++) {
+            parent = addChild(parent, "deep");
+        }
+        assertEquals(collect(-1), write(-1));
+
+        addChild(parent, "deep");
+        final StringWriter out = new StringWriter();
+        final JsonResourceWriter writer = new JsonResourceWriter(-1, Long.MAX_VALUE);
+        assertFalse(writer.write(out, root));
+        assertTrue(writer.isTooDeep());
+        assertEquals("", out.toString());
+    }
+}
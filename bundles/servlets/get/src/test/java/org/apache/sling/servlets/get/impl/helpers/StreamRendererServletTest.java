@@ -19,6 +19,8 @@
 package org.apache.sling.servlets.get.impl.helpers;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
@@ -47,6 +49,24 @@ public class StreamRendererServletTest {
         assertEquals("34", result);
     }
     
+    @Test
+    public void testETagMatches() {
+        final String strong = "\"abc\"";
+        final String weak = "W/\"12-34\"";
+
+        assertFalse(StreamRendererServlet.matches(null, strong, false));
+        assertTrue(StreamRendererServlet.matches("\"abc\"", strong, false));
+        assertTrue(StreamRendererServlet.matches("\"x\", W/\"abc\"", strong, false));
+        assertTrue(StreamRendererServlet.matches("*", weak, false));
+        assertTrue(StreamRendererServlet.matches("\"12-34\"", weak, false));
+        assertFalse(StreamRendererServlet.matches("\"abcd\"", strong, false));
+
+        // If-Range requires strong comparison
+        assertTrue(StreamRendererServlet.matches("\"abc\"", strong, true));
+        assertFalse(StreamRendererServlet.matches("W/\"abc\"", strong, true));
+        assertFalse(StreamRendererServlet.matches("W/\"12-34\"", weak, true));
+    }
+
     private void runTests(int randomSeed) throws IOException {
         final Random random = new Random(randomSeed);
         assertCopyRange(random, StreamRendererServlet.IO_BUFFER_SIZE * 2 + 42);
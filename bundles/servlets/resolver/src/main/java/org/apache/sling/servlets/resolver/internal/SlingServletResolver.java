@@ -40,7 +40,6 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.NotCompliantMBeanException;
 import javax.management.StandardMBean;
@@ -88,6 +87,8 @@ import org.apache.sling.servlets.resolver.internal.defaults.DefaultServlet;
 import org.apache.sling.servlets.resolver.internal.helper.AbstractResourceCollector;
 import org.apache.sling.servlets.resolver.internal.helper.NamedScriptResourceCollector;
 import org.apache.sling.servlets.resolver.internal.helper.ResourceCollector;
+import org.apache.sling.servlets.resolver.internal.helper.ScriptLocationIndex;
+import org.apache.sling.servlets.resolver.internal.helper.ServletResolutionCache;
 import org.apache.sling.servlets.resolver.internal.helper.SlingServletConfig;
 import org.apache.sling.servlets.resolver.internal.resource.ServletResourceProvider;
 import org.apache.sling.servlets.resolver.internal.resource.ServletResourceProviderFactory;
@@ -139,6 +140,9 @@ public class SlingServletResolver
     /** The default cache size for the script resolution. */
     public static final int DEFAULT_CACHE_SIZE = 200;
 
+    /** The size of the script location index relative to the cache size. */
+    private static final int LOCATION_INDEX_SIZE_FACTOR = 4;
+
     /** Servlet resolver logger */
     public static final Logger LOGGER = LoggerFactory.getLogger(SlingServletResolver.class);
 
@@ -189,13 +193,10 @@ public class SlingServletResolver
     private Servlet fallbackErrorServlet;
 
     /** The script resolution cache. */
-    private Map<AbstractResourceCollector, Servlet> cache;
-
-    /** The cache size. */
-    private int cacheSize;
+    private volatile ServletResolutionCache cache;
 
-    /** Flag to log warning if cache size exceed only once. */
-    private volatile boolean logCacheSizeWarning;
+    /** The index of resource super types and script locations. */
+    private volatile ScriptLocationIndex locationIndex;
 
     /** Registration as event handler. */
     private ServiceRegistration eventHandlerReg;
@@ -624,7 +625,8 @@ public class SlingServletResolver
     private Servlet getServletInternal(final AbstractResourceCollector locationUtil,
             final SlingHttpServletRequest request,
             final ResourceResolver resolver) {
-        final Servlet scriptServlet = (this.cache != null ? this.cache.get(locationUtil) : null);
+        final ServletResolutionCache cache = this.cache;
+        final Servlet scriptServlet = (cache != null ? cache.get(locationUtil) : null);
         if (scriptServlet != null) {
             if ( LOGGER.isDebugEnabled() ) {
                 LOGGER.debug("Using cached servlet {}", RequestUtil.getServletName(scriptServlet));
@@ -632,7 +634,8 @@ public class SlingServletResolver
             return scriptServlet;
         }
 
-        final Collection<Resource> candidates = locationUtil.getServlets(resolver);
+        final List<String> searchedLocations = (cache != null ? new ArrayList<String>() : null);
+        final Collection<Resource> candidates = locationUtil.getServlets(resolver, searchedLocations, this.locationIndex);
 
         if (LOGGER.isDebugEnabled()) {
             if (candidates.isEmpty()) {
@@ -654,14 +657,8 @@ public class SlingServletResolver
                 final boolean isOptingServlet = candidate instanceof OptingServlet;
                 boolean servletAcceptsRequest = !isOptingServlet || (request != null && ((OptingServlet) candidate).accepts(request));
                 if (servletAcceptsRequest) {
-                    if (!hasOptingServlet && !isOptingServlet && this.cache != null) {
-                        if ( this.cache.size() < this.cacheSize ) {
-                            this.cache.put(locationUtil, candidate);
-                        } else if ( this.logCacheSizeWarning ) {
-                            this.logCacheSizeWarning = false;
-                            LOGGER.warn("Script cache has reached its limit of {}. You might want to increase the cache size for the servlet resolver.",
-                                    this.cacheSize);
-                        }
+                    if (!hasOptingServlet && !isOptingServlet && cache != null) {
+                        cache.put(locationUtil, candidate, searchedLocations);
                     }
                     LOGGER.debug("Using servlet provided by candidate resource {}", candidateResource.getPath());
                     return candidate;
@@ -838,12 +835,14 @@ public class SlingServletResolver
         this.defaultExtensions = OsgiUtil.toStringArray(properties.get(PROP_DEFAULT_EXTENSIONS), DEFAULT_DEFAULT_EXTENSIONS);
 
         // create cache - if a cache size is configured
-        this.cacheSize = OsgiUtil.toInteger(properties.get(PROP_CACHE_SIZE), DEFAULT_CACHE_SIZE);
-        if (this.cacheSize > 5) {
-            this.cache = new ConcurrentHashMap<AbstractResourceCollector, Servlet>(cacheSize);
-            this.logCacheSizeWarning = true;
+        final int cacheSize = OsgiUtil.toInteger(properties.get(PROP_CACHE_SIZE), DEFAULT_CACHE_SIZE);
+        if (cacheSize > 5) {
+            this.cache = new ServletResolutionCache(cacheSize);
+            // the index is maintained through the same events as the cache
+            this.locationIndex = new ScriptLocationIndex(this.searchPaths, cacheSize * LOCATION_INDEX_SIZE_FACTOR);
         } else {
-            this.cacheSize = 0;
+            this.cache = null;
+            this.locationIndex = null;
         }
 
         // setup default servlet
@@ -914,6 +913,7 @@ public class SlingServletResolver
         }
 
         this.cache = null;
+        this.locationIndex = null;
         this.servletResourceProviderFactory = null;
 
         if (this.mbeanRegistration != null) {
@@ -1054,7 +1054,8 @@ public class SlingServletResolver
      * @see org.osgi.service.event.EventHandler#handleEvent(org.osgi.service.event.Event)
      */
     public void handleEvent(final Event event) {
-        if (this.cache != null) {
+        final ServletResolutionCache cache = this.cache;
+        if (cache != null) {
             boolean flushCache = false;
 
             // we may receive different events
@@ -1073,15 +1074,20 @@ public class SlingServletResolver
                 // this is a resource or resource provider event
 
                 // if the path of the event is a sub path of a search path
-                // we flush the whole cache
+                // we flush all entries which searched a location related
+                // to the path
                 final String path = (String) event.getProperty(SlingConstants.PROPERTY_PATH);
                 if ( path != null ) {
-                    int index = 0;
-                    while (!flushCache && index < searchPaths.length) {
-                        if (path.startsWith(this.searchPaths[index])) {
-                            flushCache = true;
+                    for (final String searchPath : this.searchPaths) {
+                        if (path.startsWith(searchPath)) {
+                            final int count = cache.invalidate(path);
+                            LOGGER.debug("Invalidated {} cached script resolutions for {}", count, path);
+                            final ScriptLocationIndex index = this.locationIndex;
+                            if (index != null) {
+                                index.invalidate(path);
+                            }
+                            break;
                         }
-                        index++;
                     }
                 }
             }
@@ -1092,8 +1098,14 @@ public class SlingServletResolver
     }
 
     private void flushCache() {
-        this.cache.clear();
-        this.logCacheSizeWarning = true;
+        final ServletResolutionCache cache = this.cache;
+        if (cache != null) {
+            cache.clear();
+        }
+        final ScriptLocationIndex index = this.locationIndex;
+        if (index != null) {
+            index.clear();
+        }
     }
 
     /** The list of property names checked by {@link #getName(ServiceReference)} */
@@ -1387,7 +1399,8 @@ public class SlingServletResolver
         }
 
         public int getCacheSize() {
-            return cache.size();
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.size() : 0;
         }
 
         public void flushCache() {
@@ -1395,7 +1408,33 @@ public class SlingServletResolver
         }
 
         public int getMaximumCacheSize() {
-            return cacheSize;
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getMaxSize() : 0;
+        }
+
+        public long getCacheHits() {
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getHits() : 0;
+        }
+
+        public long getCacheMisses() {
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getMisses() : 0;
+        }
+
+        public long getEvictions() {
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getEvictions() : 0;
+        }
+
+        public long getInvalidations() {
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.getInvalidations() : 0;
+        }
+
+        public int flushResourceType(final String resourceType) {
+            final ServletResolutionCache cache = SlingServletResolver.this.cache;
+            return cache != null ? cache.invalidateResourceType(resourceType) : 0;
         }
 
     }
@@ -65,12 +65,45 @@ public abstract class AbstractResourceCollector {
     }
 
     public final Collection<Resource> getServlets(final ResourceResolver resolver) {
+        return getServlets(resolver, null);
+    }
+
+    /**
+     * Returns the ordered collection of resources just like
+     * {@link #getServlets(ResourceResolver)} and additionally adds all
+     * locations which have been searched to the given collection.
+     *
+     * @param resolver The resource resolver
+     * @param searchedLocations The collection receiving the searched
+     *            locations, may be <code>null</code>
+     */
+    public final Collection<Resource> getServlets(final ResourceResolver resolver,
+            final Collection<String> searchedLocations) {
+        return getServlets(resolver, searchedLocations, null);
+    }
+
+    /**
+     * Returns the ordered collection of resources just like
+     * {@link #getServlets(ResourceResolver, Collection)} using the given
+     * index to look up resource super types and script names.
+     *
+     * @param resolver The resource resolver
+     * @param searchedLocations The collection receiving the searched
+     *            locations, may be <code>null</code>
+     * @param index The script location index, may be <code>null</code>
+     */
+    public final Collection<Resource> getServlets(final ResourceResolver resolver,
+            final Collection<String> searchedLocations,
+            final ScriptLocationIndex index) {
 
         final SortedSet<Resource> resources = new TreeSet<Resource>();
         final Iterator<String> locations = new LocationIterator(resourceType, resourceSuperType,
-                                                                baseResourceType, resolver);
+                                                                baseResourceType, resolver, index);
         while (locations.hasNext()) {
             final String location = locations.next();
+            if (searchedLocations != null) {
+                searchedLocations.add(location);
+            }
 
             // get the location resource, use a synthetic resource if there
             // is no real location. There may still be children at this
@@ -81,8 +114,12 @@ public abstract class AbstractResourceCollector {
             } else {
                 path = location;
             }
-            final Resource locationRes = getResource(resolver, path);
-            getWeightedResources(resources, locationRes);
+            if ( index != null ) {
+                getWeightedResources(resources, resolver, path, index);
+            } else {
+                final Resource locationRes = getResource(resolver, path);
+                getWeightedResources(resources, locationRes);
+            }
         }
 
         return resources;
@@ -91,6 +128,18 @@ public abstract class AbstractResourceCollector {
     abstract protected void getWeightedResources(final Set<Resource> resources,
                                                  final Resource location);
 
+    /**
+     * Adds the weighted resources found at the location using the index.
+     * This default implementation does not use the index but calls
+     * {@link #getWeightedResources(Set, Resource)}.
+     */
+    protected void getWeightedResources(final Set<Resource> resources,
+                                        final ResourceResolver resolver,
+                                        final String location,
+                                        final ScriptLocationIndex index) {
+        getWeightedResources(resources, getResource(resolver, location));
+    }
+
     /**
      * Creates a {@link WeightedResource} and adds it to the set of resources.
      * The number of resources already present in the set is used as the ordinal
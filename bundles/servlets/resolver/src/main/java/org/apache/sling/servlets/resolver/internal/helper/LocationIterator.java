@@ -87,6 +87,9 @@ public class LocationIterator implements Iterator<String> {
     /** Set of used resource types to detect a circular resource type hierarchy. */
     private final Set<String> usedResourceTypes = new HashSet<String>();
 
+    // The optional index used to look up resource super types
+    private final ScriptLocationIndex index;
+
     /**
      * Creates an instance of this iterator starting with a location built from
      * the resource type of the <code>resource</code> and ending with the
@@ -99,7 +102,23 @@ public class LocationIterator implements Iterator<String> {
      */
     public LocationIterator(String resourceType, String resourceSuperType, String baseResourceType,
             ResourceResolver resolver) {
+        this(resourceType, resourceSuperType, baseResourceType, resolver, null);
+    }
+
+    /**
+     * Creates an instance of this iterator looking up the resource super
+     * types through the given index.
+     *
+     * @param resourceType the initial resource type.
+     * @param resourceSuperType the initial resource super type.
+     * @param baseResourceType The base resource type.
+     * @param resolver The resource resolver
+     * @param index The index for resource super types, may be <code>null</code>
+     */
+    public LocationIterator(String resourceType, String resourceSuperType, String baseResourceType,
+            ResourceResolver resolver, ScriptLocationIndex index) {
         this.resolver = resolver;
+        this.index = index;
         this.baseResourceType = baseResourceType;
 
         String[] tmpPath = resolver.getSearchPath();
@@ -201,8 +220,10 @@ public class LocationIterator implements Iterator<String> {
         if (resourceType.equals(this.firstResourceType)
                 && this.firstResourceSuperType != null ) {
             superType = this.firstResourceSuperType;
+        } else if (index != null) {
+            superType = index.getResourceSuperType(resolver, resourceType);
         } else {
-            superType = getResourceSuperType(resolver, resourceType);
+            superType = getResourceSuperType(resolver, resourceType, searchPath);
         }
 
         // detect circular dependency
@@ -223,8 +244,9 @@ public class LocationIterator implements Iterator<String> {
     }
 
     // this method is largely duplicated from ResourceUtil
-    private String getResourceSuperType(final ResourceResolver resourceResolver,
-                                        final String resourceType) {
+    static String getResourceSuperType(final ResourceResolver resourceResolver,
+                                       final String resourceType,
+                                       final String[] searchPaths) {
         // normalize resource type to a path string
         final String rtPath = ResourceUtil.resourceTypeToPath(resourceType);
         // get the resource type resource and check its super type
@@ -240,7 +262,7 @@ public class LocationIterator implements Iterator<String> {
 
         } else {
             // if the path is relative we use the search paths
-            for(final String searchPath : this.searchPath) {
+            for(final String searchPath : searchPaths) {
                 final String candidatePath = searchPath + rtPath;
                 final Resource rtResource = resourceResolver.getResource(candidatePath);
                 if ( rtResource != null && rtResource.getResourceSuperType() != null ) {
@@ -18,6 +18,7 @@
  */
 package org.apache.sling.servlets.resolver.internal.helper;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -27,6 +28,7 @@ import org.apache.sling.api.SlingHttpServletRequest;
 import org.apache.sling.api.request.RequestPathInfo;
 import org.apache.sling.api.resource.Resource;
 import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
 import org.apache.sling.servlets.resolver.internal.ServletResolverConstants;
 import org.apache.sling.servlets.resolver.internal.resource.ServletResourceProviderFactory;
 
@@ -204,46 +206,63 @@ public class ResourceCollector extends AbstractResourceCollector {
                 if (!this.isPathAllowed(child.getPath())) {
                     continue;
                 }
-                String scriptName = child.getName();
-                int lastDot = scriptName.lastIndexOf('.');
-                if (lastDot < 0) {
-                    // no extension in the name, this is not a script
-                    continue;
+                final int[] match = matchScript(child.getName(), selector, parentName, selIdx);
+                if (match != null) {
+                    addWeightedResource(resources, child, match[0], match[1]);
                 }
+            }
 
-                scriptName = scriptName.substring(0, lastDot);
+            if (selector != null) {
+                current = resolver.getResource(current, selector);
+                parentName = selector;
+                selIdx++;
+            }
+        } while (selector != null && current != null);
 
-                if (isGet
-                    && checkScriptName(scriptName, selector, parentName,
-                        suffExt, null, resources, child, selIdx)) {
-                    continue;
-                }
+        // special treatment for servlets registered with neither a method
+        // name nor extensions and selectors
+        addLocationServlet(resources, location);
+    }
 
-                if (checkScriptName(scriptName, selector, parentName,
-                    suffExtMethod, suffMethod, resources, child, selIdx)) {
-                    continue;
-                }
+    /**
+     * Adds the weighted resources found at the location just like
+     * {@link #getWeightedResources(Set, Resource)} but looks up the names of
+     * the scripts through the index. Only the resources of matching scripts
+     * are retrieved from the resource resolver.
+     */
+    @Override
+    protected void getWeightedResources(final Set<Resource> resources,
+            final ResourceResolver resolver,
+            final String location,
+            final ScriptLocationIndex index) {
 
-                // SLING-754: Not technically really correct because
-                // the request extension is only optional in the script
-                // name for HTML methods, but we keep this for backwards
-                // compatibility.
-                if (selector != null
-                    && matches(scriptName, selector, suffMethod)) {
-                    addWeightedResource(resources, child, selIdx + 1,
-                        WeightedResource.WEIGHT_NONE);
-                    continue;
-                }
+        String current = location;
+        String parentName = ResourceUtil.getName(location);
+
+        int selIdx = 0;
+        String selector;
+        do {
+            selector = (selIdx < numRequestSelectors)
+                    ? requestSelectors[selIdx]
+                    : null;
 
-                if (scriptName.equals(methodName)) {
-                    addWeightedResource(resources, child, selIdx,
-                        WeightedResource.WEIGHT_NONE);
+            final String[] names = index.getChildNames(resolver, current);
+            for (final String name : names) {
+                final String childPath = current.concat("/").concat(name);
+                if (!this.isPathAllowed(childPath)) {
                     continue;
                 }
+                final int[] match = matchScript(name, selector, parentName, selIdx);
+                if (match != null) {
+                    final Resource child = resolver.getResource(childPath);
+                    if (child != null) {
+                        addWeightedResource(resources, child, match[0], match[1]);
+                    }
+                }
             }
 
             if (selector != null) {
-                current = resolver.getResource(current, selector);
+                current = Arrays.asList(names).contains(selector) ? current.concat("/").concat(selector) : null;
                 parentName = selector;
                 selIdx++;
             }
@@ -251,15 +270,69 @@ public class ResourceCollector extends AbstractResourceCollector {
 
         // special treatment for servlets registered with neither a method
         // name nor extensions and selectors
-        addLocationServlet(resources, location);
+        final String parent = ResourceUtil.getParent(location);
+        if (parent != null
+            && index.hasChild(resolver, parent, ResourceUtil.getName(location) + ServletResourceProviderFactory.SERVLET_PATH_EXTENSION)) {
+            addLocationServlet(resources, location, resolver);
+        }
+    }
+
+    /**
+     * Checks whether the name of a child resource denotes a script suitable
+     * for the request.
+     *
+     * @param childName The name of the child resource
+     * @param selector The current selector to check for in the script name; may
+     *            be <code>null</code>.
+     * @param parentName The name of the parent folder; must not be
+     *            <code>null</code>.
+     * @param selIdx The selector weight value
+     * @return <code>null</code> if the child is not a suitable script, otherwise
+     *         the number of matched selectors and the method/prefix weight.
+     */
+    private int[] matchScript(final String childName, final String selector,
+            final String parentName, final int selIdx) {
+        final int lastDot = childName.lastIndexOf('.');
+        if (lastDot < 0) {
+            // no extension in the name, this is not a script
+            return null;
+        }
+
+        final String scriptName = childName.substring(0, lastDot);
+
+        if (isGet) {
+            final int[] match = checkScriptName(scriptName, selector, parentName,
+                suffExt, null, selIdx);
+            if (match != null) {
+                return match;
+            }
+        }
+
+        final int[] match = checkScriptName(scriptName, selector, parentName,
+            suffExtMethod, suffMethod, selIdx);
+        if (match != null) {
+            return match;
+        }
+
+        // SLING-754: Not technically really correct because
+        // the request extension is only optional in the script
+        // name for HTML methods, but we keep this for backwards
+        // compatibility.
+        if (selector != null
+            && matches(scriptName, selector, suffMethod)) {
+            return new int[] {selIdx + 1, WeightedResource.WEIGHT_NONE};
+        }
+
+        if (scriptName.equals(methodName)) {
+            return new int[] {selIdx, WeightedResource.WEIGHT_NONE};
+        }
+        return null;
     }
 
     /**
      * Checks whether the <code>scriptName</code> matches a certain number of
      * combinations of <code>selector</code>, <code>parentName</code>,
-     * <code>suffix</code> and <code>htmlSuffix</code>. If a match is found the
-     * {@link #addWeightedResource(Set, Resource, int, int)} method is called to
-     * register the found script resource with appropriate selection weight.
+     * <code>suffix</code> and <code>htmlSuffix</code>.
      *
      * @param scriptName The name of the script (without the script extension)
      *            to check for compliance.
@@ -273,51 +346,37 @@ public class ResourceCollector extends AbstractResourceCollector {
      * @param htmlSuffix Expected second part of the script name (besides either
      *            the selector or the parent name); may be <code>null</code>;
      *            applicable for GET or HEAD methods only.
-     * @param resources The set of weighted resource to which the new weighted
-     *            resource is added if a match is found.
-     * @param child The resource representing the script
      * @param selIdx The selector weight value
-     * @return <code>true</code> if a match has been found and a weighted
-     *         resource has been added to the <code>resources</code> set.
+     * @return the number of matched selectors and the method/prefix weight
+     *         if a match has been found, <code>null</code> otherwise.
      */
-    private boolean checkScriptName(final String scriptName,
+    private int[] checkScriptName(final String scriptName,
             final String selector, final String parentName,
             final String suffix, final String htmlSuffix,
-            final Set<Resource> resources, final Resource child,
             final int selIdx) {
         if (selector != null && matches(scriptName, selector, suffix)) {
-            addWeightedResource(resources, child, selIdx + 1,
-                WeightedResource.WEIGHT_EXTENSION);
-            return true;
+            return new int[] {selIdx + 1, WeightedResource.WEIGHT_EXTENSION};
         }
 
         if (matches(scriptName, parentName, suffix)) {
-            addWeightedResource(resources, child, selIdx,
-                WeightedResource.WEIGHT_EXTENSION
-                    + WeightedResource.WEIGHT_PREFIX);
-            return true;
+            return new int[] {selIdx, WeightedResource.WEIGHT_EXTENSION
+                    + WeightedResource.WEIGHT_PREFIX};
         }
 
         if (scriptName.equals(suffix.substring(1))) {
-            addWeightedResource(resources, child, selIdx,
-                WeightedResource.WEIGHT_EXTENSION);
-            return true;
+            return new int[] {selIdx, WeightedResource.WEIGHT_EXTENSION};
         }
 
         if (isDefaultExtension) {
             if (selector != null && matches(scriptName, selector, htmlSuffix)) {
-                addWeightedResource(resources, child, selIdx + 1,
-                    WeightedResource.WEIGHT_NONE);
-                return true;
+                return new int[] {selIdx + 1, WeightedResource.WEIGHT_NONE};
             }
 
             if (matches(scriptName, parentName, htmlSuffix)) {
-                addWeightedResource(resources, child, selIdx,
-                    WeightedResource.WEIGHT_PREFIX);
-                return true;
+                return new int[] {selIdx, WeightedResource.WEIGHT_PREFIX};
             }
         }
-        return false;
+        return null;
     }
 
     private boolean matches(final String scriptName, final String name,
@@ -335,11 +394,15 @@ public class ResourceCollector extends AbstractResourceCollector {
 
     private void addLocationServlet(final Set<Resource> resources,
             final Resource location) {
-        final String path = location.getPath()
+        addLocationServlet(resources, location.getPath(), location.getResourceResolver());
+    }
+
+    private void addLocationServlet(final Set<Resource> resources,
+            final String location, final ResourceResolver resolver) {
+        final String path = location
             + ServletResourceProviderFactory.SERVLET_PATH_EXTENSION;
         if (this.isPathAllowed(path)) {
-            final Resource servlet = location.getResourceResolver().getResource(
-                path);
+            final Resource servlet = resolver.getResource(path);
             if (servlet != null) {
                 addWeightedResource(resources, servlet, 0,
                     WeightedResource.WEIGHT_LAST_RESSORT);
@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.ResourceResolver;
+import org.apache.sling.api.resource.ResourceUtil;
+import org.apache.sling.api.resource.SyntheticResource;
+
+/**
+ * The <code>ScriptLocationIndex</code> keeps the resource super type of each
+ * resource type and the names of the children of each script location which
+ * have been looked up while resolving scripts.
+ * <p>
+ * With the index, walking the resource type hierarchy and matching script
+ * names is done in memory. Only the resources of the matching scripts are
+ * retrieved from the resource resolver.
+ * <p>
+ * The index has to be updated through {@link #invalidate(String)} whenever
+ * a resource below a search path changes. Once the index is full, the least
+ * recently used entries are removed.
+ */
+public class ScriptLocationIndex {
+
+    /** Marker for resource types without a resource super type. */
+    private static final String NO_SUPER_TYPE = "";
+
+    private final String[] searchPath;
+
+    private final int maxSize;
+
+    /** Guards the maps and the generation. */
+    private final Object lock = new Object();
+
+    /** The resource super types by resource type. */
+    private final Map<String, SuperType> superTypes;
+
+    /** The child names by location path. */
+    private final Map<String, String[]> children;
+
+    /** Incremented on each invalidation to detect entries read concurrently. */
+    private long generation;
+
+    /**
+     * @param searchPath The search path of the script resource resolver
+     * @param maxSize The maximum number of entries
+     */
+    public ScriptLocationIndex(final String[] searchPath, final int maxSize) {
+        this.searchPath = (searchPath == null || searchPath.length == 0 ? new String[] {"/"} : searchPath);
+        this.maxSize = maxSize;
+        this.superTypes = new LinkedHashMap<String, SuperType>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, SuperType> eldest) {
+                return size() + children.size() > ScriptLocationIndex.this.maxSize;
+            }
+        };
+        this.children = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, String[]> eldest) {
+                return size() + superTypes.size() > ScriptLocationIndex.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the resource super type of the resource type or
+     * <code>null</code> if the resource type has none.
+     */
+    public String getResourceSuperType(final ResourceResolver resolver, final String resourceType) {
+        final long currentGeneration;
+        synchronized ( lock ) {
+            final SuperType entry = superTypes.get(resourceType);
+            if ( entry != null ) {
+                return entry.superType == NO_SUPER_TYPE ? null : entry.superType;
+            }
+            currentGeneration = generation;
+        }
+        String superType = LocationIterator.getResourceSuperType(resolver, resourceType, searchPath);
+        if ( superType == null ) {
+            superType = NO_SUPER_TYPE;
+        }
+        put(superTypes, resourceType, new SuperType(superType, getTypeLocations(resourceType)), currentGeneration);
+        return superType == NO_SUPER_TYPE ? null : superType;
+    }
+
+    /**
+     * Returns the names of the children of the location in the order
+     * returned by the resource resolver.
+     */
+    public String[] getChildNames(final ResourceResolver resolver, final String path) {
+        final long currentGeneration;
+        synchronized ( lock ) {
+            final String[] names = children.get(path);
+            if ( names != null ) {
+                return names;
+            }
+            currentGeneration = generation;
+        }
+        Resource location = resolver.getResource(path);
+        if ( location == null ) {
+            location = new SyntheticResource(resolver, path, "$synthetic$");
+        }
+        final List<String> list = new ArrayList<String>();
+        final Iterator<Resource> i = resolver.listChildren(location);
+        while ( i.hasNext() ) {
+            list.add(i.next().getName());
+        }
+        final String[] names = list.toArray(new String[list.size()]);
+        put(children, path, names, currentGeneration);
+        return names;
+    }
+
+    /**
+     * Returns <code>true</code> if the location has a child with the given name.
+     */
+    public boolean hasChild(final ResourceResolver resolver, final String path, final String name) {
+        return Arrays.asList(getChildNames(resolver, path)).contains(name);
+    }
+
+    /**
+     * Removes all entries which might be affected by a change of the
+     * resource at the given path: the child names of the resource, of
+     * its parent and of all locations below it, as well as the super
+     * types read from any of these resources.
+     */
+    public void invalidate(final String path) {
+        final String parent = ResourceUtil.getParent(path);
+        synchronized ( lock ) {
+            generation++;
+            final Iterator<String> i = children.keySet().iterator();
+            while ( i.hasNext() ) {
+                final String location = i.next();
+                if ( isSameOrDescendant(location, path) || location.equals(parent) ) {
+                    i.remove();
+                }
+            }
+            final Iterator<SuperType> t = superTypes.values().iterator();
+            while ( t.hasNext() ) {
+                for (final String location : t.next().locations) {
+                    if ( isSameOrDescendant(location, path) ) {
+                        t.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        synchronized ( lock ) {
+            generation++;
+            children.clear();
+            superTypes.clear();
+        }
+    }
+
+    public int size() {
+        synchronized ( lock ) {
+            return children.size() + superTypes.size();
+        }
+    }
+
+    private <T> void put(final Map<String, T> map, final String key, final T value, final long readGeneration) {
+        synchronized ( lock ) {
+            // an invalidation might have happened while reading the value
+            if ( generation == readGeneration ) {
+                map.put(key, value);
+            }
+        }
+    }
+
+    private String[] getTypeLocations(final String resourceType) {
+        final String rtPath = ResourceUtil.resourceTypeToPath(resourceType);
+        if ( rtPath.startsWith("/") ) {
+            return new String[] {rtPath};
+        }
+        final String[] locations = new String[searchPath.length];
+        for (int i = 0; i < searchPath.length; i++) {
+            locations[i] = searchPath[i] + rtPath;
+        }
+        return locations;
+    }
+
+    private static boolean isSameOrDescendant(final String location, final String path) {
+        if ( location.startsWith(path) ) {
+            return location.length() == path.length()
+                || location.charAt(path.length()) == '/'
+                || path.endsWith("/");
+        }
+        return false;
+    }
+
+    /**
+     * A resource super type and the absolute paths of the resources it
+     * has been read from.
+     */
+    private static final class SuperType {
+
+        final String superType;
+
+        final String[] locations;
+
+        SuperType(final String superType, final String[] locations) {
+            this.superType = superType;
+            this.locations = locations;
+        }
+    }
+}
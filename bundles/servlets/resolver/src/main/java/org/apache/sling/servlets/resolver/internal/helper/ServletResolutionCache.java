@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Servlet;
+
+/**
+ * The <code>ServletResolutionCache</code> is a bounded cache for the results
+ * of the script resolution.
+ * <p>
+ * The cache is split into a number of segments, each of which is a least
+ * recently used map guarded by its own lock. Once a segment is full, its
+ * least recently used entry is evicted.
+ * <p>
+ * Together with the servlet each entry keeps the locations which have been
+ * searched while resolving it. This allows to only invalidate those entries
+ * which are affected by a change in the resource tree.
+ */
+public class ServletResolutionCache {
+
+    /** The maximum number of segments. */
+    private static final int MAX_SEGMENTS = 16;
+
+    /** The minimum number of entries per segment. */
+    private static final int MIN_SEGMENT_SIZE = 16;
+
+    private final Segment[] segments;
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most (roughly) <code>maxSize</code> entries.
+     */
+    public ServletResolutionCache(final int maxSize) {
+        int count = 1;
+        while (count < MAX_SEGMENTS && maxSize / (count * 2) >= MIN_SEGMENT_SIZE) {
+            count = count * 2;
+        }
+        final int segmentSize = (maxSize + count - 1) / count;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(segmentSize);
+        }
+        this.maxSize = segmentSize * count;
+    }
+
+    /**
+     * Returns the cached servlet for the collector or <code>null</code>.
+     */
+    public Servlet get(final AbstractResourceCollector key) {
+        final CacheEntry entry = segmentFor(key).get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.servlet;
+    }
+
+    /**
+     * Caches the servlet resolved for the collector.
+     *
+     * @param key The collector used to resolve the servlet
+     * @param servlet The resolved servlet
+     * @param locations The locations searched while resolving the servlet
+     */
+    public void put(final AbstractResourceCollector key, final Servlet servlet,
+            final Collection<String> locations) {
+        final String[] paths = new String[locations.size()];
+        int i = 0;
+        for (final String location : locations) {
+            paths[i++] = location.endsWith("/") ? location.substring(0, location.length() - 1) : location;
+        }
+        segmentFor(key).put(key, new CacheEntry(servlet, paths));
+    }
+
+    /**
+     * Removes all entries whose searched locations are the given path, are
+     * contained in the subtree at the given path or contain the given path.
+     *
+     * @return the number of invalidated entries
+     */
+    public int invalidate(final String path) {
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.invalidate(path);
+        }
+        invalidations.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Removes all entries for the given resource type.
+     *
+     * @return the number of invalidated entries
+     */
+    public int invalidateResourceType(final String resourceType) {
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.invalidateResourceType(resourceType);
+        }
+        invalidations.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        int count = 0;
+        for (final Segment segment : segments) {
+            count += segment.clear();
+        }
+        invalidations.addAndGet(count);
+    }
+
+    public int size() {
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    private Segment segmentFor(final AbstractResourceCollector key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    private static boolean isRelated(final String location, final String path) {
+        if (location.startsWith(path)) {
+            return location.length() == path.length()
+                || location.charAt(path.length()) == '/'
+                || path.endsWith("/");
+        }
+        if (path.startsWith(location)) {
+            return path.charAt(location.length()) == '/';
+        }
+        return false;
+    }
+
+    private static final class CacheEntry {
+
+        final Servlet servlet;
+
+        final String[] locations;
+
+        CacheEntry(final Servlet servlet, final String[] locations) {
+            this.servlet = servlet;
+            this.locations = locations;
+        }
+
+        boolean isAffectedBy(final String path) {
+            for (final String location : locations) {
+                if (isRelated(location, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class Segment {
+
+        private final Map<AbstractResourceCollector, CacheEntry> entries;
+
+        Segment(final int capacity) {
+            this.entries = new LinkedHashMap<AbstractResourceCollector, CacheEntry>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<AbstractResourceCollector, CacheEntry> eldest) {
+                    if (size() > capacity) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized CacheEntry get(final AbstractResourceCollector key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(final AbstractResourceCollector key, final CacheEntry entry) {
+            entries.put(key, entry);
+        }
+
+        synchronized int invalidate(final String path) {
+            int count = 0;
+            final Iterator<CacheEntry> i = entries.values().iterator();
+            while (i.hasNext()) {
+                if (i.next().isAffectedBy(path)) {
+                    i.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized int invalidateResourceType(final String resourceType) {
+            int count = 0;
+            final Iterator<AbstractResourceCollector> i = entries.keySet().iterator();
+            while (i.hasNext()) {
+                if (resourceType.equals(i.next().resourceType)) {
+                    i.remove();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized int clear() {
+            final int count = entries.size();
+            entries.clear();
+            return count;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
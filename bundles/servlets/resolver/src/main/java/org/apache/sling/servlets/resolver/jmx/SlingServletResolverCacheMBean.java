@@ -42,4 +42,41 @@ public interface SlingServletResolverCacheMBean {
      */
     void flushCache();
 
+    /**
+     * Get the number of lookups answered from the cache
+     *
+     * @return the number of cache hits
+     */
+    long getCacheHits();
+
+    /**
+     * Get the number of lookups not answered from the cache
+     *
+     * @return the number of cache misses
+     */
+    long getCacheMisses();
+
+    /**
+     * Get the number of entries evicted because the cache was full
+     *
+     * @return the number of evictions
+     */
+    long getEvictions();
+
+    /**
+     * Get the number of entries removed because of changes in the
+     * resource tree or because the cache was flushed
+     *
+     * @return the number of invalidated entries
+     */
+    long getInvalidations();
+
+    /**
+     * Flush all cached resolutions for the given resource type.
+     *
+     * @param resourceType the resource type
+     * @return the number of flushed entries
+     */
+    int flushResourceType(String resourceType);
+
 }
@@ -271,7 +271,16 @@ public class ResourceCollectorTest extends HelperTestBase {
         }
 
         ResourceCollector lu = ResourceCollector.create(request, null, new String[] {"html"});
-        Collection<Resource> res = lu.getServlets(request.getResourceResolver());
+        assertServlets(lu.getServlets(request.getResourceResolver()), names, pathMap, indices);
+
+        // the location index must yield the same result, also when filled
+        ScriptLocationIndex index = new ScriptLocationIndex(resourceResolver.getSearchPath(), 1000);
+        assertServlets(lu.getServlets(request.getResourceResolver(), null, index), names, pathMap, indices);
+        assertServlets(lu.getServlets(request.getResourceResolver(), null, index), names, pathMap, indices);
+    }
+
+    private void assertServlets(Collection<Resource> res, String[] names,
+            Map<String, String> pathMap, int[] indices) {
         Iterator<Resource> rIter = res.iterator();
 
         for (int index : indices) {
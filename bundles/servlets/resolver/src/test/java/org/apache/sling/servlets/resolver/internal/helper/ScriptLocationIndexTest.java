@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import java.util.Arrays;
+
+import org.apache.sling.commons.testing.sling.MockResource;
+
+public class ScriptLocationIndexTest extends HelperTestBase {
+
+    private ScriptLocationIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        index = new ScriptLocationIndex(resourceResolver.getSearchPath(), 100);
+    }
+
+    public void testResourceSuperType() {
+        assertNull(index.getResourceSuperType(resourceResolver, resourceType));
+
+        MockResource typeResource = new MockResource(resourceResolver, "/apps/" + resourceTypePath, "sling:Folder");
+        typeResource.setResourceSuperType("foo:superBar");
+        resourceResolver.addResource(typeResource);
+
+        // still served from the index
+        assertNull(index.getResourceSuperType(resourceResolver, resourceType));
+
+        index.invalidate("/apps/" + resourceTypePath);
+        assertEquals("foo:superBar", index.getResourceSuperType(resourceResolver, resourceType));
+
+        // changes of unrelated locations keep the entry
+        index.invalidate("/apps/other");
+        typeResource.setResourceSuperType("foo:otherBar");
+        assertEquals("foo:superBar", index.getResourceSuperType(resourceResolver, resourceType));
+
+        index.invalidate("/apps");
+        assertEquals("foo:otherBar", index.getResourceSuperType(resourceResolver, resourceType));
+    }
+
+    public void testChildNames() {
+        final String location = "/apps/" + resourceTypePath;
+        resourceResolver.addResource(new MockResource(resourceResolver, location + "/html.esp", "nt:file"));
+
+        assertEquals(Arrays.asList("html.esp"), Arrays.asList(index.getChildNames(resourceResolver, location)));
+        assertTrue(index.hasChild(resourceResolver, location, "html.esp"));
+        assertFalse(index.hasChild(resourceResolver, location, "GET.esp"));
+
+        resourceResolver.addResource(new MockResource(resourceResolver, location + "/GET.esp", "nt:file"));
+        assertFalse(index.hasChild(resourceResolver, location, "GET.esp"));
+
+        // adding a script invalidates the child names of its parent
+        index.invalidate(location + "/GET.esp");
+        assertTrue(index.hasChild(resourceResolver, location, "GET.esp"));
+        assertTrue(index.size() > 0);
+
+        index.clear();
+        assertEquals(0, index.size());
+    }
+
+    public void testMaxSize() {
+        final ScriptLocationIndex small = new ScriptLocationIndex(resourceResolver.getSearchPath(), 2);
+        small.getChildNames(resourceResolver, "/apps/a");
+        small.getChildNames(resourceResolver, "/apps/b");
+        assertEquals(2, small.size());
+        // the least recently used entry is removed
+        small.getChildNames(resourceResolver, "/apps/a");
+        small.getChildNames(resourceResolver, "/apps/c");
+        assertEquals(2, small.size());
+        resourceResolver.addResource(new MockResource(resourceResolver, "/apps/a/x.esp", "nt:file"));
+        resourceResolver.addResource(new MockResource(resourceResolver, "/apps/b/x.esp", "nt:file"));
+        // a is still cached, b has been removed and is read again
+        assertEquals(0, small.getChildNames(resourceResolver, "/apps/a").length);
+        assertEquals(1, small.getChildNames(resourceResolver, "/apps/b").length);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.servlets.resolver.internal.helper;
+
+import java.util.Arrays;
+
+import javax.servlet.Servlet;
+import javax.servlet.http.HttpServlet;
+
+import junit.framework.TestCase;
+
+import org.apache.sling.api.resource.Resource;
+import org.apache.sling.api.resource.SyntheticResource;
+
+public class ServletResolutionCacheTest extends TestCase {
+
+    private final Servlet servlet = new HttpServlet() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private static AbstractResourceCollector key(final String resourceType) {
+        return key(resourceType, "html");
+    }
+
+    private static AbstractResourceCollector key(final String resourceType, final String extension) {
+        final Resource resource = new SyntheticResource(null, "/content/page", resourceType);
+        return ResourceCollector.create(resource, extension, null, new String[] {"html"}, "GET", new String[0]);
+    }
+
+    public void testHitAndMiss() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        assertNull(cache.get(key("a/b")));
+        cache.put(key("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b"));
+        assertSame(servlet, cache.get(key("a/b")));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        final ServletResolutionCache cache = new ServletResolutionCache(10);
+        assertEquals(10, cache.getMaxSize());
+        for (int i = 0; i < 10; i++) {
+            cache.put(key("type/" + i), servlet, Arrays.asList("/apps/type/" + i));
+        }
+        // touch the first entry to make it the most recently used one
+        assertSame(servlet, cache.get(key("type/0")));
+        cache.put(key("type/10"), servlet, Arrays.asList("/apps/type/10"));
+
+        assertEquals(10, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertSame(servlet, cache.get(key("type/0")));
+        assertNull(cache.get(key("type/1")));
+    }
+
+    public void testInvalidateSubtree() {
+        final ServletResolutionCache cache = new ServletResolutionCache(100);
+        cache.put(key("a/b"), servlet, Arrays.asList("/apps/a/b", "/libs/a/b", "/apps/base/", "/libs/base/"));
+        cache.put(key("a/c"), servlet, Arrays.asList("/apps/a/c", "/libs/a/c", "/apps/base", "/libs/base"));
+        cache.put(key("a/bc"), servlet, Arrays.asList("/apps/a/bc", "/libs/a/bc"));
+
+        // script below a searched location
+        assertEquals(1, cache.invalidate("/apps/a/b/html.jsp"));
+        assertNull(cache.get(key("a/b")));
+        assertSame(servlet, cache.get(key("a/bc")));
+
+        // searched super type location itself
+        assertEquals(1, cache.invalidate("/apps/base"));
+        assertNull(cache.get(key("a/c")));
+
+        // searched location is removed together with a parent
+        assertEquals(0, cache.invalidate("/libs/a/bcd"));
+        assertEquals(1, cache.invalidate("/libs/a"));
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getInvalidations());
+    }
+
+    public void testInvalidateResourceType() {
+        final ServletResolutionCache cache = new ServletResolutionCache(100);
+        cache.put(key("a/b", "html"), servlet, Arrays.asList("/apps/a/b"));
+        cache.put(key("a/b", "json"), servlet, Arrays.asList("/apps/a/b"));
+        cache.put(key("a/c"), servlet, Arrays.asList("/apps/a/c"));
+
+        assertEquals(2, cache.invalidateResourceType("a/b"));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getInvalidations());
+    }
+}
@@ -44,4 +44,30 @@ public interface InstallerMBean {
      * Determines the time since when the installer is in suspended state
      */
     long getSuspendedSince();
+
+    /**
+     * Time in milliseconds it took to restore the persisted installer state
+     * on startup.
+     */
+    long getStateLoadTime();
+
+    /**
+     * Time in milliseconds the last save of the installer state took.
+     */
+    long getLastStateSaveTime();
+
+    /**
+     * Total time in milliseconds spent saving the installer state.
+     */
+    long getTotalStateSaveTime();
+
+    /**
+     * Number of times the installer state has been saved.
+     */
+    long getStateSaveCount();
+
+    /**
+     * Size in bytes of the journal persisting the installer state.
+     */
+    long getStateJournalSize();
 }
@@ -65,6 +65,12 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
     /** The listener. */
     private transient InstallationListener listener;
 
+    /**
+     * Whether the list itself changed since it has been restored or written
+     * to the journal. Deserialized lists are unmodified.
+     */
+    private transient boolean modified = true;
+
     public EntityResourceList(final String resourceId, final InstallationListener listener) {
         this.resourceId = resourceId;
         this.listener = listener;
@@ -187,7 +193,37 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
      * Set the resource id
      */
     public void setResourceId(final String id) {
-        this.resourceId = id;
+        if ( this.resourceId == null || !this.resourceId.equals(id) ) {
+            this.resourceId = id;
+            this.modified = true;
+        }
+    }
+
+    /**
+     * Whether the persisted state of the list or of one of its resources
+     * changed since it has been restored or {@link #clearModified()} has
+     * been called.
+     */
+    boolean isModified() {
+        if ( this.modified ) {
+            return true;
+        }
+        for(final RegisteredResourceImpl rr : this.resources) {
+            if ( rr.isModified() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mark the list and its resources as persisted.
+     */
+    void clearModified() {
+        this.modified = false;
+        for(final RegisteredResourceImpl rr : this.resources) {
+            rr.clearModified();
+        }
     }
 
     /**
@@ -288,6 +324,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
      */
     public void setFinishState(final ResourceState state, final String alias) {
         this.alias = alias;
+        this.modified = true;
         this.setFinishState(state);
     }
 
@@ -328,6 +365,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
                     } else {
                         LOGGER.debug("Cleanup obsolete resource: {}", rr);
                         taskIter.remove();
+                        this.modified = true;
                         this.cleanup(rr);
                     }
                 }
@@ -337,6 +375,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
         }
         if ( add ) {
             resources.add(r);
+            this.modified = true;
         }
     }
 
@@ -354,6 +393,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
                 } else {
                     LOGGER.debug("Removing unused: {}", r);
                     i.remove();
+                    this.modified = true;
                     this.cleanup(r);
                 }
             }
@@ -389,6 +429,7 @@ public class EntityResourceList implements Serializable, TaskResourceGroup {
             }
             resources.clear();
             resources.addAll(copy);
+            this.modified = true;
             if ( !this.isEmpty() ) {
                 startNewCycle = true;
             }
@@ -26,11 +26,13 @@ import org.apache.sling.installer.api.jmx.InstallerMBean;
 
 public class InstallerMBeanImpl implements InstallationListener, InstallerMBean {
     private final InfoProvider infoProvider;
+    private final PersistentResourceList persistentList;
     private volatile boolean active;
     private volatile long lastEventTime;
 
-    public InstallerMBeanImpl(InfoProvider infoProvider) {
+    public InstallerMBeanImpl(InfoProvider infoProvider, PersistentResourceList persistentList) {
         this.infoProvider = infoProvider;
+        this.persistentList = persistentList;
     }
 
     //~---------------------------------------< InstallationListener >
@@ -64,4 +66,24 @@ public class InstallerMBeanImpl implements InstallationListener, InstallerMBean
     public long getSuspendedSince() {
         return active ? -1 : lastEventTime;
     }
+
+    public long getStateLoadTime() {
+        return persistentList.getLoadTime();
+    }
+
+    public long getLastStateSaveTime() {
+        return persistentList.getLastSaveTime();
+    }
+
+    public long getTotalStateSaveTime() {
+        return persistentList.getTotalSaveTime();
+    }
+
+    public long getStateSaveCount() {
+        return persistentList.getSaveCount();
+    }
+
+    public long getStateJournalSize() {
+        return persistentList.getJournalSize();
+    }
 }
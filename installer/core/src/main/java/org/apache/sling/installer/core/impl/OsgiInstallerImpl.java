@@ -61,6 +61,8 @@ import org.apache.sling.installer.core.impl.tasks.BundleUpdateTask;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.Version;
 import org.osgi.service.startlevel.StartLevel;
@@ -84,6 +86,12 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
      */
     private static final String START_LEVEL_HANDLING = "sling.installer.switchstartlevel";
 
+    /**
+     * The name of the bundle context property defining the number of threads
+     * used to execute independent tasks concurrently.
+     */
+    private static final String PARALLEL_TASKS = "sling.installer.paralleltasks";
+
     /** The logger */
     private final Logger logger =  LoggerFactory.getLogger(this.getClass());
 
@@ -135,6 +143,9 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
     /** Switch start level on bundle update? */
     private final boolean switchStartLevel;
 
+    /** The executor for independent tasks or <code>null</code> if tasks are executed sequentially. */
+    private final ParallelTaskExecutor taskExecutor;
+
     /**
      *  Constructor
      *
@@ -144,10 +155,13 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         this.ctx = ctx;
         // Initialize file util
         new FileDataStore(ctx);
+        final File journalFile = FileDataStore.SHARED.getDataFile("RegisteredResourceList.journal");
         final File f = FileDataStore.SHARED.getDataFile("RegisteredResourceList.ser");
         this.listener = new InstallListener(ctx, logger);
-        this.persistentList = new PersistentResourceList(f, listener);
+        this.persistentList = new PersistentResourceList(journalFile, f, listener);
         this.switchStartLevel = PropertiesUtil.toBoolean(ctx.getProperty(START_LEVEL_HANDLING), false);
+        final int parallelTasks = PropertiesUtil.toInteger(ctx.getProperty(PARALLEL_TASKS), 1);
+        this.taskExecutor = parallelTasks > 1 ? new ParallelTaskExecutor(parallelTasks) : null;
     }
 
     /**
@@ -195,6 +209,9 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
             }
             logger.debug("Done waiting for background thread");
         }
+        if ( this.taskExecutor != null ) {
+            this.taskExecutor.dispose();
+        }
 
         // remove file util
         FileDataStore.SHARED = null;
@@ -660,16 +677,7 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                 if (targetStartLevel < currentStartLevel) {
                     auditLogger.info("Switching to start level {}", targetStartLevel);
                     try {
-                        startLevel.setStartLevel(targetStartLevel);
-                        // now we have to wait until the start level is reached
-                        while (startLevel.getStartLevel() > targetStartLevel) {
-                            try {
-                                Thread.sleep(300);
-                            } catch (final InterruptedException ie) {
-                                Thread.currentThread().interrupt();
-                            }
-
-                        }
+                        this.switchStartLevel(startLevel, targetStartLevel);
 
                         return doExecuteTasks(tasks);
 
@@ -689,6 +697,46 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         return doExecuteTasks(tasks);
     }
 
+    /**
+     * Switch to the start level and wait until it is reached.
+     * Instead of polling the start level, the start level changed
+     * framework event is awaited.
+     */
+    private void switchStartLevel(final StartLevel startLevel, final int targetStartLevel) {
+        final Object lock = new Object();
+        final FrameworkListener startLevelListener = new FrameworkListener() {
+
+            public void frameworkEvent(final FrameworkEvent event) {
+                if ( event.getType() == FrameworkEvent.STARTLEVEL_CHANGED ) {
+                    synchronized ( lock ) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        };
+        ctx.addFrameworkListener(startLevelListener);
+        try {
+            startLevel.setStartLevel(targetStartLevel);
+            // now we have to wait until the start level is reached
+            boolean interrupted = false;
+            synchronized ( lock ) {
+                while (startLevel.getStartLevel() > targetStartLevel) {
+                    try {
+                        // check again after a while in case the event got lost
+                        lock.wait(1000);
+                    } catch (final InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if ( interrupted ) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            ctx.removeFrameworkListener(startLevelListener);
+        }
+    }
+
     /**
      * Get the lowest start level for the update operation
      */
@@ -842,6 +890,10 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
                     t.start();
                     return ACTION.SHUTDOWN;
                 }
+                if ( this.taskExecutor != null ) {
+                    this.taskExecutor.execute(ParallelTaskExecutor.removeIndependentTasks(task, tasks), ctx);
+                    continue;
+                }
                 try {
                     logger.debug("Executing task: {}", task);
                     task.execute(ctx);
@@ -1270,6 +1322,13 @@ implements OsgiInstaller, ResourceChangeListener, RetryHandler, InfoProvider, Ru
         return null;
     }
 
+    /**
+     * Get the persistent resource list, e.g. for its statistics.
+     */
+    public PersistentResourceList getPersistentList() {
+        return this.persistentList;
+    }
+
     /**
      * @see org.apache.sling.installer.api.info.InfoProvider#getInstallationState()
      */
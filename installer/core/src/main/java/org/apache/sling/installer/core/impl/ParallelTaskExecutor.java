@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.tasks.ChangeStateTask;
+import org.apache.sling.installer.api.tasks.InstallTask;
+import org.apache.sling.installer.api.tasks.InstallationContext;
+import org.apache.sling.installer.api.tasks.ResourceState;
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.apache.sling.installer.core.impl.tasks.BundleInstallTask;
+import org.apache.sling.installer.core.impl.tasks.BundleRemoveTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes independent install tasks concurrently on a bounded pool.
+ *
+ * The lane of a task is the type of its resource: the tasks removing and
+ * installing configurations form one lane, the tasks removing and installing
+ * bundles another one. The phase of a task within its lane is the state of
+ * its resource, i.e. removal or installation. Tasks of the same phase of a
+ * lane do not depend on each other and the two lanes do not depend on each
+ * other, however the phases of a lane are executed in order and all other
+ * tasks (updates, refreshes, starts etc.) are executed sequentially in the
+ * order of their sort keys.
+ */
+public class ParallelTaskExecutor {
+
+    /** The logger */
+    private final Logger logger =  LoggerFactory.getLogger(this.getClass());
+
+    /** The thread pool. */
+    private final ExecutorService executor;
+
+    public ParallelTaskExecutor(final int threads) {
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "OsgiInstallerTaskThread" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Shut down the thread pool.
+     */
+    public void dispose() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Get the lane of the task.
+     * @return The resource type of the task or <code>null</code> if the task
+     *         has to be executed sequentially.
+     */
+    static String getLane(final InstallTask task) {
+        if ( task.isAsynchronousTask() || task instanceof ChangeStateTask ) {
+            return null;
+        }
+        final TaskResource resource = task.getResource();
+        if ( resource == null ) {
+            return null;
+        }
+        // configurations are only removed or installed by their tasks
+        if ( InstallableResource.TYPE_CONFIG.equals(resource.getType()) ) {
+            return InstallableResource.TYPE_CONFIG;
+        }
+        // bundles are updated, refreshed and started as well
+        if ( task instanceof BundleRemoveTask || task instanceof BundleInstallTask ) {
+            return InstallableResource.TYPE_BUNDLE;
+        }
+        return null;
+    }
+
+    /**
+     * Get the phase of a task with a lane.
+     * @return {@link ResourceState#UNINSTALL} or {@link ResourceState#INSTALL}
+     */
+    static ResourceState getPhase(final InstallTask task) {
+        return task.getResource().getState();
+    }
+
+    /**
+     * Remove the tasks which can be executed together with the given task
+     * from the set of pending tasks.
+     * For each lane, this are the pending tasks of the first phase of the
+     * lane which are not preceded by a sequential task.
+     * @param task The next task, already removed from the pending tasks
+     * @param tasks The sorted pending tasks
+     * @return The tasks to execute, including the given one
+     */
+    static List<InstallTask> removeIndependentTasks(final InstallTask task, final SortedSet<InstallTask> tasks) {
+        final List<InstallTask> result = new ArrayList<InstallTask>();
+        result.add(task);
+        final String lane = getLane(task);
+        if ( lane != null ) {
+            final Map<String, ResourceState> lanePhases = new HashMap<String, ResourceState>();
+            lanePhases.put(lane, getPhase(task));
+            synchronized ( tasks ) {
+                for(final InstallTask t : tasks) {
+                    final String l = getLane(t);
+                    if ( l == null ) {
+                        break;
+                    }
+                    final ResourceState phase = getPhase(t);
+                    final ResourceState lanePhase = lanePhases.get(l);
+                    if ( lanePhase == null ) {
+                        lanePhases.put(l, phase);
+                        result.add(t);
+                    } else if ( lanePhase == phase ) {
+                        result.add(t);
+                    }
+                }
+                tasks.removeAll(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Execute the tasks concurrently and wait until all of them are finished.
+     */
+    public void execute(final List<InstallTask> tasks, final InstallationContext ctx) {
+        if ( tasks.size() == 1 ) {
+            execute(tasks.get(0), ctx);
+            return;
+        }
+        logger.debug("Executing {} tasks concurrently", tasks.size());
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for(final InstallTask task : tasks) {
+            futures.add(this.executor.submit(new Runnable() {
+
+                public void run() {
+                    ParallelTaskExecutor.this.execute(task, ctx);
+                }
+            }));
+        }
+        boolean interrupted = false;
+        for(final Future<?> f : futures) {
+            while ( true ) {
+                try {
+                    f.get();
+                    break;
+                } catch (final InterruptedException ie) {
+                    interrupted = true;
+                } catch (final ExecutionException ee) {
+                    logger.error("Uncaught exception during task execution!", ee.getCause());
+                    break;
+                }
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void execute(final InstallTask task, final InstallationContext ctx) {
+        try {
+            logger.debug("Executing task: {}", task);
+            task.execute(ctx);
+        } catch (final Throwable t) {
+            logger.error("Uncaught exception during task execution!", t);
+        }
+    }
+}
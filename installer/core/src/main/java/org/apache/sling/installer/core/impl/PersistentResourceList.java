@@ -19,13 +19,10 @@
 package org.apache.sling.installer.core.impl;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -47,7 +44,7 @@ import org.slf4j.LoggerFactory;
  */
 public class PersistentResourceList {
 
-    /** Serialization version. */
+    /** Serialization version of the data file of previous versions. */
     private static final int VERSION = 2;
 
     /** Entity id for restart active bundles. */
@@ -66,22 +63,56 @@ public class PersistentResourceList {
      */
     private final Map<String, EntityResourceList> data;
 
-    /** The persistence file. */
-    private final File dataFile;
-
     /** All untransformed resources. */
     private final List<RegisteredResource> untransformedResources;
 
     private final InstallationListener listener;
 
+    /** The journal persisting the state. */
+    private final ResourceListJournal journal;
+
+    /** The time in milliseconds it took to restore the state. */
+    private volatile long loadTime;
+
+    /** The time in milliseconds the last save took. */
+    private volatile long lastSaveTime;
+
+    /** The total time in milliseconds spent saving. */
+    private volatile long totalSaveTime;
+
+    /** The number of saves. */
+    private volatile long saveCount;
+
+    /**
+     * Create the list and restore the state from the journal. If the journal
+     * does not exist yet, the state is migrated from the data file written by
+     * previous versions.
+     * @param journalFile The journal file
+     * @param dataFile The data file of previous versions
+     * @param listener The installation listener
+     */
     @SuppressWarnings("unchecked")
-    public PersistentResourceList(final File dataFile, final InstallationListener listener) {
-        this.dataFile = dataFile;
+    public PersistentResourceList(final File journalFile, final File dataFile, final InstallationListener listener) {
         this.listener = listener;
+        this.journal = new ResourceListJournal(journalFile);
 
+        final long start = System.currentTimeMillis();
         Map<String, EntityResourceList> restoredData = null;
         List<RegisteredResource> unknownList = null;
-        if ( dataFile.exists() ) {
+        boolean migrate = false;
+        if ( this.journal.exists() ) {
+            try {
+                this.journal.load();
+                restoredData = this.journal.getEntities();
+                unknownList = this.journal.getUntransformedResources();
+                logger.debug("Restored resource list: {}", restoredData);
+                logger.debug("Restored unknown resource list: {}", unknownList);
+            } catch (final Exception e) {
+                logger.warn("Unable to restore data, starting with empty list (" + e.getMessage() + ")", e);
+                restoredData = null;
+                unknownList = null;
+            }
+        } else if ( dataFile != null && dataFile.exists() ) {
             ObjectInputStream ois = null;
             try {
                 ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(dataFile)));
@@ -109,7 +140,9 @@ public class PersistentResourceList {
                     }
                 }
             }
+            migrate = true;
         }
+        this.loadTime = System.currentTimeMillis() - start;
         data = restoredData != null ? restoredData : new HashMap<String, EntityResourceList>();
         this.untransformedResources = unknownList != null ? unknownList : new ArrayList<RegisteredResource>();
 
@@ -135,6 +168,12 @@ public class PersistentResourceList {
             result.setResourceType(RESTART_ACTIVE_BUNDLES_TYPE);
             this.transform(rr, new TransformationResult[] {result});
         }
+
+        // write the journal and remove the data file of previous versions
+        if ( migrate && this.persist() ) {
+            logger.info("Migrated resource list from {} to journal {}", dataFile, journalFile);
+            dataFile.delete();
+        }
     }
 
     /**
@@ -159,21 +198,65 @@ public class PersistentResourceList {
      * Persist the current state
      */
     public void save() {
+        this.persist();
+    }
+
+    /**
+     * Persist the current state by appending the changes to the journal.
+     * @return <code>true</code> if the state could be persisted.
+     */
+    private boolean persist() {
+        final long start = System.currentTimeMillis();
         try {
-            final ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile)));
-            try {
-                oos.writeInt(VERSION);
-                oos.writeObject(data);
-                oos.writeObject(untransformedResources);
+            if ( this.journal.write(data, untransformedResources) ) {
                 logger.debug("Persisted resource list.");
-            } finally {
-                oos.close();
             }
+            return true;
         } catch (final Exception e) {
             logger.warn("Unable to save persistent list: " + e.getMessage(), e);
+            return false;
+        } finally {
+            this.lastSaveTime = System.currentTimeMillis() - start;
+            this.totalSaveTime += this.lastSaveTime;
+            this.saveCount++;
         }
     }
 
+    /**
+     * The time in milliseconds it took to restore the state.
+     */
+    public long getLoadTime() {
+        return this.loadTime;
+    }
+
+    /**
+     * The time in milliseconds the last save took.
+     */
+    public long getLastSaveTime() {
+        return this.lastSaveTime;
+    }
+
+    /**
+     * The total time in milliseconds spent saving the state.
+     */
+    public long getTotalSaveTime() {
+        return this.totalSaveTime;
+    }
+
+    /**
+     * The number of times the state has been saved.
+     */
+    public long getSaveCount() {
+        return this.saveCount;
+    }
+
+    /**
+     * The size of the journal in bytes.
+     */
+    public long getJournalSize() {
+        return this.journal.getSize();
+    }
+
     public Collection<String> getEntityIds() {
         return this.data.keySet();
     }
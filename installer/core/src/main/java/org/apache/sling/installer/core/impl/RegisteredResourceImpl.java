@@ -88,6 +88,13 @@ public class RegisteredResourceImpl
     /** When was the last status change? */
     private long lastChange = -1;
 
+    /**
+     * Whether the persisted state changed since the resource has been
+     * restored or written to the journal. Deserialized resources are
+     * unmodified.
+     */
+    private transient boolean modified = true;
+
     /**
      * Serialize the object
      * - write version id
@@ -145,11 +152,16 @@ public class RegisteredResourceImpl
             final String updatedDigest = FileDataStore.computeDigest(this.dictionary);
             if ( !updatedDigest.equals(this.digest) ) {
                 this.digest = updatedDigest;
+                this.modified = true;
             }
         }
         // update file location
         if ( this.dataFile != null ) {
-            this.dataFile = FileDataStore.SHARED.getDataFile(this.dataFile.getName());
+            final File location = FileDataStore.SHARED.getDataFile(this.dataFile.getName());
+            if ( !this.dataFile.equals(location) ) {
+                this.dataFile = location;
+                this.modified = true;
+            }
         }
     }
 
@@ -243,6 +255,7 @@ public class RegisteredResourceImpl
             dataFile.delete();
         }
         this.dataUri = null;
+        this.modified = true;
 	}
 
 	/**
@@ -320,6 +333,7 @@ public class RegisteredResourceImpl
      * @see org.apache.sling.installer.api.tasks.TaskResource#setAttribute(java.lang.String, java.lang.Object)
      */
     public void setAttribute(final String key, final Object value) {
+        this.modified = true;
         if ( value == null ) {
             this.attributes.remove(key);
         } else {
@@ -354,6 +368,22 @@ public class RegisteredResourceImpl
     public void setState(final ResourceState s) {
         this.lastChange = System.currentTimeMillis();
         this.state = s;
+        this.modified = true;
+    }
+
+    /**
+     * Whether the persisted state changed since the resource has been
+     * restored or {@link #clearModified()} has been called.
+     */
+    boolean isModified() {
+        return this.modified;
+    }
+
+    /**
+     * Mark the resource as persisted.
+     */
+    void clearModified() {
+        this.modified = false;
     }
 
     /**
@@ -555,6 +585,7 @@ public class RegisteredResourceImpl
      * Update the resource uri - if provided.
      */
     public void update(final InternalResource rsrc) {
+        this.modified = true;
         if ( rsrc.getResourceUri() != null ) {
             FileDataStore.SHARED.removeFromDigestCache(this.url, this.digest);
             this.removeDataFile();
@@ -603,6 +634,7 @@ public class RegisteredResourceImpl
             final String digest,
             final int priority,
             final String url) {
+        this.modified = true;
         this.removeDataFile();
         if ( file != null ) {
             this.dataFile = file;
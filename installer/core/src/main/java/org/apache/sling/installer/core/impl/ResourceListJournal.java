@@ -0,0 +1,428 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.sling.installer.api.tasks.RegisteredResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only journal persisting the state of the {@link PersistentResourceList}.
+ *
+ * The journal starts with a header (magic number and version) followed by
+ * records. Each save appends a record for every new or modified entity,
+ * a record for every removed entity and, if changed, a record for the
+ * untransformed resources. Entities and resources track their modifications
+ * themselves, so unchanged entities are not serialized. The records of a
+ * save are terminated by a commit record; records without a commit record
+ * (e.g. due to a crash while writing) are ignored on load.
+ *
+ * Once the journal contains considerably more records than entities, it is
+ * compacted by rewriting it with a single record per entity.
+ */
+class ResourceListJournal {
+
+    /** Magic number of the journal file. */
+    private static final int MAGIC = 0x534c494a;
+
+    /** Journal format version. */
+    private static final int VERSION = 1;
+
+    /** Record containing the serialized state of an entity. */
+    private static final int RECORD_ENTITY = 1;
+
+    /** Record marking the removal of an entity. */
+    private static final int RECORD_REMOVED = 2;
+
+    /** Record containing the serialized untransformed resources. */
+    private static final int RECORD_UNTRANSFORMED = 3;
+
+    /** Record terminating the records of a single save. */
+    private static final int RECORD_COMMIT = 4;
+
+    /** Minimum number of stale records before the journal is compacted. */
+    private static final int MIN_STALE_RECORDS = 100;
+
+    /** The logger */
+    private final Logger logger =  LoggerFactory.getLogger(this.getClass());
+
+    /** The journal file. */
+    private final File journalFile;
+
+    /** The ids of the entities contained in the journal. */
+    private final Set<String> entityIds = new HashSet<String>();
+
+    /** The untransformed resources contained in the journal. */
+    private List<RegisteredResource> untransformed;
+
+    /**
+     * The serialized state of each entity read by {@link #load()}, until it is
+     * deserialized by {@link #getEntities()}. The key of the map is the entity id.
+     */
+    private final Map<String, byte[]> loadedEntities = new HashMap<String, byte[]>();
+
+    /** The serialized untransformed resources read by {@link #load()}. */
+    private byte[] loadedUntransformed;
+
+    /** The number of entity and untransformed records in the journal. */
+    private int records;
+
+    /** Whether the journal has to be compacted on the next write. */
+    private boolean compactionRequired;
+
+    public ResourceListJournal(final File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Does the journal file exist?
+     */
+    public boolean exists() {
+        return this.journalFile.exists();
+    }
+
+    /**
+     * Get the size of the journal file in bytes.
+     */
+    public long getSize() {
+        return this.journalFile.length();
+    }
+
+    /**
+     * Read the committed records of the journal file.
+     * @throws IOException If the file is not a journal of a known version.
+     */
+    public void load() throws IOException {
+        this.entityIds.clear();
+        this.untransformed = null;
+        this.loadedEntities.clear();
+        this.loadedUntransformed = null;
+        this.records = 0;
+        // if the journal can't be read, it is rewritten instead of appending to it
+        this.compactionRequired = true;
+
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.journalFile)));
+        try {
+            if ( in.readInt() != MAGIC ) {
+                throw new IOException("Not a resource list journal: " + this.journalFile);
+            }
+            final int version = in.readInt();
+            if ( version < 1 || version > VERSION ) {
+                throw new IOException("Unknown version for resource list journal: " + version);
+            }
+            this.compactionRequired = false;
+            final Map<String, byte[]> pendingEntities = new HashMap<String, byte[]>();
+            byte[] pendingUntransformed = null;
+            int pendingRecords = 0;
+            try {
+                int type;
+                while ( (type = in.read()) != -1 ) {
+                    switch ( type ) {
+                        case RECORD_ENTITY : pendingEntities.put(in.readUTF(), readBytes(in));
+                                             pendingRecords++;
+                                             break;
+                        case RECORD_REMOVED : pendingEntities.put(in.readUTF(), null);
+                                              pendingRecords++;
+                                              break;
+                        case RECORD_UNTRANSFORMED : pendingUntransformed = readBytes(in);
+                                                    pendingRecords++;
+                                                    break;
+                        case RECORD_COMMIT : apply(pendingEntities, pendingUntransformed);
+                                             this.records += pendingRecords;
+                                             pendingEntities.clear();
+                                             pendingUntransformed = null;
+                                             pendingRecords = 0;
+                                             break;
+                        default : throw new IOException("Unknown record type " + type);
+                    }
+                }
+                if ( pendingRecords > 0 ) {
+                    throw new EOFException();
+                }
+            } catch (final IOException ioe) {
+                // incomplete or corrupt tail, rewrite the journal on the next write
+                logger.warn("Ignoring incomplete records of resource list journal {} ({})", this.journalFile, ioe.getMessage());
+                this.compactionRequired = true;
+            }
+        } finally {
+            try {
+                in.close();
+            } catch (final IOException ignore) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Apply the records of a committed save.
+     */
+    private void apply(final Map<String, byte[]> pendingEntities, final byte[] pendingUntransformed) {
+        for(final Map.Entry<String, byte[]> entry : pendingEntities.entrySet()) {
+            if ( entry.getValue() == null ) {
+                this.loadedEntities.remove(entry.getKey());
+            } else {
+                this.loadedEntities.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if ( pendingUntransformed != null ) {
+            this.loadedUntransformed = pendingUntransformed;
+        }
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if ( length < 0 ) {
+            throw new IOException("Invalid record length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Deserialize the entities read by {@link #load()}.
+     * Entities which can't be deserialized are logged and skipped.
+     */
+    public Map<String, EntityResourceList> getEntities() {
+        final Map<String, EntityResourceList> result = new HashMap<String, EntityResourceList>();
+        final Iterator<Map.Entry<String, byte[]>> i = this.loadedEntities.entrySet().iterator();
+        while ( i.hasNext() ) {
+            final Map.Entry<String, byte[]> entry = i.next();
+            try {
+                result.put(entry.getKey(), (EntityResourceList)deserialize(entry.getValue()));
+                this.entityIds.add(entry.getKey());
+            } catch (final Exception e) {
+                logger.warn("Unable to restore entity " + entry.getKey() + " (" + e.getMessage() + ")", e);
+                this.compactionRequired = true;
+            }
+            i.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Deserialize the untransformed resources read by {@link #load()}.
+     * @return The list of untransformed resources or <code>null</code>
+     */
+    @SuppressWarnings("unchecked")
+    public List<RegisteredResource> getUntransformedResources() {
+        if ( this.loadedUntransformed != null ) {
+            try {
+                final List<RegisteredResource> result = (List<RegisteredResource>)deserialize(this.loadedUntransformed);
+                this.untransformed = new ArrayList<RegisteredResource>(result);
+                return result;
+            } catch (final Exception e) {
+                logger.warn("Unable to restore untransformed resources (" + e.getMessage() + ")", e);
+                this.compactionRequired = true;
+            } finally {
+                this.loadedUntransformed = null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write the current state.
+     * Only new, modified and removed entities are appended, if the journal
+     * contains too many stale records, it is compacted instead.
+     * @return <code>true</code> if something has been written
+     */
+    public boolean write(final Map<String, EntityResourceList> data,
+            final List<RegisteredResource> untransformedResources)
+    throws IOException {
+        final Map<String, EntityResourceList> changes = new HashMap<String, EntityResourceList>();
+        for(final Map.Entry<String, EntityResourceList> entry : data.entrySet()) {
+            if ( !this.entityIds.contains(entry.getKey()) || entry.getValue().isModified() ) {
+                changes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for(final String entityId : this.entityIds) {
+            if ( !data.containsKey(entityId) ) {
+                changes.put(entityId, null);
+            }
+        }
+        final boolean untransformedChanged = isModified(untransformedResources);
+
+        final int liveRecords = data.size() + 1;
+        if ( this.compactionRequired
+             || !this.journalFile.exists()
+             || this.records + changes.size() + 1 > 2 * liveRecords + MIN_STALE_RECORDS ) {
+            this.compact(data, untransformedResources);
+            return true;
+        }
+        if ( changes.isEmpty() && !untransformedChanged ) {
+            return false;
+        }
+
+        // if the append fails, the written records are ignored on load
+        // but the journal has to be rewritten before appending again
+        this.compactionRequired = true;
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.journalFile, true)));
+        try {
+            for(final Map.Entry<String, EntityResourceList> entry : changes.entrySet()) {
+                writeEntity(out, entry.getKey(), entry.getValue() == null ? null : serialize(entry.getValue()));
+            }
+            if ( untransformedChanged ) {
+                writeUntransformed(out, serialize(untransformedResources));
+            }
+            out.writeByte(RECORD_COMMIT);
+        } finally {
+            out.close();
+        }
+        this.compactionRequired = false;
+        for(final Map.Entry<String, EntityResourceList> entry : changes.entrySet()) {
+            if ( entry.getValue() == null ) {
+                this.entityIds.remove(entry.getKey());
+            } else {
+                this.entityIds.add(entry.getKey());
+                entry.getValue().clearModified();
+            }
+        }
+        if ( untransformedChanged ) {
+            this.setUntransformed(untransformedResources);
+        }
+        this.records += changes.size() + (untransformedChanged ? 1 : 0);
+        return true;
+    }
+
+    /**
+     * Did the untransformed resources change since they have been written?
+     */
+    private boolean isModified(final List<RegisteredResource> untransformedResources) {
+        if ( this.untransformed == null || this.untransformed.size() != untransformedResources.size() ) {
+            return true;
+        }
+        for(int i = 0; i < untransformedResources.size(); i++) {
+            final RegisteredResource rr = untransformedResources.get(i);
+            if ( rr != this.untransformed.get(i)
+                 || !(rr instanceof RegisteredResourceImpl)
+                 || ((RegisteredResourceImpl)rr).isModified() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setUntransformed(final List<RegisteredResource> untransformedResources) {
+        this.untransformed = new ArrayList<RegisteredResource>(untransformedResources);
+        for(final RegisteredResource rr : untransformedResources) {
+            if ( rr instanceof RegisteredResourceImpl ) {
+                ((RegisteredResourceImpl)rr).clearModified();
+            }
+        }
+    }
+
+    /**
+     * Rewrite the journal with a single record per entity.
+     * The new journal is written to a temporary file which replaces
+     * the journal once it is complete.
+     */
+    private void compact(final Map<String, EntityResourceList> data,
+            final List<RegisteredResource> untransformedResources)
+    throws IOException {
+        final File tmpFile = new File(this.journalFile.getParentFile(), this.journalFile.getName() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            for(final Map.Entry<String, EntityResourceList> entry : data.entrySet()) {
+                writeEntity(out, entry.getKey(), serialize(entry.getValue()));
+            }
+            writeUntransformed(out, serialize(untransformedResources));
+            out.writeByte(RECORD_COMMIT);
+        } finally {
+            out.close();
+        }
+        if ( !tmpFile.renameTo(this.journalFile) ) {
+            // some platforms do not allow to rename to an existing file
+            this.journalFile.delete();
+            if ( !tmpFile.renameTo(this.journalFile) ) {
+                tmpFile.delete();
+                throw new IOException("Unable to replace resource list journal " + this.journalFile);
+            }
+        }
+        this.entityIds.clear();
+        this.entityIds.addAll(data.keySet());
+        for(final EntityResourceList erl : data.values()) {
+            erl.clearModified();
+        }
+        this.setUntransformed(untransformedResources);
+        this.records = data.size() + 1;
+        this.compactionRequired = false;
+        logger.debug("Compacted resource list journal {}", this.journalFile);
+    }
+
+    private static void writeEntity(final DataOutputStream out, final String entityId, final byte[] bytes)
+    throws IOException {
+        if ( bytes == null ) {
+            out.writeByte(RECORD_REMOVED);
+            out.writeUTF(entityId);
+        } else {
+            out.writeByte(RECORD_ENTITY);
+            out.writeUTF(entityId);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static void writeUntransformed(final DataOutputStream out, final byte[] bytes)
+    throws IOException {
+        out.writeByte(RECORD_UNTRANSFORMED);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] serialize(final Object obj) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(obj);
+        oos.close();
+        return bos.toByteArray();
+    }
+
+    private static Object deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+}
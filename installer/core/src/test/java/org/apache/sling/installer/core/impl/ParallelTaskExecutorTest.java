@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.tasks.ChangeStateTask;
+import org.apache.sling.installer.api.tasks.InstallTask;
+import org.apache.sling.installer.api.tasks.InstallationContext;
+import org.apache.sling.installer.api.tasks.ResourceState;
+import org.apache.sling.installer.api.tasks.TaskResource;
+import org.apache.sling.installer.api.tasks.TaskResourceGroup;
+import org.apache.sling.installer.core.impl.tasks.BundleInstallTask;
+import org.apache.sling.installer.core.impl.tasks.BundleRemoveTask;
+import org.junit.Test;
+
+public class ParallelTaskExecutorTest {
+
+    private static class MockTask extends InstallTask {
+
+        private final String sortKey;
+
+        private final boolean async;
+
+        private final CountDownLatch latch;
+
+        private final TaskResource resource;
+
+        public MockTask(final String sortKey) {
+            this(sortKey, null);
+        }
+
+        public MockTask(final String sortKey, final TaskResource resource) {
+            this(sortKey, false, null, resource);
+        }
+
+        public MockTask(final String sortKey, final boolean async, final CountDownLatch latch) {
+            this(sortKey, async, latch, null);
+        }
+
+        public MockTask(final String sortKey, final boolean async, final CountDownLatch latch,
+                final TaskResource resource) {
+            super(null);
+            this.sortKey = sortKey;
+            this.async = async;
+            this.latch = latch;
+            this.resource = resource;
+        }
+
+        @Override
+        public TaskResource getResource() {
+            return resource;
+        }
+
+        @Override
+        public void execute(final InstallationContext ctx) {
+            if ( latch != null ) {
+                latch.countDown();
+                try {
+                    // only succeeds if all tasks are executed concurrently
+                    assertTrue(latch.await(5, TimeUnit.SECONDS));
+                } catch (final InterruptedException e) {
+                    // ignore
+                }
+            }
+        }
+
+        @Override
+        public String getSortKey() {
+            return sortKey;
+        }
+
+        @Override
+        public boolean isAsynchronousTask() {
+            return async;
+        }
+    }
+
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static TaskResource config(final ResourceState state) {
+        return proxy(TaskResource.class, new InvocationHandler() {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if ( "getType".equals(method.getName()) ) {
+                    return InstallableResource.TYPE_CONFIG;
+                } else if ( "getState".equals(method.getName()) ) {
+                    return state;
+                }
+                return null;
+            }
+        });
+    }
+
+    private static TaskResourceGroup group(final TaskResource resource) {
+        return proxy(TaskResourceGroup.class, new InvocationHandler() {
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if ( "getActiveResource".equals(method.getName()) ) {
+                    return resource;
+                }
+                return null;
+            }
+        });
+    }
+
+    private static InstallTask bundleRemove(final String symbolicName) {
+        final MockBundleResource resource = new MockBundleResource(symbolicName, "1.0");
+        resource.setState(ResourceState.UNINSTALL);
+        return new BundleRemoveTask(group(resource), null);
+    }
+
+    private static InstallTask bundleInstall(final String symbolicName) {
+        return new BundleInstallTask(group(new MockBundleResource(symbolicName, "1.0")), null);
+    }
+
+    private List<InstallTask> next(final SortedSet<InstallTask> tasks) {
+        final InstallTask first = tasks.first();
+        tasks.remove(first);
+        return ParallelTaskExecutor.removeIndependentTasks(first, tasks);
+    }
+
+    @Test public void testIndependentTasks() {
+        final InstallTask changeState = new ChangeStateTask(group(config(ResourceState.INSTALL)), ResourceState.INSTALLED);
+        final InstallTask system = new MockTask("01-system");
+        final InstallTask removeA = new MockTask("10-a", config(ResourceState.UNINSTALL));
+        final InstallTask removeB = new MockTask("10-b", config(ResourceState.UNINSTALL));
+        final InstallTask installC = new MockTask("20-c", config(ResourceState.INSTALL));
+        final InstallTask removeD = bundleRemove("d");
+        final InstallTask installE = bundleInstall("e");
+        final InstallTask installF = bundleInstall("f");
+        // a bundle task which is neither a removal nor an installation
+        final InstallTask updateG = new MockTask("50-g", new MockBundleResource("g", "1.0"));
+        final InstallTask refresh = new MockTask("60-");
+        final InstallTask startH = new MockTask("70-h");
+        final InstallTask startI = new MockTask("70-i");
+        final SortedSet<InstallTask> tasks = new TreeSet<InstallTask>(Arrays.asList(changeState, system,
+                removeA, removeB, installC, removeD, installE, installF, updateG, refresh, startH, startI));
+        assertEquals(Arrays.asList(changeState), next(tasks));
+        assertEquals(Arrays.asList(system), next(tasks));
+        assertEquals(Arrays.asList(removeA, removeB, removeD), next(tasks));
+        assertEquals(Arrays.asList(installC, installE, installF), next(tasks));
+        assertEquals(Arrays.asList(updateG), next(tasks));
+        assertEquals(Arrays.asList(refresh), next(tasks));
+        assertEquals(Arrays.asList(startH), next(tasks));
+        assertEquals(Arrays.asList(startI), next(tasks));
+        assertTrue(tasks.isEmpty());
+    }
+
+    @Test public void testSequentialTasks() {
+        final InstallTask async = new MockTask("07-", true, null, config(ResourceState.INSTALL));
+        final InstallTask installA = new MockTask("20-a", config(ResourceState.INSTALL));
+        final InstallTask other = new MockTask("25-b");
+        final InstallTask installC = bundleInstall("c");
+        final InstallTask asyncInstall = new AsyncWrapperInstallTask(bundleInstall("d"));
+        final SortedSet<InstallTask> tasks = new TreeSet<InstallTask>(Arrays.asList(async, installA, other,
+                installC, asyncInstall));
+        assertEquals(Arrays.asList(async), next(tasks));
+        assertEquals(Arrays.asList(installA), next(tasks));
+        assertEquals(Arrays.asList(other), next(tasks));
+        assertEquals(Arrays.asList(installC), next(tasks));
+        assertEquals(Arrays.asList(asyncInstall), next(tasks));
+    }
+
+    @Test(timeout = 10000) public void testExecute() {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final ParallelTaskExecutor executor = new ParallelTaskExecutor(3);
+        try {
+            final List<InstallTask> tasks = new ArrayList<InstallTask>();
+            for(final String key : new String[] {"40-a", "40-b", "40-c"}) {
+                tasks.add(new MockTask(key, false, latch));
+            }
+            executor.execute(tasks, null);
+            assertEquals(0, latch.getCount());
+        } finally {
+            executor.dispose();
+        }
+    }
+}
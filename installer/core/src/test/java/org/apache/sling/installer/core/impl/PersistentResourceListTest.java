@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.apache.sling.installer.api.InstallableResource;
+import org.apache.sling.installer.api.tasks.RegisteredResource;
+import org.apache.sling.installer.api.tasks.ResourceState;
+import org.apache.sling.installer.api.tasks.TransformationResult;
+import org.apache.sling.installer.core.impl.mocks.MockFileDataStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentResourceListTest {
+
+    private File journalFile;
+
+    private File dataFile;
+
+    @Before public void setup() throws IOException {
+        MockFileDataStore.set();
+        journalFile = File.createTempFile("RegisteredResourceList", ".journal");
+        journalFile.delete();
+        dataFile = File.createTempFile("RegisteredResourceList", ".ser");
+        dataFile.delete();
+    }
+
+    @After public void cleanup() {
+        journalFile.delete();
+        dataFile.delete();
+        MockFileDataStore.unset();
+    }
+
+    private void register(final PersistentResourceList list, final String pid) throws IOException {
+        final Hashtable<String, Object> data = new Hashtable<String, Object>();
+        data.put("key", pid);
+        final RegisteredResource rr = list.addOrUpdate(InternalResource.create("test",
+                new InstallableResource("configuration:" + pid, null, data, null, null, null)));
+        final TransformationResult result = new TransformationResult();
+        result.setId(pid);
+        result.setResourceType(InstallableResource.TYPE_CONFIG);
+        list.transform(rr, new TransformationResult[] {result});
+    }
+
+    private void uninstall(final PersistentResourceList list, final String pid) {
+        list.remove("configuration:" + pid);
+        for(final RegisteredResourceImpl rr : list.getEntityResourceList("config:" + pid).getResources()) {
+            rr.setState(ResourceState.UNINSTALLED);
+        }
+        list.compact();
+    }
+
+    @Test public void testRestore() throws IOException {
+        final PersistentResourceList list = new PersistentResourceList(journalFile, dataFile, null);
+        for(int i=0; i<10; i++) {
+            register(list, "pid" + i);
+        }
+        list.save();
+        final long size = journalFile.length();
+        assertTrue(size > 0);
+        assertEquals(1, list.getSaveCount());
+
+        // only the changes are appended
+        list.save();
+        assertEquals(size, journalFile.length());
+        register(list, "pid10");
+        uninstall(list, "pid0");
+        list.save();
+        assertTrue(journalFile.length() > size);
+        assertTrue(journalFile.length() < 2 * size);
+
+        final PersistentResourceList restored = new PersistentResourceList(journalFile, dataFile, null);
+        assertEquals(list.getEntityIds(), restored.getEntityIds());
+        assertNull(restored.getEntityResourceList("config:pid0"));
+        final EntityResourceList erl = restored.getEntityResourceList("config:pid10");
+        assertNotNull(erl);
+        assertEquals("pid10", erl.getResources().iterator().next().getDictionary().get("key"));
+    }
+
+    @Test public void testIncompleteTail() throws IOException {
+        final PersistentResourceList list = new PersistentResourceList(journalFile, dataFile, null);
+        register(list, "pid0");
+        list.save();
+
+        // a partially written save is ignored
+        final FileOutputStream out = new FileOutputStream(journalFile, true);
+        out.write(new byte[] {1, 0, 10, 'c', 'o', 'n'});
+        out.close();
+
+        final PersistentResourceList restored = new PersistentResourceList(journalFile, dataFile, null);
+        assertEquals(list.getEntityIds(), restored.getEntityIds());
+
+        // and the journal is rewritten on the next save
+        register(restored, "pid1");
+        restored.save();
+        final PersistentResourceList again = new PersistentResourceList(journalFile, dataFile, null);
+        assertEquals(restored.getEntityIds(), again.getEntityIds());
+        assertNotNull(again.getEntityResourceList("config:pid1"));
+    }
+
+    @Test public void testUnreadableJournal() throws IOException {
+        final FileOutputStream out = new FileOutputStream(journalFile);
+        out.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        out.close();
+
+        // the journal is rewritten instead of appending to it
+        final PersistentResourceList list = new PersistentResourceList(journalFile, dataFile, null);
+        register(list, "pid0");
+        list.save();
+        final PersistentResourceList restored = new PersistentResourceList(journalFile, dataFile, null);
+        assertNotNull(restored.getEntityResourceList("config:pid0"));
+    }
+
+    @Test public void testOnlyModifiedEntitiesAppended() throws IOException {
+        final PersistentResourceList list = new PersistentResourceList(journalFile, dataFile, null);
+        for(int i=0; i<10; i++) {
+            register(list, "pid" + i);
+        }
+        list.save();
+
+        // nothing changed after a restart
+        final PersistentResourceList restored = new PersistentResourceList(journalFile, dataFile, null);
+        final long size = journalFile.length();
+        restored.save();
+        assertEquals(size, journalFile.length());
+
+        final RegisteredResourceImpl rr = restored.getEntityResourceList("config:pid3").getResources().iterator().next();
+        rr.setState(ResourceState.INSTALLED);
+        restored.save();
+        assertTrue(journalFile.length() > size);
+        final long appended = journalFile.length();
+        restored.save();
+        assertEquals(appended, journalFile.length());
+
+        final PersistentResourceList again = new PersistentResourceList(journalFile, dataFile, null);
+        assertEquals(ResourceState.INSTALLED,
+                again.getEntityResourceList("config:pid3").getResources().iterator().next().getState());
+    }
+
+    @Test public void testCompaction() throws IOException {
+        final PersistentResourceList list = new PersistentResourceList(journalFile, dataFile, null);
+        register(list, "pid");
+        list.save();
+        final long size = journalFile.length();
+        for(int i=0; i<500; i++) {
+            uninstall(list, "pid");
+            list.save();
+            register(list, "pid");
+            list.save();
+        }
+        assertTrue(journalFile.length() < 100 * size);
+
+        final PersistentResourceList restored = new PersistentResourceList(journalFile, dataFile, null);
+        assertEquals(list.getEntityIds(), restored.getEntityIds());
+    }
+
+    @Test public void testMigration() throws IOException {
+        final Map<String, EntityResourceList> data = new HashMap<String, EntityResourceList>();
+        final PersistentResourceList list = new PersistentResourceList(journalFile, dataFile, null);
+        register(list, "pid0");
+        for(final String id : list.getEntityIds()) {
+            data.put(id, list.getEntityResourceList(id));
+        }
+        final ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(dataFile));
+        oos.writeInt(2);
+        oos.writeObject(data);
+        oos.writeObject(new ArrayList<RegisteredResource>());
+        oos.close();
+
+        final PersistentResourceList migrated = new PersistentResourceList(journalFile, dataFile, null);
+        assertNotNull(migrated.getEntityResourceList("config:pid0"));
+        assertFalse(dataFile.exists());
+        assertTrue(journalFile.exists());
+
+        final PersistentResourceList restored = new PersistentResourceList(journalFile, dataFile, null);
+        assertEquals(migrated.getEntityIds(), restored.getEntityIds());
+    }
+}
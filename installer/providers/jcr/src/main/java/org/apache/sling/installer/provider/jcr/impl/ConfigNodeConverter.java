@@ -23,6 +23,7 @@ import java.io.ObjectOutputStream;
 import java.lang.reflect.Array;
 import java.math.BigInteger;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -44,8 +45,16 @@ import org.slf4j.LoggerFactory;
 class ConfigNodeConverter implements JcrInstaller.NodeConverter {
 
 	public static final String CONFIG_NODE_TYPE = "sling:OsgiConfig";
+	private static final String JCR_LAST_MODIFIED = "jcr:lastModified";
 	private final Logger log = LoggerFactory.getLogger(getClass());
 
+	/** Cache of the digests, keyed by path and last modified. */
+	private final DigestCache digestCache;
+
+	ConfigNodeConverter(final DigestCache digestCache) {
+	    this.digestCache = digestCache;
+	}
+
 	/** Convert n to an InstallableData, or return null
 	 * 	if we don't know how to convert it.
 	 */
@@ -57,7 +66,7 @@ class ConfigNodeConverter implements JcrInstaller.NodeConverter {
 		// We only consider CONFIG_NODE_TYPE nodes
 		if(n.isNodeType(CONFIG_NODE_TYPE)) {
 		    final Dictionary<String, Object> dict = load(n);
-			result = new InstallableResource(n.getPath(), null, dict, computeDigest(dict), null, priority);
+			result = new InstallableResource(n.getPath(), null, dict, getDigest(n, dict), null, priority);
 			log.debug("Converted node {} to {}", n.getPath(), result);
 		} else {
 			log.debug("Node is not a {} node, ignored:{}", CONFIG_NODE_TYPE, n.getPath());
@@ -65,6 +74,25 @@ class ConfigNodeConverter implements JcrInstaller.NodeConverter {
 		return result;
 	}
 
+    /**
+     * Get the digest of the dictionary, from the cache if the node
+     * has a last modified date and its values did not change.
+     */
+    private String getDigest(final Node n, final Dictionary<String, Object> dict) throws RepositoryException {
+        if ( digestCache == null || !n.hasProperty(JCR_LAST_MODIFIED) ) {
+            return computeDigest(dict);
+        }
+        final String path = n.getPath();
+        final long lastModified = n.getProperty(JCR_LAST_MODIFIED).getDate().getTimeInMillis();
+        final long valuesHash = computeValuesHash(dict);
+        String digest = digestCache.get(path, lastModified, valuesHash);
+        if ( digest == null ) {
+            digest = computeDigest(dict);
+            digestCache.put(path, lastModified, valuesHash, digest);
+        }
+        return digest;
+    }
+
     /** Load config from node n */
     protected Dictionary<String, Object> load(Node n) throws RepositoryException {
         Dictionary<String, Object> result = new Hashtable<String, Object>();
@@ -141,6 +169,23 @@ class ConfigNodeConverter implements JcrInstaller.NodeConverter {
         return new String(bigInt.toString(16));
     }
 
+    /**
+     * Cheap hash of the values, it detects nodes changed without a new
+     * last modified date without serializing the dictionary.
+     */
+    static long computeValuesHash(final Dictionary<String, Object> data) {
+        final SortedSet<String> sortedKeys = new TreeSet<String>();
+        for(Enumeration<String> e = data.keys(); e.hasMoreElements(); ) {
+            sortedKeys.add(e.nextElement());
+        }
+        long hash = 17;
+        for(final String key : sortedKeys) {
+            hash = 31 * hash + key.hashCode();
+            hash = 31 * hash + Arrays.deepHashCode(new Object[] {data.get(key)});
+        }
+        return hash;
+    }
+
     /** Digest is needed to detect changes in data, and must not depend on dictionary ordering */
     private static String computeDigest(Dictionary<String, Object> data) {
         try {
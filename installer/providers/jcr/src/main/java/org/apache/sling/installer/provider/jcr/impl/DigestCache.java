@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.provider.jcr.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the digests of converted nodes, keyed by node path, the
+ * <code>jcr:lastModified</code> value of the node and a hash of the
+ * converted property values.
+ * The cache is persisted to avoid recomputing the digests on startup.
+ * As editing a node does not necessarily update its last modified date,
+ * the hash of the values detects nodes changed while the installer was
+ * not running.
+ * Entries are invalidated whenever an observation event for the
+ * node or its subtree is received.
+ */
+class DigestCache {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /** The file to persist the cache to, might be <code>null</code>. */
+    private final File file;
+
+    /** The cached entries, value is last modified, hash of the values and digest separated by a space. */
+    private final TreeMap<String, String> entries = new TreeMap<String, String>();
+
+    /** Changed since the last save? */
+    private boolean modified;
+
+    DigestCache(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the persisted cache.
+     */
+    synchronized void load() {
+        if ( file != null && file.exists() ) {
+            final Properties props = new Properties();
+            try {
+                final InputStream is = new BufferedInputStream(new FileInputStream(file));
+                try {
+                    props.load(is);
+                } finally {
+                    is.close();
+                }
+                for(final Map.Entry<Object, Object> entry : props.entrySet()) {
+                    entries.put((String)entry.getKey(), (String)entry.getValue());
+                }
+                logger.debug("Loaded {} digests from {}", entries.size(), file);
+            } catch (final IOException ioe) {
+                logger.warn("Unable to load digests from " + file, ioe);
+            }
+        }
+        modified = false;
+    }
+
+    /**
+     * Persist the cache if it has been modified.
+     */
+    synchronized void save() {
+        if ( file != null && modified ) {
+            final Properties props = new Properties();
+            props.putAll(entries);
+            try {
+                final OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+                try {
+                    props.store(os, null);
+                } finally {
+                    os.close();
+                }
+                modified = false;
+            } catch (final IOException ioe) {
+                logger.warn("Unable to save digests to " + file, ioe);
+            }
+        }
+    }
+
+    /**
+     * Get the cached digest.
+     * @param path The node path
+     * @param lastModified The last modified date of the node
+     * @param valuesHash The hash of the converted property values
+     * @return The digest or <code>null</code> if there is no digest for the
+     *         path or the node has been modified in the meantime.
+     */
+    synchronized String get(final String path, final long lastModified, final long valuesHash) {
+        final String value = entries.get(path);
+        final String prefix = getPrefix(lastModified, valuesHash);
+        if ( value != null && value.startsWith(prefix) ) {
+            return value.substring(prefix.length());
+        }
+        return null;
+    }
+
+    synchronized void put(final String path, final long lastModified, final long valuesHash, final String digest) {
+        final String value = getPrefix(lastModified, valuesHash).concat(digest);
+        if ( !value.equals(entries.put(path, value)) ) {
+            modified = true;
+        }
+    }
+
+    private static String getPrefix(final long lastModified, final long valuesHash) {
+        return String.valueOf(lastModified).concat(" ").concat(String.valueOf(valuesHash)).concat(" ");
+    }
+
+    /**
+     * Invalidate the entries for the changed path, its ancestors and its subtree.
+     */
+    synchronized void invalidate(final String path) {
+        String p = path;
+        while ( p.length() > 0 ) {
+            if ( entries.remove(p) != null ) {
+                modified = true;
+            }
+            p = p.substring(0, p.lastIndexOf('/'));
+        }
+        final String prefix = path.concat("/");
+        final SortedMap<String, String> subtree = entries.subMap(prefix, prefix + Character.MAX_VALUE);
+        if ( !subtree.isEmpty() ) {
+            subtree.clear();
+            modified = true;
+        }
+    }
+
+    /**
+     * Remove all entries except the ones for the given paths.
+     */
+    synchronized void retain(final Collection<String> paths) {
+        if ( entries.keySet().retainAll(paths) ) {
+            modified = true;
+        }
+    }
+}
@@ -21,9 +21,11 @@ package org.apache.sling.installer.provider.jcr.impl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Dictionary;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import javax.jcr.RepositoryException;
 import javax.jcr.Session;
@@ -38,6 +40,9 @@ import org.slf4j.Logger;
 
 public class InstallerConfig {
 
+    /** Name of the file persisting the digest cache */
+    private static final String DIGEST_CACHE_FILE = "digests.properties";
+
     /** Write back enabled? */
     private final boolean writeBack;
 
@@ -58,6 +63,9 @@ public class InstallerConfig {
     /** The path for pauseInstallation property */
     private final String pauseScanNodePath;
 
+    /** Cache of the digests of the converted nodes */
+    private final DigestCache digestCache;
+
     /** List of watched folders */
     private final List<WatchedFolder> watchedFolders = new LinkedList<WatchedFolder>();
 
@@ -71,9 +79,10 @@ public class InstallerConfig {
         this.logger = logger;
         this.writeBack = PropertiesUtil.toBoolean(getPropertyValue(logger, ctx, cfg, JcrInstaller.PROP_ENABLE_WRITEBACK), JcrInstaller.DEFAULT_ENABLE_WRITEBACK);
 
-        // Setup converters
+        // Setup digest cache and converters
+        this.digestCache = new DigestCache(ctx.getBundleContext().getDataFile(DIGEST_CACHE_FILE));
         converters.add(new FileNodeConverter());
-        converters.add(new ConfigNodeConverter());
+        converters.add(new ConfigNodeConverter(this.digestCache));
 
         // Configurable max depth, system property (via bundle context) overrides default value
         final Object obj = getPropertyValue(logger, ctx, cfg, JcrInstaller.PROP_INSTALL_FOLDER_MAX_DEPTH);
@@ -148,6 +157,10 @@ public class InstallerConfig {
         return this.converters;
     }
 
+    DigestCache getDigestCache() {
+        return this.digestCache;
+    }
+
     public int getMaxWatchedFolderDepth() {
         return maxWatchedFolderDepth;
     }
@@ -182,6 +195,12 @@ public class InstallerConfig {
                 resources.addAll(r.toAdd);
             }
         }
+        // drop the cached digests of resources which are gone
+        final Set<String> paths = new HashSet<String>();
+        for(final InstallableResource r : resources) {
+            paths.add(r.getId());
+        }
+        this.digestCache.retain(paths);
         return resources;
     }
 
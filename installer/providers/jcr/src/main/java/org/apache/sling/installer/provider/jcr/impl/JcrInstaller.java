@@ -255,6 +255,7 @@ public class JcrInstaller implements UpdateHandler, ManagedService {
 
 
                 // Find paths to watch and create WatchedFolders to manage them
+                cfg.getDigestCache().load();
                 for(final String root : cfg.getRoots()) {
                     findPathsToWatch(cfg, session, root);
                 }
@@ -263,6 +264,7 @@ public class JcrInstaller implements UpdateHandler, ManagedService {
                 final List<InstallableResource> resources = cfg.scanWatchedFolders();
                 logger.debug("Registering {} resources with OSGi installer: {}", resources.size(), resources);
                 installer.registerResources(URL_SCHEME, resources.toArray(new InstallableResource[resources.size()]));
+                cfg.getDigestCache().save();
                 this.active.set(true);
             } finally {
                 if ( !this.active.get() ) {
@@ -463,7 +465,7 @@ public class JcrInstaller implements UpdateHandler, ManagedService {
         final String path = n.getPath();
         final int priority = cfg.getFolderNameFilter().getPriority(path);
         if (priority > 0) {
-            cfg.addWatchedFolder(new WatchedFolder(session, path, priority, cfg.getConverters()));
+            cfg.addWatchedFolder(new WatchedFolder(session, path, priority, cfg.getConverters(), cfg.getDigestCache()));
         }
         final int depth = path.split("/").length;
         if(depth > cfg.getMaxWatchedFolderDepth()) {
@@ -560,9 +562,14 @@ public class JcrInstaller implements UpdateHandler, ManagedService {
                 }
             }
 
-            // Update list of WatchedFolder if we got any relevant events,
-            // or if there were any WatchedFolder events
-            if (scanWf || updateFoldersListTimer.expired()) {
+            if ( scanWf ) {
+                cfg.getDigestCache().save();
+            }
+
+            // Update list of WatchedFolder if we got any relevant events:
+            // nodes added or removed below the roots schedule the timer,
+            // changes within watched folders are handled by the scans above
+            if (updateFoldersListTimer.expired()) {
                 if (!didRefresh) {
                     session.refresh(false);
                     didRefresh = true;
@@ -99,8 +99,7 @@ class RootFolderListener implements EventListener {
                 while ( ii.hasNext() ) {
                     final WatchedFolder folder = ii.next();
                     if ( path.startsWith(folder.getPathWithSlash()) ) {
-                        folder.markForScan();
-                        ii.remove();
+                        folder.markForScan(path);
                         break;
                     }
                 }
@@ -25,6 +25,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.jcr.Item;
 import javax.jcr.Node;
@@ -38,9 +39,16 @@ import org.slf4j.LoggerFactory;
 
 /** Watch a single folder in the JCR Repository, detecting changes
  *  to it and providing InstallableData for its contents.
+ *
+ *  The folder is scanned completely when it starts being watched, afterwards
+ *  only the paths reported by observation events are scanned. A change of
+ *  a property of the folder node itself triggers a full scan again.
  */
 class WatchedFolder {
 
+    /** Maximum number of changed paths to remember, a full scan is done if more paths changed. */
+    static final int MAX_CHANGED_PATHS = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     private final String path;
@@ -48,10 +56,14 @@ class WatchedFolder {
     private final int priority;
     private final Session session;
     private final Collection <JcrInstaller.NodeConverter> converters;
+    private final DigestCache digestCache;
     private final Set<String> existingResourceUrls = new HashSet<String>();
 
     private volatile boolean needsScan;
 
+    /** Paths changed since the last scan or <code>null</code> if a full scan is needed. */
+    private Set<String> changedPaths;
+
     static class ScanResult {
         List<InstallableResource> toAdd = new ArrayList<InstallableResource>();
         List<String> toRemove = new ArrayList<String>();
@@ -63,7 +75,8 @@ class WatchedFolder {
     WatchedFolder(final Session session,
             final String path,
             final int priority,
-    		final Collection<JcrInstaller.NodeConverter> converters)
+    		final Collection<JcrInstaller.NodeConverter> converters,
+    		final DigestCache digestCache)
     throws RepositoryException {
         if (priority < 1) {
             throw new IllegalArgumentException("Cannot watch folder with priority 0:" + path);
@@ -72,13 +85,14 @@ class WatchedFolder {
         this.path = path;
         this.pathWithSlash = path.concat("/");
         this.converters = converters;
+        this.digestCache = digestCache;
         this.priority = priority;
         this.session = session;
     }
 
     public void start() {
         logger.info("Watching folder {} (priority {})", path, priority);
-        this.needsScan = true;
+        this.markForScan();
     }
 
     @Override
@@ -94,12 +108,35 @@ class WatchedFolder {
         return this.pathWithSlash;
     }
 
+    /**
+     * Schedule a full scan of the folder.
+     */
+    public synchronized void markForScan() {
+        logger.debug("Full scan requested for path {}", path);
+        changedPaths = null;
+        needsScan = true;
+    }
+
     /**
      * Update scan flag whenever an observation event occurs.
+     * @param changedPath The path of the event
      */
-    public void markForScan() {
-        logger.debug("JCR events received for path {}", path);
+    public synchronized void markForScan(final String changedPath) {
+        logger.debug("JCR event received for path {}", changedPath);
+        // invalidate right away, the path is not remembered if a full scan is needed
+        if ( digestCache != null ) {
+            digestCache.invalidate(changedPath);
+        }
+        if ( !needsScan ) {
+            changedPaths = new HashSet<String>();
+        }
         needsScan = true;
+        if ( changedPaths != null ) {
+            changedPaths.add(changedPath);
+            if ( changedPaths.size() > MAX_CHANGED_PATHS ) {
+                changedPaths = null;
+            }
+        }
     }
 
     /**
@@ -112,10 +149,15 @@ class WatchedFolder {
     /**
      * Scan the contents of our folder and return the corresponding
      * <code>ScanResult</code> containing the <code>InstallableResource</code>s.
+     * Only the changed paths are scanned unless a full scan is needed.
      */
     public ScanResult scan() throws RepositoryException {
-        logger.debug("Scanning {}", path);
-        needsScan = false;
+        final Set<String> paths;
+        synchronized ( this ) {
+            paths = changedPaths;
+            changedPaths = null;
+            needsScan = false;
+        }
 
         Node folder = null;
         if (session.itemExists(path)) {
@@ -128,14 +170,26 @@ class WatchedFolder {
         // Return an InstallableResource for all child nodes for which we have a NodeConverter
         final ScanResult result = new ScanResult();
         final Set<String> resourcesSeen = new HashSet<String>();
-        if (folder != null) {
-            scanNode(folder, result, resourcesSeen);
+        // Paths of scanned subtrees and of nodes which are no resources
+        final Set<String> scannedSubtrees = new HashSet<String>();
+        final Set<String> noResources = new HashSet<String>();
+        if (folder == null || paths == null) {
+            logger.debug("Scanning {}", path);
+            if (folder != null) {
+                scanNode(folder, result, resourcesSeen);
+            }
+            scannedSubtrees.add(path);
+        } else {
+            logger.debug("Scanning {} changed paths in {}", paths.size(), path);
+            for(final String nodePath : getChangedNodes(paths)) {
+                scanChangedNode(folder, nodePath, result, resourcesSeen, scannedSubtrees, noResources);
+            }
         }
 
-        // Resources that existed but are not in resourcesSeen need to be
-        // unregistered from OsgiInstaller
+        // Resources that existed in the scanned parts but are not in resourcesSeen
+        // need to be unregistered from OsgiInstaller
         for(final String url : existingResourceUrls) {
-        	if(!resourcesSeen.contains(url)) {
+        	if(!resourcesSeen.contains(url) && (noResources.contains(url) || isInSubtree(url, scannedSubtrees))) {
                 result.toRemove.add(url);
         	}
         }
@@ -153,27 +207,103 @@ class WatchedFolder {
         return result;
     }
 
+    /**
+     * Get the deepest existing nodes of the changed paths, omitting the
+     * ones contained in the subtree of another one.
+     */
+    private Set<String> getChangedNodes(final Set<String> paths) throws RepositoryException {
+        final Set<String> nodes = new TreeSet<String>();
+        for(final String changedPath : paths) {
+            String p = changedPath;
+            while ( p.startsWith(pathWithSlash) && !session.nodeExists(p) ) {
+                p = p.substring(0, p.lastIndexOf('/'));
+            }
+            nodes.add(p.startsWith(pathWithSlash) ? p : path);
+        }
+        final Set<String> result = new HashSet<String>();
+        for(final String p : nodes) {
+            boolean contained = false;
+            String parent = p;
+            while ( !contained && parent.length() > path.length() ) {
+                parent = parent.substring(0, parent.lastIndexOf('/'));
+                contained = result.contains(parent);
+            }
+            if ( !contained ) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scan a changed node. If the node or one of its ancestors within
+     * the folder is a resource, only this resource is converted, otherwise
+     * the subtree of the node is scanned.
+     */
+    private void scanChangedNode(final Node folder,
+            final String nodePath,
+            final ScanResult result,
+            final Set<String> resourcesSeen,
+            final Set<String> scannedSubtrees,
+            final Set<String> noResources)
+    throws RepositoryException {
+        Node n = folder;
+        if ( !nodePath.equals(path) ) {
+            for(final String name : nodePath.substring(pathWithSlash.length()).split("/")) {
+                n = n.getNode(name);
+                if ( resourcesSeen.contains(n.getPath()) ) {
+                    return;
+                }
+                final InstallableResource r = convertNode(n);
+                if ( r != null ) {
+                    addResource(r, result, resourcesSeen);
+                    return;
+                }
+                noResources.add(n.getPath());
+            }
+        }
+        scanNode(n, result, resourcesSeen);
+        scannedSubtrees.add(n.getPath());
+    }
+
+    private static boolean isInSubtree(final String url, final Set<String> subtrees) {
+        for(final String p : subtrees) {
+            if ( url.startsWith(p.concat("/")) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private InstallableResource convertNode(final Node n) throws RepositoryException {
+        for (JcrInstaller.NodeConverter nc : converters) {
+            final InstallableResource r = nc.convertNode(n, priority);
+            if(r != null) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    private void addResource(final InstallableResource r, final ScanResult result, final Set<String> resourcesSeen) {
+        resourcesSeen.add(r.getId());
+        final String oldDigest = digests.get(r.getId());
+        if (r.getDigest().equals(oldDigest)) {
+            logger.debug("Digest didn't change, ignoring " + r);
+        } else {
+            result.toAdd.add(r);
+        }
+    }
+
     private void scanNode(final Node folder, final ScanResult result, final Set<String> resourcesSeen)
     throws RepositoryException {
         final NodeIterator it = folder.getNodes();
         while(it.hasNext()) {
             final Node n = it.nextNode();
-            boolean processed = false;
-            for (JcrInstaller.NodeConverter nc : converters) {
-                final InstallableResource r = nc.convertNode(n, priority);
-                if(r != null) {
-                    processed = true;
-                    resourcesSeen.add(r.getId());
-                    final String oldDigest = digests.get(r.getId());
-                    if (r.getDigest().equals(oldDigest)) {
-                        logger.debug("Digest didn't change, ignoring " + r);
-                    } else {
-                        result.toAdd.add(r);
-                    }
-                    break;
-                }
-            }
-            if ( !processed ) {
+            final InstallableResource r = convertNode(n);
+            if ( r != null ) {
+                addResource(r, result, resourcesSeen);
+            } else {
                 this.scanNode(n, result, resourcesSeen);
             }
         }
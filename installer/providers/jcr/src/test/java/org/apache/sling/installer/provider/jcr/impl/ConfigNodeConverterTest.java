@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.provider.jcr.impl;
+
+import java.io.File;
+import java.util.Calendar;
+
+import javax.jcr.Node;
+import javax.jcr.Session;
+
+import org.apache.sling.commons.testing.jcr.RepositoryTestBase;
+import org.apache.sling.jcr.api.SlingRepository;
+
+/** Test the digests of converted configuration nodes */
+public class ConfigNodeConverterTest extends RepositoryTestBase {
+
+    private static final String CONFIG = "ConfigNodeConverterTest.config";
+
+    private Session session;
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        final SlingRepository repo = getRepository();
+        session = repo.loginAdministrative(repo.getDefaultWorkspace());
+        // registers the node types
+        new ContentHelper(session);
+        file = File.createTempFile(getClass().getSimpleName(), ".properties");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if ( session.getRootNode().hasNode(CONFIG) ) {
+            session.getRootNode().getNode(CONFIG).remove();
+            session.save();
+        }
+        session.logout();
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testConfigChangedWhileStopped() throws Exception {
+        final Node n = session.getRootNode().addNode(CONFIG, ConfigNodeConverter.CONFIG_NODE_TYPE);
+        n.setProperty("foo", "a");
+        n.setProperty("jcr:lastModified", Calendar.getInstance());
+        session.save();
+
+        final DigestCache cache = new DigestCache(file);
+        cache.load();
+        final String digest = new ConfigNodeConverter(cache).convertNode(n, 1).getDigest();
+        cache.save();
+
+        // changed while the installer is not running, the last modified date is preserved
+        n.setProperty("foo", "b");
+        session.save();
+
+        final DigestCache restarted = new DigestCache(file);
+        restarted.load();
+        final String changedDigest = new ConfigNodeConverter(restarted).convertNode(n, 1).getDigest();
+        assertFalse("Changed config must be reinstalled", digest.equals(changedDigest));
+        assertEquals(new ConfigNodeConverter(null).convertNode(n, 1).getDigest(), changedDigest);
+    }
+}
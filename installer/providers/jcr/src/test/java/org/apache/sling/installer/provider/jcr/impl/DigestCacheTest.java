@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.provider.jcr.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DigestCacheTest {
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile(getClass().getSimpleName(), ".properties");
+        file.delete();
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void testPersistence() {
+        final DigestCache cache = new DigestCache(file);
+        cache.load();
+        cache.put("/libs/install/a.config", 10, 0, "digestA");
+        cache.save();
+
+        final DigestCache loaded = new DigestCache(file);
+        loaded.load();
+        assertEquals("digestA", loaded.get("/libs/install/a.config", 10, 0));
+        assertNull("Modified node must not use cached digest", loaded.get("/libs/install/a.config", 11, 0));
+        assertNull("Changed values must not use cached digest", loaded.get("/libs/install/a.config", 10, 1));
+    }
+
+    @Test
+    public void testInvalidate() {
+        final DigestCache cache = new DigestCache(null);
+        cache.put("/libs/install/a", 1, 0, "a");
+        cache.put("/libs/install/a/b", 1, 0, "b");
+        cache.put("/libs/install/ab", 1, 0, "ab");
+        cache.put("/libs/install/c", 1, 0, "c");
+
+        cache.invalidate("/libs/install/a/b/jcr:content");
+        assertNull(cache.get("/libs/install/a", 1, 0));
+        assertNull(cache.get("/libs/install/a/b", 1, 0));
+        assertEquals("ab", cache.get("/libs/install/ab", 1, 0));
+
+        cache.put("/libs/install/a/b", 1, 0, "b");
+        cache.invalidate("/libs/install/a");
+        assertNull(cache.get("/libs/install/a/b", 1, 0));
+        assertEquals("ab", cache.get("/libs/install/ab", 1, 0));
+
+        cache.retain(Collections.singleton("/libs/install/c"));
+        assertNull(cache.get("/libs/install/ab", 1, 0));
+        assertEquals("c", cache.get("/libs/install/c", 1, 0));
+    }
+}
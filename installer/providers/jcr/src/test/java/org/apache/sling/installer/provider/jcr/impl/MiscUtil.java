@@ -77,6 +77,8 @@ class MiscUtil {
                 will(returnValue(null));
                 allowing(bc).registerService(with(any(String.class)), with(any(Object.class)), with(any(Dictionary.class)));
                 will(returnValue(null));
+                allowing(bc).getDataFile(with(any(String.class)));
+                will(returnValue(null));
             }});
             COMPONENT_CONTEXT = cc;
         }
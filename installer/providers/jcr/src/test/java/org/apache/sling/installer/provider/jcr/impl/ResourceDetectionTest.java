@@ -219,4 +219,21 @@ public class ResourceDetectionTest extends JcrInstallTestBase {
         		1, osgiInstaller.getRecordedCalls().size());
         assertRecordedCall("add", path);
    }
-}
\ No newline at end of file
+
+    public void testSingleResourceChange() throws Exception {
+        assertRegisteredPaths(contentHelper.FAKE_RESOURCES);
+        assertRegisteredPaths(contentHelper.FAKE_CONFIGS);
+
+        // Only the changed resource is reported, the unchanged ones
+        // in the same and in other folders are not registered again
+        osgiInstaller.clearRecordedCalls();
+        final String path = contentHelper.FAKE_CONFIGS[0];
+        ((Node)session.getItem(path)).setProperty("foo", "changed" + System.currentTimeMillis());
+        session.save();
+        MiscUtil.waitAfterContentChanges(eventHelper, installer);
+        assertEquals("Expected one OsgiInstaller call for a single changed resource, got "
+                + osgiInstaller.getRecordedCalls(),
+                1, osgiInstaller.getRecordedCalls().size());
+        assertRecordedCall("add", path);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.sling.installer.provider.jcr.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class WatchedFolderTest {
+
+    @Test
+    public void testInvalidateOnChangedPathOverflow() throws Exception {
+        final DigestCache cache = new DigestCache(null);
+        cache.put("/libs/install/a.config", 1, 0, "a");
+        cache.put("/libs/install/b.config", 1, 0, "b");
+        final WatchedFolder folder = new WatchedFolder(null, "/libs/install", 1,
+                Collections.<JcrInstaller.NodeConverter>emptyList(), cache);
+
+        for(int i = 0; i <= WatchedFolder.MAX_CHANGED_PATHS; i++) {
+            folder.markForScan("/libs/install/node" + i);
+        }
+        // the changed paths are not remembered anymore, a full scan is done
+        folder.markForScan("/libs/install/a.config/jcr:content");
+        assertTrue(folder.needsScan());
+        assertNull(cache.get("/libs/install/a.config", 1, 0));
+        assertEquals("b", cache.get("/libs/install/b.config", 1, 0));
+    }
+}
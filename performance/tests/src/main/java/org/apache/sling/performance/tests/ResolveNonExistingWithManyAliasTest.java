@@ -37,6 +37,8 @@ import org.junit.Before;
 public class ResolveNonExistingWithManyAliasTest extends AbstractRepositoryTest {
     
     private static final String PN_SLING_ALIAS = "sling:alias";
+
+    private static final String PN_SLING_INTERNAL_REDIRECT = "sling:internalRedirect";
     
     private final TestHelper helper;
 
@@ -49,11 +51,22 @@ public class ResolveNonExistingWithManyAliasTest extends AbstractRepositoryTest
     private String rootPath;
 
     private final int nodeCount;
+
+    private final int mapEntryCount;
     
     public ResolveNonExistingWithManyAliasTest(String testInstanceName, TestHelper helper, int nodeCount) {
+        this(testInstanceName, helper, nodeCount, 0);
+    }
+
+    /**
+     * @param mapEntryCount number of additional virtual host mappings
+     *            created below <code>/etc/map/http</code>
+     */
+    public ResolveNonExistingWithManyAliasTest(String testInstanceName, TestHelper helper, int nodeCount, int mapEntryCount) {
         super(testInstanceName);
         this.helper = helper;
         this.nodeCount = nodeCount;
+        this.mapEntryCount = mapEntryCount;
     }
 
     @After
@@ -94,6 +107,16 @@ public class ResolveNonExistingWithManyAliasTest extends AbstractRepositoryTest
         Node https = map.addNode("https", "sling:Mapping");
         https.addNode("localhost.443", "sling:Mapping");
 
+        // creating <mapEntryCount> virtual hosts not matching the request
+        for (int j = 0; j < mapEntryCount; j++) {
+            Node host = http.addNode("host" + j + ".example.com.80", "sling:Mapping");
+            host.setProperty(PN_SLING_INTERNAL_REDIRECT, "/content/site" + j);
+
+            if (j % 10 == 0) {
+                session.save();
+            }
+        }
+
         // define a vanity path for the rootPath
         SecureRandom random = new SecureRandom();
         // creating <nodeCount> nodes